@@ -5,7 +5,6 @@ package org.esa.beam.dataViewer3D;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.util.Random;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -18,11 +17,8 @@ import org.esa.beam.dataViewer3D.data.coordinates.CoordinatesSystem;
 import org.esa.beam.dataViewer3D.data.dataset.AbstractDataSet;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet;
 import org.esa.beam.dataViewer3D.data.source.DataSource;
-import org.esa.beam.dataViewer3D.data.source.RandomDataSource;
-import org.esa.beam.dataViewer3D.data.type.ByteType;
-import org.esa.beam.dataViewer3D.data.type.DoubleType;
-import org.esa.beam.dataViewer3D.data.type.FloatType;
-import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
 import org.esa.beam.dataViewer3D.gui.JOGLDataViewer;
 
 /**
@@ -109,58 +105,17 @@ public class PrototypeDisplayWindow extends JFrame
 
     private DataSet createDataSet()
     {
-        // final int size = Integer.MAX_VALUE / 2000;
-        final int size = 20000;
+        final int size = 1000000;
 
-        DataSource<Float> src1 = new RandomDataSource<Float>(size, -256f, 256f) {
-            Random random = new Random();
+        // fixed seeds, so that the same data are displayed every time
+        DataSource<Float> src1 = SyntheticDataSource.createFloat(size, 1, -256f, 256f,
+                Distribution.gaussianClusters(5, 0.05), 10);
+        DataSource<Double> src2 = SyntheticDataSource.createDouble(size, 2, 0d, 256d,
+                Distribution.gaussianClusters(5, 0.05), 2);
+        DataSource<Byte> src3 = SyntheticDataSource.createByte(size, 3, (byte) 0, (byte) 20,
+                Distribution.pareto(1, 100));
 
-            @Override
-            protected Float getRandomValue()
-            {
-                return (float) (random.nextDouble() * (max - min) + min);
-            }
-
-            @Override
-            protected NumericType<Float> getNumericType(Float number)
-            {
-                return new FloatType(number, 10);
-            }
-        };
-
-        DataSource<Double> src2 = new RandomDataSource<Double>(size, 0d, 256d) {
-            Random random = new Random();
-
-            @Override
-            protected Double getRandomValue()
-            {
-                return random.nextDouble() * (max - min) + min;
-            }
-
-            @Override
-            protected NumericType<Double> getNumericType(Double number)
-            {
-                return new DoubleType(number, 2);
-            }
-        };
-
-        DataSource<Byte> src3 = new RandomDataSource<Byte>(size, (byte) 0, (byte) 20) {
-            Random random = new Random();
-
-            @Override
-            protected Byte getRandomValue()
-            {
-                return ((Long) Math.round(random.nextDouble() * (max - min) + min)).byteValue();
-            }
-
-            @Override
-            protected NumericType<Byte> getNumericType(Byte number)
-            {
-                return new ByteType(number);
-            }
-        };
-
-        return AbstractDataSet.createFromDataSources(20000, src1, src2, src3, null);
+        return AbstractDataSet.createFromDataSources(100000, src1, src2, src3, null);
     }
 
     private CoordinatesSystem createCoordinatesSystem(DataSet dataSet)
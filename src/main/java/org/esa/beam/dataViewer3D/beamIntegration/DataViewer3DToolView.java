@@ -27,10 +27,15 @@ import java.awt.print.PageFormat;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Pattern;
 
 import javax.swing.AbstractButton;
@@ -63,6 +68,10 @@ import org.esa.beam.dataViewer3D.data.dataset.AbstractDataSet;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet3D;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet4D;
+import org.esa.beam.dataViewer3D.data.dataset.DirectBufferDataSet;
+import org.esa.beam.dataViewer3D.data.dataset.FilteredDataSet;
+import org.esa.beam.dataViewer3D.data.dataset.MappedDataSet;
+import org.esa.beam.dataViewer3D.data.dataset.SnapshotListener;
 import org.esa.beam.dataViewer3D.data.grid.GridFromTicks;
 import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
@@ -70,10 +79,12 @@ import org.esa.beam.dataViewer3D.data.source.BandDataSource;
 import org.esa.beam.dataViewer3D.data.source.BandDataSourceSet3D;
 import org.esa.beam.dataViewer3D.data.source.BandDataSourceSet4D;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
+import org.esa.beam.dataViewer3D.data.source.SampleCache;
 import org.esa.beam.dataViewer3D.data.type.NumericType;
 import org.esa.beam.dataViewer3D.gui.GraphicalDataViewer;
 import org.esa.beam.dataViewer3D.gui.ImageCaptureCallback;
 import org.esa.beam.dataViewer3D.gui.JOGLDataViewer;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
 import org.esa.beam.framework.barithm.PossiblyInvalidExpression;
 import org.esa.beam.framework.datamodel.Band;
 import org.esa.beam.framework.datamodel.Mask;
@@ -173,6 +184,8 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
     private Parameter[]                 logScaleParams       = new Parameter[4];
     /** The maximum number of displayed points. */
     private Parameter                   maxPointsParam;
+    /** Whether to read the bands through the sample cache. */
+    private Parameter                   cacheSamplesParam;
 
     // plot visual style parameters
     private Parameter                   showTitleParam;
@@ -213,6 +226,27 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
     protected boolean                   vectorDataChanged;
     /** True when the data set has changed and the view hasn't been updated since then. */
     protected boolean                   dataSetChanged;
+    /**
+     * The last completely computed data set. Narrower ranges are filtered from it instead of reading the bands. If it
+     * is a {@link DirectBufferDataSet}, this view holds it until it is replaced or the view is disposed.
+     */
+    protected DataSet                   computedDataSet;
+    /** The parameters {@link #computedDataSet} has been computed with. */
+    protected ComputeParameters         computedParameters;
+    /**
+     * The cache of the decoded band samples, so that a recomputation doesn't compute the bands again. It is only used
+     * if the user enables it, since the first computation has to decode the whole bands into it.
+     */
+    protected final SampleCache         sampleCache          = new SampleCache(new File(
+            SystemUtils.getApplicationDataDir(), "dataViewer3D" + File.separator + "samples"));
+    /**
+     * The set of band sources the displayed data set (and {@link #computedDataSet}) has been computed from. A data set
+     * may read its points from the cache files of the sources long after it has been computed, so the view holds the
+     * cache files of this set until another data set is displayed.
+     */
+    protected DataSourceSet             displayedSourceSet;
+    /** The numbers of holders of the sets of band sources whose cache files are mapped. */
+    private final Map<DataSourceSet, Integer> sampleCacheHolders = new IdentityHashMap<DataSourceSet, Integer>();
 
     /** The array of all active products compatible with the selected one. */
     protected Product[]                 compatibleProducts   = new Product[0];
@@ -320,6 +354,16 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         VisatApp.getApp().removeInternalFrameListener(internalFrameListener);
     }
 
+    @Override
+    public void dispose()
+    {
+        DirectBufferDataSet.release(computedDataSet);
+        computedDataSet = null;
+        computedParameters = null;
+        setDisplayedSourceSet(null);
+        super.dispose();
+    }
+
     private void initParameters()
     {
         paramGroup = new ParamGroup();
@@ -338,6 +382,13 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         maxPointsParam.getProperties().setMaxValue(Integer.MAX_VALUE);
         paramGroup.addParameter(maxPointsParam);
 
+        cacheSamplesParam = new Parameter("cacheSamples", Boolean.FALSE);
+        cacheSamplesParam.getProperties().setLabel("Cache band samples"); /* I18N */
+        cacheSamplesParam.getProperties().setDescription(
+                "Store the decoded samples of whole bands on disk, so that recomputing them is faster. "
+                        + "The first computation reads the whole bands regardless of the ROI mask."); /* I18N */
+        paramGroup.addParameter(cacheSamplesParam);
+
         // CHART PROPERTIES DIALOG
 
         chartPropertiesGroup = new ParamGroup();
@@ -852,6 +903,7 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         final JPanel maxPointsPanel = new JPanel(maxPointsLayout);
         maxPointsPanel.add(maxPointsParam.getEditor().getLabelComponent());
         maxPointsPanel.add(maxPointsParam.getEditor().getComponent());
+        maxPointsPanel.add(cacheSamplesParam.getEditor().getComponent());
         rightPanel.add(maxPointsPanel);
 
         rightPanel.add(createOptionsPane());
@@ -1104,13 +1156,44 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         final Double maxW = autoW || maxParams[W_VAR].getValue() == null ? null
                 : ((Number) maxParams[W_VAR].getValue()).doubleValue();
 
+        final Integer maxPoints = maxPointsParam.getValue().equals(0) ? null : (Integer) maxPointsParam.getValue();
+        final boolean cacheSamples = (Boolean) cacheSamplesParam.getValue();
+
         if (rasterX == null || rasterY == null || rasterZ == null) { // rasterW is optional
             return;
         }
 
-        final ProgressMonitorSwingWorker<DataSet, Object> swingWorker = new ProgressMonitorSwingWorker<DataSet, Object>(
+        final ComputeParameters parameters = new ComputeParameters(new RasterDataNode[] { rasterX, rasterY, rasterZ,
+                rasterW }, selectedMask, maxPoints, new Double[] { minX, minY, minZ, minW }, new Double[] { maxX,
+                maxY, maxZ, maxW });
+
+        // a range inside the computed one doesn't need the bands to be read again
+        final DataSet filteredDataSet = filterComputedDataSet(parameters);
+        if (filteredDataSet != null) {
+            computePanel.enableComputeButton();
+            displayDataSet(filteredDataSet, parameters);
+            dataSetChanged = true;
+            updateUI();
+            return;
+        }
+        // the viewer holds the displayed data set itself
+        DirectBufferDataSet.release(computedDataSet);
+        computedDataSet = null;
+        computedParameters = null;
+
+        final ProgressMonitorSwingWorker<DataSet, DataSet> swingWorker = new ProgressMonitorSwingWorker<DataSet, DataSet>(
                 getControl(), "Computing scatter plot") {
 
+            /**
+             * The last published partial result, which is displayed if the computation gets canceled. The worker holds
+             * it, and every published chunk is held until it is processed.
+             */
+            private volatile DataSet       lastSnapshot = null;
+            /** Whether the result contains all points read from the bands (it isn't a partial result). */
+            private volatile boolean       complete     = false;
+            /** The set of the sources the points are read from. */
+            private volatile DataSourceSet sourceSet    = null;
+
             @Override
             protected DataSet doInBackground(ProgressMonitor pm) throws Exception
             {
@@ -1120,26 +1203,76 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
                 final BandDataSource<?> sourceW = rasterW != null ? BandDataSource.createForBand(rasterW, null, minW,
                         maxW) : null;
 
-                final DataSourceSet sourceSet = (sourceW == null) ? BandDataSourceSet3D.create(sourceX, sourceY,
-                        sourceZ, selectedMask) : BandDataSourceSet4D.create(sourceX, sourceY, sourceZ, sourceW,
-                        selectedMask);
-
-                final Integer maxPoints = maxPointsParam.getValue().equals(0) ? null : (Integer) maxPointsParam
-                        .getValue();
+                sourceSet = (sourceW == null) ? BandDataSourceSet3D.create(sourceX, sourceY, sourceZ, selectedMask)
+                        : BandDataSourceSet4D.create(sourceX, sourceY, sourceZ, sourceW, selectedMask);
+                // the worker holds the cache files until done() hands the result over to the view
+                retainSampleCache(sourceSet);
 
                 pm.beginTask("Computing scatter plot...", 100);
-                final ProgressMonitor subPM = SubProgressMonitor.create(pm, 100);
+
+                // a bounded number of points can be stored off-heap and drawn without copying
+                final boolean directBuffers = dataViewer instanceof JOGLDataViewer && maxPoints != null;
+                final SnapshotListener<DataSet> snapshotListener = new SnapshotListener<DataSet>() {
+                    @Override
+                    public void snapshotCreated(DataSet snapshot)
+                    {
+                        final DataSet copy = directBuffers ? DirectBufferDataSet.copyOf(snapshot) : snapshot;
+                        DirectBufferDataSet.retain(copy);
+                        DirectBufferDataSet.release(lastSnapshot);
+                        lastSnapshot = copy;
+                        publish(copy);
+                    }
+                };
+
                 try {
-                    return AbstractDataSet.createFromDataSources(maxPoints, sourceSet, subPM);
+                    if (cacheSamples) {
+                        try {
+                            setSampleCache(sourceSet, sampleCache, SubProgressMonitor.create(pm, 20));
+                        } catch (IOException e) {
+                            // the bands are read directly
+                            System.err.println(e);
+                        }
+                    }
+
+                    final ProgressMonitor subPM = SubProgressMonitor.create(pm, cacheSamples ? 80 : 100);
+                    final DataSet result;
+                    if (directBuffers)
+                        result = DirectBufferDataSet.createFromDataSources(maxPoints, sourceSet, snapshotListener,
+                                subPM);
+                    else
+                        result = AbstractDataSet.createFromDataSources(maxPoints, sourceSet, snapshotListener, subPM);
+                    complete = true;
+                    DirectBufferDataSet.release(lastSnapshot);
+                    return result;
+                } catch (CancellationException e) {
+                    // keep the partial result the user has already seen (done() takes over holding it)
+                    return lastSnapshot;
                 } catch (Exception e) {
                     System.err.println(e);
                     e.printStackTrace();
+                    DirectBufferDataSet.release(lastSnapshot);
                     return null;
                 } finally {
                     pm.done();
                 }
             }
 
+            @Override
+            protected void process(List<DataSet> chunks)
+            {
+                // only the newest snapshot is worth displaying
+                if (!isDone()) {
+                    displayDataSet(chunks.get(chunks.size() - 1), parameters);
+                    setDisplayedSourceSet(sourceSet);
+                    dataSetChanged = true;
+                    updateUI();
+                }
+
+                // the viewer holds the displayed snapshot itself
+                for (DataSet chunk : chunks)
+                    DirectBufferDataSet.release(chunk);
+            }
+
             @Override
             public void done()
             {
@@ -1154,29 +1287,15 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
                 computePanel.enableComputeButton();
 
                 if (result != null) {
-                    dataViewer.setDataSet(result);
-
-                    final String labelX = ((ComboBoxEditor) rasterNameParams[X_VAR].getEditor()).getTextComponent()
-                            .getText() + " (x)"; /* I18N */
-                    final String labelY = ((ComboBoxEditor) rasterNameParams[Y_VAR].getEditor()).getTextComponent()
-                            .getText() + " (y)"; /* I18N */
-                    final String labelZ = ((ComboBoxEditor) rasterNameParams[Z_VAR].getEditor()).getTextComponent()
-                            .getText() + " (z)"; /* I18N */
-                    final String labelW = ((ComboBoxEditor) rasterNameParams[W_VAR].getEditor()).getTextComponent()
-                            .getText() + " (w)"; /* I18N */
-
-                    final Double scaleX = (Double) scaleParams[X_VAR].getValue();
-                    final Double scaleY = (Double) scaleParams[Y_VAR].getValue();
-                    final Double scaleZ = (Double) scaleParams[Z_VAR].getValue();
-
-                    final Boolean logScaleX = (Boolean) logScaleParams[X_VAR].getValue();
-                    final Boolean logScaleY = (Boolean) logScaleParams[Y_VAR].getValue();
-                    final Boolean logScaleZ = (Boolean) logScaleParams[Z_VAR].getValue();
-                    final Boolean logScaleW = (Boolean) logScaleParams[W_VAR].getValue();
-
-                    setCoordinatesSystemFromCurrentDataSet(minX, maxX, labelX, scaleX, logScaleX, minY, maxY, labelY,
-                            scaleY, logScaleY, minZ, maxZ, labelZ, scaleZ, logScaleZ, minW, maxW, labelW, logScaleW,
-                            AbstractColorProvider.getDefaultColorProvider());
+                    displayDataSet(result, parameters);
+                    setDisplayedSourceSet(sourceSet);
+                    if (complete) {
+                        computedDataSet = result;
+                        computedParameters = parameters;
+                    } else {
+                        // the viewer holds the partial result itself
+                        DirectBufferDataSet.release(result);
+                    }
 
                     logScaleParams[X_VAR].setValue(rasterX.isLog10Scaled(), null);
                     logScaleParams[Y_VAR].setValue(rasterY.isLog10Scaled(), null);
@@ -1193,8 +1312,11 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
                                 JOptionPane.ERROR_MESSAGE);
                     }
                     dataViewer.setDataSet(null);
+                    setDisplayedSourceSet(null);
                     setNoDataCoordinatesSystem();
                 }
+                // the sources aren't read any more, even if the computation has been canceled
+                releaseSampleCache(sourceSet);
                 dataSetChanged = true;
                 updateUI();
             }
@@ -1202,6 +1324,216 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         swingWorker.execute();
     }
 
+    /**
+     * Read the samples of the bands of the given set from the given cache.
+     * 
+     * @param sourceSet The set of band sources.
+     * @param cache The cache.
+     * @param progressMonitor The progress monitor notified about writing the cache files.
+     * 
+     * @throws IOException If the cache files cannot be written or mapped.
+     */
+    private static void setSampleCache(DataSourceSet sourceSet, SampleCache cache, ProgressMonitor progressMonitor)
+            throws IOException
+    {
+        if (sourceSet instanceof BandDataSourceSet3D<?, ?, ?>)
+            ((BandDataSourceSet3D<?, ?, ?>) sourceSet).setSampleCache(cache, progressMonitor);
+        else
+            ((BandDataSourceSet4D<?, ?, ?, ?>) sourceSet).setSampleCache(cache, progressMonitor);
+    }
+
+    /**
+     * Set the set of band sources the displayed data set has been computed from, and release the cache files of the
+     * previous one.
+     * 
+     * @param sourceSet The set of band sources, <code>null</code> if the displayed data set isn't read from bands.
+     */
+    protected void setDisplayedSourceSet(DataSourceSet sourceSet)
+    {
+        if (sourceSet == displayedSourceSet)
+            return;
+        retainSampleCache(sourceSet);
+        releaseSampleCache(displayedSourceSet);
+        displayedSourceSet = sourceSet;
+    }
+
+    /**
+     * Hold the cache files the samples of the bands of the given set are read from, so that they aren't unmapped until
+     * {@link #releaseSampleCache(DataSourceSet)} is called.
+     * 
+     * @param sourceSet The set of band sources, may be <code>null</code>.
+     */
+    protected void retainSampleCache(DataSourceSet sourceSet)
+    {
+        if (sourceSet == null)
+            return;
+        synchronized (sampleCacheHolders) {
+            final Integer holders = sampleCacheHolders.get(sourceSet);
+            sampleCacheHolders.put(sourceSet, holders == null ? 1 : holders + 1);
+        }
+    }
+
+    /**
+     * Release a hold of the cache files the samples of the bands of the given set are read from, and unmap them if no
+     * holder remains.
+     * 
+     * @param sourceSet The set of band sources, may be <code>null</code>.
+     */
+    protected void releaseSampleCache(DataSourceSet sourceSet)
+    {
+        if (sourceSet == null)
+            return;
+        synchronized (sampleCacheHolders) {
+            final Integer holders = sampleCacheHolders.get(sourceSet);
+            if (holders != null && holders > 1) {
+                sampleCacheHolders.put(sourceSet, holders - 1);
+                return;
+            }
+            sampleCacheHolders.remove(sourceSet);
+        }
+        unmapSampleCache(sourceSet);
+    }
+
+    /**
+     * Unmap the cache files the samples of the bands of the given set are read from.
+     * 
+     * @param sourceSet The set of band sources.
+     */
+    private static void unmapSampleCache(DataSourceSet sourceSet)
+    {
+        if (sourceSet instanceof BandDataSourceSet3D<?, ?, ?>)
+            ((BandDataSourceSet3D<?, ?, ?>) sourceSet).releaseSampleCache();
+        else
+            ((BandDataSourceSet4D<?, ?, ?, ?>) sourceSet).releaseSampleCache();
+    }
+
+    /**
+     * Display the given (partial, final or filtered) result of computation in the data viewer.
+     * 
+     * @param dataSet The result to display.
+     * @param parameters The parameters of the computation.
+     */
+    protected void displayDataSet(DataSet dataSet, ComputeParameters parameters)
+    {
+        dataViewer.setDataSet(dataSet);
+
+        final String labelX = ((ComboBoxEditor) rasterNameParams[X_VAR].getEditor()).getTextComponent().getText()
+                + " (x)"; /* I18N */
+        final String labelY = ((ComboBoxEditor) rasterNameParams[Y_VAR].getEditor()).getTextComponent().getText()
+                + " (y)"; /* I18N */
+        final String labelZ = ((ComboBoxEditor) rasterNameParams[Z_VAR].getEditor()).getTextComponent().getText()
+                + " (z)"; /* I18N */
+        final String labelW = ((ComboBoxEditor) rasterNameParams[W_VAR].getEditor()).getTextComponent().getText()
+                + " (w)"; /* I18N */
+
+        final Double scaleX = (Double) scaleParams[X_VAR].getValue();
+        final Double scaleY = (Double) scaleParams[Y_VAR].getValue();
+        final Double scaleZ = (Double) scaleParams[Z_VAR].getValue();
+
+        final Boolean logScaleX = (Boolean) logScaleParams[X_VAR].getValue();
+        final Boolean logScaleY = (Boolean) logScaleParams[Y_VAR].getValue();
+        final Boolean logScaleZ = (Boolean) logScaleParams[Z_VAR].getValue();
+        final Boolean logScaleW = (Boolean) logScaleParams[W_VAR].getValue();
+
+        final Double[] min = parameters.min, max = parameters.max;
+        setCoordinatesSystemFromCurrentDataSet(min[X_VAR], max[X_VAR], labelX, scaleX, logScaleX, min[Y_VAR],
+                max[Y_VAR], labelY, scaleY, logScaleY, min[Z_VAR], max[Z_VAR], labelZ, scaleZ, logScaleZ, min[W_VAR],
+                max[W_VAR], labelW, logScaleW, AbstractColorProvider.getDefaultColorProvider());
+    }
+
+    /**
+     * If the last computed data set contains all points the given parameters would yield, return a filtered view of it
+     * containing only these points.
+     * 
+     * @param parameters The parameters of the new computation.
+     * @return The filtered view of the computed data set, or <code>null</code> if the bands have to be read again.
+     */
+    protected DataSet filterComputedDataSet(ComputeParameters parameters)
+    {
+        if (computedDataSet == null || !computedParameters.contains(parameters))
+            return null;
+
+        // a sampled data set doesn't contain all points of the narrower range
+        if (computedDataSet.isSampled())
+            return null;
+
+        final FilteredDataSet filtered = FilteredDataSet.create(computedDataSet, parameters.min, parameters.max);
+        if (filtered.size() == 0)
+            return null;
+        if (parameters.maxPoints != null && countPoints(filtered) > parameters.maxPoints)
+            return null;
+        return filtered;
+    }
+
+    /**
+     * Return the number of source values the given data set has been created from.
+     * 
+     * @param dataSet The data set.
+     * @return The sum of the counts of all points.
+     */
+    private static long countPoints(DataSet dataSet)
+    {
+        long count = 0;
+        final IntIterator it = dataSet.histogramIntIterator();
+        while (it.hasNext())
+            count += it.next();
+        return count;
+    }
+
+    /**
+     * The parameters a data set has been computed with.
+     * 
+     * @author Martin Pecka
+     */
+    protected static class ComputeParameters
+    {
+        /** The rasters of the coordinates (the w raster may be <code>null</code>). */
+        protected final RasterDataNode[] rasters;
+        /** The mask restricting the read pixels, may be <code>null</code>. */
+        protected final Mask             mask;
+        /** The maximum number of points, <code>null</code> means no limit. */
+        protected final Integer          maxPoints;
+        /** The bounds of the values of the coordinates, <code>null</code> means no bound. */
+        protected final Double[]         min, max;
+
+        /**
+         * @param rasters The rasters of the coordinates (the w raster may be <code>null</code>).
+         * @param mask The mask restricting the read pixels, may be <code>null</code>.
+         * @param maxPoints The maximum number of points, <code>null</code> means no limit.
+         * @param min The lower bounds of the values of the coordinates, <code>null</code> means no bound.
+         * @param max The upper bounds of the values of the coordinates, <code>null</code> means no bound.
+         */
+        protected ComputeParameters(RasterDataNode[] rasters, Mask mask, Integer maxPoints, Double[] min, Double[] max)
+        {
+            this.rasters = rasters;
+            this.mask = mask;
+            this.maxPoints = maxPoints;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Return whether a data set computed with these parameters contains all values read with the given parameters
+         * (not taking the maximum number of points into account).
+         * 
+         * @param parameters The other parameters.
+         * @return Whether the other parameters read the same rasters in the same or a narrower range.
+         */
+        protected boolean contains(ComputeParameters parameters)
+        {
+            if (!Arrays.equals(rasters, parameters.rasters) || mask != parameters.mask)
+                return false;
+
+            for (int i = 0; i < min.length; i++) {
+                if (min[i] != null && (parameters.min[i] == null || parameters.min[i] < min[i]))
+                    return false;
+                if (max[i] != null && (parameters.max[i] == null || parameters.max[i] > max[i]))
+                    return false;
+            }
+            return true;
+        }
+    }
+
     /**
      * @return The textual summary of the displayed data.
      */
@@ -1452,6 +1784,13 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         copyDataItem.addActionListener(new CopyDataAction());
         disabledWhenNoData.add(copyDataItem);
 
+        final JMenuItem saveDataItem = new JMenuItem("Save data...", KeyEvent.VK_D);/* I18N */
+        saveDataItem.addActionListener(new SaveDataAction());
+        disabledWhenNoData.add(saveDataItem);
+
+        final JMenuItem openDataItem = new JMenuItem("Open data...", KeyEvent.VK_E);/* I18N */
+        openDataItem.addActionListener(new OpenDataAction());
+
         popupMenu.add(propertiesItem);
         popupMenu.add(new JSeparator());
         popupMenu.add(copyItem);
@@ -1466,6 +1805,8 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         popupMenu.add(resetViewItem);
         popupMenu.add(new JSeparator());
         popupMenu.add(copyDataItem);
+        popupMenu.add(saveDataItem);
+        popupMenu.add(openDataItem);
 
         MouseAdapter popupMouseAdapter = new MouseAdapter() {
             private int       pixelsMoved                      = 0;
@@ -1581,6 +1922,129 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
         }
     }
 
+    /**
+     * Save the displayed data set to a data set file (see {@link MappedDataSet}).
+     * 
+     * @author Martin Pecka
+     */
+    protected class SaveDataAction implements ActionListener
+    {
+        @Override
+        public void actionPerformed(ActionEvent e)
+        {
+            final File file = chooseDataSetFile(true);
+            if (file == null)
+                return;
+            if (file.exists()) {
+                final int overwrite = JOptionPane.showConfirmDialog(getControl(), "Overwrite existing file?",
+                        "Overwrite confirmation", JOptionPane.YES_NO_OPTION); /* I18N */
+                if (overwrite != JOptionPane.YES_OPTION)
+                    return;
+            }
+
+            // the viewer may release the displayed data set while it is being saved, so it is held until then
+            final DataSet dataSet = dataViewer.getDataSet();
+            final DataSourceSet sourceSet = displayedSourceSet;
+            DirectBufferDataSet.retain(dataSet);
+            retainSampleCache(sourceSet);
+            new ProgressMonitorSwingWorker<Object, Object>(getControl(), "Saving data") {
+                @Override
+                protected Object doInBackground(ProgressMonitor pm) throws Exception
+                {
+                    MappedDataSet.save(dataSet, file, pm);
+                    return null;
+                }
+
+                @Override
+                public void done()
+                {
+                    DirectBufferDataSet.release(dataSet);
+                    releaseSampleCache(sourceSet);
+                    try {
+                        get();
+                        VisatApp.getApp().setStatusBarMessage("Data successfully saved to " + file); /* I18N */
+                    } catch (Exception ex) {
+                        final Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        VisatApp.getApp().showErrorDialog("Data not saved",
+                                "There was an error saving the data: " + cause.getMessage()); /* I18N */
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     * Display a data set file (see {@link MappedDataSet}) instead of computing the data set.
+     * 
+     * @author Martin Pecka
+     */
+    protected class OpenDataAction implements ActionListener
+    {
+        @Override
+        public void actionPerformed(ActionEvent e)
+        {
+            final File file = chooseDataSetFile(false);
+            if (file == null)
+                return;
+
+            final MappedDataSet dataSet;
+            try {
+                // the file is only mapped, so opening it is fast
+                dataSet = MappedDataSet.open(file);
+            } catch (IOException ex) {
+                VisatApp.getApp().showErrorDialog("Data not opened", ex.getMessage()); /* I18N */
+                return;
+            }
+
+            final String labelX = dataSet.getSourceName(X_VAR) + " (x)"; /* I18N */
+            final String labelY = dataSet.getSourceName(Y_VAR) + " (y)"; /* I18N */
+            final String labelZ = dataSet.getSourceName(Z_VAR) + " (z)"; /* I18N */
+            final boolean has4D = dataSet instanceof DataSet4D<?, ?, ?, ?>;
+            final String labelW = has4D ? dataSet.getSourceName(W_VAR) + " (w)" : null; /* I18N */
+
+            final Double scaleX = (Double) scaleParams[X_VAR].getValue();
+            final Double scaleY = (Double) scaleParams[Y_VAR].getValue();
+            final Double scaleZ = (Double) scaleParams[Z_VAR].getValue();
+
+            DirectBufferDataSet.release(computedDataSet);
+            computedDataSet = null;
+            computedParameters = null;
+            dataViewer.setDataSet(dataSet);
+            setDisplayedSourceSet(null);
+            setCoordinatesSystemFromCurrentDataSet(null, null, labelX, scaleX, false, null, null, labelY, scaleY,
+                    false, null, null, labelZ, scaleZ, false, null, null, labelW, false,
+                    AbstractColorProvider.getDefaultColorProvider());
+            dataSetChanged = true;
+            updateUI();
+        }
+    }
+
+    /**
+     * Let the user choose a data set file. The files are looked for next to the current product by default.
+     * 
+     * @param save Whether the file is going to be written.
+     * @return The chosen file, or <code>null</code> if no file has been chosen.
+     */
+    protected File chooseDataSetFile(boolean save)
+    {
+        final String extension = MappedDataSet.FILE_SUFFIX.substring(1);
+        final BeamFileChooser fileChooser = new BeamFileChooser();
+        fileChooser.setDialogTitle(save ? "Save data" : "Open data");/* I18N */
+        fileChooser.setFileFilter(new ExtensionFileFilter("Scatter plot data", extension)); /* I18N */
+        if (getProduct() != null && getProduct().getFileLocation() != null)
+            fileChooser.setCurrentDirectory(getProduct().getFileLocation().getAbsoluteFile().getParentFile());
+
+        final int result = save ? fileChooser.showSaveDialog(getPaneWindow()) : fileChooser
+                .showOpenDialog(getPaneWindow());
+        if (result != JFileChooser.APPROVE_OPTION)
+            return null;
+
+        final File file = fileChooser.getSelectedFile();
+        if (save && !file.getName().toLowerCase().endsWith(MappedDataSet.FILE_SUFFIX))
+            return new File(file.getAbsolutePath() + MappedDataSet.FILE_SUFFIX);
+        return file;
+    }
+
     /**
      * Reset the view transformation.
      * 
@@ -2356,4 +2820,4 @@ public class DataViewer3DToolView extends AbstractToolView implements SingleRoiC
             updateUI();
         }
     }
-}
\ No newline at end of file
+}
@@ -3,8 +3,10 @@
  */
 package org.esa.beam.dataViewer3D.data.dataset;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.esa.beam.dataViewer3D.data.point.DataPoint;
@@ -12,10 +14,16 @@ import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.BandPointReader;
+import org.esa.beam.dataViewer3D.data.source.BulkPointReader;
+import org.esa.beam.dataViewer3D.data.source.BulkReader;
 import org.esa.beam.dataViewer3D.data.source.DataSource;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
+import org.esa.beam.dataViewer3D.data.source.TileCursor;
+import org.esa.beam.dataViewer3D.data.source.TiledDataSource;
 import org.esa.beam.dataViewer3D.data.type.NumericType;
 
 import com.bc.ceres.core.ProgressMonitor;
@@ -28,6 +36,79 @@ import com.bc.ceres.core.ProgressMonitor;
 public abstract class AbstractDataSet implements DataSet
 {
 
+    /** The number of entries read from the data sources at once by the builders. */
+    protected static final int BULK_READ_SIZE = 4096;
+
+    /** Whether this set has been built from a sample of the entries of its sources; set by the builders. */
+    protected boolean          sampled        = false;
+
+    @Override
+    public long longSize()
+    {
+        return size();
+    }
+
+    @Override
+    public boolean isSampled()
+    {
+        return sampled;
+    }
+
+    /**
+     * Create a reader reading the points valid in all the given sources.
+     * <p>
+     * Band data sources sharing the same mask are read in lock-step, so their tiles and the mask are unpacked only
+     * once. Other sources are read by their bulk readers.
+     * 
+     * @param tiles The tiles to read, in ascending order. If <code>null</code>, all tiles that can contain data are
+     *            read (or all entries, if the sources aren't tiled).
+     * @param sources The sources to read.
+     * @return The reader.
+     */
+    protected static PointReader createPointReader(int[] tiles, DataSource<?>... sources)
+    {
+        if (BandPointReader.canRead(sources))
+            return new BandPointReader(tiles, sources);
+        if (tiles != null)
+            return new BulkPointReader(new TileCursor(tiles, ((TiledDataSource<?>) sources[0]).getTileSize()),
+                    sources);
+        return new BulkPointReader(sources);
+    }
+
+    /**
+     * Return the tiles that can contain data in all the given sources.
+     * 
+     * @param sources The sources.
+     * @return The indices of the tiles in ascending order, <code>null</code> if the sources aren't tiled with the same
+     *         tile grid.
+     */
+    protected static int[] getDataTiles(DataSource<?>... sources)
+    {
+        if (!TileCursor.isTiled(sources))
+            return null;
+
+        final TiledDataSource<?>[] tiledSources = new TiledDataSource<?>[sources.length];
+        for (int i = 0; i < sources.length; i++)
+            tiledSources[i] = (TiledDataSource<?>) sources[i];
+        return TileCursor.getDataTiles(tiledSources);
+    }
+
+    /**
+     * Return the number of entries of the tiles not contained in the given list of tiles.
+     * 
+     * @param tiles The tiles that will be read, as returned by {@link #getDataTiles(DataSource...)}.
+     * @param source One of the sources the tiles have been computed for.
+     * @return The number of entries in the tiles that will be skipped.
+     */
+    protected static int getSkippedEntries(int[] tiles, DataSource<?> source)
+    {
+        if (tiles == null)
+            return 0;
+
+        final TiledDataSource<?> tiled = (TiledDataSource<?>) source;
+        return (tiled.getNumTiles() - tiles.length) * tiled.getTileSize();
+    }
+
     /**
      * Read data points from the given sources into the given builder.
      * 
@@ -44,19 +125,34 @@ public abstract class AbstractDataSet implements DataSet
             throw new IllegalArgumentException(AbstractDataSet.class
                     + ": cannot create a data set from sources of different sizes.");
 
-        Iterator<NumericType<X>> iteratorX = x.numericTypeIterator();
-        Iterator<NumericType<Y>> iteratorY = y.numericTypeIterator();
-        Iterator<NumericType<Z>> iteratorZ = z.numericTypeIterator();
-        Iterator<NumericType<W>> iteratorW = w.numericTypeIterator();
-
-        while (iteratorX.hasNext()) {
-            builder.addDataPoint(iteratorX.next(), iteratorY.next(), iteratorZ.next(), iteratorW.next());
+        final BulkReader<X> readerX = x.bulkReader();
+        final BulkReader<Y> readerY = y.bulkReader();
+        final BulkReader<Z> readerZ = z.bulkReader();
+        final BulkReader<W> readerW = w.bulkReader();
+
+        final double[] valuesX = new double[BULK_READ_SIZE], valuesY = new double[BULK_READ_SIZE],
+                valuesZ = new double[BULK_READ_SIZE], valuesW = new double[BULK_READ_SIZE];
+        final BitSet valid = new BitSet(BULK_READ_SIZE), validY = new BitSet(BULK_READ_SIZE), validZ = new BitSet(
+                BULK_READ_SIZE), validW = new BitSet(BULK_READ_SIZE);
+
+        while (readerX.hasNext()) {
+            final int read = readerX.read(valuesX, valid);
+            readerY.read(valuesY, validY);
+            readerZ.read(valuesZ, validZ);
+            readerW.read(valuesW, validW);
+
+            valid.and(validY);
+            valid.and(validZ);
+            valid.and(validW);
+
+            for (int i = 0; i < read; i++) {
+                if (!valid.get(i))
+                    builder.addInvalidDataPoint();
+                else if (!builder.skipDataPoint())
+                    builder.addDataPoint(readerX.getNumericType(i), readerY.getNumericType(i),
+                            readerZ.getNumericType(i), readerW.getNumericType(i));
+            }
         }
-
-        iteratorX = null;
-        iteratorY = null;
-        iteratorZ = null;
-        iteratorW = null;
     }
 
     /**
@@ -74,17 +170,31 @@ public abstract class AbstractDataSet implements DataSet
             throw new IllegalArgumentException(AbstractDataSet.class
                     + ": cannot create a data set from sources of different sizes.");
 
-        Iterator<NumericType<X>> iteratorX = x.numericTypeIterator();
-        Iterator<NumericType<Y>> iteratorY = y.numericTypeIterator();
-        Iterator<NumericType<Z>> iteratorZ = z.numericTypeIterator();
-
-        while (iteratorX.hasNext()) {
-            builder.addDataPoint(iteratorX.next(), iteratorY.next(), iteratorZ.next());
+        final BulkReader<X> readerX = x.bulkReader();
+        final BulkReader<Y> readerY = y.bulkReader();
+        final BulkReader<Z> readerZ = z.bulkReader();
+
+        final double[] valuesX = new double[BULK_READ_SIZE], valuesY = new double[BULK_READ_SIZE],
+                valuesZ = new double[BULK_READ_SIZE];
+        final BitSet valid = new BitSet(BULK_READ_SIZE), validY = new BitSet(BULK_READ_SIZE), validZ = new BitSet(
+                BULK_READ_SIZE);
+
+        while (readerX.hasNext()) {
+            final int read = readerX.read(valuesX, valid);
+            readerY.read(valuesY, validY);
+            readerZ.read(valuesZ, validZ);
+
+            valid.and(validY);
+            valid.and(validZ);
+
+            for (int i = 0; i < read; i++) {
+                if (!valid.get(i))
+                    builder.addInvalidDataPoint();
+                else if (!builder.skipDataPoint())
+                    builder.addDataPoint(readerX.getNumericType(i), readerY.getNumericType(i),
+                            readerZ.getNumericType(i));
+            }
         }
-
-        iteratorX = null;
-        iteratorY = null;
-        iteratorZ = null;
     }
 
     /**
@@ -106,6 +216,70 @@ public abstract class AbstractDataSet implements DataSet
             return createFromDataSources(maxPoints, (DataSourceSet4D<?, ?, ?, ?>) sourceSet, progressMonitor);
     }
 
+    /**
+     * Estimate the number of distinct points of the given data sources set without reading it whole.
+     * <p>
+     * Only a strided subsample of the sources is read, so the estimate is cheap compared to building a data set. It
+     * lets the callers choose the kind of the data set before reading the sources, e.g. a {@link BinnedDataSet} if
+     * there are too many distinct points to be drawn one by one. The builders estimate the points of big sources
+     * themselves to size their tables.
+     * 
+     * @param sourceSet The set of sources.
+     * @return The estimated number of distinct valid points, <code>null</code> if the sources can't be subsampled
+     *         without reading them whole (i.e. they are neither tiled nor random-access).
+     */
+    public static Integer estimateDistinctPoints(DataSourceSet sourceSet)
+    {
+        if (sourceSet instanceof DataSourceSet3D<?, ?, ?>) {
+            final DataSourceSet3D<?, ?, ?> sourceSet3D = (DataSourceSet3D<?, ?, ?>) sourceSet;
+            return CardinalityEstimator.estimate(CardinalityEstimator.DEFAULT_SAMPLE_SIZE, sourceSet3D.getXSource(),
+                    sourceSet3D.getYSource(), sourceSet3D.getZSource());
+        } else {
+            final DataSourceSet4D<?, ?, ?, ?> sourceSet4D = (DataSourceSet4D<?, ?, ?, ?>) sourceSet;
+            return CardinalityEstimator.estimate(CardinalityEstimator.DEFAULT_SAMPLE_SIZE, sourceSet4D.getXSource(),
+                    sourceSet4D.getYSource(), sourceSet4D.getZSource(), sourceSet4D.getWSource());
+        }
+    }
+
+    /**
+     * Create a new 3D or 4D data set from the given data sources set, publishing partial snapshots of it to the given
+     * listener while the sources are being read.
+     * <p>
+     * The snapshots are stream data sets (see {@link StreamDataSet3D.Builder3D#setSnapshotListener(SnapshotListener)}),
+     * and the result is chosen the same way as by
+     * {@link #createFromDataSources(Integer, DataSourceSet, ProgressMonitor)}. Sources too big for stream data sets
+     * publish no snapshots.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param sourceSet The set of sources.
+     * @param snapshotListener The listener to publish the snapshots to, <code>null</code> to publish no snapshots.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new data set from the given data sources.
+     */
+    public static DataSet createFromDataSources(Integer maxPoints, DataSourceSet sourceSet,
+            SnapshotListener<? super DataSet> snapshotListener, ProgressMonitor progressMonitor)
+    {
+        if (snapshotListener == null || (maxPoints != null && maxPoints >= StreamDataSet.MAX_SIZE))
+            return createFromDataSources(maxPoints, sourceSet, progressMonitor);
+
+        if (sourceSet instanceof DataSourceSet3D<?, ?, ?>) {
+            final DataSourceSet3D<?, ?, ?> sourceSet3D = (DataSourceSet3D<?, ?, ?>) sourceSet;
+            if (sourceSet3D.getXSource().size() >= StreamDataSet.MAX_SIZE)
+                return createFromDataSources(maxPoints, sourceSet, progressMonitor);
+            return copyIfFits(StreamDataSet3D.createFromDataSources(maxPoints, sourceSet3D.getXSource(),
+                    sourceSet3D.getYSource(), sourceSet3D.getZSource(), snapshotListener, progressMonitor));
+        } else {
+            final DataSourceSet4D<?, ?, ?, ?> sourceSet4D = (DataSourceSet4D<?, ?, ?, ?>) sourceSet;
+            if (sourceSet4D.getXSource().size() >= StreamDataSet.MAX_SIZE)
+                return createFromDataSources(maxPoints, sourceSet, progressMonitor);
+            return copyIfFits(StreamDataSet4D.createFromDataSources(maxPoints, sourceSet4D.getXSource(),
+                    sourceSet4D.getYSource(), sourceSet4D.getZSource(), sourceSet4D.getWSource(), snapshotListener,
+                    progressMonitor));
+        }
+    }
+
     /**
      * Create a new 3D data set from the given data sources set.
      * 
@@ -142,6 +316,10 @@ public abstract class AbstractDataSet implements DataSet
 
     /**
      * Create a new 3D data set from the given data sources.
+     * <p>
+     * The result is a {@link ColumnarDataSet3D} if its columns fit into the free memory, a stream data set reading the
+     * points from the sources otherwise. Sources too big for stream data sets give a {@link ChunkedDataSet3D}, which
+     * can't limit the number of points.
      * 
      * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
      *            unbounded).
@@ -151,20 +329,31 @@ public abstract class AbstractDataSet implements DataSet
      * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
      * 
      * @return A new 3D data set from the given data sources.
+     * 
+     * @throws IllegalArgumentException If the sources are too big for stream data sets and <code>maxPoints</code> is
+     *             less than their size.
      */
     public static <X extends Number, Y extends Number, Z extends Number> DataSet3D<X, Y, Z> createFromDataSources(
             Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z, ProgressMonitor progressMonitor)
     {
         if ((maxPoints == null || maxPoints < StreamDataSet.MAX_SIZE) && x.size() < StreamDataSet.MAX_SIZE) {
-            return StreamDataSet.createFromDataSources(maxPoints, x, y, z, progressMonitor);
+            // the stream data set selects and counts the points, and the columnar set copies them if there's memory
+            return copyIfFits(StreamDataSet.createFromDataSources(maxPoints, x, y, z, progressMonitor));
         } else {
-            throw new UnsupportedOperationException(AbstractDataSet.class
-                    + ": cannot create data sets with size bigger than Integer.MAX_VALUE yet.");
+            // no limit can be applied to the sizes at which the stream data sets stop working
+            if (maxPoints != null && maxPoints < x.size())
+                throw new IllegalArgumentException(AbstractDataSet.class
+                        + ": Cannot limit the number of points of sources too big for stream data sets.");
+            return ChunkedDataSet3D.createFromDataSources(x, y, z, progressMonitor);
         }
     }
 
     /**
      * Create a new 4D data set from the given data sources.
+     * <p>
+     * The result is a {@link ColumnarDataSet4D} if its columns fit into the free memory, a stream data set reading the
+     * points from the sources otherwise. Sources too big for stream data sets give a {@link ChunkedDataSet4D}, which
+     * can't limit the number of points.
      * 
      * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
      *            unbounded).
@@ -175,17 +364,70 @@ public abstract class AbstractDataSet implements DataSet
      * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
      * 
      * @return A new 4D data set from the given data sources.
+     * 
+     * @throws IllegalArgumentException If the sources are too big for stream data sets and <code>maxPoints</code> is
+     *             less than their size.
      */
     public static <X extends Number, Y extends Number, Z extends Number, W extends Number> DataSet4D<X, Y, Z, W> createFromDataSources(
             Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w,
             ProgressMonitor progressMonitor)
     {
         if ((maxPoints == null || maxPoints < StreamDataSet.MAX_SIZE) && x.size() < StreamDataSet.MAX_SIZE) {
-            return StreamDataSet.createFromDataSources(maxPoints, x, y, z, w, progressMonitor);
+            // the stream data set selects and counts the points, and the columnar set copies them if there's memory
+            return copyIfFits(StreamDataSet.createFromDataSources(maxPoints, x, y, z, w, progressMonitor));
         } else {
-            throw new UnsupportedOperationException(AbstractDataSet.class
-                    + ": cannot create data sets with size bigger than Integer.MAX_VALUE yet.");
+            // no limit can be applied to the sizes at which the stream data sets stop working
+            if (maxPoints != null && maxPoints < x.size())
+                throw new IllegalArgumentException(AbstractDataSet.class
+                        + ": Cannot limit the number of points of sources too big for stream data sets.");
+            return ChunkedDataSet4D.createFromDataSources(x, y, z, w, progressMonitor);
+        }
+    }
+
+    /**
+     * Return a {@link ColumnarDataSet3D} copy of the given data set if it fits into the free memory.
+     * 
+     * @param dataSet The data set.
+     * @return The columnar copy, or the given data set if it doesn't fit into the memory.
+     */
+    @SuppressWarnings("unchecked")
+    private static <X extends Number, Y extends Number, Z extends Number> DataSet3D<X, Y, Z> copyIfFits(
+            DataSet3D<X, Y, Z> dataSet)
+    {
+        if (ColumnarDataSet.fitsInMemory(dataSet, dataSet.getMinX(), dataSet.getMinY(), dataSet.getMinZ())) {
+            // a stream data set materializes its points itself, so don't copy them twice
+            if (dataSet instanceof StreamDataSet3D<?, ?, ?>) {
+                final DataSet3D<X, Y, Z> materialized = ((StreamDataSet3D<X, Y, Z>) dataSet).getMaterialized();
+                if (materialized != null)
+                    return materialized;
+            }
+            return ColumnarDataSet3D.copyOf(dataSet);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Return a {@link ColumnarDataSet4D} copy of the given data set if it fits into the free memory.
+     * 
+     * @param dataSet The data set.
+     * @return The columnar copy, or the given data set if it doesn't fit into the memory.
+     */
+    @SuppressWarnings("unchecked")
+    private static <X extends Number, Y extends Number, Z extends Number, W extends Number> DataSet4D<X, Y, Z, W> copyIfFits(
+            DataSet4D<X, Y, Z, W> dataSet)
+    {
+        if (ColumnarDataSet.fitsInMemory(dataSet, dataSet.getMinX(), dataSet.getMinY(), dataSet.getMinZ(),
+                dataSet.getMinW())) {
+            // a stream data set materializes its points itself, so don't copy them twice
+            if (dataSet instanceof StreamDataSet4D<?, ?, ?, ?>) {
+                final DataSet4D<X, Y, Z, W> materialized = ((StreamDataSet4D<X, Y, Z, W>) dataSet)
+                        .getMaterialized();
+                if (materialized != null)
+                    return materialized;
+            }
+            return ColumnarDataSet4D.copyOf(dataSet);
         }
+        return dataSet;
     }
 
     /**
@@ -197,6 +439,8 @@ public abstract class AbstractDataSet implements DataSet
      */
     protected static abstract class Builder<P extends DataPoint>
     {
+        /** The maximum initial capacity of the map of the points. */
+        private static final int        MAX_INITIAL_CAPACITY   = 1 << 30;
         /** The maximum number of data points in the resulting set. */
         protected final Integer         maxPoints;
         /**
@@ -208,17 +452,31 @@ public abstract class AbstractDataSet implements DataSet
         protected long                  alreadyProcessedPoints = 0L;
         /** The data points that will go in the result (as keys) and their counts (as values). */
         protected final Map<P, Integer> data;
+        /** The seed of the random sampling of the points if their number is limited. */
+        protected long                  seed                   = ReservoirSampler.DEFAULT_SEED;
+        /** The sampler selecting the points if their number is limited; created with the first point. */
+        private ReservoirSampler        sampler;
+        /** The sampled points if their number is limited; they are counted in <code>data</code> by the result. */
+        private final List<P>           sample                 = new ArrayList<P>();
 
         /**
          * @param maxPoints The maximum number of data points in the resulting set.
          * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
          *            cannot be determined).
-         * 
-         * @throws UnsupportedOperationException If <code>expectedCount &gt; Integer.MAX_VALUE</code> -
-         *             <code>long</code>-sized data sets hasn't been supported yet, but an implementation can be
-         *             written.
          */
         protected Builder(Integer maxPoints, Integer inputSize)
+        {
+            this(maxPoints, inputSize, null);
+        }
+
+        /**
+         * @param maxPoints The maximum number of data points in the resulting set.
+         * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
+         *            cannot be determined).
+         * @param estimatedPoints The estimated number of distinct data points of the input (<code>null</code> if it
+         *            hasn't been estimated).
+         */
+        protected Builder(Integer maxPoints, Integer inputSize, Integer estimatedPoints)
         {
             if (maxPoints != null && maxPoints <= 0)
                 throw new IllegalArgumentException(
@@ -229,26 +487,35 @@ public abstract class AbstractDataSet implements DataSet
                 throw new IllegalArgumentException("The inputSize must be either null or a positive number, but "
                         + inputSize + " given.");
 
+            if (estimatedPoints != null && estimatedPoints < 0)
+                throw new IllegalArgumentException("The estimated number of points must be either null or a "
+                        + "non-negative number, but " + estimatedPoints + " given.");
+
             this.maxPoints = maxPoints;
             this.inputSize = inputSize;
 
-            if (inputSize == null) {
+            // the map grows if needed, so the initial capacity is only limited to what a map can allocate; most
+            // entries of the input are usually duplicates, so the estimate of the distinct points is preferred
+            final Integer expectedPoints = estimatedPoints != null ? estimatedPoints : inputSize;
+            if (expectedPoints == null)
                 data = new HashMap<P, Integer>();
-            } else if (maxPoints == null) {
-                if (inputSize * 4 / 3 < Integer.MAX_VALUE) {
-                    data = new HashMap<P, Integer>(inputSize * 4 / 3);
-                } else {
-                    throw new UnsupportedOperationException(getClass()
-                            + ": Building data sets of size larger than Integer.MAX_VALUE hasn't been supported yet.");
-                }
-            } else {
-                if (maxPoints * 4 / 3 < Integer.MAX_VALUE) {
-                    data = new HashMap<P, Integer>(maxPoints * 4 / 3);
-                } else {
-                    throw new UnsupportedOperationException(getClass()
-                            + ": Building data sets of size larger than Integer.MAX_VALUE hasn't been supported yet.");
-                }
-            }
+            else if (maxPoints == null)
+                data = new HashMap<P, Integer>(getInitialCapacity(expectedPoints));
+            else if (estimatedPoints != null)
+                data = new HashMap<P, Integer>(getInitialCapacity(Math.min(estimatedPoints, maxPoints)));
+            else
+                data = new HashMap<P, Integer>(getInitialCapacity(maxPoints));
+        }
+
+        /**
+         * Return the initial capacity of a hash map which should hold the given number of points without rehashing.
+         * 
+         * @param points The expected number of points.
+         * @return The initial capacity.
+         */
+        private static int getInitialCapacity(int points)
+        {
+            return (int) Math.min((long) points * 4 / 3 + 1, MAX_INITIAL_CAPACITY);
         }
 
         /**
@@ -262,19 +529,91 @@ public abstract class AbstractDataSet implements DataSet
         {
             alreadyProcessedPoints++;
 
-            if (data.containsKey(point)) {
-                data.put(point, data.get(point) + 1);
-            } else {
-                // if we know the size of the input set and we want to constrain the result set to contain only a
-                // maximum number of entries, this probability test is a quick way to do it... if all input data points
-                // were different, it'd work fine, but with some equal points the resulting set might be slightly
-                // smaller than maxPoints.
-                Double addProbabilty = (inputSize == null || maxPoints == null) ? null : ((double) (maxPoints - data
-                        .size()) / (inputSize - alreadyProcessedPoints + 1));
-                if (addProbabilty == null || addProbabilty >= 1 || Math.random() <= addProbabilty)
-                    data.put(point, 1);
+            if (maxPoints == null) {
+                final Integer count = data.get(point);
+                data.put(point, count == null ? 1 : count + 1);
+                return this;
+            }
+
+            // the number of points is limited, so keep a uniformly random sample of maxPoints valid points; this works
+            // in memory bounded by maxPoints even if the size of the input is unknown
+            final int slot = getSampler().offer();
+            if (slot == sample.size())
+                sample.add(point);
+            else if (slot >= 0)
+                sample.set(slot, point);
+
+            return this;
+        }
+
+        /**
+         * Notify the builder about the next valid input data point if it won't get into the result.
+         * <p>
+         * If the number of points is limited, most of the valid points aren't selected into the result. They are
+         * counted by this method, so the caller doesn't need to create them and call {@link #addDataPoint(DataPoint)}.
+         * 
+         * @return <code>true</code> if the next valid point has been counted and won't get into the result,
+         *         <code>false</code> if it has to be added by {@link #addDataPoint(DataPoint)}.
+         */
+        public boolean skipDataPoint()
+        {
+            if (maxPoints == null || getSampler().getSkip() == 0)
+                return false;
+
+            sampler.skip(1);
+            alreadyProcessedPoints++;
+            return true;
+        }
+
+        /**
+         * Set the seed of the random sampling of the points done if the number of points is limited. Builders with the
+         * same seed and input build the same set.
+         * <p>
+         * The seed has to be set before the first point is added.
+         * 
+         * @param seed The seed.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder<P> setSeed(long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Count the sampled points in <code>data</code>. Call it once before the result is built.
+         */
+        protected void countSample()
+        {
+            for (P point : sample) {
+                final Integer count = data.get(point);
+                data.put(point, count == null ? 1 : count + 1);
             }
+            sample.clear();
+        }
 
+        /**
+         * Return the sampler selecting the points if their number is limited.
+         * 
+         * @return The sampler.
+         */
+        private ReservoirSampler getSampler()
+        {
+            if (sampler == null)
+                sampler = new ReservoirSampler(maxPoints, seed);
+            return sampler;
+        }
+
+        /**
+         * Notify the builder about an input data point that isn't valid and therefore won't be added.
+         * <p>
+         * Invalid points don't get into the result; they are only counted as processed.
+         * 
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder<P> addInvalidDataPoint()
+        {
+            alreadyProcessedPoints++;
             return this;
         }
 
@@ -297,16 +636,24 @@ public abstract class AbstractDataSet implements DataSet
          * @param maxPoints The maximum number of data points in the resulting set.
          * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
          *            cannot be determined).
-         * 
-         * @throws UnsupportedOperationException If <code>expectedCount &gt; Integer.MAX_VALUE</code> -
-         *             <code>long</code>-sized data sets hasn't been supported yet, but an implementation can be
-         *             written.
          */
         protected Builder3D(Integer maxPoints, Integer inputSize)
         {
             super(maxPoints, inputSize);
         }
 
+        /**
+         * @param maxPoints The maximum number of data points in the resulting set.
+         * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
+         *            cannot be determined).
+         * @param estimatedPoints The estimated number of distinct data points of the input (<code>null</code> if it
+         *            hasn't been estimated).
+         */
+        protected Builder3D(Integer maxPoints, Integer inputSize, Integer estimatedPoints)
+        {
+            super(maxPoints, inputSize, estimatedPoints);
+        }
+
         /**
          * Add a data point defined by the given coordinates.
          * 
@@ -344,16 +691,24 @@ public abstract class AbstractDataSet implements DataSet
          * @param maxPoints The maximum number of data points in the resulting set.
          * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
          *            cannot be determined).
-         * 
-         * @throws UnsupportedOperationException If <code>expectedCount &gt; Integer.MAX_VALUE</code> -
-         *             <code>long</code>-sized data sets hasn't been supported yet, but an implementation can be
-         *             written.
          */
         protected Builder4D(Integer maxPoints, Integer inputSize)
         {
             super(maxPoints, inputSize);
         }
 
+        /**
+         * @param maxPoints The maximum number of data points in the resulting set.
+         * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
+         *            cannot be determined).
+         * @param estimatedPoints The estimated number of distinct data points of the input (<code>null</code> if it
+         *            hasn't been estimated).
+         */
+        protected Builder4D(Integer maxPoints, Integer inputSize, Integer estimatedPoints)
+        {
+            super(maxPoints, inputSize, estimatedPoints);
+        }
+
         /**
          * Add a data point defined by the given coordinates.
          * 
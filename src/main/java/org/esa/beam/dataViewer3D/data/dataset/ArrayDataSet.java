@@ -5,6 +5,7 @@ package org.esa.beam.dataViewer3D.data.dataset;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import javax.help.UnsupportedOperationException;
 
@@ -13,6 +14,7 @@ import org.esa.beam.dataViewer3D.data.source.DataSource;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
 
 import com.bc.ceres.core.ProgressMonitor;
 
@@ -71,6 +73,29 @@ public abstract class ArrayDataSet extends AbstractDataSet
         return Arrays.asList(histogram).iterator();
     }
 
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        return new IntIterator() {
+            /** Index of the next entry. */
+            private int index = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return index < histogram.length;
+            }
+
+            @Override
+            public int next()
+            {
+                if (index >= histogram.length)
+                    throw new NoSuchElementException();
+                return histogram[index++];
+            }
+        };
+    }
+
     @Override
     public String getSourceName(int dimension)
     {
@@ -155,7 +180,8 @@ public abstract class ArrayDataSet extends AbstractDataSet
     public static <X extends Number, Y extends Number, Z extends Number> DataSet3D<X, Y, Z> createFromDataSources(
             Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z)
     {
-        ArrayDataSet3D.Builder3D<X, Y, Z> builder = ArrayDataSet3D.getBuilder(maxPoints, x.size());
+        ArrayDataSet3D.Builder3D<X, Y, Z> builder = ArrayDataSet3D.getBuilder(maxPoints, x.size(),
+                CardinalityEstimator.estimate(x, y, z));
 
         setupBuilderFromDataSources(builder, x, y, z);
 
@@ -177,7 +203,8 @@ public abstract class ArrayDataSet extends AbstractDataSet
     public static <X extends Number, Y extends Number, Z extends Number, W extends Number> DataSet4D<X, Y, Z, W> createFromDataSources(
             Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w)
     {
-        ArrayDataSet4D.Builder4D<X, Y, Z, W> builder = ArrayDataSet4D.getBuilder(maxPoints, x.size());
+        ArrayDataSet4D.Builder4D<X, Y, Z, W> builder = ArrayDataSet4D.getBuilder(maxPoints, x.size(),
+                CardinalityEstimator.estimate(x, y, z, w));
 
         setupBuilderFromDataSources(builder, x, y, z, w);
 
@@ -208,4 +235,4 @@ public abstract class ArrayDataSet extends AbstractDataSet
 
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -3,11 +3,8 @@
  */
 package org.esa.beam.dataViewer3D.data.dataset;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
 
 import org.esa.beam.dataViewer3D.data.point.DataPoint;
 import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
@@ -142,7 +139,7 @@ public class ArrayDataSet3D<X extends Number, Y extends Number, Z extends Number
      */
     static <X extends Number, Y extends Number, Z extends Number> Builder3D<X, Y, Z> getBuilder(Integer maxPoints)
     {
-        return new Builder3D<X, Y, Z>(maxPoints, null);
+        return new Builder3D<X, Y, Z>(maxPoints, null, null);
     }
 
     /**
@@ -157,7 +154,24 @@ public class ArrayDataSet3D<X extends Number, Y extends Number, Z extends Number
     static <X extends Number, Y extends Number, Z extends Number> Builder3D<X, Y, Z> getBuilder(Integer maxPoints,
             int expectedCount)
     {
-        return new Builder3D<X, Y, Z>(maxPoints, expectedCount);
+        return new Builder3D<X, Y, Z>(maxPoints, expectedCount, null);
+    }
+
+    /**
+     * Return the builder that can be used to build this data set.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param expectedCount The expected number of data points.
+     * @param estimatedPoints The estimated number of distinct data points (<code>null</code> if it hasn't been
+     *            estimated).
+     * 
+     * @return The builder that can be used to build this data set.
+     */
+    static <X extends Number, Y extends Number, Z extends Number> Builder3D<X, Y, Z> getBuilder(Integer maxPoints,
+            int expectedCount, Integer estimatedPoints)
+    {
+        return new Builder3D<X, Y, Z>(maxPoints, expectedCount, estimatedPoints);
     }
 
     /**
@@ -176,10 +190,12 @@ public class ArrayDataSet3D<X extends Number, Y extends Number, Z extends Number
          * @param maxPoints The maximum number of data points in the resulting set.
          * @param inputSize The number of data points this builder will get as input (<code>null</code> if the count
          *            cannot be determined).
+         * @param estimatedPoints The estimated number of distinct data points of the input (<code>null</code> if it
+         *            hasn't been estimated).
          */
-        private Builder3D(Integer maxPoints, Integer inputSize)
+        private Builder3D(Integer maxPoints, Integer inputSize, Integer estimatedPoints)
         {
-            super(maxPoints, inputSize);
+            super(maxPoints, inputSize, estimatedPoints);
         }
 
         /**
@@ -192,13 +208,7 @@ public class ArrayDataSet3D<X extends Number, Y extends Number, Z extends Number
          */
         public DataSet3D<X, Y, Z> getResult()
         {
-            if (inputSize == null && maxPoints != null && data.size() > maxPoints) {
-                List<DataPoint> keys = new ArrayList<DataPoint>(data.keySet());
-                Collections.shuffle(keys);
-                keys.subList(maxPoints.intValue(), keys.size()).clear(); // we can use .intValue() as long as no Long
-                                                                         // implementation of data set is provided
-                data.keySet().retainAll(keys);
-            }
+            countSample();
 
             @SuppressWarnings("unchecked")
             DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>[] arr = (DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>[]) new DataPoint3D<?, ?, ?>[data
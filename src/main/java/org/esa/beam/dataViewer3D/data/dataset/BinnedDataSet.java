@@ -0,0 +1,361 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A data set of voxels of a regular grid. The points of the set are the centers of the non-empty voxels, and the
+ * histogram contains the counts of the source entries falling into the voxels.
+ * <p>
+ * The set is filled in one pass over the sources, and its memory footprint only depends on the number of bins of the
+ * grid, so it can be built from sources of any size.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class BinnedDataSet extends AbstractDataSet
+{
+    /** The default number of bins per axis. */
+    public static final int   DEFAULT_BINS = 64;
+
+    /** The grid of voxels. */
+    protected final VoxelGrid grid;
+
+    /** The number of non-empty voxels. */
+    private final int         size;
+
+    /** The minimum and maximum values of the points of all dimensions. */
+    private final double[]    min, max;
+
+    /**
+     * The aggregate of the w values of the entries falling into a voxel.
+     * 
+     * @author Martin Pecka
+     */
+    public static enum Aggregate
+    {
+        /** The mean of the values. */
+        MEAN,
+        /** The minimum of the values. */
+        MIN,
+        /** The maximum of the values. */
+        MAX,
+        /** The sum of the values. */
+        SUM
+    }
+
+    /**
+     * Create the data set of the non-empty voxels of the given grid.
+     * 
+     * @param grid The filled grid. It mustn't be changed afterwards.
+     * 
+     * @throws IllegalArgumentException If the grid is empty.
+     */
+    protected BinnedDataSet(VoxelGrid grid) throws IllegalArgumentException
+    {
+        if (grid.getPoints() == 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
+
+        this.grid = grid;
+
+        final int dimensions = grid.isAggregating() ? 4 : 3;
+        min = new double[dimensions];
+        max = new double[dimensions];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+
+        int size = 0;
+        for (int voxel = 0; voxel < grid.getVoxels(); voxel++) {
+            if (grid.getCount(voxel) == 0)
+                continue;
+
+            size++;
+            for (int d = 0; d < dimensions; d++) {
+                final double value = d < 3 ? grid.getCenter(d, voxel) : grid.getValue(voxel);
+                min[d] = Math.min(min[d], value);
+                max[d] = Math.max(max[d], value);
+            }
+        }
+        this.size = size;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The minimum is computed from the centers of the non-empty voxels (or their aggregated w values).
+     */
+    @Override
+    public double getMin(int dimension)
+    {
+        if (dimension < 0 || dimension >= min.length)
+            throw new IndexOutOfBoundsException();
+        return min[dimension];
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The maximum is computed from the centers of the non-empty voxels (or their aggregated w values).
+     */
+    @Override
+    public double getMax(int dimension)
+    {
+        if (dimension < 0 || dimension >= max.length)
+            throw new IndexOutOfBoundsException();
+        return max[dimension];
+    }
+
+    /**
+     * Return the number of bins per axis of the grid.
+     * 
+     * @return The number of bins per axis.
+     */
+    public int getBins()
+    {
+        return grid.getBins();
+    }
+
+    /**
+     * Return the number of the source entries falling into the voxels.
+     * 
+     * @return The sum of the histogram.
+     */
+    public long getEntries()
+    {
+        return grid.getPoints();
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator()
+    {
+        return new VoxelIterator<DataPoint>() {
+            @Override
+            protected DataPoint get(int voxel)
+            {
+                return getPoint(voxel);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Integer> histogramIterator()
+    {
+        return countIterator();
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        final VoxelIterator<Integer> voxels = countIterator();
+        return new IntIterator() {
+            @Override
+            public boolean hasNext()
+            {
+                return voxels.hasNext();
+            }
+
+            @Override
+            public int next()
+            {
+                return grid.getCount(voxels.nextVoxel());
+            }
+        };
+    }
+
+    /**
+     * Return the iterator of the counts of the non-empty voxels.
+     * 
+     * @return The iterator of the counts.
+     */
+    private VoxelIterator<Integer> countIterator()
+    {
+        return new VoxelIterator<Integer>() {
+            @Override
+            protected Integer get(int voxel)
+            {
+                return grid.getCount(voxel);
+            }
+        };
+    }
+
+    /**
+     * Return the point representing the given voxel.
+     * 
+     * @param voxel The voxel.
+     * @return The point.
+     */
+    protected abstract DataPoint getPoint(int voxel);
+
+    /**
+     * Fill the given grid with the points valid in all the given sources.
+     * <p>
+     * The ranges of the axes of the grid are set to the defined ranges of the sources, if they are finite.
+     * 
+     * @param grid The grid to fill.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * @param sources The sources of the coordinates of the points, optionally followed by the source of the values to
+     *            aggregate.
+     * 
+     * @throws IllegalArgumentException If the sources have different sizes.
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    protected static void fillGrid(VoxelGrid grid, ProgressMonitor progressMonitor, DataSource<?>... sources)
+            throws IllegalArgumentException, CancellationException
+    {
+        for (int i = 1; i < sources.length; i++) {
+            if (sources[i].size() != sources[0].size())
+                throw new IllegalArgumentException(BinnedDataSet.class
+                        + ": cannot create a data set from sources of different sizes.");
+        }
+
+        for (int axis = 0; axis < 3; axis++) {
+            final Number min = sources[axis].getDefinedMin(), max = sources[axis].getDefinedMax();
+            if (min != null && max != null && min.doubleValue() < max.doubleValue()
+                    && !Double.isInfinite(max.doubleValue() - min.doubleValue()))
+                grid.setRange(axis, min.doubleValue(), max.doubleValue());
+        }
+
+        final int[] indices = new int[BULK_READ_SIZE];
+        final double[][] values = new double[sources.length][BULK_READ_SIZE];
+
+        // tiles not containing any data in some of the sources are skipped without reading them
+        final int[] tiles = getDataTiles(sources);
+        final PointReader reader = createPointReader(tiles, sources);
+
+        if (progressMonitor != null) {
+            progressMonitor.beginTask("Binning band data", sources[0].size()); /* I18N */
+            progressMonitor.worked(getSkippedEntries(tiles, sources[0]));
+        }
+
+        final boolean aggregate = sources.length > 3;
+        int reportedEntries = 0;
+        while (reader.hasNext()) {
+            final int read = reader.read(indices, values);
+
+            for (int j = 0; j < read; j++)
+                grid.add(values[0][j], values[1][j], values[2][j], aggregate ? values[3][j] : 0);
+
+            if (progressMonitor != null) {
+                progressMonitor.worked(reader.getProcessedEntries() - reportedEntries);
+                reportedEntries = reader.getProcessedEntries();
+                if (progressMonitor.isCanceled()) {
+                    progressMonitor.done();
+                    throw new CancellationException();
+                }
+            }
+        }
+
+        if (progressMonitor != null)
+            progressMonitor.done();
+    }
+
+    /**
+     * Create a new 3D or 4D binned data set from the given data sources set. The w values of 4D sets are averaged.
+     * 
+     * @param bins The number of bins per axis.
+     * @param sourceSet The set of sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new binned data set from the given data sources.
+     */
+    public static DataSet createFromDataSources(int bins, DataSourceSet sourceSet, ProgressMonitor progressMonitor)
+    {
+        if (sourceSet instanceof DataSourceSet3D<?, ?, ?>)
+            return BinnedDataSet3D.createFromDataSources(bins, (DataSourceSet3D<?, ?, ?>) sourceSet, progressMonitor);
+        else
+            return BinnedDataSet4D.createFromDataSources(bins, Aggregate.MEAN, (DataSourceSet4D<?, ?, ?, ?>) sourceSet,
+                    progressMonitor);
+    }
+
+    /**
+     * An iterator over the non-empty voxels.
+     * 
+     * @author Martin Pecka
+     * @param <T> Type of the returned values.
+     */
+    protected abstract class VoxelIterator<T> implements Iterator<T>
+    {
+        /** The next non-empty voxel, or the number of voxels if there is none. */
+        private int voxel = -1;
+
+        /**
+         * Create the iterator.
+         */
+        protected VoxelIterator()
+        {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return voxel < grid.getVoxels();
+        }
+
+        @Override
+        public T next()
+        {
+            return get(nextVoxel());
+        }
+
+        /**
+         * Return the next non-empty voxel.
+         * 
+         * @return The next non-empty voxel.
+         * 
+         * @throws NoSuchElementException If there are no more voxels.
+         */
+        protected int nextVoxel() throws NoSuchElementException
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            final int result = voxel;
+            advance();
+            return result;
+        }
+
+        /**
+         * Return the value for the given voxel.
+         * 
+         * @param voxel The voxel.
+         * @return The value.
+         */
+        protected abstract T get(int voxel);
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Move to the next non-empty voxel.
+         */
+        private void advance()
+        {
+            do {
+                voxel++;
+            } while (voxel < grid.getVoxels() && grid.getCount(voxel) == 0);
+        }
+    }
+}
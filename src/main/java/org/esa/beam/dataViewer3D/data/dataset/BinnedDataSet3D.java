@@ -0,0 +1,280 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.type.DoubleType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A 3D data set of voxels of a regular grid. The coordinates of the points are the centers of the non-empty voxels.
+ * 
+ * @author Martin Pecka
+ */
+public class BinnedDataSet3D extends BinnedDataSet implements DataSet3D<Double, Double, Double>
+{
+    /** The names of the sources of the coordinates. */
+    private final String[] sourceNames;
+
+    /**
+     * Create the data set of the non-empty voxels of the given grid.
+     * 
+     * @param grid The filled grid. It mustn't be changed afterwards.
+     * @param xName The name of the source of x values.
+     * @param yName The name of the source of y values.
+     * @param zName The name of the source of z values.
+     * 
+     * @throws IllegalArgumentException If the grid is empty.
+     */
+    protected BinnedDataSet3D(VoxelGrid grid, String xName, String yName, String zName)
+            throws IllegalArgumentException
+    {
+        super(grid);
+        sourceNames = new String[] { xName, yName, zName };
+    }
+
+    @Override
+    public Iterator<DataPoint3D<NumericType<Double>, NumericType<Double>, NumericType<Double>>> pointIterator()
+    {
+        return new VoxelIterator<DataPoint3D<NumericType<Double>, NumericType<Double>, NumericType<Double>>>() {
+            @Override
+            protected DataPoint3D<NumericType<Double>, NumericType<Double>, NumericType<Double>> get(int voxel)
+            {
+                return getPoint(voxel);
+            }
+        };
+    }
+
+    @Override
+    protected DataPoint3D<NumericType<Double>, NumericType<Double>, NumericType<Double>> getPoint(int voxel)
+    {
+        return new SimpleDataPoint3D<NumericType<Double>, NumericType<Double>, NumericType<Double>>(new DoubleType(
+                grid.getCenter(0, voxel), null), new DoubleType(grid.getCenter(1, voxel), null), new DoubleType(
+                grid.getCenter(2, voxel), null));
+    }
+
+    @Override
+    public Iterator<Double> xIterator()
+    {
+        return centerIterator(0);
+    }
+
+    @Override
+    public Iterator<Double> yIterator()
+    {
+        return centerIterator(1);
+    }
+
+    @Override
+    public Iterator<Double> zIterator()
+    {
+        return centerIterator(2);
+    }
+
+    @Override
+    public Double getMinX()
+    {
+        return getMin(0);
+    }
+
+    @Override
+    public Double getMinY()
+    {
+        return getMin(1);
+    }
+
+    @Override
+    public Double getMinZ()
+    {
+        return getMin(2);
+    }
+
+    @Override
+    public Double getMaxX()
+    {
+        return getMax(0);
+    }
+
+    @Override
+    public Double getMaxY()
+    {
+        return getMax(1);
+    }
+
+    @Override
+    public Double getMaxZ()
+    {
+        return getMax(2);
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        if (dimension < 0 || dimension >= sourceNames.length)
+            throw new IndexOutOfBoundsException();
+        return sourceNames[dimension];
+    }
+
+    /**
+     * Return a builder able to build this class.
+     * 
+     * @return A builder able to build this class.
+     */
+    protected static Builder3D getBuilder()
+    {
+        return new Builder3D();
+    }
+
+    /**
+     * Create a 3D binned data set from the given set of sources.
+     * 
+     * @param bins The number of bins per axis.
+     * @param dataSourceSet The set of data sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The binned data set created from the given sources.
+     */
+    public static BinnedDataSet3D createFromDataSources(int bins, DataSourceSet3D<?, ?, ?> dataSourceSet,
+            ProgressMonitor progressMonitor)
+    {
+        return createFromDataSources(bins, dataSourceSet.getXSource(), dataSourceSet.getYSource(),
+                dataSourceSet.getZSource(), progressMonitor);
+    }
+
+    /**
+     * Create a 3D binned data set from the given sources.
+     * 
+     * @param bins The number of bins per axis.
+     * @param x Source for x values.
+     * @param y Source for y values.
+     * @param z Source for z values.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The binned data set created from the given sources.
+     */
+    public static BinnedDataSet3D createFromDataSources(int bins, DataSource<?> x, DataSource<?> y, DataSource<?> z,
+            ProgressMonitor progressMonitor)
+    {
+        final Builder3D builder = getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z).setBins(bins);
+        builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
+    /**
+     * Return the iterator of the coordinates of the centers of the non-empty voxels.
+     * 
+     * @param axis The axis of the coordinates.
+     * @return The iterator.
+     */
+    private Iterator<Double> centerIterator(final int axis)
+    {
+        return new VoxelIterator<Double>() {
+            @Override
+            protected Double get(int voxel)
+            {
+                return grid.getCenter(axis, voxel);
+            }
+        };
+    }
+
+    /**
+     * The builder for building a binned data set.
+     * 
+     * @author Martin Pecka
+     */
+    protected static class Builder3D
+    {
+        /** The source of x values. */
+        private DataSource<?>   xSource;
+        /** The source of y values. */
+        private DataSource<?>   ySource;
+        /** The source of z values. */
+        private DataSource<?>   zSource;
+        /** The number of bins per axis. */
+        private int             bins = DEFAULT_BINS;
+        /** The progress monitor. */
+        private ProgressMonitor progressMonitor;
+
+        /**
+         * When the builder is configured, call this method to get the resulting set.
+         * 
+         * @return The resulting set.
+         * 
+         * @throws IllegalArgumentException If the sources have different sizes, if no entry is valid in all of them,
+         *             or if the number of bins is invalid.
+         */
+        public BinnedDataSet3D getResult()
+        {
+            if (xSource == null || ySource == null || zSource == null)
+                throw new NullPointerException();
+
+            final VoxelGrid grid = new VoxelGrid(bins, null);
+            fillGrid(grid, progressMonitor, xSource, ySource, zSource);
+            return new BinnedDataSet3D(grid, xSource.getName(), ySource.getName(), zSource.getName());
+        }
+
+        /**
+         * Set the source for x coordinates.
+         * 
+         * @param x The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D setDataSourceX(DataSource<?> x)
+        {
+            xSource = x;
+            return this;
+        }
+
+        /**
+         * Set the source for y coordinates.
+         * 
+         * @param y The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D setDataSourceY(DataSource<?> y)
+        {
+            ySource = y;
+            return this;
+        }
+
+        /**
+         * Set the source for z coordinates.
+         * 
+         * @param z The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D setDataSourceZ(DataSource<?> z)
+        {
+            zSource = z;
+            return this;
+        }
+
+        /**
+         * Set the number of bins per axis. The grid has <code>bins<sup>3</sup></code> voxels.
+         * 
+         * @param bins The number of bins per axis (at least 2).
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D setBins(int bins)
+        {
+            this.bins = bins;
+            return this;
+        }
+
+        /**
+         * @param progressMonitor The progress monitor.
+         */
+        public void setProgressMonitor(ProgressMonitor progressMonitor)
+        {
+            this.progressMonitor = progressMonitor;
+        }
+    }
+}
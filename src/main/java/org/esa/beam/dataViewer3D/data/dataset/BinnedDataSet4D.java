@@ -0,0 +1,343 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.type.DoubleType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A 4D data set of voxels of a regular grid. The x, y and z coordinates of the points are the centers of the non-empty
+ * voxels, and the w coordinates are the aggregates of the w values of the entries falling into the voxels.
+ * 
+ * @author Martin Pecka
+ */
+public class BinnedDataSet4D extends BinnedDataSet implements DataSet4D<Double, Double, Double, Double>
+{
+    /** The names of the sources of the coordinates. */
+    private final String[] sourceNames;
+
+    /**
+     * Create the data set of the non-empty voxels of the given grid.
+     * 
+     * @param grid The filled grid. It mustn't be changed afterwards.
+     * @param xName The name of the source of x values.
+     * @param yName The name of the source of y values.
+     * @param zName The name of the source of z values.
+     * @param wName The name of the source of w values.
+     * 
+     * @throws IllegalArgumentException If the grid is empty or doesn't aggregate values.
+     */
+    protected BinnedDataSet4D(VoxelGrid grid, String xName, String yName, String zName, String wName)
+            throws IllegalArgumentException
+    {
+        super(grid);
+        if (!grid.isAggregating())
+            throw new IllegalArgumentException(getClass() + ": The grid has to aggregate the w values.");
+        sourceNames = new String[] { xName, yName, zName, wName };
+    }
+
+    @Override
+    public Iterator<DataPoint4D<NumericType<Double>, NumericType<Double>, NumericType<Double>, NumericType<Double>>> pointIterator()
+    {
+        return new VoxelIterator<DataPoint4D<NumericType<Double>, NumericType<Double>, NumericType<Double>, NumericType<Double>>>() {
+            @Override
+            protected DataPoint4D<NumericType<Double>, NumericType<Double>, NumericType<Double>, NumericType<Double>> get(
+                    int voxel)
+            {
+                return getPoint(voxel);
+            }
+        };
+    }
+
+    @Override
+    protected DataPoint4D<NumericType<Double>, NumericType<Double>, NumericType<Double>, NumericType<Double>> getPoint(
+            int voxel)
+    {
+        return new SimpleDataPoint4D<NumericType<Double>, NumericType<Double>, NumericType<Double>, NumericType<Double>>(
+                new DoubleType(grid.getCenter(0, voxel), null), new DoubleType(grid.getCenter(1, voxel), null),
+                new DoubleType(grid.getCenter(2, voxel), null), new DoubleType(grid.getValue(voxel), null));
+    }
+
+    @Override
+    public Iterator<Double> xIterator()
+    {
+        return centerIterator(0);
+    }
+
+    @Override
+    public Iterator<Double> yIterator()
+    {
+        return centerIterator(1);
+    }
+
+    @Override
+    public Iterator<Double> zIterator()
+    {
+        return centerIterator(2);
+    }
+
+    @Override
+    public Iterator<Double> wIterator()
+    {
+        return new VoxelIterator<Double>() {
+            @Override
+            protected Double get(int voxel)
+            {
+                return grid.getValue(voxel);
+            }
+        };
+    }
+
+    @Override
+    public Double getMinX()
+    {
+        return getMin(0);
+    }
+
+    @Override
+    public Double getMinY()
+    {
+        return getMin(1);
+    }
+
+    @Override
+    public Double getMinZ()
+    {
+        return getMin(2);
+    }
+
+    @Override
+    public Double getMinW()
+    {
+        return getMin(3);
+    }
+
+    @Override
+    public Double getMaxX()
+    {
+        return getMax(0);
+    }
+
+    @Override
+    public Double getMaxY()
+    {
+        return getMax(1);
+    }
+
+    @Override
+    public Double getMaxZ()
+    {
+        return getMax(2);
+    }
+
+    @Override
+    public Double getMaxW()
+    {
+        return getMax(3);
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        if (dimension < 0 || dimension >= sourceNames.length)
+            throw new IndexOutOfBoundsException();
+        return sourceNames[dimension];
+    }
+
+    /**
+     * Return a builder able to build this class.
+     * 
+     * @return A builder able to build this class.
+     */
+    protected static Builder4D getBuilder()
+    {
+        return new Builder4D();
+    }
+
+    /**
+     * Create a 4D binned data set from the given set of sources.
+     * 
+     * @param bins The number of bins per axis.
+     * @param aggregate The aggregate of the w values of the entries falling into a voxel.
+     * @param dataSourceSet The set of data sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The binned data set created from the given sources.
+     */
+    public static BinnedDataSet4D createFromDataSources(int bins, Aggregate aggregate,
+            DataSourceSet4D<?, ?, ?, ?> dataSourceSet, ProgressMonitor progressMonitor)
+    {
+        return createFromDataSources(bins, aggregate, dataSourceSet.getXSource(), dataSourceSet.getYSource(),
+                dataSourceSet.getZSource(), dataSourceSet.getWSource(), progressMonitor);
+    }
+
+    /**
+     * Create a 4D binned data set from the given sources.
+     * 
+     * @param bins The number of bins per axis.
+     * @param aggregate The aggregate of the w values of the entries falling into a voxel.
+     * @param x Source for x values.
+     * @param y Source for y values.
+     * @param z Source for z values.
+     * @param w Source for w values.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The binned data set created from the given sources.
+     */
+    public static BinnedDataSet4D createFromDataSources(int bins, Aggregate aggregate, DataSource<?> x,
+            DataSource<?> y, DataSource<?> z, DataSource<?> w, ProgressMonitor progressMonitor)
+    {
+        final Builder4D builder = getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .setDataSourceW(w).setBins(bins).setAggregate(aggregate);
+        builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
+    /**
+     * Return the iterator of the coordinates of the centers of the non-empty voxels.
+     * 
+     * @param axis The axis of the coordinates.
+     * @return The iterator.
+     */
+    private Iterator<Double> centerIterator(final int axis)
+    {
+        return new VoxelIterator<Double>() {
+            @Override
+            protected Double get(int voxel)
+            {
+                return grid.getCenter(axis, voxel);
+            }
+        };
+    }
+
+    /**
+     * The builder for building a binned data set.
+     * 
+     * @author Martin Pecka
+     */
+    protected static class Builder4D
+    {
+        /** The source of x values. */
+        private DataSource<?>   xSource;
+        /** The source of y values. */
+        private DataSource<?>   ySource;
+        /** The source of z values. */
+        private DataSource<?>   zSource;
+        /** The source of w values. */
+        private DataSource<?>   wSource;
+        /** The number of bins per axis. */
+        private int             bins      = DEFAULT_BINS;
+        /** The aggregate of the w values of the entries falling into a voxel. */
+        private Aggregate       aggregate = Aggregate.MEAN;
+        /** The progress monitor. */
+        private ProgressMonitor progressMonitor;
+
+        /**
+         * When the builder is configured, call this method to get the resulting set.
+         * 
+         * @return The resulting set.
+         * 
+         * @throws IllegalArgumentException If the sources have different sizes, if no entry is valid in all of them,
+         *             or if the number of bins is invalid.
+         */
+        public BinnedDataSet4D getResult()
+        {
+            if (xSource == null || ySource == null || zSource == null || wSource == null || aggregate == null)
+                throw new NullPointerException();
+
+            final VoxelGrid grid = new VoxelGrid(bins, aggregate);
+            fillGrid(grid, progressMonitor, xSource, ySource, zSource, wSource);
+            return new BinnedDataSet4D(grid, xSource.getName(), ySource.getName(), zSource.getName(),
+                    wSource.getName());
+        }
+
+        /**
+         * Set the source for x coordinates.
+         * 
+         * @param x The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D setDataSourceX(DataSource<?> x)
+        {
+            xSource = x;
+            return this;
+        }
+
+        /**
+         * Set the source for y coordinates.
+         * 
+         * @param y The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D setDataSourceY(DataSource<?> y)
+        {
+            ySource = y;
+            return this;
+        }
+
+        /**
+         * Set the source for z coordinates.
+         * 
+         * @param z The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D setDataSourceZ(DataSource<?> z)
+        {
+            zSource = z;
+            return this;
+        }
+
+        /**
+         * Set the source for w coordinates.
+         * 
+         * @param w The source.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D setDataSourceW(DataSource<?> w)
+        {
+            wSource = w;
+            return this;
+        }
+
+        /**
+         * Set the aggregate of the w values of the entries falling into a voxel. The default is the mean.
+         * 
+         * @param aggregate The aggregate.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D setAggregate(Aggregate aggregate)
+        {
+            this.aggregate = aggregate;
+            return this;
+        }
+
+        /**
+         * Set the number of bins per axis. The grid has <code>bins<sup>3</sup></code> voxels.
+         * 
+         * @param bins The number of bins per axis (at least 2).
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D setBins(int bins)
+        {
+            this.bins = bins;
+            return this;
+        }
+
+        /**
+         * @param progressMonitor The progress monitor.
+         */
+        public void setProgressMonitor(ProgressMonitor progressMonitor)
+        {
+            this.progressMonitor = progressMonitor;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.BitSet;
+
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
+import org.esa.beam.dataViewer3D.data.source.RandomAccessDataSource;
+import org.esa.beam.dataViewer3D.data.source.RandomAccessReader;
+import org.esa.beam.dataViewer3D.data.source.TiledDataSource;
+import org.esa.beam.dataViewer3D.utils.HyperLogLog;
+
+/**
+ * An estimator of the number of distinct points of sources, which the builders use to size their tables and to choose
+ * between counting the points in a hash table and sorting them before they read the sources.
+ * <p>
+ * Only a strided subsample of the sources is read: every n-th small block of entries of random-access sources (within
+ * the tiles containing data, if they are tiled), or every n-th tile of sources which are only tiled. So the subsample
+ * of random-access sources is spread over the whole image even if its tiles are bigger than the subsample. The distinct
+ * points of the subsample are counted by a {@link HyperLogLog} sketch. As the subsample misses many of the points, the
+ * number of distinct points of the whole sources is extrapolated assuming the points are about equally frequent: the
+ * number of points is found whose random sampling would give as many distinct points as the subsample has, and the
+ * whole sources are sampled from them. So sources with few distinct values (typically 8-bit bands) give estimates close
+ * to the number of their distinct points, and sources with mostly distinct points give estimates close to the number of
+ * their valid entries. Rare points are underestimated, so the tables sized by the estimate may still grow.
+ * <p>
+ * The points are told apart by the keys of their coordinates, so if the builder tells them apart by hash codes, the
+ * estimate is an upper bound.
+ * 
+ * @author Martin Pecka
+ */
+class CardinalityEstimator
+{
+    /** The default number of entries of the subsample. */
+    static final int         DEFAULT_SAMPLE_SIZE = 1 << 16;
+
+    /** The minimum size of the sources worth estimating; the tables of smaller ones grow cheaply. */
+    static final int         MIN_SOURCE_SIZE     = 1 << 20;
+
+    /** The number of entries of a block read from random-access sources; small to spread the subsample over tiles. */
+    private static final int BLOCK_SIZE          = 1 << 10;
+
+    /** The sources to estimate. */
+    private final DataSource<?>[] sources;
+
+    /** The sketch of the distinct points of the subsample. */
+    private final HyperLogLog     sample        = new HyperLogLog();
+
+    /** The keys of the coordinates of the current point. */
+    private final long[]          keys;
+
+    /** The number of valid entries of the subsample. */
+    private long                  sampleValid   = 0;
+
+    /** The number of entries of the subsample. */
+    private long                  sampleEntries = 0;
+
+    /**
+     * @param sources The sources to estimate.
+     */
+    private CardinalityEstimator(DataSource<?>[] sources)
+    {
+        this.sources = sources;
+        this.keys = new long[sources.length];
+    }
+
+    /**
+     * Estimate the number of distinct points of the given sources if they are big enough to make the estimate pay off
+     * (see {@link #MIN_SOURCE_SIZE}).
+     * 
+     * @param sources The sources of the same size.
+     * @return The estimated number of distinct valid points, <code>null</code> if the sources are too small, or if
+     *         they can't be subsampled without reading them whole (i.e. they are neither random-access nor tiled).
+     */
+    static Integer estimate(DataSource<?>... sources)
+    {
+        if (sources[0].size() < MIN_SOURCE_SIZE)
+            return null;
+        return estimate(DEFAULT_SAMPLE_SIZE, sources);
+    }
+
+    /**
+     * Estimate the number of distinct points of the given sources.
+     * 
+     * @param sampleSize The approximate number of entries of the subsample.
+     * @param sources The sources of the same size.
+     * @return The estimated number of distinct valid points, <code>null</code> if the sources can't be subsampled
+     *         without reading them whole (i.e. they are neither random-access nor tiled).
+     */
+    static Integer estimate(int sampleSize, DataSource<?>... sources)
+    {
+        final CardinalityEstimator estimator = new CardinalityEstimator(sources);
+
+        final int[] dataTiles = AbstractDataSet.getDataTiles(sources);
+        // untiled sources are read as if they consisted of a single tile
+        final int[] tiles = dataTiles != null ? dataTiles : new int[] { 0 };
+        final int tileSize = dataTiles != null ? ((TiledDataSource<?>) sources[0]).getTileSize() : sources[0].size();
+        final long entries = Math.min((long) tiles.length * tileSize, sources[0].size());
+
+        if (isRandomAccess(sources))
+            estimator.readBlocks(tiles, tileSize, sampleSize);
+        else if (dataTiles != null)
+            estimator.readTiles(tiles, tileSize, sampleSize);
+        else
+            return null;
+
+        return (int) Math.min(estimator.extrapolate(entries), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return <code>true</code> if all the given sources are random-access.
+     * 
+     * @param sources The sources.
+     * @return Whether the sources are random-access.
+     */
+    private static boolean isRandomAccess(DataSource<?>... sources)
+    {
+        for (DataSource<?> source : sources) {
+            if (!(source instanceof RandomAccessDataSource<?>))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read every n-th of the given tiles.
+     * 
+     * @param tiles The tiles containing data in all sources, in ascending order.
+     * @param tileSize The number of entries of a tile.
+     * @param sampleSize The approximate number of entries of the subsample.
+     */
+    private void readTiles(int[] tiles, int tileSize, int sampleSize)
+    {
+        final int sampledTiles = Math.min(tiles.length, Math.max(1, (sampleSize + tileSize - 1) / tileSize));
+        final int[] selected = new int[sampledTiles];
+        for (int i = 0; i < sampledTiles; i++)
+            selected[i] = tiles[(int) ((long) tiles.length * i / sampledTiles)];
+
+        final int[] indices = new int[AbstractDataSet.BULK_READ_SIZE];
+        final double[][] values = new double[sources.length][AbstractDataSet.BULK_READ_SIZE];
+        final PointReader reader = AbstractDataSet.createPointReader(selected, sources);
+        while (reader.hasNext()) {
+            final int read = reader.read(indices, values);
+            for (int j = 0; j < read; j++) {
+                for (int d = 0; d < sources.length; d++)
+                    keys[d] = reader.getKey(d, j);
+                add();
+            }
+        }
+        sampleEntries = reader.getProcessedEntries();
+    }
+
+    /**
+     * Read every n-th block of entries of the given tiles of the random-access sources.
+     * 
+     * @param tiles The tiles containing data in all sources, in ascending order.
+     * @param tileSize The number of entries of a tile.
+     * @param sampleSize The approximate number of entries of the subsample.
+     */
+    private void readBlocks(int[] tiles, int tileSize, int sampleSize)
+    {
+        final int size = sources[0].size();
+        // the blocks don't cross the borders of the tiles
+        final int tileBlocks = (int) (((long) tileSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        final long blocks = (long) tiles.length * tileBlocks;
+        final int sampledBlocks = (int) Math.min(blocks, Math.max(1, (sampleSize + BLOCK_SIZE - 1) / BLOCK_SIZE));
+
+        final RandomAccessReader<?>[] readers = new RandomAccessReader<?>[sources.length];
+        for (int d = 0; d < sources.length; d++)
+            readers[d] = ((RandomAccessDataSource<?>) sources[d]).randomAccessReader();
+        // every reader keeps a reference to its values until the next read
+        final double[][] values = new double[sources.length][BLOCK_SIZE];
+        final BitSet valid = new BitSet(BLOCK_SIZE), sourceValid = new BitSet(BLOCK_SIZE);
+
+        for (int i = 0; i < sampledBlocks; i++) {
+            final long block = blocks * i / sampledBlocks;
+            final int offset = (int) (block % tileBlocks) * BLOCK_SIZE;
+            final long start = (long) tiles[(int) (block / tileBlocks)] * tileSize + offset;
+            if (start >= size)
+                continue;
+            final int length = (int) Math.min(Math.min(BLOCK_SIZE, tileSize - offset), size - start);
+            final double[][] blockValues = length == BLOCK_SIZE ? values : new double[sources.length][length];
+
+            int read = length;
+            for (int d = 0; d < sources.length; d++) {
+                readers[d].seek((int) start);
+                read = Math.min(read, readers[d].read(blockValues[d], d == 0 ? valid : sourceValid));
+                if (d > 0)
+                    valid.and(sourceValid);
+            }
+
+            for (int j = valid.nextSetBit(0); j >= 0 && j < read; j = valid.nextSetBit(j + 1)) {
+                for (int d = 0; d < sources.length; d++)
+                    keys[d] = readers[d].getKey(j);
+                add();
+            }
+            sampleEntries += read;
+        }
+    }
+
+    /**
+     * Add the current point to the sketch.
+     */
+    private void add()
+    {
+        long hash = 0;
+        for (int d = 0; d < keys.length; d++)
+            hash = HyperLogLog.hash(hash + keys[d]);
+
+        sample.add(hash);
+        sampleValid++;
+    }
+
+    /**
+     * Extrapolate the number of distinct points of the subsample to all entries of the sources.
+     * 
+     * @param entries The number of entries of the sources that can contain valid points.
+     * @return The estimated number of distinct valid points.
+     */
+    private long extrapolate(long entries)
+    {
+        final long distinct = Math.min(sample.estimate(), sampleValid);
+        if (sampleEntries >= entries || distinct == 0)
+            return distinct;
+
+        final double valid = (double) sampleValid * entries / sampleEntries;
+        if (distinct >= sampleValid)
+            return Math.round(valid);
+
+        final double points = getEquallyFrequentPoints(distinct, sampleValid);
+        final long estimate = Math.round(points * (1 - Math.exp(-valid / points)));
+        return Math.max(distinct, Math.min(Math.round(valid), estimate));
+    }
+
+    /**
+     * Return the number of equally frequent points whose random sampling gives the given number of distinct points
+     * (the solution of <code>distinct = points * (1 - exp(-samples / points))</code>).
+     * 
+     * @param distinct The number of distinct points of the samples, less than the number of samples.
+     * @param samples The number of samples.
+     * @return The number of points.
+     */
+    private static double getEquallyFrequentPoints(double distinct, double samples)
+    {
+        // the number of distinct samples grows with the number of points towards the number of samples
+        double low = distinct, high = distinct;
+        while (high * (1 - Math.exp(-samples / high)) < distinct)
+            high *= 2;
+
+        for (int i = 0; i < 64; i++) {
+            final double middle = (low + high) / 2;
+            if (middle * (1 - Math.exp(-samples / middle)) < distinct)
+                low = middle;
+            else
+                high = middle;
+        }
+        return high;
+    }
+}
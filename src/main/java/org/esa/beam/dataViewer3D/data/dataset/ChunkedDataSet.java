@@ -0,0 +1,383 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A data set whose points are indexed by <code>long</code>, so it can contain more than
+ * <code>Integer.MAX_VALUE</code> points. It can be built from a stack of source sets (e.g. from several products),
+ * which together may have more entries than a single source can.
+ * <p>
+ * Like the stream data sets, it doesn't duplicate the data of the sources; it only stores the counts of the distinct
+ * points and the locations of their first occurrences in segmented primitive arrays.
+ * <p>
+ * Use {@link #longSize()} to get the size of the set, {@link #size()} saturates at <code>Integer.MAX_VALUE</code>.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class ChunkedDataSet extends AbstractDataSet
+{
+    /** The number of bits of the index of an entry in its source set in the locations of the points. */
+    private static final int          INDEX_BITS = 31;
+
+    /** The table of the distinct points. */
+    protected final ChunkedPointTable table;
+
+    /** The stack of the source sets; the sources of the coordinates of the <code>i</code>-th set are at index i. */
+    private final DataSource<?>[][]   sources;
+
+    /** The minimum and maximum values of the coordinates. */
+    private final Number[]            min, max;
+
+    /**
+     * Create the data set of the points of the given table.
+     * 
+     * @param table The filled table. It mustn't be changed afterwards.
+     * @param sources The stack of the source sets the table has been filled from.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     * 
+     * @throws IllegalArgumentException If the table is empty.
+     */
+    protected ChunkedDataSet(ChunkedPointTable table, List<DataSource<?>[]> sources, Number[] min, Number[] max)
+            throws IllegalArgumentException
+    {
+        if (table.size() == 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
+
+        this.table = table;
+        this.sources = sources.toArray(new DataSource<?>[sources.size()][]);
+        this.min = min.clone();
+        this.max = max.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the set contains more than <code>Integer.MAX_VALUE</code> points, <code>Integer.MAX_VALUE</code> is returned.
+     * 
+     * @see #longSize()
+     */
+    @Override
+    public int size()
+    {
+        return (int) Math.min(table.size(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long longSize()
+    {
+        return table.size();
+    }
+
+    @Override
+    public double getMin(int dimension)
+    {
+        return getMinNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public double getMax(int dimension)
+    {
+        return getMaxNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        if (dimension < 0 || dimension >= sources[0].length)
+            throw new IndexOutOfBoundsException();
+        return sources[0][dimension].getName();
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator()
+    {
+        return new Iterator<DataPoint>() {
+            private final Iterator<? extends DataPoint> pointIt = pointIterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                return pointIt.hasNext();
+            }
+
+            @Override
+            public DataPoint next()
+            {
+                return pointIt.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Integer> histogramIterator()
+    {
+        return new Iterator<Integer>() {
+            private final IntIterator it = table.countIterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                return it.hasNext();
+            }
+
+            @Override
+            public Integer next()
+            {
+                return it.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        return table.countIterator();
+    }
+
+    /**
+     * Return the minimum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The minimum value.
+     */
+    protected Number getMinNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= min.length)
+            throw new IndexOutOfBoundsException();
+        return min[dimension];
+    }
+
+    /**
+     * Return the maximum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The maximum value.
+     */
+    protected Number getMaxNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= max.length)
+            throw new IndexOutOfBoundsException();
+        return max[dimension];
+    }
+
+    /**
+     * Return an iterator over the values of one dimension.
+     * 
+     * @param dimension The dimension.
+     * @return The iterator.
+     */
+    protected <N extends Number> Iterator<N> axisIterator(int dimension)
+    {
+        return new PointIterator<N>(dimension) {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected N get(NumericType<?>[] values)
+            {
+                return (N) values[0].getNumber();
+            }
+        };
+    }
+
+    /**
+     * Fill the given table with the points valid in all the sources of the sets of the given stack.
+     * 
+     * @param table The table to fill.
+     * @param min The array to write the minimum values of the coordinates to.
+     * @param max The array to write the maximum values of the coordinates to.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * @param sources The stack of the source sets; all sets have to consist of the same number of sources.
+     * 
+     * @throws IllegalArgumentException If the sources of a set have different sizes.
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    protected static void fillTable(ChunkedPointTable table, Number[] min, Number[] max,
+            ProgressMonitor progressMonitor, List<DataSource<?>[]> sources) throws IllegalArgumentException,
+            CancellationException
+    {
+        long entries = 0;
+        for (DataSource<?>[] set : sources) {
+            for (int i = 1; i < set.length; i++) {
+                if (set[i].size() != set[0].size())
+                    throw new IllegalArgumentException(ChunkedDataSet.class
+                            + ": cannot create a data set from sources of different sizes.");
+            }
+            entries += set[0].size();
+        }
+
+        // the progress monitor only accepts int amounts of work
+        final long entriesPerWork = entries / Integer.MAX_VALUE + 1;
+        if (progressMonitor != null)
+            progressMonitor.beginTask("Reading band data", (int) (entries / entriesPerWork)); /* I18N */
+
+        final int dimensions = table.getDimensions();
+        final int[] indices = new int[BULK_READ_SIZE];
+        final double[][] values = new double[dimensions][BULK_READ_SIZE];
+        final long[] keys = new long[dimensions];
+        long processedEntries = 0, reportedWork = 0;
+
+        for (int s = 0; s < sources.size(); s++) {
+            final DataSource<?>[] set = sources.get(s);
+
+            // tiles not containing any data in some of the sources are skipped without reading them
+            final int[] tiles = getDataTiles(set);
+            final PointReader reader = createPointReader(tiles, set);
+            final long skipped = getSkippedEntries(tiles, set[0]);
+
+            while (reader.hasNext()) {
+                final int read = reader.read(indices, values);
+
+                for (int j = 0; j < read; j++) {
+                    for (int d = 0; d < dimensions; d++) {
+                        keys[d] = reader.getKey(d, j);
+                        if (min[d] == null || values[d][j] < min[d].doubleValue())
+                            min[d] = reader.getNumber(d, j);
+                        if (max[d] == null || values[d][j] > max[d].doubleValue())
+                            max[d] = reader.getNumber(d, j);
+                    }
+                    table.add(keys, getLocation(s, indices[j]));
+                }
+
+                if (progressMonitor != null) {
+                    final long work = (processedEntries + skipped + reader.getProcessedEntries()) / entriesPerWork;
+                    progressMonitor.worked((int) (work - reportedWork));
+                    reportedWork = work;
+                    if (progressMonitor.isCanceled()) {
+                        progressMonitor.done();
+                        throw new CancellationException();
+                    }
+                }
+            }
+
+            processedEntries += set[0].size();
+        }
+
+        table.releaseKeys();
+
+        if (progressMonitor != null)
+            progressMonitor.done();
+    }
+
+    /**
+     * Return the location of the given entry of the given source set.
+     * 
+     * @param set Index of the source set in the stack.
+     * @param index Index of the entry in the set.
+     * @return The location.
+     */
+    private static long getLocation(int set, int index)
+    {
+        return ((long) set << INDEX_BITS) | index;
+    }
+
+    /**
+     * Create a reader of the given source.
+     * 
+     * @param source The source.
+     * @return The reader.
+     */
+    private static <N extends Number> StreamDataSet.AxisReader<N> createAxisReader(DataSource<N> source)
+    {
+        return new StreamDataSet.AxisReader<N>(source);
+    }
+
+    /**
+     * An iterator over the points of the set, reading the values of some of their coordinates from the sources.
+     * 
+     * @author Martin Pecka
+     * @param <T> Type of the returned values.
+     */
+    protected abstract class PointIterator<T> implements Iterator<T>
+    {
+        /** The dimensions to read. */
+        private final int[]                         dimensions;
+        /** The values of the read dimensions of the current point. */
+        private final NumericType<?>[]              values;
+        /** The readers of the sources of the current source set. */
+        private final StreamDataSet.AxisReader<?>[] readers;
+        /** Position of the next point. */
+        private long                                position = 0;
+        /** Index of the source set the readers read. */
+        private int                                 set      = -1;
+
+        /**
+         * Create the iterator.
+         * 
+         * @param dimensions The dimensions to read.
+         */
+        protected PointIterator(int... dimensions)
+        {
+            this.dimensions = dimensions;
+            values = new NumericType<?>[dimensions.length];
+            readers = new StreamDataSet.AxisReader<?>[dimensions.length];
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return position < table.size();
+        }
+
+        @Override
+        public T next()
+        {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            final long location = table.getLocation(position++);
+            final int pointSet = (int) (location >>> INDEX_BITS);
+            final int index = (int) (location & ((1L << INDEX_BITS) - 1));
+
+            // the locations are ascending, so every source set is read by a single pass of new readers
+            if (pointSet != set) {
+                set = pointSet;
+                for (int i = 0; i < dimensions.length; i++)
+                    readers[i] = createAxisReader(sources[set][dimensions[i]]);
+            }
+
+            for (int i = 0; i < dimensions.length; i++)
+                values[i] = readers[i].get(index);
+            return get(values);
+        }
+
+        /**
+         * Return the value for the point with the given values of the read dimensions.
+         * 
+         * @param values The values of the read dimensions, in the order they were given to the constructor.
+         * @return The value.
+         */
+        protected abstract T get(NumericType<?>[] values);
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A 3D data set which can contain more than <code>Integer.MAX_VALUE</code> points.
+ * 
+ * @author Martin Pecka
+ * @param <X> The type of the values in x coordinate.
+ * @param <Y> The type of the values in y coordinate.
+ * @param <Z> The type of the values in z coordinate.
+ * 
+ * @see ChunkedDataSet
+ */
+public class ChunkedDataSet3D<X extends Number, Y extends Number, Z extends Number> extends ChunkedDataSet implements
+        DataSet3D<X, Y, Z>
+{
+
+    /**
+     * Create the data set of the points of the given table.
+     * 
+     * @param table The filled table. It mustn't be changed afterwards.
+     * @param sources The stack of the source sets the table has been filled from.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     * 
+     * @throws IllegalArgumentException If the table is empty.
+     */
+    protected ChunkedDataSet3D(ChunkedPointTable table, List<DataSource<?>[]> sources, Number[] min, Number[] max)
+            throws IllegalArgumentException
+    {
+        super(table, sources, min, max);
+    }
+
+    @Override
+    public Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> pointIterator()
+    {
+        return new PointIterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>>(0, 1, 2) {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>> get(NumericType<?>[] values)
+            {
+                return new SimpleDataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>(
+                        (NumericType<X>) values[0], (NumericType<Y>) values[1], (NumericType<Z>) values[2]);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<X> xIterator()
+    {
+        return axisIterator(0);
+    }
+
+    @Override
+    public Iterator<Y> yIterator()
+    {
+        return axisIterator(1);
+    }
+
+    @Override
+    public Iterator<Z> zIterator()
+    {
+        return axisIterator(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMinX()
+    {
+        return (X) getMinNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMinY()
+    {
+        return (Y) getMinNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMinZ()
+    {
+        return (Z) getMinNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMaxX()
+    {
+        return (X) getMaxNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMaxY()
+    {
+        return (Y) getMaxNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMaxZ()
+    {
+        return (Z) getMaxNumber(2);
+    }
+
+    /**
+     * Return a builder able to build this class.
+     * 
+     * @return A builder able to build this class.
+     */
+    protected static <X extends Number, Y extends Number, Z extends Number> Builder3D<X, Y, Z> getBuilder()
+    {
+        return new Builder3D<X, Y, Z>();
+    }
+
+    /**
+     * Create a 3D data set from the given stack of source sets.
+     * 
+     * @param sourceSets The stack of source sets.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The data set created from the given sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> ChunkedDataSet3D<X, Y, Z> createFromDataSources(
+            List<? extends DataSourceSet3D<X, Y, Z>> sourceSets, ProgressMonitor progressMonitor)
+    {
+        final Builder3D<X, Y, Z> builder = ChunkedDataSet3D.<X, Y, Z> getBuilder();
+        for (DataSourceSet3D<X, Y, Z> sourceSet : sourceSets)
+            builder.addDataSources(sourceSet.getXSource(), sourceSet.getYSource(), sourceSet.getZSource());
+        builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
+    /**
+     * Create a 3D data set from the given sources.
+     * 
+     * @param x Source for x values.
+     * @param y Source for y values.
+     * @param z Source for z values.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The data set created from the given sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> ChunkedDataSet3D<X, Y, Z> createFromDataSources(
+            DataSource<X> x, DataSource<Y> y, DataSource<Z> z, ProgressMonitor progressMonitor)
+    {
+        final Builder3D<X, Y, Z> builder = ChunkedDataSet3D.<X, Y, Z> getBuilder().addDataSources(x, y, z);
+        builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
+    /**
+     * The builder for building a chunked 3D data set from a stack of source sets.
+     * 
+     * @author Martin Pecka
+     * @param <X> The type of the values in x coordinate.
+     * @param <Y> The type of the values in y coordinate.
+     * @param <Z> The type of the values in z coordinate.
+     */
+    protected static class Builder3D<X extends Number, Y extends Number, Z extends Number>
+    {
+        /** The stack of the source sets. */
+        private final List<DataSource<?>[]> sources = new ArrayList<DataSource<?>[]>();
+        /** The progress monitor. */
+        private ProgressMonitor             progressMonitor;
+
+        /**
+         * When the builder is configured, call this method to get the resulting set.
+         * 
+         * @return The resulting set.
+         * 
+         * @throws IllegalStateException If no sources have been added.
+         * @throws IllegalArgumentException If the sources of a set have different sizes, or if no entry is valid in
+         *             all sources of any set.
+         */
+        public ChunkedDataSet3D<X, Y, Z> getResult() throws IllegalStateException, IllegalArgumentException
+        {
+            if (sources.isEmpty())
+                throw new IllegalStateException(getClass() + ": No sources have been added.");
+
+            final ChunkedPointTable table = new ChunkedPointTable(3);
+            final Number[] min = new Number[3], max = new Number[3];
+            fillTable(table, min, max, progressMonitor, sources);
+            return new ChunkedDataSet3D<X, Y, Z>(table, sources, min, max);
+        }
+
+        /**
+         * Add a source set on the top of the stack.
+         * 
+         * @param x The source for x coordinates.
+         * @param y The source for y coordinates.
+         * @param z The source for z coordinates.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D<X, Y, Z> addDataSources(DataSource<X> x, DataSource<Y> y, DataSource<Z> z)
+        {
+            if (x == null || y == null || z == null)
+                throw new NullPointerException();
+            sources.add(new DataSource<?>[] { x, y, z });
+            return this;
+        }
+
+        /**
+         * @param progressMonitor The progress monitor.
+         */
+        public void setProgressMonitor(ProgressMonitor progressMonitor)
+        {
+            this.progressMonitor = progressMonitor;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A 4D data set which can contain more than <code>Integer.MAX_VALUE</code> points.
+ * 
+ * @author Martin Pecka
+ * @param <X> The type of the values in x coordinate.
+ * @param <Y> The type of the values in y coordinate.
+ * @param <Z> The type of the values in z coordinate.
+ * @param <W> The type of the values in w coordinate.
+ * 
+ * @see ChunkedDataSet
+ */
+public class ChunkedDataSet4D<X extends Number, Y extends Number, Z extends Number, W extends Number> extends
+        ChunkedDataSet implements DataSet4D<X, Y, Z, W>
+{
+
+    /**
+     * Create the data set of the points of the given table.
+     * 
+     * @param table The filled table. It mustn't be changed afterwards.
+     * @param sources The stack of the source sets the table has been filled from.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     * 
+     * @throws IllegalArgumentException If the table is empty.
+     */
+    protected ChunkedDataSet4D(ChunkedPointTable table, List<DataSource<?>[]> sources, Number[] min, Number[] max)
+            throws IllegalArgumentException
+    {
+        super(table, sources, min, max);
+    }
+
+    @Override
+    public Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> pointIterator()
+    {
+        return new PointIterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>>(0, 1, 2,
+                3) {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> get(
+                    NumericType<?>[] values)
+            {
+                return new SimpleDataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>(
+                        (NumericType<X>) values[0], (NumericType<Y>) values[1], (NumericType<Z>) values[2],
+                        (NumericType<W>) values[3]);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<X> xIterator()
+    {
+        return axisIterator(0);
+    }
+
+    @Override
+    public Iterator<Y> yIterator()
+    {
+        return axisIterator(1);
+    }
+
+    @Override
+    public Iterator<Z> zIterator()
+    {
+        return axisIterator(2);
+    }
+
+    @Override
+    public Iterator<W> wIterator()
+    {
+        return axisIterator(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMinX()
+    {
+        return (X) getMinNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMinY()
+    {
+        return (Y) getMinNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMinZ()
+    {
+        return (Z) getMinNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public W getMinW()
+    {
+        return (W) getMinNumber(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMaxX()
+    {
+        return (X) getMaxNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMaxY()
+    {
+        return (Y) getMaxNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMaxZ()
+    {
+        return (Z) getMaxNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public W getMaxW()
+    {
+        return (W) getMaxNumber(3);
+    }
+
+    /**
+     * Return a builder able to build this class.
+     * 
+     * @return A builder able to build this class.
+     */
+    protected static <X extends Number, Y extends Number, Z extends Number, W extends Number> Builder4D<X, Y, Z, W> getBuilder()
+    {
+        return new Builder4D<X, Y, Z, W>();
+    }
+
+    /**
+     * Create a 4D data set from the given stack of source sets.
+     * 
+     * @param sourceSets The stack of source sets.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The data set created from the given sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> ChunkedDataSet4D<X, Y, Z, W> createFromDataSources(
+            List<? extends DataSourceSet4D<X, Y, Z, W>> sourceSets, ProgressMonitor progressMonitor)
+    {
+        final Builder4D<X, Y, Z, W> builder = ChunkedDataSet4D.<X, Y, Z, W> getBuilder();
+        for (DataSourceSet4D<X, Y, Z, W> sourceSet : sourceSets)
+            builder.addDataSources(sourceSet.getXSource(), sourceSet.getYSource(), sourceSet.getZSource(),
+                    sourceSet.getWSource());
+        builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
+    /**
+     * Create a 4D data set from the given sources.
+     * 
+     * @param x Source for x values.
+     * @param y Source for y values.
+     * @param z Source for z values.
+     * @param w Source for w values.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The data set created from the given sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> ChunkedDataSet4D<X, Y, Z, W> createFromDataSources(
+            DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w, ProgressMonitor progressMonitor)
+    {
+        final Builder4D<X, Y, Z, W> builder = ChunkedDataSet4D.<X, Y, Z, W> getBuilder().addDataSources(x, y, z, w);
+        builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
+    /**
+     * The builder for building a chunked 4D data set from a stack of source sets.
+     * 
+     * @author Martin Pecka
+     * @param <X> The type of the values in x coordinate.
+     * @param <Y> The type of the values in y coordinate.
+     * @param <Z> The type of the values in z coordinate.
+     * @param <W> The type of the values in w coordinate.
+     */
+    protected static class Builder4D<X extends Number, Y extends Number, Z extends Number, W extends Number>
+    {
+        /** The stack of the source sets. */
+        private final List<DataSource<?>[]> sources = new ArrayList<DataSource<?>[]>();
+        /** The progress monitor. */
+        private ProgressMonitor             progressMonitor;
+
+        /**
+         * When the builder is configured, call this method to get the resulting set.
+         * 
+         * @return The resulting set.
+         * 
+         * @throws IllegalStateException If no sources have been added.
+         * @throws IllegalArgumentException If the sources of a set have different sizes, or if no entry is valid in
+         *             all sources of any set.
+         */
+        public ChunkedDataSet4D<X, Y, Z, W> getResult() throws IllegalStateException, IllegalArgumentException
+        {
+            if (sources.isEmpty())
+                throw new IllegalStateException(getClass() + ": No sources have been added.");
+
+            final ChunkedPointTable table = new ChunkedPointTable(4);
+            final Number[] min = new Number[4], max = new Number[4];
+            fillTable(table, min, max, progressMonitor, sources);
+            return new ChunkedDataSet4D<X, Y, Z, W>(table, sources, min, max);
+        }
+
+        /**
+         * Add a source set on the top of the stack.
+         * 
+         * @param x The source for x coordinates.
+         * @param y The source for y coordinates.
+         * @param z The source for z coordinates.
+         * @param w The source for w coordinates.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D<X, Y, Z, W> addDataSources(DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w)
+        {
+            if (x == null || y == null || z == null || w == null)
+                throw new NullPointerException();
+            sources.add(new DataSource<?>[] { x, y, z, w });
+            return this;
+        }
+
+        /**
+         * @param progressMonitor The progress monitor.
+         */
+        public void setProgressMonitor(ProgressMonitor progressMonitor)
+        {
+            this.progressMonitor = progressMonitor;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import org.esa.beam.dataViewer3D.utils.BigIntList;
+import org.esa.beam.dataViewer3D.utils.BigLongList;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+/**
+ * An insertion-ordered table counting points identified exactly by the keys of their coordinates (see
+ * {@link org.esa.beam.dataViewer3D.data.type.NumericType#getKey()}), indexed by <code>long</code>.
+ * <p>
+ * Unlike {@link PointKeyTable}, all the arrays of the table are split into segments of a fixed size, so the table can
+ * hold more than <code>Integer.MAX_VALUE</code> points. Every point also stores a <code>long</code> location of its
+ * first occurrence, which the data sets use to read the point back from its sources.
+ * <p>
+ * The keys are only needed while the table is filled, so they can be released afterwards by {@link #releaseKeys()}.
+ * 
+ * @author Martin Pecka
+ */
+class ChunkedPointTable
+{
+    /** The maximum ratio of the number of points to the length of the table. */
+    private static final float LOAD_FACTOR = 0.5f;
+
+    /** The number of coordinates of the points. */
+    private final int          dimensions;
+
+    /** The number of bits of the index within a segment. */
+    private final int          segmentBits;
+
+    /** The keys of the coordinates of the points in insertion order; <code>null</code> if they have been released. */
+    private BigLongList[]      keys;
+
+    /** The locations of the first occurrences of the points in insertion order. */
+    private final BigLongList  locations;
+
+    /** The counts of the points in insertion order. */
+    private final BigIntList   counts;
+
+    /** The segments of the table of positions of the points; the positions are increased by 1, 0 is an empty slot. */
+    private long[][]           table;
+
+    /** The length of the table (a power of two). */
+    private long               tableLength;
+
+    /** The number of points. */
+    private long               size        = 0;
+
+    /**
+     * Create an empty table with segments of the default size.
+     * 
+     * @param dimensions The number of coordinates of the points.
+     * 
+     * @throws IllegalArgumentException If the number of dimensions isn't positive.
+     */
+    ChunkedPointTable(int dimensions) throws IllegalArgumentException
+    {
+        this(dimensions, BigLongList.DEFAULT_SEGMENT_BITS);
+    }
+
+    /**
+     * Create an empty table with segments of <code>2<sup>segmentBits</sup></code> entries.
+     * 
+     * @param dimensions The number of coordinates of the points.
+     * @param segmentBits The number of bits of the index within a segment.
+     * 
+     * @throws IllegalArgumentException If the number of dimensions isn't positive or the segment size is unsupported.
+     */
+    ChunkedPointTable(int dimensions, int segmentBits) throws IllegalArgumentException
+    {
+        if (dimensions <= 0)
+            throw new IllegalArgumentException(getClass() + ": The number of dimensions has to be positive.");
+
+        this.dimensions = dimensions;
+        this.segmentBits = segmentBits;
+        keys = new BigLongList[dimensions];
+        for (int d = 0; d < dimensions; d++)
+            keys[d] = new BigLongList(segmentBits);
+        locations = new BigLongList(segmentBits);
+        counts = new BigIntList(segmentBits);
+        allocateTable(2);
+    }
+
+    /**
+     * Return the number of points.
+     * 
+     * @return The number of points.
+     */
+    long size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the number of coordinates of the points.
+     * 
+     * @return The number of coordinates.
+     */
+    int getDimensions()
+    {
+        return dimensions;
+    }
+
+    /**
+     * Count an occurrence of the point with the given keys. Points not contained in the table are appended with the
+     * count 1 and the given location. The counts saturate at <code>Integer.MAX_VALUE</code>.
+     * 
+     * @param pointKeys The keys of the coordinates of the point.
+     * @param location The location of the occurrence.
+     * @return Whether the point has just been inserted.
+     * 
+     * @throws IllegalStateException If the keys have been released.
+     */
+    boolean add(long[] pointKeys, long location) throws IllegalStateException
+    {
+        if (keys == null)
+            throw new IllegalStateException(getClass() + ": Cannot add points after the keys have been released.");
+
+        final long mask = tableLength - 1;
+        long slot = hash(pointKeys) & mask;
+        long position;
+        while ((position = getSlot(slot)) != 0) {
+            if (equalsKeys(position - 1, pointKeys)) {
+                final int count = counts.get(position - 1);
+                if (count < Integer.MAX_VALUE)
+                    counts.set(position - 1, count + 1);
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        for (int d = 0; d < dimensions; d++)
+            keys[d].add(pointKeys[d]);
+        locations.add(location);
+        counts.add(1);
+        setSlot(slot, ++size);
+
+        if (size > tableLength * LOAD_FACTOR)
+            rehash(tableLength * 2);
+
+        return true;
+    }
+
+    /**
+     * Return the location of the first occurrence of the <code>i</code>-th inserted point.
+     * 
+     * @param i Position of the point in the insertion order.
+     * @return The location.
+     * 
+     * @throws IndexOutOfBoundsException If there is no such point.
+     */
+    long getLocation(long i) throws IndexOutOfBoundsException
+    {
+        return locations.get(i);
+    }
+
+    /**
+     * Return the count of the <code>i</code>-th inserted point.
+     * 
+     * @param i Position of the point in the insertion order.
+     * @return The count.
+     * 
+     * @throws IndexOutOfBoundsException If there is no such point.
+     */
+    int getCount(long i) throws IndexOutOfBoundsException
+    {
+        return counts.get(i);
+    }
+
+    /**
+     * Return an iterator over the counts of the points in insertion order.
+     * 
+     * @return The iterator.
+     */
+    IntIterator countIterator()
+    {
+        return counts.iterator();
+    }
+
+    /**
+     * Release the keys and the hash table, which are only needed to add points, and the unused capacity. No points
+     * can be added afterwards.
+     */
+    void releaseKeys()
+    {
+        keys = null;
+        table = null;
+        locations.trimToSize();
+        counts.trimToSize();
+    }
+
+    /**
+     * Return <code>true</code> if the keys of the point at the given position equal to the given keys.
+     * 
+     * @param position Position of the point.
+     * @param pointKeys The keys to compare.
+     * @return Whether the keys are equal.
+     */
+    private boolean equalsKeys(long position, long[] pointKeys)
+    {
+        for (int d = 0; d < dimensions; d++) {
+            if (keys[d].get(position) != pointKeys[d])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuild the table with the given length.
+     * 
+     * @param length The new length of the table (a power of two).
+     */
+    private void rehash(long length)
+    {
+        allocateTable(length);
+        final long mask = length - 1;
+        final long[] pointKeys = new long[dimensions];
+        for (long i = 0; i < size; i++) {
+            for (int d = 0; d < dimensions; d++)
+                pointKeys[d] = keys[d].get(i);
+            long slot = hash(pointKeys) & mask;
+            while (getSlot(slot) != 0)
+                slot = (slot + 1) & mask;
+            setSlot(slot, i + 1);
+        }
+    }
+
+    /**
+     * Allocate an empty table of the given length.
+     * 
+     * @param length The length of the table (a power of two).
+     */
+    private void allocateTable(long length)
+    {
+        final int segmentLength = (int) Math.min(length, 1L << segmentBits);
+        table = new long[(int) (length / segmentLength)][];
+        for (int i = 0; i < table.length; i++)
+            table[i] = new long[segmentLength];
+        tableLength = length;
+    }
+
+    /**
+     * Return the content of the given slot of the table.
+     * 
+     * @param slot The slot.
+     * @return The position of the point increased by 1, or 0 if the slot is empty.
+     */
+    private long getSlot(long slot)
+    {
+        return table[(int) (slot >>> segmentBits)][(int) slot & ((1 << segmentBits) - 1)];
+    }
+
+    /**
+     * Set the content of the given slot of the table.
+     * 
+     * @param slot The slot.
+     * @param value The position of the point increased by 1.
+     */
+    private void setSlot(long slot, long value)
+    {
+        table[(int) (slot >>> segmentBits)][(int) slot & ((1 << segmentBits) - 1)] = value;
+    }
+
+    /**
+     * Return the hash of the given keys.
+     * 
+     * @param pointKeys The keys of the coordinates of a point.
+     * @return The hash.
+     */
+    private long hash(long[] pointKeys)
+    {
+        long hash = 0;
+        for (int d = 0; d < dimensions; d++)
+            hash = (hash + pointKeys[d]) * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ (hash >>> 32)) * 0xd6e8feb86659fd93L;
+        return hash ^ (hash >>> 32);
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A data set storing its points in primitive columns, one per coordinate, plus a column of counts.
+ * <p>
+ * A point occupies 4 or 8 bytes per coordinate (depending on the type of the source) and 4 bytes for its count, and
+ * the values of one coordinate are contiguous in memory. The points and their coordinates are only boxed when they are
+ * read through the iterators.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class ColumnarDataSet extends AbstractDataSet
+{
+    /** The part of the free memory the columns may occupy to be created by default. */
+    private static final double MAX_MEMORY_RATIO = 0.5;
+
+    /** The columns of the coordinates. */
+    protected final ValueColumn[] columns;
+
+    /** The counts of the points. */
+    private final int[]           counts;
+
+    /** The names of the sources of the coordinates. */
+    private final String[]        sourceNames;
+
+    /** The minimum and maximum values of the coordinates. */
+    private final Number[]        min, max;
+
+    /**
+     * Create a data set from the given columns.
+     * 
+     * @param columns The columns of the coordinates; they all have to have the same size.
+     * @param counts The counts of the points.
+     * @param sourceNames The names of the sources of the coordinates.
+     * @param min The minimum values of the coordinates. They may lie outside of the points (e.g. if the points are a
+     *            sample of the sources).
+     * @param max The maximum values of the coordinates. They may lie outside of the points.
+     * 
+     * @throws IllegalArgumentException If the columns or counts have different sizes, or if they are empty.
+     */
+    protected ColumnarDataSet(ValueColumn[] columns, int[] counts, String[] sourceNames, Number[] min, Number[] max)
+            throws IllegalArgumentException
+    {
+        for (ValueColumn column : columns) {
+            if (column.size() != counts.length)
+                throw new IllegalArgumentException(getClass() + ": The columns must have equal sizes.");
+        }
+        if (counts.length == 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
+
+        this.columns = columns;
+        this.counts = counts;
+        this.sourceNames = sourceNames;
+        this.min = min;
+        this.max = max;
+
+        for (ValueColumn column : columns)
+            column.trimToSize();
+    }
+
+    @Override
+    public int size()
+    {
+        return counts.length;
+    }
+
+    @Override
+    public double getMin(int dimension)
+    {
+        return getMinNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public double getMax(int dimension)
+    {
+        return getMaxNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        if (dimension < 0 || dimension >= sourceNames.length)
+            throw new IndexOutOfBoundsException();
+        return sourceNames[dimension];
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator()
+    {
+        return new ColumnIterator<DataPoint>() {
+            @Override
+            protected DataPoint get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Integer> histogramIterator()
+    {
+        return new ColumnIterator<Integer>() {
+            @Override
+            protected Integer get(int i)
+            {
+                return counts[i];
+            }
+        };
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        return new IntIterator() {
+            /** Index of the next count. */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < counts.length;
+            }
+
+            @Override
+            public int next()
+            {
+                if (i >= counts.length)
+                    throw new NoSuchElementException();
+                return counts[i++];
+            }
+        };
+    }
+
+    /**
+     * Return the <code>i</code>-th point.
+     * 
+     * @param i Index of the point.
+     * @return The point.
+     */
+    protected abstract DataPoint getPoint(int i);
+
+    /**
+     * Return the minimum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The minimum value.
+     */
+    protected Number getMinNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= min.length)
+            throw new IndexOutOfBoundsException();
+        return min[dimension];
+    }
+
+    /**
+     * Return the maximum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The maximum value.
+     */
+    protected Number getMaxNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= max.length)
+            throw new IndexOutOfBoundsException();
+        return max[dimension];
+    }
+
+    /**
+     * Return an iterator over the values of one dimension.
+     * 
+     * @param dimension The dimension.
+     * @return The iterator.
+     */
+    protected <N extends Number> Iterator<N> columnIterator(final int dimension)
+    {
+        return new ColumnIterator<N>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected N get(int i)
+            {
+                return (N) columns[dimension].getNumber(i);
+            }
+        };
+    }
+
+    /**
+     * Return <code>true</code> if a columnar copy of the given data set can be created without exhausting the memory.
+     * 
+     * @param dataSet The data set to copy.
+     * @param prototypes Values of the types of the coordinates.
+     * @return Whether the copy fits into the free memory.
+     */
+    protected static boolean fitsInMemory(DataSet dataSet, Number... prototypes)
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        final long freeMemory = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+        return getMemorySize(dataSet.longSize(), prototypes) <= freeMemory * MAX_MEMORY_RATIO;
+    }
+
+    /**
+     * Return the number of bytes the columns and counts of the given number of points occupy.
+     * 
+     * @param points The number of points.
+     * @param prototypes Values of the types of the coordinates.
+     * @return The size of the columns in bytes.
+     */
+    protected static long getMemorySize(long points, Number... prototypes)
+    {
+        long bytesPerPoint = 4;
+        for (Number prototype : prototypes)
+            bytesPerPoint += ValueColumn.getBytesPerValue(prototype);
+        return points * bytesPerPoint;
+    }
+
+    /**
+     * Create a new 3D or 4D columnar data set from the given data sources set.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param sourceSet The set of sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new data set from the given data sources.
+     */
+    public static DataSet createFromDataSources(Integer maxPoints, DataSourceSet sourceSet,
+            ProgressMonitor progressMonitor)
+    {
+        if (sourceSet instanceof DataSourceSet3D<?, ?, ?>)
+            return ColumnarDataSet3D.createFromDataSources(maxPoints, (DataSourceSet3D<?, ?, ?>) sourceSet,
+                    progressMonitor);
+        else
+            return ColumnarDataSet4D.createFromDataSources(maxPoints, (DataSourceSet4D<?, ?, ?, ?>) sourceSet,
+                    progressMonitor);
+    }
+
+    /**
+     * An iterator over the points of the set.
+     * 
+     * @author Martin Pecka
+     * @param <T> Type of the returned values.
+     */
+    protected abstract class ColumnIterator<T> implements Iterator<T>
+    {
+        /** Index of the next point. */
+        private int i = 0;
+
+        @Override
+        public boolean hasNext()
+        {
+            return i < counts.length;
+        }
+
+        @Override
+        public T next()
+        {
+            if (i >= counts.length)
+                throw new NoSuchElementException();
+            return get(i++);
+        }
+
+        /**
+         * Return the value for the <code>i</code>-th point.
+         * 
+         * @param i Index of the point.
+         * @return The value.
+         */
+        protected abstract T get(int i);
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
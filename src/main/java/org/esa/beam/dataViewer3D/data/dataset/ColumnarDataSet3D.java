@@ -0,0 +1,221 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A 3D data set storing its points in primitive columns.
+ * 
+ * @author Martin Pecka
+ * @param <X> The type of the values in x coordinate.
+ * @param <Y> The type of the values in y coordinate.
+ * @param <Z> The type of the values in z coordinate.
+ * 
+ * @see ColumnarDataSet
+ */
+public class ColumnarDataSet3D<X extends Number, Y extends Number, Z extends Number> extends ColumnarDataSet
+        implements DataSet3D<X, Y, Z>
+{
+
+    /**
+     * Create a data set from the given columns.
+     * 
+     * @param columns The columns of the x, y and z coordinates; they all have to have the same size.
+     * @param counts The counts of the points.
+     * @param sourceNames The names of the sources of the coordinates.
+     * @param min The minimum values of the coordinates. They may lie outside of the points.
+     * @param max The maximum values of the coordinates. They may lie outside of the points.
+     * 
+     * @throws IllegalArgumentException If the columns or counts have different sizes, or if they are empty.
+     */
+    protected ColumnarDataSet3D(ValueColumn[] columns, int[] counts, String[] sourceNames, Number[] min, Number[] max)
+            throws IllegalArgumentException
+    {
+        super(columns, counts, sourceNames, min, max);
+    }
+
+    @Override
+    public Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> pointIterator()
+    {
+        return new ColumnIterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>>() {
+            @Override
+            protected DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>> get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>> getPoint(int i)
+    {
+        return new SimpleDataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>(
+                (NumericType<X>) columns[0].getNumericType(i), (NumericType<Y>) columns[1].getNumericType(i),
+                (NumericType<Z>) columns[2].getNumericType(i));
+    }
+
+    @Override
+    public Iterator<X> xIterator()
+    {
+        return columnIterator(0);
+    }
+
+    @Override
+    public Iterator<Y> yIterator()
+    {
+        return columnIterator(1);
+    }
+
+    @Override
+    public Iterator<Z> zIterator()
+    {
+        return columnIterator(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMinX()
+    {
+        return (X) getMinNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMinY()
+    {
+        return (Y) getMinNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMinZ()
+    {
+        return (Z) getMinNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMaxX()
+    {
+        return (X) getMaxNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMaxY()
+    {
+        return (Y) getMaxNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMaxZ()
+    {
+        return (Z) getMaxNumber(2);
+    }
+
+    /**
+     * Create a columnar copy of the given data set. The copy has the minimum and maximum values of the data set, which
+     * may lie outside of its points.
+     * 
+     * @param dataSet The data set to copy.
+     * @return The copy.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> ColumnarDataSet3D<X, Y, Z> copyOf(
+            DataSet3D<X, Y, Z> dataSet)
+    {
+        return copyOf(dataSet, dataSet.pointIterator());
+    }
+
+    /**
+     * Create a columnar copy of the given data set reading its points from the given iterator.
+     * 
+     * @param dataSet The data set to copy.
+     * @param it The iterator over the points of the data set.
+     * @return The copy.
+     */
+    protected static <X extends Number, Y extends Number, Z extends Number> ColumnarDataSet3D<X, Y, Z> copyOf(
+            DataSet3D<X, Y, Z> dataSet, Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> it)
+    {
+        final ValueColumn[] columns = new ValueColumn[3];
+        final IntIterator histogramIt = dataSet.histogramIntIterator();
+        // the columns are sized by the points actually iterated, not by the size of the data set
+        int[] counts = new int[dataSet.size()];
+        int size = 0;
+
+        while (it.hasNext()) {
+            final DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>> point = it.next();
+            if (columns[0] == null) {
+                columns[0] = ValueColumn.create(point.getX(), counts.length);
+                columns[1] = ValueColumn.create(point.getY(), counts.length);
+                columns[2] = ValueColumn.create(point.getZ(), counts.length);
+            }
+            columns[0].add(point.getX().getNumber());
+            columns[1].add(point.getY().getNumber());
+            columns[2].add(point.getZ().getNumber());
+            if (size == counts.length)
+                counts = Arrays.copyOf(counts, Math.max(16, 2 * size));
+            counts[size++] = histogramIt.next();
+        }
+        if (size < counts.length)
+            counts = Arrays.copyOf(counts, size);
+
+        final ColumnarDataSet3D<X, Y, Z> copy = new ColumnarDataSet3D<X, Y, Z>(columns, counts, new String[] {
+                dataSet.getSourceName(0), dataSet.getSourceName(1), dataSet.getSourceName(2) }, new Number[] {
+                dataSet.getMinX(), dataSet.getMinY(), dataSet.getMinZ() }, new Number[] { dataSet.getMaxX(),
+                dataSet.getMaxY(), dataSet.getMaxZ() });
+        copy.sampled = dataSet.isSampled();
+        return copy;
+    }
+
+    /**
+     * Create a new 3D columnar data set from the given data sources set.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param sourceSet The set of sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new 3D data set from the given data sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> ColumnarDataSet3D<X, Y, Z> createFromDataSources(
+            Integer maxPoints, DataSourceSet3D<X, Y, Z> sourceSet, ProgressMonitor progressMonitor)
+    {
+        return createFromDataSources(maxPoints, sourceSet.getXSource(), sourceSet.getYSource(), sourceSet.getZSource(),
+                progressMonitor);
+    }
+
+    /**
+     * Create a new 3D columnar data set from the given data sources.
+     * <p>
+     * The points are selected and counted the same way as in {@link StreamDataSet3D}, and then copied into the
+     * columns.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param x The data source for the x coordinate.
+     * @param y The data source for the y coordinate.
+     * @param z The data source for the z coordinate.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new 3D data set from the given data sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> ColumnarDataSet3D<X, Y, Z> createFromDataSources(
+            Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z, ProgressMonitor progressMonitor)
+    {
+        return copyOf(StreamDataSet3D.createFromDataSources(maxPoints, x, y, z, progressMonitor));
+    }
+}
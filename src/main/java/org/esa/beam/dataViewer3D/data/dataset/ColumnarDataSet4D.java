@@ -0,0 +1,248 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A 4D data set storing its points in primitive columns.
+ * 
+ * @author Martin Pecka
+ * @param <X> The type of the values in x coordinate.
+ * @param <Y> The type of the values in y coordinate.
+ * @param <Z> The type of the values in z coordinate.
+ * @param <W> The type of the values in w coordinate.
+ * 
+ * @see ColumnarDataSet
+ */
+public class ColumnarDataSet4D<X extends Number, Y extends Number, Z extends Number, W extends Number> extends
+        ColumnarDataSet implements DataSet4D<X, Y, Z, W>
+{
+
+    /**
+     * Create a data set from the given columns.
+     * 
+     * @param columns The columns of the x, y, z and w coordinates; they all have to have the same size.
+     * @param counts The counts of the points.
+     * @param sourceNames The names of the sources of the coordinates.
+     * @param min The minimum values of the coordinates. They may lie outside of the points.
+     * @param max The maximum values of the coordinates. They may lie outside of the points.
+     * 
+     * @throws IllegalArgumentException If the columns or counts have different sizes, or if they are empty.
+     */
+    protected ColumnarDataSet4D(ValueColumn[] columns, int[] counts, String[] sourceNames, Number[] min, Number[] max)
+            throws IllegalArgumentException
+    {
+        super(columns, counts, sourceNames, min, max);
+    }
+
+    @Override
+    public Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> pointIterator()
+    {
+        return new ColumnIterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>>() {
+            @Override
+            protected DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> getPoint(int i)
+    {
+        return new SimpleDataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>(
+                (NumericType<X>) columns[0].getNumericType(i), (NumericType<Y>) columns[1].getNumericType(i),
+                (NumericType<Z>) columns[2].getNumericType(i), (NumericType<W>) columns[3].getNumericType(i));
+    }
+
+    @Override
+    public Iterator<X> xIterator()
+    {
+        return columnIterator(0);
+    }
+
+    @Override
+    public Iterator<Y> yIterator()
+    {
+        return columnIterator(1);
+    }
+
+    @Override
+    public Iterator<Z> zIterator()
+    {
+        return columnIterator(2);
+    }
+
+    @Override
+    public Iterator<W> wIterator()
+    {
+        return columnIterator(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMinX()
+    {
+        return (X) getMinNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMinY()
+    {
+        return (Y) getMinNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMinZ()
+    {
+        return (Z) getMinNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public W getMinW()
+    {
+        return (W) getMinNumber(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMaxX()
+    {
+        return (X) getMaxNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMaxY()
+    {
+        return (Y) getMaxNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMaxZ()
+    {
+        return (Z) getMaxNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public W getMaxW()
+    {
+        return (W) getMaxNumber(3);
+    }
+
+    /**
+     * Create a columnar copy of the given data set. The copy has the minimum and maximum values of the data set, which
+     * may lie outside of its points.
+     * 
+     * @param dataSet The data set to copy.
+     * @return The copy.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> ColumnarDataSet4D<X, Y, Z, W> copyOf(
+            DataSet4D<X, Y, Z, W> dataSet)
+    {
+        return copyOf(dataSet, dataSet.pointIterator());
+    }
+
+    /**
+     * Create a columnar copy of the given data set reading its points from the given iterator.
+     * 
+     * @param dataSet The data set to copy.
+     * @param it The iterator over the points of the data set.
+     * @return The copy.
+     */
+    protected static <X extends Number, Y extends Number, Z extends Number, W extends Number> ColumnarDataSet4D<X, Y, Z, W> copyOf(
+            DataSet4D<X, Y, Z, W> dataSet,
+            Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> it)
+    {
+        final ValueColumn[] columns = new ValueColumn[4];
+        final IntIterator histogramIt = dataSet.histogramIntIterator();
+        // the columns are sized by the points actually iterated, not by the size of the data set
+        int[] counts = new int[dataSet.size()];
+        int size = 0;
+
+        while (it.hasNext()) {
+            final DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> point = it.next();
+            if (columns[0] == null) {
+                columns[0] = ValueColumn.create(point.getX(), counts.length);
+                columns[1] = ValueColumn.create(point.getY(), counts.length);
+                columns[2] = ValueColumn.create(point.getZ(), counts.length);
+                columns[3] = ValueColumn.create(point.getW(), counts.length);
+            }
+            columns[0].add(point.getX().getNumber());
+            columns[1].add(point.getY().getNumber());
+            columns[2].add(point.getZ().getNumber());
+            columns[3].add(point.getW().getNumber());
+            if (size == counts.length)
+                counts = Arrays.copyOf(counts, Math.max(16, 2 * size));
+            counts[size++] = histogramIt.next();
+        }
+        if (size < counts.length)
+            counts = Arrays.copyOf(counts, size);
+
+        final ColumnarDataSet4D<X, Y, Z, W> copy = new ColumnarDataSet4D<X, Y, Z, W>(columns, counts,
+                new String[] { dataSet.getSourceName(0), dataSet.getSourceName(1), dataSet.getSourceName(2),
+                        dataSet.getSourceName(3) }, new Number[] { dataSet.getMinX(), dataSet.getMinY(),
+                        dataSet.getMinZ(), dataSet.getMinW() }, new Number[] { dataSet.getMaxX(), dataSet.getMaxY(),
+                        dataSet.getMaxZ(), dataSet.getMaxW() });
+        copy.sampled = dataSet.isSampled();
+        return copy;
+    }
+
+    /**
+     * Create a new 4D columnar data set from the given data sources set.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param sourceSet The set of sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new 4D data set from the given data sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> ColumnarDataSet4D<X, Y, Z, W> createFromDataSources(
+            Integer maxPoints, DataSourceSet4D<X, Y, Z, W> sourceSet, ProgressMonitor progressMonitor)
+    {
+        return createFromDataSources(maxPoints, sourceSet.getXSource(), sourceSet.getYSource(), sourceSet.getZSource(),
+                sourceSet.getWSource(), progressMonitor);
+    }
+
+    /**
+     * Create a new 4D columnar data set from the given data sources.
+     * <p>
+     * The points are selected and counted the same way as in {@link StreamDataSet4D}, and then copied into the
+     * columns.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param x The data source for the x coordinate.
+     * @param y The data source for the y coordinate.
+     * @param z The data source for the z coordinate.
+     * @param w The data source for the w coordinate.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new 4D data set from the given data sources.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> ColumnarDataSet4D<X, Y, Z, W> createFromDataSources(
+            Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w,
+            ProgressMonitor progressMonitor)
+    {
+        return copyOf(StreamDataSet4D.createFromDataSources(maxPoints, x, y, z, w, progressMonitor));
+    }
+}
@@ -6,6 +6,7 @@ package org.esa.beam.dataViewer3D.data.dataset;
 import java.util.Iterator;
 
 import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
 
 /**
  * An unmutable set of unmutable data points.
@@ -21,6 +22,14 @@ public interface DataSet extends Iterable<DataPoint>
      */
     int size();
 
+    /**
+     * Return the number of data points in this set, even if it is bigger than <code>Integer.MAX_VALUE</code> (in which
+     * case {@link #size()} returns <code>Integer.MAX_VALUE</code>).
+     * 
+     * @return The number of data points in this set.
+     */
+    long longSize();
+
     /**
      * Return the minimum value for the given dimension.
      * 
@@ -60,4 +69,22 @@ public interface DataSet extends Iterable<DataPoint>
      *         the same order as iterator() iterates over data points.
      */
     Iterator<Integer> histogramIterator();
+
+    /**
+     * Return the iterator that iterates through the histogram entries in the same order as iterator() iterates over
+     * data points, without boxing the counts.
+     * 
+     * @return The iterator that iterates through the histogram entries.
+     * 
+     * @see #histogramIterator()
+     */
+    IntIterator histogramIntIterator();
+
+    /**
+     * Return <code>true</code> if this set has been built from a sample of the valid entries of its sources, so it
+     * doesn't contain all of them (some entries have been discarded because of the maximum number of points).
+     * 
+     * @return Whether this set has been built from a sample of the entries of its sources.
+     */
+    boolean isSampled();
 }
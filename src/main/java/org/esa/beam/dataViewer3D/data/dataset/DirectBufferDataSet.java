@@ -0,0 +1,498 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.utils.BufferUtils;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A data set storing the coordinates of its points as floats in direct (off-heap) buffers, so that they can be handed
+ * to OpenGL without copying.
+ * <p>
+ * The x, y and z coordinates are interleaved in the vertex buffer (3 floats per point), and the w coordinates (if any)
+ * are stored in a separate attribute buffer (1 float per point). The buffers are in the native byte order.
+ * <p>
+ * The memory of the buffers isn't managed by the garbage collector in a timely manner, so it should be freed by
+ * calling {@link #release()} as soon as the data set isn't needed. The data set cannot be used after it has been
+ * released.
+ * <p>
+ * The data set can be shared by several holders (e.g. the creator keeping it for later filtering and a viewer
+ * displaying it or its filtered views). Every holder except the creator calls {@link #retain()}, and every holder
+ * calls {@link #release()} when it doesn't need the data set anymore; the buffers are freed by the last release. The
+ * static {@link #retain(DataSet)} and {@link #release(DataSet)} do the same for the data set underlying a filtered
+ * view.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class DirectBufferDataSet extends AbstractDataSet
+{
+    /** The number of floats per point in the vertex buffer. */
+    public static final int  VERTEX_SIZE = 3;
+
+    /** The bytes backing the vertex buffer. */
+    private ByteBuffer       vertexBytes;
+
+    /** The bytes backing the attribute buffer, <code>null</code> if the set has no attributes. */
+    private ByteBuffer       attributeBytes;
+
+    /** The interleaved x, y and z coordinates. */
+    private FloatBuffer      vertices;
+
+    /** The w coordinates, <code>null</code> if the set has no attributes. */
+    private FloatBuffer      attributes;
+
+    /** The counts of the points. */
+    private final int[]      counts;
+
+    /** The names of the sources of the coordinates. */
+    private final String[]   sourceNames;
+
+    /** The minimum and maximum values of the coordinates. */
+    private final float[]    min, max;
+
+    /** Whether the buffers have been released. */
+    private volatile boolean released = false;
+
+    /** The number of holders of the data set (the creator is the first one). */
+    private int              holders  = 1;
+
+    /**
+     * Create a data set from the given buffers.
+     * 
+     * @param vertexBytes The interleaved x, y and z coordinates, as created by {@link #allocate(int, int)}.
+     * @param attributeBytes The w coordinates, as created by {@link #allocate(int, int)}, or <code>null</code> if the
+     *            set has no attributes.
+     * @param counts The counts of the points.
+     * @param sourceNames The names of the sources of the coordinates.
+     * 
+     * @throws IllegalArgumentException If the buffers and counts have different sizes, or if they are empty.
+     */
+    protected DirectBufferDataSet(ByteBuffer vertexBytes, ByteBuffer attributeBytes, int[] counts,
+            String[] sourceNames) throws IllegalArgumentException
+    {
+        if (vertexBytes.capacity() != counts.length * VERTEX_SIZE * 4
+                || (attributeBytes != null && attributeBytes.capacity() != counts.length * 4))
+            throw new IllegalArgumentException(getClass() + ": The buffers must have equal sizes.");
+        if (counts.length == 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
+
+        this.vertexBytes = vertexBytes;
+        this.attributeBytes = attributeBytes;
+        this.counts = counts;
+        this.sourceNames = sourceNames;
+        vertices = vertexBytes.asFloatBuffer();
+        attributes = attributeBytes != null ? attributeBytes.asFloatBuffer() : null;
+
+        final int dimensions = attributes != null ? VERTEX_SIZE + 1 : VERTEX_SIZE;
+        min = new float[dimensions];
+        max = new float[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            min[d] = max[d] = getCoordinate(0, d);
+            for (int i = 1; i < counts.length; i++) {
+                final float value = getCoordinate(i, d);
+                min[d] = Math.min(min[d], value);
+                max[d] = Math.max(max[d], value);
+            }
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return counts.length;
+    }
+
+    @Override
+    public double getMin(int dimension)
+    {
+        return getMinFloat(dimension);
+    }
+
+    @Override
+    public double getMax(int dimension)
+    {
+        return getMaxFloat(dimension);
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        if (dimension < 0 || dimension >= sourceNames.length)
+            throw new IndexOutOfBoundsException();
+        return sourceNames[dimension];
+    }
+
+    /**
+     * Return the buffer of the interleaved x, y and z coordinates ({@value #VERTEX_SIZE} floats per point), positioned
+     * at its beginning. The buffer is a view of the data of this set, so it mustn't be written to.
+     * 
+     * @return The vertex buffer.
+     * 
+     * @throws IllegalStateException If the data set has been released.
+     */
+    public FloatBuffer getVertexBuffer() throws IllegalStateException
+    {
+        final FloatBuffer buffer = vertices;
+        checkReleased();
+        return (FloatBuffer) buffer.duplicate().rewind();
+    }
+
+    /**
+     * Return the buffer of the w coordinates (1 float per point), positioned at its beginning. The buffer is a view of
+     * the data of this set, so it mustn't be written to.
+     * 
+     * @return The attribute buffer, or <code>null</code> if the set has no attributes.
+     * 
+     * @throws IllegalStateException If the data set has been released.
+     */
+    public FloatBuffer getAttributeBuffer() throws IllegalStateException
+    {
+        final FloatBuffer buffer = attributes;
+        checkReleased();
+        return buffer != null ? (FloatBuffer) buffer.duplicate().rewind() : null;
+    }
+
+    /**
+     * Add a holder of the data set, which has to call {@link #release()} when it doesn't need the data set anymore.
+     * 
+     * @throws IllegalStateException If the data set has been released.
+     */
+    public synchronized void retain() throws IllegalStateException
+    {
+        checkReleased();
+        holders++;
+    }
+
+    /**
+     * Remove a holder of the data set. When the last holder is removed, free the memory of the buffers; the data set
+     * cannot be used afterwards. Calling this method on a released data set has no effect.
+     * <p>
+     * The buffers returned by {@link #getVertexBuffer()} and {@link #getAttributeBuffer()} mustn't be used after the
+     * last release, and it mustn't be done while another thread reads the data set.
+     */
+    public synchronized void release()
+    {
+        if (released || --holders > 0)
+            return;
+
+        released = true;
+        vertices = attributes = null;
+        BufferUtils.free(vertexBytes);
+        if (attributeBytes != null)
+            BufferUtils.free(attributeBytes);
+        vertexBytes = attributeBytes = null;
+    }
+
+    /**
+     * Return <code>true</code> if the buffers of this data set have been released.
+     * 
+     * @return Whether the data set has been released.
+     */
+    public boolean isReleased()
+    {
+        return released;
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator()
+    {
+        return new BufferIterator<DataPoint>() {
+            @Override
+            protected DataPoint get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Integer> histogramIterator()
+    {
+        return new BufferIterator<Integer>() {
+            @Override
+            protected Integer get(int i)
+            {
+                return counts[i];
+            }
+        };
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        return new IntIterator() {
+            /** Index of the next count. */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < counts.length;
+            }
+
+            @Override
+            public int next()
+            {
+                if (i >= counts.length)
+                    throw new NoSuchElementException();
+                return counts[i++];
+            }
+        };
+    }
+
+    /**
+     * Return the <code>i</code>-th point.
+     * 
+     * @param i Index of the point.
+     * @return The point.
+     * 
+     * @throws IllegalStateException If the data set has been released.
+     */
+    protected abstract DataPoint getPoint(int i) throws IllegalStateException;
+
+    /**
+     * Return the given coordinate of the <code>i</code>-th point.
+     * 
+     * @param i Index of the point.
+     * @param dimension The dimension of the coordinate.
+     * @return The coordinate.
+     * 
+     * @throws IllegalStateException If the data set has been released.
+     */
+    protected float getCoordinate(int i, int dimension) throws IllegalStateException
+    {
+        final FloatBuffer vertices = this.vertices, attributes = this.attributes;
+        checkReleased();
+        if (dimension < VERTEX_SIZE)
+            return vertices.get(i * VERTEX_SIZE + dimension);
+        return attributes.get(i);
+    }
+
+    /**
+     * Return the minimum value of the given dimension.
+     * 
+     * @param dimension The dimension.
+     * @return The minimum value.
+     */
+    protected float getMinFloat(int dimension)
+    {
+        if (dimension < 0 || dimension >= min.length)
+            throw new IndexOutOfBoundsException();
+        return min[dimension];
+    }
+
+    /**
+     * Return the maximum value of the given dimension.
+     * 
+     * @param dimension The dimension.
+     * @return The maximum value.
+     */
+    protected float getMaxFloat(int dimension)
+    {
+        if (dimension < 0 || dimension >= max.length)
+            throw new IndexOutOfBoundsException();
+        return max[dimension];
+    }
+
+    /**
+     * Return an iterator over the values of one dimension.
+     * 
+     * @param dimension The dimension.
+     * @return The iterator.
+     */
+    protected Iterator<Float> coordinateIterator(final int dimension)
+    {
+        return new BufferIterator<Float>() {
+            @Override
+            protected Float get(int i)
+            {
+                return getCoordinate(i, dimension);
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalStateException If the data set has been released.
+     */
+    private void checkReleased() throws IllegalStateException
+    {
+        if (released)
+            throw new IllegalStateException(getClass() + ": The data set has already been released.");
+    }
+
+    /**
+     * Return the direct buffer data set the points of the given data set are stored in.
+     * 
+     * @param dataSet The data set, may be <code>null</code>.
+     * @return The data set itself or the data set it is a filtered view of, if it is a direct buffer data set;
+     *         <code>null</code> otherwise.
+     */
+    public static DirectBufferDataSet getBuffers(DataSet dataSet)
+    {
+        while (dataSet instanceof FilteredDataSet)
+            dataSet = ((FilteredDataSet) dataSet).getDataSet();
+        return dataSet instanceof DirectBufferDataSet ? (DirectBufferDataSet) dataSet : null;
+    }
+
+    /**
+     * Add a holder of the direct buffer data set the points of the given data set are stored in (see
+     * {@link #getBuffers(DataSet)}). Other data sets are ignored.
+     * 
+     * @param dataSet The data set, may be <code>null</code>.
+     * 
+     * @throws IllegalStateException If the direct buffer data set has been released.
+     */
+    public static void retain(DataSet dataSet) throws IllegalStateException
+    {
+        final DirectBufferDataSet buffers = getBuffers(dataSet);
+        if (buffers != null)
+            buffers.retain();
+    }
+
+    /**
+     * Remove a holder of the direct buffer data set the points of the given data set are stored in (see
+     * {@link #getBuffers(DataSet)}). Other data sets are ignored.
+     * 
+     * @param dataSet The data set, may be <code>null</code>.
+     */
+    public static void release(DataSet dataSet)
+    {
+        final DirectBufferDataSet buffers = getBuffers(dataSet);
+        if (buffers != null)
+            buffers.release();
+    }
+
+    /**
+     * Allocate a direct buffer in the native byte order for the given number of points.
+     * 
+     * @param points The number of points.
+     * @param floatsPerPoint The number of floats per point.
+     * @return The buffer.
+     * 
+     * @throws IllegalArgumentException If the buffer would be larger than <code>Integer.MAX_VALUE</code> bytes.
+     */
+    protected static ByteBuffer allocate(int points, int floatsPerPoint) throws IllegalArgumentException
+    {
+        final long bytes = (long) points * floatsPerPoint * 4;
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(DirectBufferDataSet.class + ": Too many points for a direct buffer: "
+                    + points);
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Create a direct buffer copy of the given 3D or 4D data set. The coordinates are converted to floats.
+     * 
+     * @param dataSet The data set to copy.
+     * @return The copy.
+     */
+    public static DirectBufferDataSet copyOf(DataSet dataSet)
+    {
+        if (dataSet instanceof DataSet3D<?, ?, ?>)
+            return DirectBufferDataSet3D.copyOf((DataSet3D<?, ?, ?>) dataSet);
+        else
+            return DirectBufferDataSet4D.copyOf((DataSet4D<?, ?, ?, ?>) dataSet);
+    }
+
+    /**
+     * Create a new 3D or 4D direct buffer data set from the given data sources set.
+     * <p>
+     * The points are selected and counted the same way as in {@link StreamDataSet}, and then copied into the buffers.
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param sourceSet The set of sources.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new data set from the given data sources.
+     */
+    public static DirectBufferDataSet createFromDataSources(Integer maxPoints, DataSourceSet sourceSet,
+            ProgressMonitor progressMonitor)
+    {
+        return createFromDataSources(maxPoints, sourceSet, null, progressMonitor);
+    }
+
+    /**
+     * Create a new 3D or 4D direct buffer data set from the given data sources set, publishing partial snapshots of it
+     * to the given listener while the sources are being read.
+     * <p>
+     * The points are selected and counted the same way as in {@link StreamDataSet}, and then copied into the buffers.
+     * The snapshots are stream data sets (see {@link StreamDataSet3D.Builder3D#setSnapshotListener(SnapshotListener)}).
+     * 
+     * @param maxPoints The maximum number of data points in the resulting set (<code>null</code> means the count is
+     *            unbounded).
+     * @param sourceSet The set of sources.
+     * @param snapshotListener The listener to publish the snapshots to, <code>null</code> to publish no snapshots.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return A new data set from the given data sources.
+     */
+    public static DirectBufferDataSet createFromDataSources(Integer maxPoints, DataSourceSet sourceSet,
+            SnapshotListener<? super DataSet> snapshotListener, ProgressMonitor progressMonitor)
+    {
+        if (sourceSet instanceof DataSourceSet3D<?, ?, ?>) {
+            final DataSourceSet3D<?, ?, ?> set = (DataSourceSet3D<?, ?, ?>) sourceSet;
+            return DirectBufferDataSet3D.copyOf(StreamDataSet3D.createFromDataSources(maxPoints, set.getXSource(),
+                    set.getYSource(), set.getZSource(), snapshotListener, progressMonitor));
+        } else {
+            final DataSourceSet4D<?, ?, ?, ?> set = (DataSourceSet4D<?, ?, ?, ?>) sourceSet;
+            return DirectBufferDataSet4D.copyOf(StreamDataSet4D.createFromDataSources(maxPoints, set.getXSource(),
+                    set.getYSource(), set.getZSource(), set.getWSource(), snapshotListener, progressMonitor));
+        }
+    }
+
+    /**
+     * An iterator over the points of the set.
+     * 
+     * @author Martin Pecka
+     * @param <T> Type of the returned values.
+     */
+    protected abstract class BufferIterator<T> implements Iterator<T>
+    {
+        /** Index of the next point. */
+        private int i = 0;
+
+        @Override
+        public boolean hasNext()
+        {
+            return i < counts.length;
+        }
+
+        @Override
+        public T next()
+        {
+            if (i >= counts.length)
+                throw new NoSuchElementException();
+            return get(i++);
+        }
+
+        /**
+         * Return the value for the <code>i</code>-th point.
+         * 
+         * @param i Index of the point.
+         * @return The value.
+         * 
+         * @throws IllegalStateException If the data set has been released.
+         */
+        protected abstract T get(int i) throws IllegalStateException;
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
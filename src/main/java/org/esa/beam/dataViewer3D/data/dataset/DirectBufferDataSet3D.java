@@ -0,0 +1,143 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
+import org.esa.beam.dataViewer3D.data.type.FloatType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+/**
+ * A 3D data set storing its points in a direct vertex buffer.
+ * 
+ * @author Martin Pecka
+ * 
+ * @see DirectBufferDataSet
+ */
+public class DirectBufferDataSet3D extends DirectBufferDataSet implements DataSet3D<Float, Float, Float>
+{
+
+    /**
+     * Create a data set from the given buffer.
+     * 
+     * @param vertexBytes The interleaved x, y and z coordinates, as created by {@link #allocate(int, int)}.
+     * @param counts The counts of the points.
+     * @param sourceNames The names of the sources of the coordinates.
+     * 
+     * @throws IllegalArgumentException If the buffer and counts have different sizes, or if they are empty.
+     */
+    protected DirectBufferDataSet3D(ByteBuffer vertexBytes, int[] counts, String[] sourceNames)
+            throws IllegalArgumentException
+    {
+        super(vertexBytes, null, counts, sourceNames);
+    }
+
+    @Override
+    public Iterator<DataPoint3D<NumericType<Float>, NumericType<Float>, NumericType<Float>>> pointIterator()
+    {
+        return new BufferIterator<DataPoint3D<NumericType<Float>, NumericType<Float>, NumericType<Float>>>() {
+            @Override
+            protected DataPoint3D<NumericType<Float>, NumericType<Float>, NumericType<Float>> get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @Override
+    protected DataPoint3D<NumericType<Float>, NumericType<Float>, NumericType<Float>> getPoint(int i)
+    {
+        return new SimpleDataPoint3D<NumericType<Float>, NumericType<Float>, NumericType<Float>>(new FloatType(
+                getCoordinate(i, 0), null), new FloatType(getCoordinate(i, 1), null), new FloatType(
+                getCoordinate(i, 2), null));
+    }
+
+    @Override
+    public Iterator<Float> xIterator()
+    {
+        return coordinateIterator(0);
+    }
+
+    @Override
+    public Iterator<Float> yIterator()
+    {
+        return coordinateIterator(1);
+    }
+
+    @Override
+    public Iterator<Float> zIterator()
+    {
+        return coordinateIterator(2);
+    }
+
+    @Override
+    public Float getMinX()
+    {
+        return getMinFloat(0);
+    }
+
+    @Override
+    public Float getMinY()
+    {
+        return getMinFloat(1);
+    }
+
+    @Override
+    public Float getMinZ()
+    {
+        return getMinFloat(2);
+    }
+
+    @Override
+    public Float getMaxX()
+    {
+        return getMaxFloat(0);
+    }
+
+    @Override
+    public Float getMaxY()
+    {
+        return getMaxFloat(1);
+    }
+
+    @Override
+    public Float getMaxZ()
+    {
+        return getMaxFloat(2);
+    }
+
+    /**
+     * Create a direct buffer copy of the given data set. The coordinates are converted to floats.
+     * 
+     * @param dataSet The data set to copy.
+     * @return The copy.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> DirectBufferDataSet3D copyOf(
+            DataSet3D<X, Y, Z> dataSet)
+    {
+        final int[] counts = new int[dataSet.size()];
+        final ByteBuffer vertexBytes = allocate(counts.length, VERTEX_SIZE);
+        final FloatBuffer vertices = vertexBytes.asFloatBuffer();
+        final IntIterator histogramIt = dataSet.histogramIntIterator();
+
+        final Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> it = dataSet.pointIterator();
+        for (int i = 0; it.hasNext(); i++) {
+            final DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>> point = it.next();
+            vertices.put(point.getX().getNumber().floatValue());
+            vertices.put(point.getY().getNumber().floatValue());
+            vertices.put(point.getZ().getNumber().floatValue());
+            counts[i] = histogramIt.next();
+        }
+
+        final DirectBufferDataSet3D copy = new DirectBufferDataSet3D(vertexBytes, counts, new String[] {
+                dataSet.getSourceName(0), dataSet.getSourceName(1), dataSet.getSourceName(2) });
+        copy.sampled = dataSet.isSampled();
+        return copy;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.type.FloatType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+/**
+ * A 4D data set storing its x, y and z coordinates in a direct vertex buffer and its w coordinates in a direct
+ * attribute buffer.
+ * 
+ * @author Martin Pecka
+ * 
+ * @see DirectBufferDataSet
+ */
+public class DirectBufferDataSet4D extends DirectBufferDataSet implements DataSet4D<Float, Float, Float, Float>
+{
+
+    /**
+     * Create a data set from the given buffers.
+     * 
+     * @param vertexBytes The interleaved x, y and z coordinates, as created by {@link #allocate(int, int)}.
+     * @param attributeBytes The w coordinates, as created by {@link #allocate(int, int)}.
+     * @param counts The counts of the points.
+     * @param sourceNames The names of the sources of the coordinates.
+     * 
+     * @throws IllegalArgumentException If the buffers and counts have different sizes, or if they are empty.
+     */
+    protected DirectBufferDataSet4D(ByteBuffer vertexBytes, ByteBuffer attributeBytes, int[] counts,
+            String[] sourceNames) throws IllegalArgumentException
+    {
+        super(vertexBytes, attributeBytes, counts, sourceNames);
+    }
+
+    @Override
+    public Iterator<DataPoint4D<NumericType<Float>, NumericType<Float>, NumericType<Float>, NumericType<Float>>> pointIterator()
+    {
+        return new BufferIterator<DataPoint4D<NumericType<Float>, NumericType<Float>, NumericType<Float>, NumericType<Float>>>() {
+            @Override
+            protected DataPoint4D<NumericType<Float>, NumericType<Float>, NumericType<Float>, NumericType<Float>> get(
+                    int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @Override
+    protected DataPoint4D<NumericType<Float>, NumericType<Float>, NumericType<Float>, NumericType<Float>> getPoint(
+            int i)
+    {
+        return new SimpleDataPoint4D<NumericType<Float>, NumericType<Float>, NumericType<Float>, NumericType<Float>>(
+                new FloatType(getCoordinate(i, 0), null), new FloatType(getCoordinate(i, 1), null), new FloatType(
+                        getCoordinate(i, 2), null), new FloatType(getCoordinate(i, 3), null));
+    }
+
+    @Override
+    public Iterator<Float> xIterator()
+    {
+        return coordinateIterator(0);
+    }
+
+    @Override
+    public Iterator<Float> yIterator()
+    {
+        return coordinateIterator(1);
+    }
+
+    @Override
+    public Iterator<Float> zIterator()
+    {
+        return coordinateIterator(2);
+    }
+
+    @Override
+    public Iterator<Float> wIterator()
+    {
+        return coordinateIterator(3);
+    }
+
+    @Override
+    public Float getMinX()
+    {
+        return getMinFloat(0);
+    }
+
+    @Override
+    public Float getMinY()
+    {
+        return getMinFloat(1);
+    }
+
+    @Override
+    public Float getMinZ()
+    {
+        return getMinFloat(2);
+    }
+
+    @Override
+    public Float getMinW()
+    {
+        return getMinFloat(3);
+    }
+
+    @Override
+    public Float getMaxX()
+    {
+        return getMaxFloat(0);
+    }
+
+    @Override
+    public Float getMaxY()
+    {
+        return getMaxFloat(1);
+    }
+
+    @Override
+    public Float getMaxZ()
+    {
+        return getMaxFloat(2);
+    }
+
+    @Override
+    public Float getMaxW()
+    {
+        return getMaxFloat(3);
+    }
+
+    /**
+     * Create a direct buffer copy of the given data set. The coordinates are converted to floats.
+     * 
+     * @param dataSet The data set to copy.
+     * @return The copy.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> DirectBufferDataSet4D copyOf(
+            DataSet4D<X, Y, Z, W> dataSet)
+    {
+        final int[] counts = new int[dataSet.size()];
+        final ByteBuffer vertexBytes = allocate(counts.length, VERTEX_SIZE);
+        final ByteBuffer attributeBytes = allocate(counts.length, 1);
+        final FloatBuffer vertices = vertexBytes.asFloatBuffer();
+        final FloatBuffer attributes = attributeBytes.asFloatBuffer();
+        final IntIterator histogramIt = dataSet.histogramIntIterator();
+
+        final Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> it = dataSet
+                .pointIterator();
+        for (int i = 0; it.hasNext(); i++) {
+            final DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> point = it.next();
+            vertices.put(point.getX().getNumber().floatValue());
+            vertices.put(point.getY().getNumber().floatValue());
+            vertices.put(point.getZ().getNumber().floatValue());
+            attributes.put(point.getW().getNumber().floatValue());
+            counts[i] = histogramIt.next();
+        }
+
+        final DirectBufferDataSet4D copy = new DirectBufferDataSet4D(vertexBytes, attributeBytes, counts,
+                new String[] { dataSet.getSourceName(0), dataSet.getSourceName(1), dataSet.getSourceName(2),
+                        dataSet.getSourceName(3) });
+        copy.sampled = dataSet.isSampled();
+        return copy;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.esa.beam.dataViewer3D.utils.NumberTypeUtils.castToType;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+/**
+ * A view of the points of another data set which lie in the given value ranges.
+ * <p>
+ * The view doesn't copy any points. It stores a bitmask of the points of the underlying data set it contains, and
+ * skips the other points when iterating over the underlying set. The minimum and maximum values of the coordinates are
+ * recomputed from the contained points.
+ * <p>
+ * The ranges are applied the same way as the min/max values of the data sources: the bounds are inclusive and they are
+ * cast to the type of the coordinate values first. So filtering a data set created from unrestricted sources gives the
+ * same points as creating it from restricted sources, as long as the number of points of the underlying set hasn't been
+ * limited.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class FilteredDataSet extends AbstractDataSet
+{
+    /** The underlying data set. */
+    protected final DataSet dataSet;
+
+    /** The points of the underlying data set contained in this view. */
+    protected final BitSet  contained;
+
+    /** The number of contained points. */
+    private final int       size;
+
+    /** The minimum and maximum values of the coordinates of the contained points. */
+    private final Number[]  min, max;
+
+    /**
+     * Create the view of the points of the given data set lying in the given ranges.
+     * 
+     * @param dataSet The underlying data set.
+     * @param coordinates The iterators over the values of all coordinates of the underlying data set.
+     * @param minValues The lower bounds of the coordinates; <code>null</code> (for the whole array or one dimension)
+     *            means no restriction.
+     * @param maxValues The upper bounds of the coordinates; <code>null</code> (for the whole array or one dimension)
+     *            means no restriction.
+     */
+    protected FilteredDataSet(DataSet dataSet, List<Iterator<? extends Number>> coordinates, Number[] minValues,
+            Number[] maxValues)
+    {
+        this.dataSet = dataSet;
+        this.contained = new BitSet(dataSet.size());
+
+        final int dimensions = coordinates.size();
+        final Number[] values = new Number[dimensions];
+        final double[] lower = new double[dimensions], upper = new double[dimensions];
+        min = new Number[dimensions];
+        max = new Number[dimensions];
+
+        int count = 0;
+        for (int i = 0; i < dataSet.size(); i++) {
+            boolean inRange = true;
+            for (int d = 0; d < dimensions; d++) {
+                values[d] = coordinates.get(d).next();
+                if (i == 0) {
+                    // the bounds are cast the same way the data sources cast them
+                    final Number minValue = minValues != null ? castToType(values[d], minValues[d]) : null;
+                    final Number maxValue = maxValues != null ? castToType(values[d], maxValues[d]) : null;
+                    lower[d] = minValue != null ? minValue.doubleValue() : Double.NEGATIVE_INFINITY;
+                    upper[d] = maxValue != null ? maxValue.doubleValue() : Double.POSITIVE_INFINITY;
+                }
+                final double value = values[d].doubleValue();
+                inRange &= value >= lower[d] && value <= upper[d];
+            }
+            if (!inRange)
+                continue;
+
+            contained.set(i);
+            count++;
+            for (int d = 0; d < dimensions; d++) {
+                if (min[d] == null || values[d].doubleValue() < min[d].doubleValue())
+                    min[d] = values[d];
+                if (max[d] == null || values[d].doubleValue() > max[d].doubleValue())
+                    max[d] = values[d];
+            }
+        }
+        size = count;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public double getMin(int dimension)
+    {
+        return getMinNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public double getMax(int dimension)
+    {
+        return getMaxNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        return dataSet.getSourceName(dimension);
+    }
+
+    @Override
+    public boolean isSampled()
+    {
+        return dataSet.isSampled();
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator()
+    {
+        return filter(dataSet.iterator());
+    }
+
+    @Override
+    public Iterator<Integer> histogramIterator()
+    {
+        return filter(dataSet.histogramIterator());
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        final IntIterator it = dataSet.histogramIntIterator();
+        return new IntIterator() {
+            /** Index of the next point of the underlying set. */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return contained.nextSetBit(i) >= 0;
+            }
+
+            @Override
+            public int next()
+            {
+                final int next = contained.nextSetBit(i);
+                if (next < 0)
+                    throw new NoSuchElementException();
+                for (; i < next; i++)
+                    it.next();
+                i++;
+                return it.next();
+            }
+        };
+    }
+
+    /**
+     * Return the underlying data set.
+     * 
+     * @return The underlying data set.
+     */
+    public DataSet getDataSet()
+    {
+        return dataSet;
+    }
+
+    /**
+     * Return the minimum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The minimum value, <code>null</code> if the view is empty.
+     */
+    protected Number getMinNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= min.length)
+            throw new IndexOutOfBoundsException();
+        return min[dimension];
+    }
+
+    /**
+     * Return the maximum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The maximum value, <code>null</code> if the view is empty.
+     */
+    protected Number getMaxNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= max.length)
+            throw new IndexOutOfBoundsException();
+        return max[dimension];
+    }
+
+    /**
+     * Return an iterator returning only the values of the contained points from the given iterator over all points of
+     * the underlying set.
+     * 
+     * @param it The iterator over all points of the underlying set.
+     * @return The filtering iterator.
+     */
+    protected <T> Iterator<T> filter(final Iterator<T> it)
+    {
+        return new Iterator<T>() {
+            /** Index of the next point of the underlying set. */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return contained.nextSetBit(i) >= 0;
+            }
+
+            @Override
+            public T next()
+            {
+                final int next = contained.nextSetBit(i);
+                if (next < 0)
+                    throw new NoSuchElementException();
+                for (; i < next; i++)
+                    it.next();
+                i++;
+                return it.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Create the view of the points of the given 3D or 4D data set lying in the given ranges.
+     * 
+     * @param dataSet The underlying data set.
+     * @param min The lower bounds of the coordinates; <code>null</code> (for the whole array or one dimension) means
+     *            no restriction.
+     * @param max The upper bounds of the coordinates; <code>null</code> (for the whole array or one dimension) means
+     *            no restriction.
+     * @return The view.
+     */
+    public static FilteredDataSet create(DataSet dataSet, Number[] min, Number[] max)
+    {
+        if (dataSet instanceof DataSet3D<?, ?, ?>)
+            return FilteredDataSet3D.create((DataSet3D<?, ?, ?>) dataSet, min, max);
+        else
+            return FilteredDataSet4D.create((DataSet4D<?, ?, ?, ?>) dataSet, min, max);
+    }
+}
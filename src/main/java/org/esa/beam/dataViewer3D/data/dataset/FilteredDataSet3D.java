@@ -0,0 +1,130 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+/**
+ * A view of the points of a 3D data set which lie in the given value ranges.
+ * 
+ * @author Martin Pecka
+ * @param <X> The type of the values in x coordinate.
+ * @param <Y> The type of the values in y coordinate.
+ * @param <Z> The type of the values in z coordinate.
+ * 
+ * @see FilteredDataSet
+ */
+public class FilteredDataSet3D<X extends Number, Y extends Number, Z extends Number> extends FilteredDataSet
+        implements DataSet3D<X, Y, Z>
+{
+
+    /**
+     * Create the view of the points of the given data set lying in the given ranges.
+     * 
+     * @param dataSet The underlying data set.
+     * @param min The lower bounds of the coordinates; <code>null</code> (for the whole array or one dimension) means
+     *            no restriction.
+     * @param max The upper bounds of the coordinates; <code>null</code> (for the whole array or one dimension) means
+     *            no restriction.
+     */
+    @SuppressWarnings("unchecked")
+    protected FilteredDataSet3D(DataSet3D<X, Y, Z> dataSet, Number[] min, Number[] max)
+    {
+        super(dataSet, Arrays.<Iterator<? extends Number>> asList(dataSet.xIterator(), dataSet.yIterator(), dataSet
+                .zIterator()), min, max);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public DataSet3D<X, Y, Z> getDataSet()
+    {
+        return (DataSet3D<X, Y, Z>) dataSet;
+    }
+
+    @Override
+    public Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> pointIterator()
+    {
+        return filter(getDataSet().pointIterator());
+    }
+
+    @Override
+    public Iterator<X> xIterator()
+    {
+        return filter(getDataSet().xIterator());
+    }
+
+    @Override
+    public Iterator<Y> yIterator()
+    {
+        return filter(getDataSet().yIterator());
+    }
+
+    @Override
+    public Iterator<Z> zIterator()
+    {
+        return filter(getDataSet().zIterator());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMinX()
+    {
+        return (X) getMinNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMinY()
+    {
+        return (Y) getMinNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMinZ()
+    {
+        return (Z) getMinNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMaxX()
+    {
+        return (X) getMaxNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMaxY()
+    {
+        return (Y) getMaxNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMaxZ()
+    {
+        return (Z) getMaxNumber(2);
+    }
+
+    /**
+     * Create the view of the points of the given data set lying in the given ranges.
+     * 
+     * @param dataSet The underlying data set.
+     * @param min The lower bounds of the coordinates; <code>null</code> (for the whole array or one dimension) means
+     *            no restriction.
+     * @param max The upper bounds of the coordinates; <code>null</code> (for the whole array or one dimension) means
+     *            no restriction.
+     * @return The view.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> FilteredDataSet3D<X, Y, Z> create(
+            DataSet3D<X, Y, Z> dataSet, Number[] min, Number[] max)
+    {
+        return new FilteredDataSet3D<X, Y, Z>(dataSet, min, max);
+    }
+}
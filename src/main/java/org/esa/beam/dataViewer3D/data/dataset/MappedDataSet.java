@@ -0,0 +1,893 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.type.ByteType;
+import org.esa.beam.dataViewer3D.data.type.DecimalNumericType;
+import org.esa.beam.dataViewer3D.data.type.DoubleType;
+import org.esa.beam.dataViewer3D.data.type.FloatType;
+import org.esa.beam.dataViewer3D.data.type.IntType;
+import org.esa.beam.dataViewer3D.data.type.LongType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.data.type.ShortType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A data set reading its points from a memory-mapped data set file.
+ * <p>
+ * The file starts with a header containing the number of dimensions and points, and the type, precision, minimum,
+ * maximum and source name of every coordinate. The header is followed by one column per coordinate and a column of
+ * the counts of the points. The coordinates are stored in the types of their sources, all values are little-endian and
+ * every column starts at a multiple of 8 bytes. So the columns are read directly from the mapped file and the values
+ * are only boxed when they are read through the iterators.
+ * <p>
+ * The files are written by {@link #save(DataSet, File, ProgressMonitor)} in one pass over the data set, or assembled
+ * from separately written columns by the builders of stream data sets building the sets out of core, and opened by
+ * {@link #open(File)}.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class MappedDataSet extends AbstractDataSet
+{
+    /** The suffix of the data set files. */
+    public static final String        FILE_SUFFIX      = ".dv3d";
+
+    /** The first 4 bytes of the data set files ("DV3D"). */
+    protected static final int        MAGIC            = 0x44563344;
+
+    /** The version of the file format. */
+    protected static final int        VERSION          = 1;
+
+    /** The number of points written to the file at once. */
+    protected static final int        WRITE_BLOCK_SIZE = 4096;
+
+    /** The maximum size of the header in bytes. */
+    protected static final int        MAX_HEADER_SIZE  = 1 << 16;
+
+    /** The types of the coordinates that can be stored; the index of the type is its code in the files. */
+    protected static final Class<?>[] TYPES            = { Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class };
+
+    /** The number of bytes a value of the type with the corresponding code occupies. */
+    protected static final int[]      TYPE_SIZES       = { 1, 2, 4, 8, 4, 8 };
+
+    /** The mapped columns of the coordinates. */
+    protected final ByteBuffer[]      columns;
+
+    /** The mapped counts of the points. */
+    private final IntBuffer           counts;
+
+    /** The codes of the types of the coordinates. */
+    protected final int[]             types;
+
+    /** The precisions of the coordinates (<code>null</code> means infinite precision or an integral type). */
+    protected final Integer[]         precisions;
+
+    /** The names of the sources of the coordinates. */
+    private final String[]            sourceNames;
+
+    /** The minimum and maximum values of the coordinates. */
+    private final Number[]            min, max;
+
+    /**
+     * Create a data set from the given mapped columns.
+     * 
+     * @param columns The columns of the coordinates.
+     * @param counts The counts of the points.
+     * @param types The codes of the types of the coordinates.
+     * @param precisions The precisions of the coordinates.
+     * @param sourceNames The names of the sources of the coordinates.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     */
+    protected MappedDataSet(ByteBuffer[] columns, IntBuffer counts, int[] types, Integer[] precisions,
+            String[] sourceNames, Number[] min, Number[] max)
+    {
+        this.columns = columns;
+        this.counts = counts;
+        this.types = types;
+        this.precisions = precisions;
+        this.sourceNames = sourceNames;
+        this.min = min;
+        this.max = max;
+    }
+
+    @Override
+    public int size()
+    {
+        return counts.capacity();
+    }
+
+    @Override
+    public double getMin(int dimension)
+    {
+        return getMinNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public double getMax(int dimension)
+    {
+        return getMaxNumber(dimension).doubleValue();
+    }
+
+    @Override
+    public String getSourceName(int dimension)
+    {
+        if (dimension < 0 || dimension >= sourceNames.length)
+            throw new IndexOutOfBoundsException();
+        return sourceNames[dimension];
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator()
+    {
+        return new MappedIterator<DataPoint>() {
+            @Override
+            protected DataPoint get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Integer> histogramIterator()
+    {
+        return new MappedIterator<Integer>() {
+            @Override
+            protected Integer get(int i)
+            {
+                return counts.get(i);
+            }
+        };
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        return new IntIterator() {
+            /** Index of the next count. */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < size();
+            }
+
+            @Override
+            public int next()
+            {
+                if (i >= size())
+                    throw new NoSuchElementException();
+                return counts.get(i++);
+            }
+        };
+    }
+
+    /**
+     * Return the <code>i</code>-th point.
+     * 
+     * @param i Index of the point.
+     * @return The point.
+     */
+    protected abstract DataPoint getPoint(int i);
+
+    /**
+     * Return the value of the given coordinate of the <code>i</code>-th point.
+     * 
+     * @param dimension The dimension.
+     * @param i Index of the point.
+     * @return The value.
+     */
+    protected Number getNumber(int dimension, int i)
+    {
+        return get(columns[dimension], types[dimension], i);
+    }
+
+    /**
+     * Return the value of the given coordinate of the <code>i</code>-th point wrapped in its numeric type.
+     * 
+     * @param dimension The dimension.
+     * @param i Index of the point.
+     * @return The value.
+     */
+    protected NumericType<?> getNumericType(int dimension, int i)
+    {
+        final Number number = getNumber(dimension, i);
+        switch (types[dimension]) {
+            case 0:
+                return new ByteType((Byte) number);
+            case 1:
+                return new ShortType((Short) number);
+            case 2:
+                return new IntType((Integer) number);
+            case 3:
+                return new LongType((Long) number);
+            case 4:
+                return new FloatType((Float) number, precisions[dimension]);
+            default:
+                return new DoubleType((Double) number, precisions[dimension]);
+        }
+    }
+
+    /**
+     * Return the minimum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The minimum value.
+     */
+    protected Number getMinNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= min.length)
+            throw new IndexOutOfBoundsException();
+        return min[dimension];
+    }
+
+    /**
+     * Return the maximum value of the given dimension in the type of its sources.
+     * 
+     * @param dimension The dimension.
+     * @return The maximum value.
+     */
+    protected Number getMaxNumber(int dimension)
+    {
+        if (dimension < 0 || dimension >= max.length)
+            throw new IndexOutOfBoundsException();
+        return max[dimension];
+    }
+
+    /**
+     * Return an iterator over the values of one dimension.
+     * 
+     * @param dimension The dimension.
+     * @return The iterator.
+     */
+    protected <N extends Number> Iterator<N> columnIterator(final int dimension)
+    {
+        return new MappedIterator<N>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            protected N get(int i)
+            {
+                return (N) getNumber(dimension, i);
+            }
+        };
+    }
+
+    /**
+     * Write the given 3D or 4D data set to the given file.
+     * <p>
+     * The points are read only once, in the order of the data set's iterators, and they are written in blocks, so the
+     * data set isn't copied in memory. The file is written to a temporary file first, so that an interrupted write
+     * never leaves an incomplete data set file.
+     * 
+     * @param dataSet The data set to write.
+     * @param file The file to write to. It is overwritten if it exists.
+     * @param progressMonitor The progress monitor, may be <code>null</code>.
+     * 
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If the data set is empty or its coordinates are of unsupported types.
+     */
+    public static void save(DataSet dataSet, File file, ProgressMonitor progressMonitor) throws IOException,
+            IllegalArgumentException
+    {
+        if (dataSet.size() == 0)
+            throw new IllegalArgumentException(MappedDataSet.class + ": Cannot save data set of zero size.");
+
+        final int size = dataSet.size();
+        final NumericType<?>[] coordinates = new NumericType<?>[dataSet instanceof DataSet4D<?, ?, ?, ?> ? 4 : 3];
+        getCoordinates(dataSet.pointIterator().next(), coordinates);
+
+        final int[] types = new int[coordinates.length];
+        final Integer[] precisions = new Integer[coordinates.length];
+        final String[] sourceNames = new String[coordinates.length];
+        for (int d = 0; d < coordinates.length; d++) {
+            types[d] = getTypeCode(coordinates[d].getNumber());
+            if (coordinates[d] instanceof DecimalNumericType<?>)
+                precisions[d] = ((DecimalNumericType<?>) coordinates[d]).getPrecision();
+            sourceNames[d] = dataSet.getSourceName(d);
+        }
+        final byte[][] names = encodeNames(sourceNames);
+        final int headerSize = getHeaderSize(names);
+
+        final long[] offsets = getColumnOffsets(headerSize, types, size);
+        final ByteBuffer[] blocks = new ByteBuffer[coordinates.length + 1];
+        for (int d = 0; d < coordinates.length; d++)
+            blocks[d] = ByteBuffer.allocateDirect(WRITE_BLOCK_SIZE * TYPE_SIZES[types[d]]).order(
+                    ByteOrder.LITTLE_ENDIAN);
+        blocks[coordinates.length] = ByteBuffer.allocateDirect(WRITE_BLOCK_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        boolean written = false;
+        final RandomAccessFile output = new RandomAccessFile(temp, "rw");
+        try {
+            if (progressMonitor != null)
+                progressMonitor.beginTask("Saving data set", size); /* I18N */
+
+            final FileChannel channel = output.getChannel();
+            final Iterator<? extends DataPoint> points = dataSet.pointIterator();
+            final IntIterator histogram = dataSet.histogramIntIterator();
+
+            int writtenPoints = 0;
+            for (int i = 0; points.hasNext(); i++) {
+                getCoordinates(points.next(), coordinates);
+                for (int d = 0; d < coordinates.length; d++) {
+                    put(blocks[d], types[d], coordinates[d].getNumber());
+                }
+                blocks[coordinates.length].putInt(histogram.next());
+
+                if (i + 1 - writtenPoints == WRITE_BLOCK_SIZE || !points.hasNext()) {
+                    for (int d = 0; d < blocks.length; d++) {
+                        final int valueSize = d < coordinates.length ? TYPE_SIZES[types[d]] : 4;
+                        write(channel, blocks[d], offsets[d] + (long) writtenPoints * valueSize);
+                    }
+
+                    if (progressMonitor != null) {
+                        progressMonitor.worked(i + 1 - writtenPoints);
+                        if (progressMonitor.isCanceled())
+                            throw new IOException("Saving of the data set canceled."); /* I18N */
+                    }
+                    writtenPoints = i + 1;
+                }
+            }
+            if (writtenPoints != size)
+                throw new IllegalArgumentException(MappedDataSet.class
+                        + ": The data set has a different number of points than its size.");
+
+            // the header is written last, so that an incompletely written file is never recognized as a data set file
+            final Number[] min = new Number[coordinates.length], max = new Number[coordinates.length];
+            getBounds(dataSet, min, max);
+            write(channel, createHeader(size, types, precisions, names, min, max), 0);
+            written = true;
+        } finally {
+            output.close();
+            if (progressMonitor != null)
+                progressMonitor.done();
+            if (!written)
+                temp.delete();
+        }
+
+        rename(temp, file);
+    }
+
+    /**
+     * Write a data set file from columns that have already been written to separate files.
+     * <p>
+     * The column files contain the values in the same format as the columns of the data set file, and they are
+     * copied to the data set file by the file system without reading them into memory. They aren't deleted.
+     * 
+     * @param file The file to write to. It is overwritten if it exists.
+     * @param size The number of points.
+     * @param types The codes of the types of the coordinates (see {@link #getTypeCode(Number)}).
+     * @param precisions The precisions of the coordinates (<code>null</code> means infinite precision or an integral
+     *            type).
+     * @param sourceNames The names of the sources of the coordinates.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     * @param columnFiles The files containing the columns of the coordinates followed by the file containing the
+     *            column of the counts.
+     * 
+     * @throws IOException If the file cannot be written or the column files are too short.
+     * @throws IllegalArgumentException If there are no points or the source names are too long.
+     */
+    protected static void assemble(File file, int size, int[] types, Integer[] precisions, String[] sourceNames,
+            Number[] min, Number[] max, File[] columnFiles) throws IOException, IllegalArgumentException
+    {
+        if (size <= 0)
+            throw new IllegalArgumentException(MappedDataSet.class + ": Cannot save data set of zero size.");
+
+        final byte[][] names = encodeNames(sourceNames);
+        final long[] offsets = getColumnOffsets(getHeaderSize(names), types, size);
+
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        boolean written = false;
+        final RandomAccessFile output = new RandomAccessFile(temp, "rw");
+        try {
+            // nothing is transferred to the positions behind the end of the file
+            output.setLength(offsets[columnFiles.length - 1] + (long) size * 4);
+            final FileChannel channel = output.getChannel();
+            for (int d = 0; d < columnFiles.length; d++) {
+                final long length = (long) size * (d < types.length ? TYPE_SIZES[types[d]] : 4);
+                final RandomAccessFile column = new RandomAccessFile(columnFiles[d], "r");
+                try {
+                    final FileChannel columnChannel = column.getChannel();
+                    long transferred = 0;
+                    while (transferred < length) {
+                        final long count = channel.transferFrom(columnChannel, offsets[d] + transferred, length
+                                - transferred);
+                        if (count <= 0)
+                            throw new IOException("Cannot read the column file " + columnFiles[d]); /* I18N */
+                        transferred += count;
+                    }
+                } finally {
+                    column.close();
+                }
+            }
+
+            // the header is written last, so that an incompletely written file is never recognized as a data set file
+            write(channel, createHeader(size, types, precisions, names, min, max), 0);
+            written = true;
+        } finally {
+            output.close();
+            if (!written)
+                temp.delete();
+        }
+
+        rename(temp, file);
+    }
+
+    /**
+     * Open the given data set file.
+     * <p>
+     * The columns of the file are mapped to memory, so opening the file doesn't read the points. The mapping stays
+     * valid until the data set is garbage collected.
+     * 
+     * @param file The file written by {@link #save(DataSet, File, ProgressMonitor)}.
+     * @return The 3D or 4D data set stored in the file.
+     * 
+     * @throws IOException If the file cannot be read, isn't a data set file or its columns are too big to be mapped.
+     */
+    public static MappedDataSet open(File file) throws IOException
+    {
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = input.getChannel();
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), MAX_HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+
+            final int dimensions, size, headerSize;
+            final int[] types;
+            final Integer[] precisions;
+            final Number[] min, max;
+            final String[] sourceNames;
+            try {
+                if (header.getInt() != MAGIC)
+                    throw new IOException(file + " isn't a data set file."); /* I18N */
+                if (header.getInt() != VERSION)
+                    throw new IOException("Unsupported version of the data set file " + file); /* I18N */
+
+                dimensions = header.getInt();
+                size = header.getInt();
+                if ((dimensions != 3 && dimensions != 4) || size <= 0)
+                    throw new IOException("Corrupted data set file " + file); /* I18N */
+
+                types = new int[dimensions];
+                precisions = new Integer[dimensions];
+                min = new Number[dimensions];
+                max = new Number[dimensions];
+                sourceNames = new String[dimensions];
+                for (int d = 0; d < dimensions; d++) {
+                    types[d] = header.get();
+                    if (types[d] < 0 || types[d] >= TYPES.length)
+                        throw new IOException("Corrupted data set file " + file); /* I18N */
+                    final int precision = header.getInt();
+                    precisions[d] = precision >= 0 ? precision : null;
+                    min[d] = getHeaderValue(header, types[d]);
+                    max[d] = getHeaderValue(header, types[d]);
+                    final int nameLength = header.getInt();
+                    if (nameLength > header.remaining())
+                        throw new IOException("Corrupted data set file " + file); /* I18N */
+                    if (nameLength >= 0) {
+                        final byte[] name = new byte[nameLength];
+                        header.get(name);
+                        sourceNames[d] = new String(name, "UTF-8");
+                    }
+                }
+                headerSize = header.position();
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Corrupted data set file " + file); /* I18N */
+            }
+
+            final long[] offsets = getColumnOffsets(headerSize, types, size);
+            if (channel.size() < offsets[dimensions] + (long) size * 4)
+                throw new IOException("Corrupted data set file " + file); /* I18N */
+
+            // the mapping stays valid after the channel is closed
+            final ByteBuffer[] columns = new ByteBuffer[dimensions];
+            for (int d = 0; d < dimensions; d++)
+                columns[d] = map(channel, offsets[d], (long) size * TYPE_SIZES[types[d]], file);
+            final IntBuffer counts = map(channel, offsets[dimensions], (long) size * 4, file).asIntBuffer();
+
+            if (dimensions == 3)
+                return new MappedDataSet3D<Number, Number, Number>(columns, counts, types, precisions, sourceNames,
+                        min, max);
+            else
+                return new MappedDataSet4D<Number, Number, Number, Number>(columns, counts, types, precisions,
+                        sourceNames, min, max);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Encode the given source names to UTF-8.
+     * 
+     * @param sourceNames The source names.
+     * @return The encoded names (<code>null</code> for <code>null</code> names).
+     * 
+     * @throws IOException If UTF-8 isn't supported.
+     */
+    private static byte[][] encodeNames(String[] sourceNames) throws IOException
+    {
+        final byte[][] names = new byte[sourceNames.length][];
+        for (int d = 0; d < sourceNames.length; d++) {
+            if (sourceNames[d] != null)
+                names[d] = sourceNames[d].getBytes("UTF-8");
+        }
+        return names;
+    }
+
+    /**
+     * Return the size of the header containing the given source names.
+     * 
+     * @param names The encoded source names.
+     * @return The size of the header.
+     * 
+     * @throws IllegalArgumentException If the header would be bigger than {@link #MAX_HEADER_SIZE}.
+     */
+    private static int getHeaderSize(byte[][] names) throws IllegalArgumentException
+    {
+        int headerSize = 16;
+        for (int d = 0; d < names.length; d++)
+            headerSize += 1 + 4 + 8 + 8 + 4 + (names[d] != null ? names[d].length : 0);
+        if (headerSize > MAX_HEADER_SIZE)
+            throw new IllegalArgumentException(MappedDataSet.class + ": The source names are too long.");
+        return headerSize;
+    }
+
+    /**
+     * Create the header of a data set file.
+     * 
+     * @param size The number of points.
+     * @param types The codes of the types of the coordinates.
+     * @param precisions The precisions of the coordinates.
+     * @param names The encoded source names.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     * @return The header, ready to be written.
+     */
+    private static ByteBuffer createHeader(int size, int[] types, Integer[] precisions, byte[][] names, Number[] min,
+            Number[] max)
+    {
+        final ByteBuffer header = ByteBuffer.allocate(getHeaderSize(names)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(types.length).putInt(size);
+        for (int d = 0; d < types.length; d++) {
+            header.put((byte) types[d]);
+            header.putInt(precisions[d] != null ? precisions[d] : -1);
+            putHeaderValue(header, types[d], min[d]);
+            putHeaderValue(header, types[d], max[d]);
+            header.putInt(names[d] != null ? names[d].length : -1);
+            if (names[d] != null)
+                header.put(names[d]);
+        }
+        return header;
+    }
+
+    /**
+     * Replace the given file with the given temporary file.
+     * 
+     * @param temp The temporary file.
+     * @param file The file to replace.
+     * 
+     * @throws IOException If the file cannot be replaced.
+     */
+    private static void rename(File temp, File file) throws IOException
+    {
+        if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+            temp.delete();
+            throw new IOException("Cannot write the data set file " + file); /* I18N */
+        }
+    }
+
+    /**
+     * Return the offsets of the columns in the file; the last one is the offset of the column of counts.
+     * 
+     * @param headerSize The size of the header.
+     * @param types The codes of the types of the coordinates.
+     * @param size The number of points.
+     * @return The offsets.
+     */
+    private static long[] getColumnOffsets(int headerSize, int[] types, int size)
+    {
+        final long[] offsets = new long[types.length + 1];
+        long offset = headerSize;
+        for (int d = 0; d <= types.length; d++) {
+            offsets[d] = (offset + 7) & ~7L;
+            offset = offsets[d] + (long) size * (d < types.length ? TYPE_SIZES[types[d]] : 4);
+        }
+        return offsets;
+    }
+
+    /**
+     * Return the code of the type of the given value.
+     * 
+     * @param value The value.
+     * @return The code of its type.
+     * 
+     * @throws IllegalArgumentException If the type cannot be stored.
+     */
+    protected static int getTypeCode(Number value) throws IllegalArgumentException
+    {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i] == value.getClass())
+                return i;
+        }
+        throw new IllegalArgumentException(MappedDataSet.class + ": Unsupported type " + value.getClass());
+    }
+
+    /**
+     * Put the coordinates of the given 3D or 4D point to the given array.
+     * 
+     * @param point The point.
+     * @param coordinates The array to put the coordinates to.
+     */
+    private static void getCoordinates(DataPoint point, NumericType<?>[] coordinates)
+    {
+        if (point instanceof DataPoint3D<?, ?, ?>) {
+            final DataPoint3D<?, ?, ?> point3D = (DataPoint3D<?, ?, ?>) point;
+            coordinates[0] = point3D.getX();
+            coordinates[1] = point3D.getY();
+            coordinates[2] = point3D.getZ();
+        } else {
+            final DataPoint4D<?, ?, ?, ?> point4D = (DataPoint4D<?, ?, ?, ?>) point;
+            coordinates[0] = point4D.getX();
+            coordinates[1] = point4D.getY();
+            coordinates[2] = point4D.getZ();
+            coordinates[3] = point4D.getW();
+        }
+    }
+
+    /**
+     * Put the minimum and maximum values of the coordinates of the given 3D or 4D data set to the given arrays.
+     * 
+     * @param dataSet The data set.
+     * @param min The array to put the minimum values to.
+     * @param max The array to put the maximum values to.
+     */
+    private static void getBounds(DataSet dataSet, Number[] min, Number[] max)
+    {
+        if (dataSet instanceof DataSet3D<?, ?, ?>) {
+            final DataSet3D<?, ?, ?> dataSet3D = (DataSet3D<?, ?, ?>) dataSet;
+            min[0] = dataSet3D.getMinX();
+            min[1] = dataSet3D.getMinY();
+            min[2] = dataSet3D.getMinZ();
+            max[0] = dataSet3D.getMaxX();
+            max[1] = dataSet3D.getMaxY();
+            max[2] = dataSet3D.getMaxZ();
+        } else {
+            final DataSet4D<?, ?, ?, ?> dataSet4D = (DataSet4D<?, ?, ?, ?>) dataSet;
+            min[0] = dataSet4D.getMinX();
+            min[1] = dataSet4D.getMinY();
+            min[2] = dataSet4D.getMinZ();
+            min[3] = dataSet4D.getMinW();
+            max[0] = dataSet4D.getMaxX();
+            max[1] = dataSet4D.getMaxY();
+            max[2] = dataSet4D.getMaxZ();
+            max[3] = dataSet4D.getMaxW();
+        }
+    }
+
+    /**
+     * Append the given value to the given buffer.
+     * 
+     * @param buffer The buffer.
+     * @param type The code of the type of the value.
+     * @param value The value.
+     */
+    private static void put(ByteBuffer buffer, int type, Number value)
+    {
+        switch (type) {
+            case 0:
+                buffer.put(value.byteValue());
+                break;
+            case 1:
+                buffer.putShort(value.shortValue());
+                break;
+            case 2:
+                buffer.putInt(value.intValue());
+                break;
+            case 3:
+                buffer.putLong(value.longValue());
+                break;
+            case 4:
+                buffer.putFloat(value.floatValue());
+                break;
+            default:
+                buffer.putDouble(value.doubleValue());
+        }
+    }
+
+    /**
+     * Append the value with the given bits to the given buffer.
+     * 
+     * @param buffer The buffer.
+     * @param type The code of the type of the value.
+     * @param bits The value itself for the integral types, the bits of the value as a double (see
+     *            {@link Double#doubleToRawLongBits(double)}) for the decimal types.
+     */
+    protected static void putBits(ByteBuffer buffer, int type, long bits)
+    {
+        switch (type) {
+            case 0:
+                buffer.put((byte) bits);
+                break;
+            case 1:
+                buffer.putShort((short) bits);
+                break;
+            case 2:
+                buffer.putInt((int) bits);
+                break;
+            case 3:
+                buffer.putLong(bits);
+                break;
+            case 4:
+                buffer.putFloat((float) Double.longBitsToDouble(bits));
+                break;
+            default:
+                buffer.putDouble(Double.longBitsToDouble(bits));
+        }
+    }
+
+    /**
+     * Return the <code>i</code>-th value of the given column.
+     * 
+     * @param column The column.
+     * @param type The code of the type of the values.
+     * @param i Index of the value.
+     * @return The value.
+     */
+    private static Number get(ByteBuffer column, int type, int i)
+    {
+        switch (type) {
+            case 0:
+                return column.get(i);
+            case 1:
+                return column.getShort(i * 2);
+            case 2:
+                return column.getInt(i * 4);
+            case 3:
+                return column.getLong(i * 8);
+            case 4:
+                return column.getFloat(i * 4);
+            default:
+                return column.getDouble(i * 8);
+        }
+    }
+
+    /**
+     * Append the given minimum or maximum value to the header. The value occupies 8 bytes regardless of its type.
+     * 
+     * @param header The header.
+     * @param type The code of the type of the value.
+     * @param value The value.
+     */
+    private static void putHeaderValue(ByteBuffer header, int type, Number value)
+    {
+        if (TYPES[type] == Long.class)
+            header.putLong(value.longValue());
+        else
+            header.putDouble(value.doubleValue());
+    }
+
+    /**
+     * Read a minimum or maximum value from the header.
+     * 
+     * @param header The header.
+     * @param type The code of the type of the value.
+     * @return The value.
+     */
+    private static Number getHeaderValue(ByteBuffer header, int type)
+    {
+        if (TYPES[type] == Long.class)
+            return header.getLong();
+
+        final double value = header.getDouble();
+        switch (type) {
+            case 0:
+                return (byte) value;
+            case 1:
+                return (short) value;
+            case 2:
+                return (int) value;
+            case 4:
+                return (float) value;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Write the whole given buffer to the given position of the channel, and clear the buffer.
+     * 
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @param position The position in the channel.
+     * 
+     * @throws IOException If the buffer cannot be written.
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        buffer.clear();
+    }
+
+    /**
+     * Map the given part of the channel.
+     * 
+     * @param channel The channel.
+     * @param offset The offset of the part.
+     * @param length The length of the part.
+     * @param file The mapped file.
+     * @return The mapped part.
+     * 
+     * @throws IOException If the part cannot be mapped.
+     */
+    private static ByteBuffer map(FileChannel channel, long offset, long length, File file) throws IOException
+    {
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("The data set file " + file + " is too big to be opened."); /* I18N */
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * An iterator over the points of the set.
+     * 
+     * @author Martin Pecka
+     * @param <T> Type of the returned values.
+     */
+    protected abstract class MappedIterator<T> implements Iterator<T>
+    {
+        /** Index of the next point. */
+        private int i = 0;
+
+        @Override
+        public boolean hasNext()
+        {
+            return i < size();
+        }
+
+        @Override
+        public T next()
+        {
+            if (i >= size())
+                throw new NoSuchElementException();
+            return get(i++);
+        }
+
+        /**
+         * Return the value for the <code>i</code>-th point.
+         * 
+         * @param i Index of the point.
+         * @return The value.
+         */
+        protected abstract T get(int i);
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+/**
+ * A 4D data set reading its points from a memory-mapped data set file.
+ * 
+ * @author Martin Pecka
+ * @param <X> The type of the values in x coordinate.
+ * @param <Y> The type of the values in y coordinate.
+ * @param <Z> The type of the values in z coordinate.
+ * @param <W> The type of the values in w coordinate.
+ * 
+ * @see MappedDataSet
+ */
+public class MappedDataSet4D<X extends Number, Y extends Number, Z extends Number, W extends Number> extends
+        MappedDataSet implements DataSet4D<X, Y, Z, W>
+{
+
+    /**
+     * Create a data set from the given mapped columns.
+     * 
+     * @param columns The columns of the x, y, z and w coordinates.
+     * @param counts The counts of the points.
+     * @param types The codes of the types of the coordinates.
+     * @param precisions The precisions of the coordinates.
+     * @param sourceNames The names of the sources of the coordinates.
+     * @param min The minimum values of the coordinates.
+     * @param max The maximum values of the coordinates.
+     */
+    protected MappedDataSet4D(ByteBuffer[] columns, IntBuffer counts, int[] types, Integer[] precisions,
+            String[] sourceNames, Number[] min, Number[] max)
+    {
+        super(columns, counts, types, precisions, sourceNames, min, max);
+    }
+
+    @Override
+    public Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> pointIterator()
+    {
+        return new MappedIterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>>() {
+            @Override
+            protected DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> get(int i)
+            {
+                return getPoint(i);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> getPoint(int i)
+    {
+        return new SimpleDataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>(
+                (NumericType<X>) getNumericType(0, i), (NumericType<Y>) getNumericType(1, i),
+                (NumericType<Z>) getNumericType(2, i), (NumericType<W>) getNumericType(3, i));
+    }
+
+    @Override
+    public Iterator<X> xIterator()
+    {
+        return columnIterator(0);
+    }
+
+    @Override
+    public Iterator<Y> yIterator()
+    {
+        return columnIterator(1);
+    }
+
+    @Override
+    public Iterator<Z> zIterator()
+    {
+        return columnIterator(2);
+    }
+
+    @Override
+    public Iterator<W> wIterator()
+    {
+        return columnIterator(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMinX()
+    {
+        return (X) getMinNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMinY()
+    {
+        return (Y) getMinNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMinZ()
+    {
+        return (Z) getMinNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public W getMinW()
+    {
+        return (W) getMinNumber(3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public X getMaxX()
+    {
+        return (X) getMaxNumber(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Y getMaxY()
+    {
+        return (Y) getMaxNumber(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Z getMaxZ()
+    {
+        return (Z) getMaxNumber(2);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public W getMaxW()
+    {
+        return (W) getMaxNumber(3);
+    }
+}
@@ -0,0 +1,723 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
+import org.esa.beam.dataViewer3D.data.type.DecimalNumericType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A builder of data sets whose distinct points don't fit into the heap.
+ * <p>
+ * The valid points of the sources are collected in a buffer of bounded size. Whenever the buffer is full, its points
+ * are radix-sorted by their keys (see {@link PointKeySorter#sort(long[], int, int, int[][], int)}), equal points are
+ * collapsed, and the sorted run is written to a temporary file. When the sources have been read, the runs are merged by
+ * a k-way merge, which gives the distinct points with their counts in one sequential pass over the runs. As every
+ * merged run needs its own buffer, at most {@link #MAX_FAN_IN} runs are merged at once; if there are more of them,
+ * groups of consecutive runs are first merged into longer runs in several passes. The distinct points are written
+ * column by column and assembled into a data set file (see {@link MappedDataSet}), so neither the points nor their
+ * counts ever have to fit into the heap.
+ * <p>
+ * Every distinct point has the values of its first occurrence in the sources. All files are read and written through
+ * direct buffers.
+ * 
+ * @author Martin Pecka
+ */
+class OutOfCoreBuilder
+{
+    /** The size of the buffer of every read or written file, in bytes. */
+    private static final int                      BUFFER_SIZE  = 1 << 16;
+
+    /** The minimum number of points of a run. */
+    private static final int                      MIN_RUN_SIZE = 1 << 10;
+
+    /** The number of points read from the sources at once. */
+    private static final int                      BULK_SIZE    = AbstractDataSet.BULK_READ_SIZE;
+
+    /** The maximum number of runs merged at once. */
+    static final int                              MAX_FAN_IN   = 1 << 6;
+
+    /** The number of merged points after which the cancellation is checked. */
+    private static final int                      CHECK_CANCEL = 1 << 12;
+
+    /** The sources to read. */
+    private final DataSource<?>[]                 sources;
+
+    /**
+     * The function computing the hash of a point from the hashes of its coordinates; if <code>null</code>, the points
+     * are told apart exactly by the keys of their coordinates.
+     */
+    private final ParallelTileScanner.PointHasher hasher;
+
+    /** The number of keys identifying a point. */
+    private final int                             keyDimensions;
+
+    /** The number of threads to sort the runs by. */
+    private final int                             parallelism;
+
+    /** The progress monitor. */
+    private final ProgressMonitor                 progressMonitor;
+
+    /** The maximum number of points of a run. */
+    private final int                             runSize;
+
+    /** The size of a point in the run files, in bytes. */
+    private final int                             recordSize;
+
+    /** The keys of the buffered points; <code>keyDimensions</code> entries per point. */
+    private long[]                                keys;
+
+    /** The values of the buffered points (see {@link MappedDataSet#putBits(ByteBuffer, int, long)}). */
+    private long[]                                values;
+
+    /** The indices of the buffered points in the sources. */
+    private int[]                                 indices;
+
+    /** The number of buffered points. */
+    private int                                   size         = 0;
+
+    /** The codes of the types of the coordinates, <code>null</code> until the first valid point is read. */
+    private int[]                                 types        = null;
+
+    /** Whether the types of the coordinates are decimal, <code>null</code> until the first valid point is read. */
+    private boolean[]                             decimal      = null;
+
+    /** The written runs, in the order of the sources. */
+    private final List<File>                      runs         = new ArrayList<File>();
+
+    /**
+     * Create the builder.
+     * 
+     * @param hasher The function computing the hash of a point from the hashes of its coordinates; if
+     *            <code>null</code>, the points are told apart exactly by the keys of their coordinates.
+     * @param memoryThreshold The maximum number of bytes of the points kept in memory.
+     * @param parallelism The number of threads to sort the runs by.
+     * @param progressMonitor The progress monitor, may be <code>null</code>.
+     * @param sources The sources to read.
+     */
+    OutOfCoreBuilder(ParallelTileScanner.PointHasher hasher, long memoryThreshold, int parallelism,
+            ProgressMonitor progressMonitor, DataSource<?>... sources)
+    {
+        this.sources = sources;
+        this.hasher = hasher;
+        this.keyDimensions = hasher == null ? sources.length : 1;
+        this.parallelism = Math.max(1, parallelism);
+        this.progressMonitor = progressMonitor;
+
+        recordSize = 8 * (keyDimensions + sources.length) + 4 + 4;
+        // the buffer, the packed keys sorted twice and the permutation of the points
+        final int bytesPerPoint = 8 * keyDimensions + 8 * sources.length + 4 + 16 * keyDimensions + 8;
+        final long maxRunSize = Integer.MAX_VALUE / Math.max(keyDimensions, sources.length);
+        runSize = (int) Math.max(MIN_RUN_SIZE, Math.min(maxRunSize, memoryThreshold / bytesPerPoint));
+    }
+
+    /**
+     * Read the sources and write the data set file.
+     * 
+     * @param file The file to write the data set to. The temporary files are created in its directory.
+     * 
+     * @throws IOException If the files cannot be written.
+     * @throws IllegalArgumentException If the sources contain no valid point.
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    void build(File file) throws IOException, IllegalArgumentException, CancellationException
+    {
+        final File directory = file.getAbsoluteFile().getParentFile();
+        final int dimensions = sources.length;
+        final Number[] min = new Number[dimensions], max = new Number[dimensions];
+        final double[] minValues = new double[dimensions], maxValues = new double[dimensions];
+        final File[] columns = new File[dimensions + 1];
+
+        try {
+            keys = new long[Math.min(runSize, BULK_SIZE) * keyDimensions];
+            values = new long[Math.min(runSize, BULK_SIZE) * dimensions];
+            indices = new int[Math.min(runSize, BULK_SIZE)];
+            read(min, max, minValues, maxValues, directory);
+            if (size > 0)
+                spill(directory);
+            keys = values = null;
+            indices = null;
+
+            if (runs.isEmpty())
+                throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
+
+            while (runs.size() > MAX_FAN_IN)
+                mergeRuns(directory);
+
+            for (int d = 0; d <= dimensions; d++)
+                columns[d] = File.createTempFile(file.getName(), ".col", directory);
+            final int distinct = merge(runs, null, columns);
+
+            final Integer[] precisions = new Integer[dimensions];
+            final String[] sourceNames = new String[dimensions];
+            for (int d = 0; d < dimensions; d++) {
+                precisions[d] = getPrecision(sources[d]);
+                sourceNames[d] = sources[d].getName();
+            }
+            MappedDataSet.assemble(file, distinct, types, precisions, sourceNames, min, max, columns);
+        } finally {
+            for (File run : runs)
+                run.delete();
+            runs.clear();
+            for (File column : columns) {
+                if (column != null)
+                    column.delete();
+            }
+            if (progressMonitor != null)
+                progressMonitor.done();
+        }
+    }
+
+    /**
+     * Read the sources, compute the extremes of the coordinates and spill the full buffers to runs.
+     * 
+     * @param min The array to put the minimum values to.
+     * @param max The array to put the maximum values to.
+     * @param minValues The array to put the minimum values to as primitives.
+     * @param maxValues The array to put the maximum values to as primitives.
+     * @param directory The directory to create the runs in.
+     * 
+     * @throws IOException If a run cannot be written.
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    private void read(Number[] min, Number[] max, double[] minValues, double[] maxValues, File directory)
+            throws IOException, CancellationException
+    {
+        final int dimensions = sources.length;
+        final int[] readIndices = new int[BULK_SIZE];
+        final double[][] readValues = new double[dimensions][BULK_SIZE];
+        final int[] hashes = new int[dimensions];
+
+        // tiles not containing any data in some of the sources are skipped without reading them
+        final int[] tiles = AbstractDataSet.getDataTiles(sources);
+        final PointReader reader = AbstractDataSet.createPointReader(tiles, sources);
+
+        if (progressMonitor != null) {
+            progressMonitor.beginTask("Loading band data", sources[0].size()); /* I18N */
+            progressMonitor.worked(AbstractDataSet.getSkippedEntries(tiles, sources[0]));
+        }
+
+        int reportedEntries = 0;
+        while (reader.hasNext()) {
+            final int read = reader.read(readIndices, readValues);
+
+            if (progressMonitor != null) {
+                progressMonitor.worked(reader.getProcessedEntries() - reportedEntries);
+                reportedEntries = reader.getProcessedEntries();
+            }
+            checkCanceled();
+
+            for (int j = 0; j < read; j++) {
+                for (int d = 0; d < dimensions; d++) {
+                    final double value = readValues[d][j];
+                    if (min[d] == null || minValues[d] > value) {
+                        minValues[d] = value;
+                        min[d] = reader.getNumber(d, j);
+                    }
+                    if (max[d] == null || maxValues[d] < value) {
+                        maxValues[d] = value;
+                        max[d] = reader.getNumber(d, j);
+                    }
+                }
+            }
+
+            if (read > 0 && types == null) {
+                types = new int[dimensions];
+                decimal = new boolean[dimensions];
+                for (int d = 0; d < dimensions; d++) {
+                    types[d] = MappedDataSet.getTypeCode(min[d]);
+                    decimal[d] = min[d] instanceof Float || min[d] instanceof Double;
+                }
+            }
+
+            for (int j = 0; j < read; j++) {
+                if (size == runSize)
+                    spill(directory);
+                ensureCapacity(size + 1);
+
+                if (hasher == null) {
+                    for (int d = 0; d < dimensions; d++)
+                        keys[size * keyDimensions + d] = reader.getKey(d, j);
+                } else {
+                    for (int d = 0; d < dimensions; d++)
+                        hashes[d] = reader.getHashCode(d, j);
+                    keys[size] = hasher.getHashCode(hashes);
+                }
+
+                // the keys of the integral types are their values
+                for (int d = 0; d < dimensions; d++) {
+                    values[size * dimensions + d] = decimal[d] ? Double.doubleToRawLongBits(readValues[d][j]) : reader
+                            .getKey(d, j);
+                }
+                indices[size] = readIndices[j];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Make sure the buffer can hold the given number of points.
+     * 
+     * @param capacity The number of points, at most the run size.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= indices.length)
+            return;
+
+        final int newCapacity = (int) Math.min(runSize, Math.max(capacity, 2L * indices.length));
+        keys = Arrays.copyOf(keys, newCapacity * keyDimensions);
+        values = Arrays.copyOf(values, newCapacity * sources.length);
+        indices = Arrays.copyOf(indices, newCapacity);
+    }
+
+    /**
+     * Sort the buffered points, collapse the equal ones and write them to a new run. The buffer is emptied.
+     * 
+     * @param directory The directory to create the run in.
+     * 
+     * @throws IOException If the run cannot be written.
+     */
+    private void spill(File directory) throws IOException
+    {
+        final int dimensions = sources.length;
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        // the sort is stable, so the first point of every group of equal points is its first occurrence
+        final long[] packed = PointKeySorter.sort(keys, keyDimensions, size, new int[][] { order }, parallelism);
+        final int width = packed.length / size;
+
+        final File run = File.createTempFile("points", ".run", directory);
+        runs.add(run);
+        final RecordWriter writer = new RecordWriter(run);
+        try {
+            int i = 0;
+            while (i < size) {
+                int j = i + 1;
+                while (j < size && PointKeySorter.equalKeys(packed, width, i, j))
+                    j++;
+
+                final int point = order[i];
+                writer.write(keys, point * keyDimensions, values, point * dimensions, indices[point], j - i);
+                i = j;
+            }
+        } finally {
+            writer.close();
+        }
+        size = 0;
+    }
+
+    /**
+     * Merge every group of {@link #MAX_FAN_IN} consecutive runs into a single run. The merged runs are deleted.
+     * 
+     * @param directory The directory to create the new runs in.
+     * 
+     * @throws IOException If the runs cannot be read or written.
+     * @throws CancellationException If the progress monitor has been canceled or the thread has been interrupted.
+     */
+    private void mergeRuns(File directory) throws IOException, CancellationException
+    {
+        final List<File> inputs = new ArrayList<File>(runs);
+        final List<File> merged = new ArrayList<File>((inputs.size() + MAX_FAN_IN - 1) / MAX_FAN_IN);
+        // the new runs are deleted by the caller if the merge fails
+        for (int first = 0; first < inputs.size(); first += MAX_FAN_IN) {
+            final File run = File.createTempFile("points", ".run", directory);
+            runs.add(run);
+            merged.add(run);
+            // the groups are consecutive, so the earlier runs still contain the earlier occurrences
+            merge(inputs.subList(first, Math.min(inputs.size(), first + MAX_FAN_IN)), run, null);
+        }
+
+        for (File input : inputs)
+            input.delete();
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /**
+     * Merge the given runs and write the distinct points either to a new run or to the columns.
+     * 
+     * @param inputs The runs to merge, in the order of the sources.
+     * @param output The file to write the merged run to, <code>null</code> if the columns are written.
+     * @param columns The files to write the columns of the coordinates and the column of the counts to,
+     *            <code>null</code> if a run is written.
+     * @return The number of distinct points.
+     * 
+     * @throws IOException If the runs cannot be read or the output cannot be written.
+     * @throws CancellationException If the progress monitor has been canceled or the thread has been interrupted.
+     */
+    private int merge(List<File> inputs, File output, File[] columns) throws IOException, CancellationException
+    {
+        final int dimensions = sources.length;
+        final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(inputs.size(), new Comparator<RunReader>() {
+            @Override
+            public int compare(RunReader o1, RunReader o2)
+            {
+                final int result = compareKeys(o1.keys, o2.keys);
+                // the earlier runs contain the earlier occurrences
+                return result != 0 ? result : o1.run - o2.run;
+            }
+        });
+
+        final List<RunReader> readers = new ArrayList<RunReader>(inputs.size());
+        RecordWriter recordWriter = null;
+        final ColumnWriter[] columnWriters = new ColumnWriter[dimensions + 1];
+        try {
+            for (int r = 0; r < inputs.size(); r++) {
+                final RunReader reader = new RunReader(inputs.get(r), r);
+                readers.add(reader);
+                if (reader.next())
+                    queue.add(reader);
+            }
+            if (output != null) {
+                recordWriter = new RecordWriter(output);
+            } else {
+                for (int d = 0; d <= dimensions; d++) {
+                    columnWriters[d] = new ColumnWriter(columns[d], d < dimensions ? MappedDataSet.TYPE_SIZES[types[d]]
+                            : 4);
+                }
+            }
+
+            final long[] pointKeys = new long[keyDimensions], pointValues = new long[dimensions];
+            int pointIndex = 0;
+            int distinct = 0;
+            int count = 0;
+            long mergedPoints = 0;
+            while (!queue.isEmpty()) {
+                if (++mergedPoints % CHECK_CANCEL == 0)
+                    checkCanceled();
+
+                final RunReader reader = queue.poll();
+                if (count > 0 && compareKeys(reader.keys, pointKeys) == 0) {
+                    count += reader.count;
+                } else {
+                    if (count > 0) {
+                        write(recordWriter, columnWriters, pointKeys, pointValues, pointIndex, count);
+                        distinct++;
+                    }
+                    System.arraycopy(reader.keys, 0, pointKeys, 0, keyDimensions);
+                    System.arraycopy(reader.values, 0, pointValues, 0, dimensions);
+                    pointIndex = reader.index;
+                    count = reader.count;
+                }
+
+                if (reader.next())
+                    queue.add(reader);
+            }
+            if (count > 0) {
+                write(recordWriter, columnWriters, pointKeys, pointValues, pointIndex, count);
+                distinct++;
+            }
+            return distinct;
+        } finally {
+            for (RunReader reader : readers)
+                reader.close();
+            if (recordWriter != null)
+                recordWriter.close();
+            for (ColumnWriter writer : columnWriters) {
+                if (writer != null)
+                    writer.close();
+            }
+        }
+    }
+
+    /**
+     * Write a distinct point either to a run or to the columns.
+     * 
+     * @param recordWriter The writer of the run, <code>null</code> if the columns are written.
+     * @param columnWriters The writers of the columns.
+     * @param pointKeys The keys of the point.
+     * @param pointValues The values of the point.
+     * @param pointIndex The index of the first occurrence of the point.
+     * @param count The count of the point.
+     * 
+     * @throws IOException If the point cannot be written.
+     */
+    private void write(RecordWriter recordWriter, ColumnWriter[] columnWriters, long[] pointKeys, long[] pointValues,
+            int pointIndex, int count) throws IOException
+    {
+        if (recordWriter != null) {
+            recordWriter.write(pointKeys, 0, pointValues, 0, pointIndex, count);
+            return;
+        }
+
+        for (int d = 0; d < pointValues.length; d++)
+            MappedDataSet.putBits(columnWriters[d].next(), types[d], pointValues[d]);
+        columnWriters[pointValues.length].next().putInt(count);
+    }
+
+    /**
+     * Throw an exception if the progress monitor has been canceled or the thread has been interrupted.
+     * 
+     * @throws CancellationException If the progress monitor has been canceled or the thread has been interrupted.
+     */
+    private void checkCanceled() throws CancellationException
+    {
+        if ((progressMonitor != null && progressMonitor.isCanceled()) || Thread.currentThread().isInterrupted())
+            throw new CancellationException();
+    }
+
+    /**
+     * Compare the given keys the same way {@link PointKeySorter#sort(long[], int, int, int[][], int)} does.
+     * 
+     * @param keys1 The first keys.
+     * @param keys2 The second keys.
+     * @return A negative number, zero or a positive number if the first keys are less than, equal to or greater than
+     *         the second ones.
+     */
+    private static int compareKeys(long[] keys1, long[] keys2)
+    {
+        for (int k = keys1.length - 1; k >= 0; k--) {
+            if (keys1[k] != keys2[k])
+                return keys1[k] < keys2[k] ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Return the precision of the values of the given source.
+     * 
+     * @param source The source.
+     * @return The precision, <code>null</code> for infinite precision or an integral type.
+     */
+    private static Integer getPrecision(DataSource<?> source)
+    {
+        final Iterator<? extends NumericType<?>> it = source.numericTypeIterator();
+        if (!it.hasNext())
+            return null;
+        final NumericType<?> value = it.next();
+        return value instanceof DecimalNumericType<?> ? ((DecimalNumericType<?>) value).getPrecision() : null;
+    }
+
+    /**
+     * A sequential writer of a file through a direct buffer.
+     * 
+     * @author Martin Pecka
+     */
+    private static class BufferedFileWriter
+    {
+        /** The written file. */
+        private final RandomAccessFile file;
+        /** The channel of the file. */
+        private final FileChannel      channel;
+        /** The buffer of the not yet written values. */
+        private final ByteBuffer       buffer;
+        /** The number of bytes of one value. */
+        private final int              valueSize;
+
+        /**
+         * @param file The file to write.
+         * @param valueSize The number of bytes of one value.
+         * 
+         * @throws IOException If the file cannot be opened.
+         */
+        BufferedFileWriter(File file, int valueSize) throws IOException
+        {
+            this.file = new RandomAccessFile(file, "rw");
+            this.channel = this.file.getChannel();
+            this.valueSize = valueSize;
+            buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_SIZE / valueSize) * valueSize).order(
+                    ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Return the buffer to put the next value to. It has room for at least one value.
+         * 
+         * @return The buffer.
+         * 
+         * @throws IOException If the buffered values cannot be written.
+         */
+        ByteBuffer next() throws IOException
+        {
+            if (buffer.remaining() < valueSize)
+                flush();
+            return buffer;
+        }
+
+        /**
+         * Write the buffered values and close the file.
+         * 
+         * @throws IOException If the values cannot be written.
+         */
+        void close() throws IOException
+        {
+            try {
+                flush();
+            } finally {
+                file.close();
+            }
+        }
+
+        /**
+         * Write the buffered values.
+         * 
+         * @throws IOException If the values cannot be written.
+         */
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * A writer of the points of a run.
+     * 
+     * @author Martin Pecka
+     */
+    private class RecordWriter extends BufferedFileWriter
+    {
+        /**
+         * @param file The file of the run.
+         * 
+         * @throws IOException If the file cannot be opened.
+         */
+        RecordWriter(File file) throws IOException
+        {
+            super(file, recordSize);
+        }
+
+        /**
+         * Write a point.
+         * 
+         * @param keys The array containing the keys of the point.
+         * @param keysOffset Index of the first key of the point in <code>keys</code>.
+         * @param values The array containing the values of the point.
+         * @param valuesOffset Index of the first value of the point in <code>values</code>.
+         * @param index The index of the first occurrence of the point.
+         * @param count The count of the point.
+         * 
+         * @throws IOException If the buffered points cannot be written.
+         */
+        void write(long[] keys, int keysOffset, long[] values, int valuesOffset, int index, int count)
+                throws IOException
+        {
+            final ByteBuffer buffer = next();
+            for (int k = 0; k < keyDimensions; k++)
+                buffer.putLong(keys[keysOffset + k]);
+            for (int d = 0; d < sources.length; d++)
+                buffer.putLong(values[valuesOffset + d]);
+            buffer.putInt(index);
+            buffer.putInt(count);
+        }
+    }
+
+    /**
+     * A writer of a column of the data set file.
+     * 
+     * @author Martin Pecka
+     */
+    private static class ColumnWriter extends BufferedFileWriter
+    {
+        /**
+         * @param file The file of the column.
+         * @param valueSize The number of bytes of one value.
+         * 
+         * @throws IOException If the file cannot be opened.
+         */
+        ColumnWriter(File file, int valueSize) throws IOException
+        {
+            super(file, valueSize);
+        }
+    }
+
+    /**
+     * A sequential reader of the points of a run.
+     * 
+     * @author Martin Pecka
+     */
+    private class RunReader
+    {
+        /** The position of the run in the order of the sources. */
+        final int                      run;
+        /** The keys of the current point. */
+        final long[]                   keys   = new long[keyDimensions];
+        /** The values of the current point. */
+        final long[]                   values = new long[sources.length];
+        /** The index of the first occurrence of the current point. */
+        int                            index;
+        /** The count of the current point. */
+        int                            count;
+        /** The read file. */
+        private final RandomAccessFile file;
+        /** The channel of the file. */
+        private final FileChannel      channel;
+        /** The buffer of the read but not yet returned points. */
+        private final ByteBuffer       buffer;
+
+        /**
+         * @param file The file of the run.
+         * @param run The position of the run in the order of the sources.
+         * 
+         * @throws IOException If the file cannot be opened.
+         */
+        RunReader(File file, int run) throws IOException
+        {
+            this.run = run;
+            this.file = new RandomAccessFile(file, "r");
+            this.channel = this.file.getChannel();
+            buffer = ByteBuffer.allocateDirect(Math.max(1, BUFFER_SIZE / recordSize) * recordSize).order(
+                    ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(0);
+        }
+
+        /**
+         * Read the next point of the run.
+         * 
+         * @return <code>false</code> if there are no more points.
+         * 
+         * @throws IOException If the file cannot be read.
+         */
+        boolean next() throws IOException
+        {
+            if (buffer.remaining() < recordSize) {
+                buffer.compact();
+                while (buffer.position() < recordSize && channel.read(buffer) >= 0) {
+                    // read at least one whole point
+                }
+                buffer.flip();
+                if (buffer.remaining() < recordSize)
+                    return false;
+            }
+
+            for (int k = 0; k < keys.length; k++)
+                keys[k] = buffer.getLong();
+            for (int d = 0; d < values.length; d++)
+                values[d] = buffer.getLong();
+            index = buffer.getInt();
+            count = buffer.getInt();
+            return true;
+        }
+
+        /**
+         * Close the file.
+         * 
+         * @throws IOException If the file cannot be closed.
+         */
+        void close() throws IOException
+        {
+            file.close();
+        }
+    }
+}
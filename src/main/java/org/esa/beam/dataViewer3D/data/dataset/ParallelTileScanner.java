@@ -0,0 +1,609 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
+import org.esa.beam.dataViewer3D.data.source.TileCursor;
+import org.esa.beam.dataViewer3D.data.source.TiledDataSource;
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * A scanner that reads tiled data sources tile by tile in several threads.
+ * <p>
+ * Tiles not containing any data in some of the sources are skipped. Every task scans a part of the remaining tiles
+ * (a chunk) and builds its own partial result (min/max values, counts of the distinct points and indices of their first
+ * occurrences). When all tasks are finished, the partial results are merged in the order of the tiles, so the
+ * result doesn't depend on the scheduling of the tasks. If no maximum number of points is given, the result is the
+ * same as the one of a single-threaded scan. The distinct points are counted by a {@link PointCounter}, so with many
+ * distinct points they are radix-sorted (using all threads of the scanner) instead of being looked up in hash tables.
+ * <p>
+ * If a maximum number of points is given, every task samples its points into its own reservoir (see
+ * {@link PointReservoir}) seeded by the index of its chunk, and the reservoirs are merged into a uniformly random
+ * sample of all points. The tiles are split into a fixed number of chunks regardless of the number of threads (with
+ * one thread, the chunks are scanned one after another in the calling thread), so the sample only depends on the seed
+ * and the sources.
+ * <p>
+ * The chunks are scanned in a strided order (see {@link #getScanOrder(int)}), so the finished ones are spread over the
+ * whole sources. If a {@link PartialResultListener} is set, the finished chunks are periodically merged into partial
+ * results of the scan.
+ * 
+ * @author Martin Pecka
+ */
+class ParallelTileScanner
+{
+    /**
+     * The number of chunks of tiles scanned by separate tasks - more than the usual number of threads, to balance the
+     * load of tiles with different contents. It mustn't depend on the number of threads, or the samples would.
+     */
+    private static final int            CHUNKS            = 64;
+
+    /** The interval in which the progress monitor is updated and checked for cancellation (in milliseconds). */
+    private static final long           PROGRESS_INTERVAL = 100;
+
+    /** The sources to scan. */
+    private final TiledDataSource<?>[]  sources;
+
+    /**
+     * The function computing the hash of a point from the hashes of its coordinates; if <code>null</code>, the points
+     * are told apart exactly by the keys of their coordinates.
+     */
+    private final PointHasher           hasher;
+
+    /** If not <code>null</code>, specifies the maximum number of points in the result. */
+    private final Integer               maxPoints;
+
+    /** The seed of the sampling of the points. */
+    private final long                  seed;
+
+    /** The number of threads to use. */
+    private final int                   parallelism;
+
+    /** The progress monitor. */
+    private final ProgressMonitor       progressMonitor;
+
+    /** The number of entries already read by all tasks. */
+    private final AtomicLong            processedEntries  = new AtomicLong();
+
+    /** Set to <code>true</code> if the tasks should stop as soon as possible. */
+    private volatile boolean            canceled          = false;
+
+    /** The estimated number of distinct points, <code>null</code> if not known or the points are sampled. */
+    private Integer                     estimatedPoints   = null;
+
+    /** The number of entries reported to the progress monitor. */
+    private long                        reportedEntries   = 0;
+
+    /** The listener to publish the partial results to, <code>null</code> if no partial results are published. */
+    private PartialResultListener       partialResultListener;
+
+    /** The time between the start of the scan and the first partial result, in milliseconds. */
+    private long                        partialResultDelay;
+
+    /** The time of the next partial result. */
+    private long                        nextPartialResultTime;
+
+    /** The number of chunks merged into the last partial result. */
+    private int                         publishedChunks   = 0;
+
+    /**
+     * Create the scanner.
+     * 
+     * @param hasher The function computing the hash of a point from the hashes of its coordinates; if
+     *            <code>null</code>, the points are told apart exactly by the keys of their coordinates.
+     * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the result.
+     * @param seed The seed of the sampling of the points (only used if <code>maxPoints</code> is given).
+     * @param parallelism The number of threads to use; <code>1</code> scans the tiles in the calling thread.
+     * @param progressMonitor The progress monitor, may be <code>null</code>.
+     * @param sources The sources to scan. They have to pass {@link #canScan(DataSource...)}.
+     * 
+     * @throws IllegalArgumentException If the sources cannot be scanned in parallel.
+     */
+    public ParallelTileScanner(PointHasher hasher, Integer maxPoints, long seed, int parallelism,
+            ProgressMonitor progressMonitor, DataSource<?>... sources)
+    {
+        if (!canScan(sources))
+            throw new IllegalArgumentException(getClass() + ": The sources cannot be scanned in parallel.");
+
+        this.hasher = hasher;
+        this.maxPoints = maxPoints;
+        this.seed = seed;
+        this.parallelism = Math.max(1, parallelism);
+        this.progressMonitor = progressMonitor;
+
+        this.sources = new TiledDataSource<?>[sources.length];
+        for (int i = 0; i < sources.length; i++)
+            this.sources[i] = (TiledDataSource<?>) sources[i];
+    }
+
+    /**
+     * Return <code>true</code> if the given sources can be scanned in parallel.
+     * <p>
+     * That is if all of them are tiled with the same tile grid, and there is more than one tile.
+     * 
+     * @param sources The sources to check.
+     * @return Whether the given sources can be scanned in parallel.
+     */
+    public static boolean canScan(DataSource<?>... sources)
+    {
+        return TileCursor.isTiled(sources) && ((TiledDataSource<?>) sources[0]).getNumTiles() > 1;
+    }
+
+    /**
+     * Set the listener to publish the partial results of the scan to. The partial results are published in the thread
+     * calling {@link #scan()} at growing intervals, starting with the given one; each of them contains the chunks
+     * finished so far.
+     * 
+     * @param listener The listener, <code>null</code> to publish no partial results.
+     * @param interval The time between the start of the scan and the first partial result, in milliseconds. The
+     *            time between the following ones doubles after each of them.
+     */
+    public void setPartialResultListener(PartialResultListener listener, long interval)
+    {
+        this.partialResultListener = listener;
+        this.partialResultDelay = interval;
+    }
+
+    /**
+     * Return the order in which the given number of chunks is scanned. It is the bit-reversed order of the indices of
+     * the chunks, so the chunks scanned first are spread over the whole sources, and so are the chunks merged into
+     * the partial results.
+     * 
+     * @param numChunks The number of chunks.
+     * @return The indices of the chunks in the order they are scanned in.
+     */
+    static int[] getScanOrder(int numChunks)
+    {
+        int bits = 0;
+        while ((1 << bits) < numChunks)
+            bits++;
+
+        final int[] order = new int[numChunks];
+        int count = 0;
+        for (int i = 0; i < 1 << bits; i++) {
+            final int chunk = bits == 0 ? 0 : Integer.reverse(i) >>> (Integer.SIZE - bits);
+            if (chunk < numChunks)
+                order[count++] = chunk;
+        }
+        return order;
+    }
+
+    /**
+     * Scan the sources and return the merged result.
+     * 
+     * @return The merged result of all tasks.
+     * 
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    public Result scan()
+    {
+        final int numTiles = sources[0].getNumTiles();
+        final int tileSize = sources[0].getTileSize();
+        // tiles not containing data in some of the sources are skipped completely
+        final int[] dataTiles = TileCursor.getDataTiles(sources);
+        final int numTasks = Math.max(1, Math.min(dataTiles.length, CHUNKS));
+        // the counters of the tasks and the merged one are sized by a cheap estimate of the distinct points
+        estimatedPoints = maxPoints == null ? CardinalityEstimator.estimate(sources) : null;
+
+        if (progressMonitor != null)
+            progressMonitor.beginTask("Loading band data", numTiles * tileSize); /* I18N */
+        processedEntries.set((long) (numTiles - dataTiles.length) * tileSize);
+        // every task is expected to find its share of the points, its table grows if it finds more of them
+        final Integer taskPoints = estimatedPoints == null ? null
+                : (int) (((long) estimatedPoints + numTasks - 1) / numTasks);
+
+        final List<ScanTask> tasks = new ArrayList<ScanTask>(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            final int[] tiles = Arrays.copyOfRange(dataTiles, (int) ((long) dataTiles.length * i / numTasks),
+                    (int) ((long) dataTiles.length * (i + 1) / numTasks));
+            tasks.add(new ScanTask(tiles, getTaskSeed(i), taskPoints));
+        }
+
+        nextPartialResultTime = System.currentTimeMillis() + partialResultDelay;
+        // the chunks are the same whatever the number of threads, so are the sampled points
+        final Result[] partials = parallelism == 1 ? scanSequentially(tasks) : scanInParallel(tasks);
+        final Result result = merge(partials, estimatedPoints);
+
+        if (progressMonitor != null)
+            progressMonitor.done();
+
+        return result;
+    }
+
+    /**
+     * Merge the given results of the chunks in the order of the chunks.
+     * 
+     * @param partials The results of the chunks; <code>null</code> elements (unfinished chunks) are skipped.
+     * @param estimatedPoints The estimated number of distinct points, <code>null</code> if not known.
+     * @return The merged result.
+     */
+    private Result merge(Result[] partials, Integer estimatedPoints)
+    {
+        final Result result = new Result(sources.length, getKeyDimensions(), estimatedPoints);
+        final List<PointReservoir> samples = new ArrayList<PointReservoir>(partials.length);
+        for (Result partial : partials) {
+            if (partial == null)
+                continue;
+            result.merge(partial);
+            if (partial.sample != null)
+                samples.add(partial.sample);
+        }
+        if (!samples.isEmpty())
+            result.counts = PointReservoir.merge(samples, seed).toTable(result.usedPointsIndices).getCounts();
+        else
+            result.counts = result.usedPoints.getCounts(result.usedPointsIndices, parallelism);
+        return result;
+    }
+
+    /**
+     * Publish the merged results of the finished chunks to the partial result listener if it is set and the time of
+     * the next partial result has come. Nothing is published if no chunk has finished since the last partial result,
+     * or if the finished chunks contain no valid point.
+     * 
+     * @param partials The results of the chunks, <code>null</code> for the unfinished ones.
+     * @param finishedChunks The number of finished chunks.
+     */
+    private void publishPartialResult(Result[] partials, int finishedChunks)
+    {
+        if (partialResultListener == null || finishedChunks == partials.length || finishedChunks == publishedChunks
+                || System.currentTimeMillis() < nextPartialResultTime)
+            return;
+
+        final Result result = merge(partials, null);
+        publishedChunks = finishedChunks;
+        if (result.counts.size() > 0)
+            partialResultListener.partialResultCreated(result);
+
+        // the delays grow geometrically, so the partial results take a bounded part of the scanning time
+        partialResultDelay *= 2;
+        nextPartialResultTime = System.currentTimeMillis() + partialResultDelay;
+    }
+
+    /**
+     * Run the given tasks one after another in the calling thread, in the scan order.
+     * 
+     * @param tasks The tasks to run, in the order of the chunks.
+     * @return The results of the tasks, in the order of the tasks.
+     * 
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    private Result[] scanSequentially(List<ScanTask> tasks) throws CancellationException
+    {
+        final Result[] results = new Result[tasks.size()];
+        final int[] order = getScanOrder(tasks.size());
+        for (int i = 0; i < order.length; i++) {
+            final ScanTask task = tasks.get(order[i]);
+            task.reportsProgress = true;
+            results[order[i]] = task.call();
+            publishPartialResult(results, i + 1);
+        }
+        return results;
+    }
+
+    /**
+     * Run the given tasks in a pool of threads, submitting them in the scan order.
+     * 
+     * @param tasks The tasks to run, in the order of the chunks.
+     * @return The results of the tasks, in the order of the tasks.
+     * 
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    private Result[] scanInParallel(List<ScanTask> tasks) throws CancellationException
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            final CompletionService<Result> completionService = new ExecutorCompletionService<Result>(executor);
+            final Map<Future<Result>, Integer> chunks = new HashMap<Future<Result>, Integer>();
+            for (int chunk : getScanOrder(tasks.size()))
+                chunks.put(completionService.submit(tasks.get(chunk)), chunk);
+
+            final Result[] results = new Result[tasks.size()];
+            int finishedTasks = 0;
+            while (finishedTasks < tasks.size()) {
+                final Future<Result> finished = completionService.poll(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                if (finished != null) {
+                    // throws the exception the task has possibly thrown
+                    results[chunks.get(finished)] = finished.get();
+                    finishedTasks++;
+                }
+                reportProgress();
+                publishPartialResult(results, finishedTasks);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            canceled = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            canceled = true;
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            // the sources may be released as soon as the scan ends (e.g. unmapped cached samples)
+            awaitTermination(executor);
+        }
+    }
+
+    /**
+     * Report the entries read by all tasks to the progress monitor and check it for cancellation.
+     * 
+     * @throws CancellationException If the progress monitor has been canceled.
+     */
+    private void reportProgress() throws CancellationException
+    {
+        if (progressMonitor == null)
+            return;
+
+        final long processed = processedEntries.get();
+        progressMonitor.worked((int) (processed - reportedEntries));
+        reportedEntries = processed;
+
+        if (progressMonitor.isCanceled()) {
+            canceled = true;
+            progressMonitor.done();
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Wait until all tasks of the given executor finish. The tasks stop soon after the scan is canceled, so the wait
+     * isn't interrupted; the interrupted status of the current thread is restored afterwards.
+     * 
+     * @param executor The executor which has been shut down.
+     */
+    private static void awaitTermination(ExecutorService executor)
+    {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Return the number of keys identifying a point.
+     * 
+     * @return The number of dimensions if the points are told apart exactly, 1 if they are told apart by hashes.
+     */
+    private int getKeyDimensions()
+    {
+        return hasher == null ? sources.length : 1;
+    }
+
+    /**
+     * Return the seed of the reservoir of the task scanning the given chunk of tiles.
+     * 
+     * @param task Index of the chunk.
+     * @return The seed.
+     */
+    private long getTaskSeed(int task)
+    {
+        return seed + (task + 1) * 0x9e3779b97f4a7c15L;
+    }
+
+    /**
+     * A task scanning a list of tiles.
+     * 
+     * @author Martin Pecka
+     */
+    private class ScanTask implements Callable<Result>
+    {
+        /** The tiles to scan, in ascending order. */
+        private final int[]   tiles;
+        /** The seed of the reservoir of this task. */
+        private final long    seed;
+        /** The estimated number of distinct points of this task, <code>null</code> if not known. */
+        private final Integer estimatedPoints;
+        /** Whether this task reports the progress of the scan (if it runs in the calling thread). */
+        private boolean       reportsProgress = false;
+
+        /**
+         * @param tiles The tiles to scan, in ascending order.
+         * @param seed The seed of the reservoir of this task.
+         * @param estimatedPoints The estimated number of distinct points of this task, <code>null</code> if not known.
+         */
+        public ScanTask(int[] tiles, long seed, Integer estimatedPoints)
+        {
+            this.tiles = tiles;
+            this.seed = seed;
+            this.estimatedPoints = estimatedPoints;
+        }
+
+        @Override
+        public Result call()
+        {
+            final int dimensions = sources.length;
+            // a task can't find more distinct points than the entries of its tiles
+            final Integer taskPoints = estimatedPoints == null ? null : (int) Math.min(estimatedPoints,
+                    (long) tiles.length * sources[0].getTileSize());
+            final Result result = new Result(dimensions, getKeyDimensions(), taskPoints);
+            final PointReservoir sample = maxPoints != null ? new PointReservoir(maxPoints, getKeyDimensions(), seed)
+                    : null;
+            result.sample = sample;
+
+            final int[] indices = new int[AbstractDataSet.BULK_READ_SIZE];
+            final double[][] values = new double[dimensions][AbstractDataSet.BULK_READ_SIZE];
+            final int[] hashes = new int[dimensions];
+            final long[] keys = new long[dimensions];
+
+            final PointReader reader = AbstractDataSet.createPointReader(tiles, sources);
+            int reportedEntries = 0;
+            long nextReportTime = System.currentTimeMillis() + PROGRESS_INTERVAL;
+            while (!canceled && reader.hasNext()) {
+                final int read = reader.read(indices, values);
+                result.validEntries += read;
+
+                for (int j = 0; j < read; j++) {
+                    for (int d = 0; d < dimensions; d++) {
+                        final double value = values[d][j];
+                        if (result.min[d] == null || result.minValues[d] > value) {
+                            result.minValues[d] = value;
+                            result.min[d] = reader.getNumber(d, j);
+                        }
+                        if (result.max[d] == null || result.maxValues[d] < value) {
+                            result.maxValues[d] = value;
+                            result.max[d] = reader.getNumber(d, j);
+                        }
+                    }
+                }
+
+                // the points not selected by the sampler aren't keyed at all
+                int j = 0;
+                while (j < read) {
+                    if (sample != null) {
+                        final long skip = sample.getSkip();
+                        if (skip >= read - j) {
+                            sample.skip(read - j);
+                            break;
+                        }
+                        sample.skip(skip);
+                        j += (int) skip;
+                    }
+
+                    if (hasher == null) {
+                        for (int d = 0; d < dimensions; d++)
+                            keys[d] = reader.getKey(d, j);
+                    } else {
+                        for (int d = 0; d < dimensions; d++)
+                            hashes[d] = reader.getHashCode(d, j);
+                        keys[0] = hasher.getHashCode(hashes);
+                    }
+
+                    if (sample != null)
+                        sample.set(sample.offer(), indices[j], keys);
+                    else
+                        result.usedPoints.add(keys, indices[j]);
+                    j++;
+                }
+
+                processedEntries.addAndGet(reader.getProcessedEntries() - reportedEntries);
+                reportedEntries = reader.getProcessedEntries();
+
+                if (reportsProgress && System.currentTimeMillis() >= nextReportTime) {
+                    reportProgress();
+                    nextReportTime = System.currentTimeMillis() + PROGRESS_INTERVAL;
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * The (partial) result of a scan.
+     * 
+     * @author Martin Pecka
+     */
+    static class Result
+    {
+        /** The distinct points and their counts (if the number of points isn't limited). */
+        final PointCounter  usedPoints;
+        /** The counts of the used points; only set in the merged result. */
+        IntList             counts;
+        /** Indices to the data source's iterator where all the used points are located; set with the counts. */
+        final IntList       usedPointsIndices = new IntList();
+        /** The minimum and maximum values of all dimensions, <code>null</code> if no valid point was found. */
+        final Number[]      min, max;
+        /** The minimum and maximum values of all dimensions as primitives. */
+        final double[]      minValues, maxValues;
+        /** The sampled points if the number of points is limited (the table of points is empty then). */
+        PointReservoir      sample;
+        /** The number of read valid entries. */
+        long                validEntries      = 0;
+
+        /**
+         * @param dimensions The number of dimensions of the points.
+         * @param keyDimensions The number of keys identifying a point.
+         * @param estimatedPoints The estimated number of distinct points, <code>null</code> if not known.
+         */
+        Result(int dimensions, int keyDimensions, Integer estimatedPoints)
+        {
+            usedPoints = PointCounter.create(keyDimensions, estimatedPoints);
+            min = new Number[dimensions];
+            max = new Number[dimensions];
+            minValues = new double[dimensions];
+            maxValues = new double[dimensions];
+        }
+
+        /**
+         * Merge the given partial result of the following tiles into this result. The samples aren't merged.
+         * 
+         * @param other The result to merge.
+         */
+        void merge(Result other)
+        {
+            for (int d = 0; d < min.length; d++) {
+                if (other.min[d] != null && (min[d] == null || minValues[d] > other.minValues[d])) {
+                    minValues[d] = other.minValues[d];
+                    min[d] = other.min[d];
+                }
+                if (other.max[d] != null && (max[d] == null || maxValues[d] < other.maxValues[d])) {
+                    maxValues[d] = other.maxValues[d];
+                    max[d] = other.max[d];
+                }
+            }
+
+            usedPoints.addAll(other.usedPoints);
+            validEntries += other.validEntries;
+        }
+    }
+
+    /**
+     * A listener notified about the partial results of a scan.
+     * 
+     * @author Martin Pecka
+     */
+    interface PartialResultListener
+    {
+        /**
+         * Called when the results of the chunks finished so far have been merged.
+         * 
+         * @param result The merged result of the finished chunks. It contains at least one point.
+         */
+        void partialResultCreated(Result result);
+    }
+
+    /**
+     * A function computing the hash of a point from the hashes of its coordinates.
+     * 
+     * @author Martin Pecka
+     */
+    interface PointHasher
+    {
+        /**
+         * Return the hash of a point whose coordinates have the given hashes.
+         * 
+         * @param hashes Hashes of the coordinates.
+         * @return The hash of the point.
+         */
+        int getHashCode(int[] hashes);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.concurrent.CancellationException;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+/**
+ * A counter of the distinct points read from the sources, which chooses between the hash-based and the sort-based
+ * deduplication by the number of distinct points.
+ * <p>
+ * The points are counted in a {@link PointKeyTable} first. Once the table contains the given number of distinct points
+ * ({@link PointKeySorter#MIN_DISTINCT_POINTS} by default), its points are moved to a {@link PointKeySorter} and all
+ * following points are only appended to it. Both ways give the same result.
+ * <p>
+ * If the number of distinct points has been estimated before reading the sources (see {@link CardinalityEstimator}),
+ * the counter chooses the way at once and the table or the sorter is sized for the estimated points (see
+ * {@link #create(int, Integer)}).
+ * 
+ * @author Martin Pecka
+ */
+class PointCounter
+{
+    /** The number of keys identifying a point. */
+    private final int      keyDimensions;
+
+    /** The number of distinct points from which the points are sorted. */
+    private final int      sortingThreshold;
+
+    /** The table of the distinct points, <code>null</code> if the points are sorted. */
+    private PointKeyTable  table;
+
+    /** The indices of the first occurrences of the points of the table. */
+    private IntList        tableIndices;
+
+    /** The sorter of the points, <code>null</code> if the points are counted in the table. */
+    private PointKeySorter sorter = null;
+
+    /**
+     * Create an empty counter, which starts sorting the points at {@link PointKeySorter#MIN_DISTINCT_POINTS} distinct
+     * points.
+     * 
+     * @param keyDimensions The number of keys identifying a point.
+     */
+    PointCounter(int keyDimensions)
+    {
+        this(keyDimensions, PointKeySorter.MIN_DISTINCT_POINTS);
+    }
+
+    /**
+     * Create an empty counter.
+     * 
+     * @param keyDimensions The number of keys identifying a point.
+     * @param sortingThreshold The number of distinct points from which the points are sorted; <code>0</code> to sort
+     *            them from the beginning.
+     */
+    PointCounter(int keyDimensions, int sortingThreshold)
+    {
+        this(keyDimensions, sortingThreshold, 16);
+    }
+
+    /**
+     * Create an empty counter.
+     * 
+     * @param keyDimensions The number of keys identifying a point.
+     * @param sortingThreshold The number of distinct points from which the points are sorted; <code>0</code> to sort
+     *            them from the beginning.
+     * @param expectedSize The expected number of distinct points.
+     */
+    PointCounter(int keyDimensions, int sortingThreshold, int expectedSize)
+    {
+        this.keyDimensions = keyDimensions;
+        this.sortingThreshold = sortingThreshold;
+        if (sortingThreshold <= 0) {
+            // the sorter holds at least all distinct points
+            sorter = new PointKeySorter(keyDimensions, expectedSize);
+        } else {
+            table = new PointKeyTable(keyDimensions, Math.min(expectedSize, sortingThreshold));
+            tableIndices = new IntList();
+        }
+    }
+
+    /**
+     * Create an empty counter for the estimated number of distinct points.
+     * <p>
+     * If there are estimated to be at least {@link PointKeySorter#MIN_DISTINCT_POINTS} distinct points, the points
+     * are sorted from the beginning by a sorter sized for the estimated points. Otherwise, they are counted in a table
+     * sized for the estimated points, which still switches to sorting if the estimate was too low.
+     * 
+     * @param keyDimensions The number of keys identifying a point.
+     * @param estimatedPoints The estimated number of distinct points, <code>null</code> if not known.
+     * @return The counter.
+     */
+    static PointCounter create(int keyDimensions, Integer estimatedPoints)
+    {
+        if (estimatedPoints == null)
+            return new PointCounter(keyDimensions);
+        if (estimatedPoints >= PointKeySorter.MIN_DISTINCT_POINTS)
+            return new PointCounter(keyDimensions, 0, estimatedPoints);
+        return new PointCounter(keyDimensions, PointKeySorter.MIN_DISTINCT_POINTS, estimatedPoints);
+    }
+
+    /**
+     * Return <code>true</code> if the points are counted by sorting them.
+     * 
+     * @return Whether the points are sorted.
+     */
+    boolean isSorting()
+    {
+        return sorter != null;
+    }
+
+    /**
+     * Add a point.
+     * 
+     * @param pointKeys The keys identifying the point.
+     * @param index The index of the point in the sources.
+     */
+    void add(long[] pointKeys, int index)
+    {
+        if (sorter != null) {
+            sorter.add(pointKeys, index, 1);
+        } else if (table.add(pointKeys, 1) == 1) {
+            tableIndices.add(index);
+            if (table.size() >= sortingThreshold)
+                startSorting(table.size());
+        }
+    }
+
+    /**
+     * Add all points of the given counter, which has counted the points following the points of this counter.
+     * 
+     * @param other The counter to add.
+     */
+    void addAll(PointCounter other)
+    {
+        if (sorter == null && (other.sorter != null || table.size() + other.table.size() >= sortingThreshold))
+            startSorting(table.size());
+
+        if (sorter != null) {
+            if (other.sorter != null)
+                sorter.addAll(other.sorter);
+            else
+                sorter.addAll(other.table, other.tableIndices);
+            return;
+        }
+
+        // both tables and the index lists are ordered the same way, the index list contains only new points
+        final long[] keys = new long[keyDimensions];
+        for (int k = 0; k < other.table.size(); k++) {
+            final int count = other.table.getCount(k);
+            other.table.getPointKeys(k, keys);
+            if (table.add(keys, count) == count)
+                tableIndices.add(other.tableIndices.get(k));
+        }
+    }
+
+    /**
+     * Count the distinct points. More points can be added and counted later.
+     * 
+     * @param usedPointsIndices The list to append the index of the first occurrence of every distinct point to, in
+     *            ascending order.
+     * @param parallelism The number of threads to sort the points by.
+     * @return The counts of the distinct points, in the same order as their indices.
+     * 
+     * @throws CancellationException If the thread has been interrupted while sorting the points.
+     */
+    IntList getCounts(IntList usedPointsIndices, int parallelism) throws CancellationException
+    {
+        if (sorter != null)
+            return sorter.count(usedPointsIndices, parallelism);
+
+        for (int i = 0; i < tableIndices.size(); i++)
+            usedPointsIndices.add(tableIndices.get(i));
+        return table.getCounts();
+    }
+
+    /**
+     * Move the points of the table to a new sorter.
+     * 
+     * @param expectedSize The expected number of points of the sorter.
+     */
+    private void startSorting(int expectedSize)
+    {
+        sorter = new PointKeySorter(keyDimensions, 2 * expectedSize);
+        sorter.addAll(table, tableIndices);
+        table = null;
+        tableIndices = null;
+    }
+}
@@ -0,0 +1,481 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+/**
+ * A list of points identified by the keys of their coordinates (see
+ * {@link org.esa.beam.dataViewer3D.data.type.NumericType#getKey()}), which counts the distinct points by sorting them.
+ * <p>
+ * The points are only appended together with their indices in the sources, so adding a point doesn't look up
+ * anything. When the points are counted, their keys are packed relative to their minima into as few bits as possible,
+ * radix-sorted (in several threads) and the runs of equal keys are collapsed into the distinct points with their
+ * counts and the indices of their first occurrences.
+ * <p>
+ * With millions of distinct points, the lookups in a hash table (see {@link PointKeyTable}) mostly miss the caches and
+ * the table has to be rehashed several times, while every pass of the radix sort reads and writes the points
+ * sequentially. On the other hand, the sorter needs memory for every added point, not only for the distinct ones.
+ * 
+ * @author Martin Pecka
+ */
+class PointKeySorter
+{
+    /** The number of distinct points from which sorting the points is preferred to a hash table. */
+    static final int         MIN_DISTINCT_POINTS = 1 << 22;
+
+    /** The number of bits sorted by one pass of the radix sort. */
+    private static final int RADIX_BITS          = 8;
+
+    /** The number of buckets of one pass of the radix sort. */
+    private static final int RADIX               = 1 << RADIX_BITS;
+
+    /** The minimum number of points sorted by one thread. */
+    private static final int MIN_CHUNK_SIZE      = 1 << 16;
+
+    /** The number of coordinates of the points. */
+    private final int        dimensions;
+
+    /** The keys of the points in the order they have been added; <code>dimensions</code> entries per point. */
+    private long[]           keys;
+
+    /** The indices of the points in the sources. */
+    private int[]            indices;
+
+    /** The counts of the points, <code>null</code> while all counts are 1. */
+    private int[]            counts              = null;
+
+    /** The number of added points. */
+    private int              size                = 0;
+
+    /**
+     * Create an empty sorter.
+     * 
+     * @param dimensions The number of coordinates of the points.
+     * @param expectedSize The expected number of added points.
+     * 
+     * @throws IllegalArgumentException If the number of dimensions isn't positive or the expected size is negative.
+     */
+    PointKeySorter(int dimensions, int expectedSize) throws IllegalArgumentException
+    {
+        if (dimensions <= 0)
+            throw new IllegalArgumentException(getClass() + ": The number of dimensions has to be positive.");
+        if (expectedSize < 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot set negative size.");
+
+        this.dimensions = dimensions;
+        final int capacity = Math.max(1, expectedSize);
+        keys = new long[capacity * dimensions];
+        indices = new int[capacity];
+    }
+
+    /**
+     * Return the number of added points (including the repeated ones).
+     * 
+     * @return The number of added points.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the number of coordinates of the points.
+     * 
+     * @return The number of coordinates.
+     */
+    int getDimensions()
+    {
+        return dimensions;
+    }
+
+    /**
+     * Append the given point. A point added several times is counted at the position of its first occurrence.
+     * 
+     * @param pointKeys The keys of the coordinates of the point.
+     * @param index The index of the point in the sources.
+     * @param count The number of occurrences of the point.
+     */
+    void add(long[] pointKeys, int index, int count)
+    {
+        ensureCapacity(size + 1);
+        System.arraycopy(pointKeys, 0, keys, size * dimensions, dimensions);
+        indices[size] = index;
+        if (count != 1 && counts == null) {
+            counts = new int[indices.length];
+            Arrays.fill(counts, 0, size, 1);
+        }
+        if (counts != null)
+            counts[size] = count;
+        size++;
+    }
+
+    /**
+     * Append all points of the given table.
+     * 
+     * @param table The table of the points.
+     * @param tableIndices The indices of the points of the table in the sources.
+     */
+    void addAll(PointKeyTable table, IntList tableIndices)
+    {
+        ensureCapacity(size + table.size());
+        final long[] pointKeys = new long[dimensions];
+        for (int i = 0; i < table.size(); i++) {
+            table.getPointKeys(i, pointKeys);
+            add(pointKeys, tableIndices.get(i), table.getCount(i));
+        }
+    }
+
+    /**
+     * Append all points of the given sorter.
+     * 
+     * @param other The sorter with the same number of dimensions.
+     */
+    void addAll(PointKeySorter other)
+    {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.keys, 0, keys, size * dimensions, other.size * dimensions);
+        System.arraycopy(other.indices, 0, indices, size, other.size);
+        if (counts == null && other.counts != null) {
+            counts = new int[indices.length];
+            Arrays.fill(counts, 0, size, 1);
+        }
+        if (counts != null) {
+            if (other.counts != null)
+                System.arraycopy(other.counts, 0, counts, size, other.size);
+            else
+                Arrays.fill(counts, size, size + other.size, 1);
+        }
+        size += other.size;
+    }
+
+    /**
+     * Count the distinct points. The added points aren't changed, so more points can be added and counted later.
+     * 
+     * @param usedPointsIndices The list to append the index of the first occurrence of every distinct point to, in
+     *            ascending order.
+     * @param parallelism The number of threads to sort the points by.
+     * @return The counts of the distinct points, in the same order as their indices.
+     * 
+     * @throws CancellationException If the thread has been interrupted.
+     */
+    IntList count(IntList usedPointsIndices, int parallelism) throws CancellationException
+    {
+        if (size == 0)
+            return new IntList();
+
+        // the sort is stable, so the first point of every run is the first added occurrence
+        final int[] sortedIndices = Arrays.copyOf(indices, size);
+        final int[] sortedCounts = counts != null ? Arrays.copyOf(counts, size) : null;
+        final int[][] payloads = sortedCounts != null ? new int[][] { sortedIndices, sortedCounts }
+                : new int[][] { sortedIndices };
+        final long[] packed = sort(keys, dimensions, size, payloads, parallelism);
+        final int width = packed.length / size;
+
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || !equalKeys(packed, width, i - 1, i))
+                distinct++;
+        }
+
+        final long[] firstIndices = new long[distinct];
+        final int[] distinctCounts = new int[distinct];
+        int point = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || !equalKeys(packed, width, i - 1, i)) {
+                point++;
+                firstIndices[point] = sortedIndices[i];
+            }
+            distinctCounts[point] += sortedCounts != null ? sortedCounts[i] : 1;
+        }
+
+        // the data sets read the sources sequentially, so the points are ordered by their first occurrences
+        final long[] sortedFirstIndices = sort(firstIndices, 1, distinct, new int[][] { distinctCounts }, parallelism);
+
+        final IntList result = new IntList(distinct);
+        for (int i = 0; i < distinct; i++) {
+            usedPointsIndices.add((int) sortedFirstIndices[i]);
+            result.add(distinctCounts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Sort the given points by their keys. The keys are compared as signed numbers, the last key of a point is the
+     * most significant one. The sort is stable.
+     * <p>
+     * The keys are packed relative to their minima into as few bits as possible and radix-sorted in several threads,
+     * so only the bits that differ between the points are sorted.
+     * 
+     * @param keys The keys of the points; <code>dimensions</code> entries per point. They aren't changed.
+     * @param dimensions The number of keys of a point.
+     * @param size The number of points.
+     * @param payloads The arrays that are permuted the same way as the points.
+     * @param parallelism The number of threads to sort the points by.
+     * @return The sorted packed keys; equal packed keys mean equal keys. Every point is packed into
+     *         <code>length / size</code> <code>long</code>s (see {@link #equalKeys(long[], int, int, int)}).
+     * 
+     * @throws CancellationException If the thread has been interrupted.
+     */
+    static long[] sort(long[] keys, int dimensions, int size, int[][] payloads, int parallelism)
+            throws CancellationException
+    {
+        if (size == 0)
+            return new long[0];
+
+        final long[] min = new long[dimensions], max = new long[dimensions];
+        System.arraycopy(keys, 0, min, 0, dimensions);
+        System.arraycopy(keys, 0, max, 0, dimensions);
+        for (int i = 1; i < size; i++) {
+            for (int d = 0; d < dimensions; d++) {
+                final long key = keys[i * dimensions + d];
+                if (key < min[d])
+                    min[d] = key;
+                else if (key > max[d])
+                    max[d] = key;
+            }
+        }
+
+        // a field never spans two longs, the later keys get the higher bits; the difference of the extremes is
+        // treated as unsigned
+        final int[] words = new int[dimensions], shifts = new int[dimensions];
+        final int[] usedBits = new int[dimensions + 1];
+        int word = 0;
+        for (int d = 0; d < dimensions; d++) {
+            final int bits = 64 - Long.numberOfLeadingZeros(max[d] - min[d]);
+            if (usedBits[word] + bits > 64)
+                word++;
+            words[d] = word;
+            shifts[d] = usedBits[word];
+            usedBits[word] += bits;
+        }
+        final int width = word + 1;
+
+        final long[] packed = new long[size * width];
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimensions; d++)
+                packed[i * width + words[d]] |= (keys[i * dimensions + d] - min[d]) << shifts[d];
+        }
+
+        final ExecutorService executor = parallelism > 1 && size >= 2 * MIN_CHUNK_SIZE ? Executors
+                .newFixedThreadPool(parallelism) : null;
+        try {
+            sort(packed, width, usedBits, size, payloads, executor, parallelism);
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+        }
+        return packed;
+    }
+
+    /**
+     * Make sure the arrays can hold the given number of points.
+     * 
+     * @param capacity The number of points.
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= indices.length)
+            return;
+
+        final int newCapacity = Math.max(capacity, indices.length + (indices.length >> 1));
+        keys = Arrays.copyOf(keys, newCapacity * dimensions);
+        indices = Arrays.copyOf(indices, newCapacity);
+        if (counts != null)
+            counts = Arrays.copyOf(counts, newCapacity);
+    }
+
+    /**
+     * Return <code>true</code> if the packed keys of the given points are equal.
+     * 
+     * @param packed The packed keys.
+     * @param width The number of <code>long</code>s per point.
+     * @param i Position of the first point.
+     * @param j Position of the second point.
+     * @return Whether the keys are equal.
+     */
+    static boolean equalKeys(long[] packed, int width, int i, int j)
+    {
+        for (int w = 0; w < width; w++) {
+            if (packed[i * width + w] != packed[j * width + w])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sort the given packed keys by an LSD radix sort. The sort is stable.
+     * 
+     * @param packed The packed keys; <code>width</code> entries per point. Contains the sorted keys when the method
+     *            returns.
+     * @param width The number of <code>long</code>s per point.
+     * @param usedBits The number of used low bits of every <code>long</code> of a point.
+     * @param size The number of points.
+     * @param payloads The arrays that are permuted the same way as the keys.
+     * @param executor The executor to run the parts of every pass in, <code>null</code> to sort in this thread.
+     * @param parallelism The number of threads of the executor.
+     * 
+     * @throws CancellationException If the thread has been interrupted.
+     */
+    private static void sort(long[] packed, int width, int[] usedBits, int size, int[][] payloads,
+            ExecutorService executor, int parallelism) throws CancellationException
+    {
+        final int chunks = executor == null ? 1 : Math.max(1, Math.min(parallelism, size / MIN_CHUNK_SIZE));
+        final int[] bounds = new int[chunks + 1];
+        for (int c = 0; c <= chunks; c++)
+            bounds[c] = (int) ((long) size * c / chunks);
+
+        long[] source = packed, target = new long[size * width];
+        int[][] sourcePayloads = payloads, targetPayloads = new int[payloads.length][];
+        for (int p = 0; p < payloads.length; p++)
+            targetPayloads[p] = new int[size];
+
+        for (int w = 0; w < width; w++) {
+            for (int shift = 0; shift < usedBits[w]; shift += RADIX_BITS) {
+                if (pass(source, target, width, w, shift, sourcePayloads, targetPayloads, bounds, executor)) {
+                    final long[] swap = source;
+                    source = target;
+                    target = swap;
+                    final int[][] swapPayloads = sourcePayloads;
+                    sourcePayloads = targetPayloads;
+                    targetPayloads = swapPayloads;
+                }
+            }
+        }
+
+        if (source != packed) {
+            System.arraycopy(source, 0, packed, 0, size * width);
+            for (int p = 0; p < payloads.length; p++)
+                System.arraycopy(sourcePayloads[p], 0, payloads[p], 0, size);
+        }
+    }
+
+    /**
+     * Perform one pass of the radix sort. Every chunk of the points is counted and scattered by its own task.
+     * 
+     * @param source The keys to sort.
+     * @param target The array to write the keys sorted by the digit to.
+     * @param width The number of <code>long</code>s per point.
+     * @param word The <code>long</code> containing the digit.
+     * @param shift The position of the lowest bit of the digit.
+     * @param sourcePayloads The payloads of the points.
+     * @param targetPayloads The arrays to write the permuted payloads to.
+     * @param bounds The bounds of the chunks of the points.
+     * @param executor The executor to run the tasks in, <code>null</code> to run them in this thread.
+     * @return <code>false</code> if all points have the same digit, so that nothing had to be done.
+     * 
+     * @throws CancellationException If the thread has been interrupted.
+     */
+    private static boolean pass(final long[] source, final long[] target, final int width, final int word,
+            final int shift, final int[][] sourcePayloads, final int[][] targetPayloads, final int[] bounds,
+            ExecutorService executor) throws CancellationException
+    {
+        final int chunks = bounds.length - 1;
+        final int[][] offsets = new int[chunks][RADIX];
+
+        final List<Callable<Void>> histograms = new ArrayList<Callable<Void>>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int chunk = c;
+            histograms.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    final int[] histogram = offsets[chunk];
+                    for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++)
+                        histogram[(int) (source[i * width + word] >>> shift) & (RADIX - 1)]++;
+                    return null;
+                }
+            });
+        }
+        run(histograms, executor);
+
+        for (int digit = 0; digit < RADIX; digit++) {
+            int count = 0;
+            for (int c = 0; c < chunks; c++)
+                count += offsets[c][digit];
+            if (count == bounds[chunks])
+                return false;
+        }
+
+        // the buckets are filled by the chunks in their order, so the sort stays stable
+        int offset = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            for (int c = 0; c < chunks; c++) {
+                final int count = offsets[c][digit];
+                offsets[c][digit] = offset;
+                offset += count;
+            }
+        }
+
+        final List<Callable<Void>> scatters = new ArrayList<Callable<Void>>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int chunk = c;
+            scatters.add(new Callable<Void>() {
+                @Override
+                public Void call()
+                {
+                    final int[] positions = offsets[chunk];
+                    for (int i = bounds[chunk]; i < bounds[chunk + 1]; i++) {
+                        final int position = positions[(int) (source[i * width + word] >>> shift) & (RADIX - 1)]++;
+                        if (width == 1)
+                            target[position] = source[i];
+                        else
+                            System.arraycopy(source, i * width, target, position * width, width);
+                        for (int p = 0; p < sourcePayloads.length; p++)
+                            targetPayloads[p][position] = sourcePayloads[p][i];
+                    }
+                    return null;
+                }
+            });
+        }
+        run(scatters, executor);
+        return true;
+    }
+
+    /**
+     * Run the given tasks and wait for them to finish.
+     * 
+     * @param tasks The tasks.
+     * @param executor The executor to run the tasks in, <code>null</code> to run them in this thread.
+     * 
+     * @throws CancellationException If the thread has been interrupted.
+     */
+    private static void run(List<Callable<Void>> tasks, ExecutorService executor) throws CancellationException
+    {
+        try {
+            if (executor == null || tasks.size() == 1) {
+                for (Callable<Void> task : tasks)
+                    task.call();
+                return;
+            }
+
+            for (Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // the tasks don't throw checked exceptions
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+/**
+ * An insertion-ordered table counting points identified exactly by the keys of their coordinates (see
+ * {@link org.esa.beam.dataViewer3D.data.type.NumericType#getKey()}).
+ * <p>
+ * The keys of all coordinates of a point are packed into as few <code>long</code>s as possible. Every coordinate gets a
+ * field of 8, 16, 32 or 64 bits; the fields start narrow and are widened (and all stored points repacked) the first
+ * time a key doesn't fit. So integer and quantized decimal coordinates with the usual ranges need one or two
+ * <code>long</code>s per point, and no coordinate is ever truncated.
+ * <p>
+ * The points are stored in flat primitive arrays and looked up in an open-addressing table, so no objects are created
+ * for them.
+ * 
+ * @author Martin Pecka
+ */
+class PointKeyTable
+{
+    /** The maximum ratio of the number of points to the length of the table. */
+    private static final float LOAD_FACTOR      = 0.5f;
+
+    /** The maximum length of the table. */
+    private static final int   MAX_TABLE_LENGTH = 1 << 30;
+
+    /** The number of coordinates of the points. */
+    private final int          dimensions;
+
+    /** The width of the field of every coordinate in bits. */
+    private final int[]        bits;
+
+    /** The index of the <code>long</code> containing the field of every coordinate. */
+    private final int[]        words;
+
+    /** The position of the lowest bit of the field of every coordinate. */
+    private final int[]        shifts;
+
+    /** The number of <code>long</code>s per point. */
+    private int                width;
+
+    /** The packed keys of the points in insertion order; <code>width</code> entries per point. */
+    private long[]             keys;
+
+    /** The counts of the points in insertion order. */
+    private int[]              counts;
+
+    /** The table of positions of the points; the positions are increased by 1, so that 0 means an empty slot. */
+    private int[]              table;
+
+    /** The number of points. */
+    private int                size             = 0;
+
+    /** The packed key of the point being looked up. */
+    private long[]             packed;
+
+    /** The unpacked keys used when repacking the points. */
+    private final long[]       unpacked;
+
+    /**
+     * Create an empty table.
+     * 
+     * @param dimensions The number of coordinates of the points.
+     * @param expectedSize The expected number of points.
+     * 
+     * @throws IllegalArgumentException If the number of dimensions isn't positive or the expected size is negative.
+     */
+    PointKeyTable(int dimensions, int expectedSize) throws IllegalArgumentException
+    {
+        if (dimensions <= 0)
+            throw new IllegalArgumentException(getClass() + ": The number of dimensions has to be positive.");
+        if (expectedSize < 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot set negative size.");
+
+        this.dimensions = dimensions;
+        bits = new int[dimensions];
+        words = new int[dimensions];
+        shifts = new int[dimensions];
+        unpacked = new long[dimensions];
+        Arrays.fill(bits, 8);
+        layout();
+
+        final int capacity = Math.max(1, expectedSize);
+        keys = new long[capacity * width];
+        counts = new int[capacity];
+        table = new int[tableLength(capacity)];
+        packed = new long[width];
+    }
+
+    /**
+     * Return the number of points.
+     * 
+     * @return The number of points.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the number of coordinates of the points.
+     * 
+     * @return The number of coordinates.
+     */
+    int getDimensions()
+    {
+        return dimensions;
+    }
+
+    /**
+     * Return the number of <code>long</code>s every point is packed into.
+     * 
+     * @return The number of <code>long</code>s per point.
+     */
+    int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Add the given number to the count of the point with the given keys. Points not contained in the table are
+     * appended with the count <code>delta</code>.
+     * 
+     * @param pointKeys The keys of the coordinates of the point.
+     * @param delta The number to add.
+     * @return The new count of the point (<code>delta</code> if the point has just been inserted).
+     */
+    int add(long[] pointKeys, int delta)
+    {
+        for (int d = 0; d < dimensions; d++) {
+            if (!fits(pointKeys[d], bits[d]))
+                widen(d, pointKeys[d]);
+        }
+
+        pack(pointKeys, packed, 0);
+
+        final int mask = table.length - 1;
+        int slot = hash(packed, 0) & mask;
+        int position;
+        while ((position = table[slot]) != 0) {
+            if (equalsPacked(position - 1))
+                return counts[position - 1] += delta;
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == counts.length) {
+            final int capacity = Math.max(size + 1, size + (size >> 1));
+            counts = Arrays.copyOf(counts, capacity);
+            keys = Arrays.copyOf(keys, capacity * width);
+        }
+
+        System.arraycopy(packed, 0, keys, size * width, width);
+        counts[size] = delta;
+        table[slot] = ++size;
+
+        if (size > table.length * LOAD_FACTOR && table.length < MAX_TABLE_LENGTH)
+            rehash(table.length * 2);
+
+        return delta;
+    }
+
+    /**
+     * Write the keys of the coordinates of the <code>i</code>-th inserted point to the given array.
+     * 
+     * @param i Position of the point in the insertion order.
+     * @param pointKeys The array to write the keys to.
+     * 
+     * @throws IndexOutOfBoundsException If there is no such point.
+     */
+    void getPointKeys(int i, long[] pointKeys) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds of a table of size " + size);
+        unpack(keys, i * width, pointKeys);
+    }
+
+    /**
+     * Return the count of the <code>i</code>-th inserted point.
+     * 
+     * @param i Position of the point in the insertion order.
+     * @return The count.
+     * 
+     * @throws IndexOutOfBoundsException If there is no such point.
+     */
+    int getCount(int i) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds of a table of size " + size);
+        return counts[i];
+    }
+
+    /**
+     * Return the counts of the points in insertion order.
+     * 
+     * @return The counts.
+     */
+    IntList getCounts()
+    {
+        final IntList result = new IntList(size);
+        for (int i = 0; i < size; i++)
+            result.add(counts[i]);
+        return result;
+    }
+
+    /**
+     * Return <code>true</code> if the given key fits into a field of the given width.
+     * 
+     * @param key The key.
+     * @param bits The width of the field.
+     * @return Whether the key can be stored in the field without loss.
+     */
+    private static boolean fits(long key, int bits)
+    {
+        return bits == 64 || ((key << (64 - bits)) >> (64 - bits)) == key;
+    }
+
+    /**
+     * Widen the field of the given coordinate so that the given key fits into it, and repack all points.
+     * 
+     * @param dimension The coordinate.
+     * @param key The key that has to fit into the field.
+     */
+    private void widen(int dimension, long key)
+    {
+        final int[] oldBits = bits.clone(), oldWords = words.clone(), oldShifts = shifts.clone();
+        final int oldWidth = width;
+
+        while (!fits(key, bits[dimension]))
+            bits[dimension] *= 2;
+        layout();
+
+        final long[] newKeys = new long[counts.length * width];
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimensions; d++)
+                unpacked[d] = unpackField(keys[i * oldWidth + oldWords[d]], oldBits[d], oldShifts[d]);
+            pack(unpacked, newKeys, i * width);
+        }
+        keys = newKeys;
+        packed = new long[width];
+
+        // the hashes of all points have changed
+        rehash(table.length);
+    }
+
+    /**
+     * Compute the positions of the fields of the coordinates from their widths. A field never spans two
+     * <code>long</code>s.
+     */
+    private void layout()
+    {
+        int word = 0, shift = 0;
+        for (int d = 0; d < dimensions; d++) {
+            if (shift + bits[d] > 64) {
+                word++;
+                shift = 0;
+            }
+            words[d] = word;
+            shifts[d] = shift;
+            shift += bits[d];
+        }
+        width = word + 1;
+    }
+
+    /**
+     * Pack the given keys of coordinates.
+     * 
+     * @param pointKeys The keys of the coordinates.
+     * @param target The array to write the packed key to.
+     * @param offset Offset in <code>target</code>.
+     */
+    private void pack(long[] pointKeys, long[] target, int offset)
+    {
+        Arrays.fill(target, offset, offset + width, 0L);
+        for (int d = 0; d < dimensions; d++) {
+            final long mask = bits[d] == 64 ? -1L : (1L << bits[d]) - 1;
+            target[offset + words[d]] |= (pointKeys[d] & mask) << shifts[d];
+        }
+    }
+
+    /**
+     * Unpack the keys of coordinates.
+     * 
+     * @param source The array containing the packed key.
+     * @param offset Offset in <code>source</code>.
+     * @param pointKeys The array to write the keys of the coordinates to.
+     */
+    private void unpack(long[] source, int offset, long[] pointKeys)
+    {
+        for (int d = 0; d < dimensions; d++)
+            pointKeys[d] = unpackField(source[offset + words[d]], bits[d], shifts[d]);
+    }
+
+    /**
+     * Return the sign-extended value of the given field.
+     * 
+     * @param word The <code>long</code> containing the field.
+     * @param bits Width of the field.
+     * @param shift Position of the lowest bit of the field.
+     * @return The value of the field.
+     */
+    private static long unpackField(long word, int bits, int shift)
+    {
+        final long value = word >>> shift;
+        return bits == 64 ? value : (value << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * Return <code>true</code> if the key of the point at the given position equals to the key being looked up.
+     * 
+     * @param position Position of the point.
+     * @return Whether the keys are equal.
+     */
+    private boolean equalsPacked(int position)
+    {
+        final int offset = position * width;
+        for (int w = 0; w < width; w++) {
+            if (keys[offset + w] != packed[w])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuild the table with the given length.
+     * 
+     * @param length The new length of the table (a power of two).
+     */
+    private void rehash(int length)
+    {
+        table = new int[length];
+        final int mask = length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys, i * width) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Return the length of the table for the given number of points.
+     * 
+     * @param capacity The number of points.
+     * @return The length of the table (a power of two).
+     */
+    private static int tableLength(int capacity)
+    {
+        final long length = (long) Math.ceil(capacity / LOAD_FACTOR);
+        if (length >= MAX_TABLE_LENGTH)
+            return MAX_TABLE_LENGTH;
+        return Math.max(2, Integer.highestOneBit((int) length - 1) << 1);
+    }
+
+    /**
+     * Return the hash of the packed key.
+     * 
+     * @param source The array containing the packed key.
+     * @param offset Offset in <code>source</code>.
+     * @return The hash.
+     */
+    private int hash(long[] source, int offset)
+    {
+        long hash = 0;
+        for (int w = 0; w < width; w++)
+            hash = (hash + source[offset + w]) * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ (hash >>> 32)) * 0xd6e8feb86659fd93L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+/**
+ * A reservoir of a uniformly random sample of the valid points read by the stream data set builders.
+ * <p>
+ * Every sampled point is stored as its index in the sources and the keys identifying it (see {@link PointKeyTable}).
+ * The reservoir needs memory for at most <code>capacity</code> points, regardless of the number of offered points.
+ * Every sampled point has the weight 1, so the counts of the points are their counts in the sample.
+ * 
+ * @author Martin Pecka
+ */
+class PointReservoir extends PointSample
+{
+    /** The sampler deciding which points are stored. */
+    private final ReservoirSampler sampler;
+
+    /** The number of keys identifying a point. */
+    private final int              keyDimensions;
+
+    /** The indices of the stored points. */
+    private int[]                  indices;
+
+    /** The keys of the stored points; <code>keyDimensions</code> entries per point. */
+    private long[]                 keys;
+
+    /**
+     * Create an empty reservoir.
+     * 
+     * @param capacity The maximum number of stored points.
+     * @param keyDimensions The number of keys identifying a point.
+     * @param seed The seed of the sampler.
+     * 
+     * @throws IllegalArgumentException If the capacity isn't positive.
+     */
+    PointReservoir(int capacity, int keyDimensions, long seed) throws IllegalArgumentException
+    {
+        sampler = new ReservoirSampler(capacity, seed);
+        this.keyDimensions = keyDimensions;
+        // grown on demand, so that small inputs don't allocate the whole capacity
+        final int initialCapacity = Math.min(capacity, 1024);
+        indices = new int[initialCapacity];
+        keys = new long[initialCapacity * keyDimensions];
+    }
+
+    /**
+     * Offer the next valid point.
+     * 
+     * @return The slot the point has to be stored in by {@link #set(int, int, long[])}, or <code>-1</code> if the point
+     *         isn't sampled.
+     */
+    int offer()
+    {
+        return sampler.offer();
+    }
+
+    @Override
+    long getSkip()
+    {
+        return sampler.getSkip();
+    }
+
+    @Override
+    void skip(long n)
+    {
+        sampler.skip(n);
+    }
+
+    @Override
+    void add(int index, long[] pointKeys, double[] coordinates)
+    {
+        final int slot = offer();
+        if (slot >= 0)
+            set(slot, index, pointKeys);
+    }
+
+    /**
+     * Store the point in the given slot.
+     * 
+     * @param slot The slot returned by {@link #offer()}.
+     * @param index The index of the point.
+     * @param pointKeys The keys identifying the point.
+     */
+    void set(int slot, int index, long[] pointKeys)
+    {
+        if (slot >= indices.length) {
+            final int capacity = (int) Math.min(sampler.getCapacity(), Math.max(slot + 1L, 2L * indices.length));
+            indices = Arrays.copyOf(indices, capacity);
+            keys = Arrays.copyOf(keys, capacity * keyDimensions);
+        }
+        indices[slot] = index;
+        System.arraycopy(pointKeys, 0, keys, slot * keyDimensions, keyDimensions);
+    }
+
+    @Override
+    int size()
+    {
+        return sampler.size();
+    }
+
+    @Override
+    PointKeyTable toTable(IntList usedPointsIndices)
+    {
+        final int size = size();
+        // sort the slots by the indices of their points
+        final long[] order = new long[size];
+        for (int slot = 0; slot < size; slot++)
+            order[slot] = ((long) indices[slot] << 32) | slot;
+        Arrays.sort(order);
+
+        final PointKeyTable table = new PointKeyTable(keyDimensions, size);
+        final long[] pointKeys = new long[keyDimensions];
+        for (int i = 0; i < size; i++) {
+            final int slot = (int) order[i];
+            System.arraycopy(keys, slot * keyDimensions, pointKeys, 0, keyDimensions);
+            if (table.add(pointKeys, 1) == 1)
+                usedPointsIndices.add(indices[slot]);
+        }
+        return table;
+    }
+
+    /**
+     * Merge reservoirs sampled from disjoint parts of the input into one uniformly random sample of the whole input.
+     * <p>
+     * The number of points taken from every part follows the multivariate hypergeometric distribution given by the
+     * numbers of points offered to the parts, and the points taken from a part are a random subset of its reservoir.
+     * So the result has the same distribution as a reservoir of the whole input.
+     * 
+     * @param parts The reservoirs to merge; all of them have to have the same capacity and key dimensions.
+     * @param seed The seed of the random number generator.
+     * @return The merged reservoir.
+     */
+    static PointReservoir merge(List<PointReservoir> parts, long seed)
+    {
+        final PointReservoir first = parts.get(0);
+        final int capacity = first.sampler.getCapacity();
+        final Random random = new Random(seed);
+
+        long remaining = 0;
+        final long[] remainingInParts = new long[parts.size()];
+        for (int p = 0; p < parts.size(); p++) {
+            remainingInParts[p] = parts.get(p).sampler.getOffered();
+            remaining += remainingInParts[p];
+        }
+
+        // draw the points one by one without replacement and count the draws from every part
+        final int[] taken = new int[parts.size()];
+        final long toTake = Math.min(capacity, remaining);
+        for (int i = 0; i < toTake; i++) {
+            long draw = (long) (random.nextDouble() * remaining);
+            int p = 0;
+            while (draw >= remainingInParts[p])
+                draw -= remainingInParts[p++];
+            taken[p]++;
+            remainingInParts[p]--;
+            remaining--;
+        }
+
+        final PointReservoir result = new PointReservoir(capacity, first.keyDimensions, seed);
+        final long[] pointKeys = new long[first.keyDimensions];
+        for (int p = 0; p < parts.size(); p++) {
+            final PointReservoir part = parts.get(p);
+            final int size = part.size();
+            final int[] slots = new int[size];
+            for (int slot = 0; slot < size; slot++)
+                slots[slot] = slot;
+
+            // partial Fisher-Yates shuffle selecting taken[p] random slots
+            for (int i = 0; i < taken[p]; i++) {
+                final int j = i + random.nextInt(size - i);
+                final int slot = slots[j];
+                slots[j] = slots[i];
+                slots[i] = slot;
+
+                System.arraycopy(part.keys, slot * part.keyDimensions, pointKeys, 0, part.keyDimensions);
+                result.set(result.offer(), part.indices[slot], pointKeys);
+            }
+        }
+        return result;
+    }
+}
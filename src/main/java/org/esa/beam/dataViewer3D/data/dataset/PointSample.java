@@ -0,0 +1,59 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+/**
+ * A sample of the valid points read by the stream data set builders, created by a {@link SamplingStrategy}.
+ * <p>
+ * Every sampled point is stored as its index in the sources and the keys identifying it (see {@link PointKeyTable}).
+ * A sample needs memory for at most <code>capacity</code> points, regardless of the number of offered points.
+ * 
+ * @author Martin Pecka
+ */
+abstract class PointSample
+{
+    /**
+     * Return the number of the following points that won't be sampled.
+     * 
+     * @return The number of points that can be skipped by {@link #skip(long)}.
+     */
+    abstract long getSkip();
+
+    /**
+     * Discard the given number of points without offering them.
+     * 
+     * @param n The number of points to discard, at most {@link #getSkip()}.
+     */
+    abstract void skip(long n);
+
+    /**
+     * Offer the next valid point. The point may or may not be stored.
+     * 
+     * @param index The index of the point.
+     * @param pointKeys The keys identifying the point.
+     * @param coordinates The values of the coordinates of the point.
+     */
+    abstract void add(int index, long[] pointKeys, double[] coordinates);
+
+    /**
+     * Return the number of stored points.
+     * 
+     * @return The number of stored points.
+     */
+    abstract int size();
+
+    /**
+     * Count the distinct stored points. Every stored point is counted by its weight, which is defined by the type of
+     * the sample.
+     * <p>
+     * The points are processed in ascending order of their indices, so the resulting indices are ascending and the
+     * data set can read its sources sequentially (skipping the unused entries).
+     * 
+     * @param usedPointsIndices The list to append the index of the first occurrence of every distinct point to.
+     * @return The table of the distinct points and their counts.
+     */
+    abstract PointKeyTable toTable(IntList usedPointsIndices);
+}
@@ -0,0 +1,175 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Random;
+
+/**
+ * A streaming sampler selecting a uniformly random subset of a fixed size from a stream of items of unknown length.
+ * <p>
+ * The sampler implements the reservoir sampling "Algorithm L" (Li, 1994): the first <code>capacity</code> items fill
+ * the reservoir, and then the number of items to skip before the next item replacing a random item of the reservoir is
+ * drawn directly from its distribution. So only <code>O(capacity * (1 + log(n / capacity)))</code> random numbers
+ * are generated for a stream of <code>n</code> items, and the skipped items don't need to be examined at all.
+ * <p>
+ * The sampler only decides which slot of the reservoir an item goes to; the items are stored by the caller. The
+ * selection depends only on the seed and the number of offered items, so it is reproducible.
+ * 
+ * @author Martin Pecka
+ */
+class ReservoirSampler
+{
+    /** The seed used by the builders if no other seed is given. */
+    static final long    DEFAULT_SEED = 0L;
+
+    /** The number of slots of the reservoir. */
+    private final int    capacity;
+
+    /** The random number generator. */
+    private final Random random;
+
+    /** The number of items offered so far. */
+    private long         offered      = 0;
+
+    /** The number of items to skip before the next item is put in the reservoir (once it is full). */
+    private long         skip         = 0;
+
+    /** The current value of the random variable <code>W</code> of the algorithm. */
+    private double       w;
+
+    /**
+     * Create the sampler.
+     * 
+     * @param capacity The number of slots of the reservoir.
+     * @param seed The seed of the random number generator.
+     * 
+     * @throws IllegalArgumentException If the capacity isn't positive.
+     */
+    ReservoirSampler(int capacity, long seed) throws IllegalArgumentException
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(getClass() + ": The capacity has to be positive, but " + capacity
+                    + " given.");
+
+        this.capacity = capacity;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Offer the next item of the stream.
+     * 
+     * @return The slot of the reservoir the item has to be stored in (replacing the item stored there), or
+     *         <code>-1</code> if the item isn't sampled and can be discarded.
+     */
+    int offer()
+    {
+        if (offered < capacity) {
+            final int slot = (int) offered++;
+            if (offered == capacity) {
+                w = Math.exp(Math.log(nextUniform()) / capacity);
+                nextSkip();
+            }
+            return slot;
+        }
+
+        offered++;
+        if (skip > 0) {
+            skip--;
+            return -1;
+        }
+
+        w *= Math.exp(Math.log(nextUniform()) / capacity);
+        nextSkip();
+        return random.nextInt(capacity);
+    }
+
+    /**
+     * Return the number of the following items that won't be sampled.
+     * <p>
+     * The caller can discard that many items and tell the sampler by {@link #skip(long)} instead of offering them one
+     * by one.
+     * 
+     * @return The number of items that won't be sampled.
+     */
+    long getSkip()
+    {
+        return offered < capacity ? 0 : skip;
+    }
+
+    /**
+     * Discard the given number of items without offering them.
+     * 
+     * @param n The number of items to discard, at most {@link #getSkip()}.
+     * 
+     * @throws IllegalArgumentException If <code>n</code> is greater than the number of items to skip.
+     */
+    void skip(long n) throws IllegalArgumentException
+    {
+        if (n < 0 || n > getSkip())
+            throw new IllegalArgumentException(getClass() + ": Cannot skip " + n + " items.");
+        skip -= n;
+        offered += n;
+    }
+
+    /**
+     * Return the number of slots of the reservoir.
+     * 
+     * @return The capacity of the reservoir.
+     */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Return the number of filled slots of the reservoir.
+     * 
+     * @return The number of sampled items.
+     */
+    int size()
+    {
+        return (int) Math.min(offered, capacity);
+    }
+
+    /**
+     * Return the number of items offered or skipped so far.
+     * 
+     * @return The length of the stream so far.
+     */
+    long getOffered()
+    {
+        return offered;
+    }
+
+    /**
+     * Return the random number generator of this sampler.
+     * 
+     * @return The random number generator.
+     */
+    Random getRandom()
+    {
+        return random;
+    }
+
+    /**
+     * Draw the number of items to skip before the next sampled one.
+     */
+    private void nextSkip()
+    {
+        // the cast saturates, so an "infinite" skip just means that no other item will be sampled; -infinity can only
+        // come from w underflowing to 0, which has the same meaning
+        final double next = Math.floor(Math.log(nextUniform()) / Math.log1p(-w));
+        skip = next < 0 ? Long.MAX_VALUE : (long) next;
+    }
+
+    /**
+     * Return a random number from the interval <code>(0, 1]</code>.
+     * 
+     * @return The random number.
+     */
+    private double nextUniform()
+    {
+        return 1.0 - random.nextDouble();
+    }
+}
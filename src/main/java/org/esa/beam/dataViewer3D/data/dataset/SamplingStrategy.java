@@ -0,0 +1,110 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+/**
+ * A strategy of selecting the points of a stream data set if their number is limited (see
+ * <code>setMaxPoints()</code> of the builders).
+ * <p>
+ * All strategies store at most the maximum number of points while reading the sources, so they need the same memory.
+ * The selected points are counted in the histogram of the data set by their weights, which are defined by the
+ * strategy.
+ * 
+ * @author Martin Pecka
+ */
+public abstract class SamplingStrategy
+{
+    /** The default number of bins per axis of the stratified strategy. */
+    public static final int DEFAULT_BINS = 8;
+
+    /**
+     * Create an empty sample.
+     * 
+     * @param capacity The maximum number of stored points.
+     * @param dimensions The number of coordinates of the points.
+     * @param keyDimensions The number of keys identifying a point.
+     * @param seed The seed of the random number generator.
+     * @return The sample.
+     * 
+     * @throws IllegalArgumentException If the capacity isn't positive.
+     */
+    abstract PointSample createSample(int capacity, int dimensions, int keyDimensions, long seed)
+            throws IllegalArgumentException;
+
+    /**
+     * Return <code>true</code> if the samples of disjoint parts of the sources can be merged, so that the sources can
+     * be scanned in parallel.
+     * 
+     * @return Whether the samples can be merged.
+     */
+    abstract boolean isMergeable();
+
+    /**
+     * Return the uniform strategy. It selects a uniformly random sample of the points, and every selected point has the
+     * weight 1. This is the default strategy.
+     * 
+     * @return The uniform strategy.
+     */
+    public static SamplingStrategy uniform()
+    {
+        return new SamplingStrategy() {
+            @Override
+            PointSample createSample(int capacity, int dimensions, int keyDimensions, long seed)
+            {
+                return new PointReservoir(capacity, keyDimensions, seed);
+            }
+
+            @Override
+            boolean isMergeable()
+            {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Return the strategy stratified by coarse voxels with {@link #DEFAULT_BINS} bins per axis.
+     * 
+     * @return The stratified strategy.
+     * 
+     * @see #stratified(int)
+     */
+    public static SamplingStrategy stratified()
+    {
+        return stratified(DEFAULT_BINS);
+    }
+
+    /**
+     * Return the strategy stratified by coarse voxels. The range of the values is divided into voxels, and the points
+     * of every voxel are sampled separately with a balanced quota, so the points from sparse regions (outliers, rare
+     * features) are all kept and only the dense regions are thinned. Every selected point has the weight of the number
+     * of points of its voxel it stands for.
+     * <p>
+     * The samples can't be merged, so the sources are always scanned sequentially.
+     * 
+     * @param bins The number of bins per axis.
+     * @return The stratified strategy.
+     * 
+     * @throws IllegalArgumentException If the number of bins is lower than 2.
+     */
+    public static SamplingStrategy stratified(final int bins) throws IllegalArgumentException
+    {
+        if (bins < 2)
+            throw new IllegalArgumentException("The number of bins has to be at least 2, but " + bins + " given.");
+
+        return new SamplingStrategy() {
+            @Override
+            PointSample createSample(int capacity, int dimensions, int keyDimensions, long seed)
+            {
+                return new StratifiedPointSample(capacity, dimensions, keyDimensions, bins, seed);
+            }
+
+            @Override
+            boolean isMergeable()
+            {
+                return false;
+            }
+        };
+    }
+}
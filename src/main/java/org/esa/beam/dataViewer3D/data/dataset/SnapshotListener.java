@@ -0,0 +1,24 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+/**
+ * A listener notified about partial results of a data set being built.
+ * 
+ * @author Martin Pecka
+ * @param <D> The type of the snapshots.
+ */
+public interface SnapshotListener<D extends DataSet>
+{
+    /**
+     * Called when a snapshot of the data set being built is available.
+     * <p>
+     * The snapshot is an immutable data set of the points read so far; if the number of points is limited, it is a
+     * uniformly random sample of them. Every snapshot replaces the previous one. The method is called from the thread
+     * building the data set, which waits until it returns.
+     * 
+     * @param snapshot The snapshot.
+     */
+    void snapshotCreated(D snapshot);
+}
@@ -0,0 +1,487 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+
+/**
+ * A sample of the valid points read by the stream data set builders stratified by coarse voxels, so that the points
+ * from sparse regions of the value space are kept.
+ * <p>
+ * The space of the coordinates is divided into <code>bins</code> bins per axis. The ranges of the axes are derived
+ * from the offered points the same way as in {@link VoxelGrid}: they start at the first distinct values and are doubled
+ * (merging pairs of neighbouring bins) whenever a point falls outside of them.
+ * <p>
+ * Every voxel keeps a uniformly random sample of its points. All points are kept until the sample is full. Then a point
+ * of a voxel which has kept all its points is kept if another voxel has kept at least two more points, and a random
+ * point of the voxel with the most kept points is discarded for it. The other points replace a random kept point of
+ * their voxel with the probability the points of the voxel are kept with. So sparse voxels keep all their points, and
+ * the points of the dense voxels are thinned to balanced quotas.
+ * <p>
+ * A kept point stands for the points of its voxel that haven't been kept, so its weight is the number of points offered
+ * to its voxel divided by the number of points the voxel has kept (the remainder is added to the first points of the
+ * voxel). Merged voxels keep at least one point if any of them has kept one. The points of voxels that haven't kept any
+ * (only if the sample is smaller than the number of non-empty voxels) are spread evenly over all kept points. So the
+ * weights of all kept points sum up to the number of offered points.
+ * 
+ * @author Martin Pecka
+ */
+class StratifiedPointSample extends PointSample
+{
+    /** The maximum number of voxels. */
+    static final int        MAX_VOXELS   = 1 << 20;
+
+    /** The maximum number of stored points. */
+    private final int       capacity;
+
+    /** The number of keys identifying a point. */
+    private final int       keyDimensions;
+
+    /** The number of coordinates of the points. */
+    private final int       dimensions;
+
+    /** The number of bins per axis. */
+    private final int       bins;
+
+    /** The random number generator. */
+    private final Random    random;
+
+    /** The lower bounds of the axes. */
+    private final double[]  origins;
+
+    /** The widths of the bins of the axes; <code>0</code> if all values of the axis have been equal so far. */
+    private final double[]  widths;
+
+    /** Whether the range of the axes has been set. */
+    private final boolean[] initialized;
+
+    /** The numbers of points offered to the voxels. */
+    private long[]          offered;
+
+    /** The slots of the points kept by the voxels; the first <code>kept[voxel]</code> entries are valid. */
+    private int[][]         slots;
+
+    /** The numbers of points kept by the voxels. */
+    private int[]           kept;
+
+    /** The voxels ordered as a binary max-heap by the number of their kept points. */
+    private final int[]     heap;
+
+    /** The positions of the voxels in the heap. */
+    private final int[]     heapPositions;
+
+    /** The indices of the stored points. */
+    private int[]           indices;
+
+    /** The keys of the stored points; <code>keyDimensions</code> entries per point. */
+    private long[]          keys;
+
+    /** The number of slots that have been used. */
+    private int             usedSlots    = 0;
+
+    /** The used slots not containing a point; the first <code>numFreeSlots</code> entries are valid. */
+    private int[]           freeSlots    = new int[16];
+
+    /** The number of used slots not containing a point. */
+    private int             numFreeSlots = 0;
+
+    /** The number of stored points. */
+    private int             size         = 0;
+
+    /** The number of offered points. */
+    private long            points       = 0;
+
+    /**
+     * Create an empty sample.
+     * 
+     * @param capacity The maximum number of stored points.
+     * @param dimensions The number of coordinates of the points.
+     * @param keyDimensions The number of keys identifying a point.
+     * @param bins The number of bins per axis.
+     * @param seed The seed of the random number generator.
+     * 
+     * @throws IllegalArgumentException If the capacity isn't positive, the number of bins is lower than 2 or there
+     *             would be more than {@link #MAX_VOXELS} voxels.
+     */
+    StratifiedPointSample(int capacity, int dimensions, int keyDimensions, int bins, long seed)
+            throws IllegalArgumentException
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(getClass() + ": The capacity has to be positive, but " + capacity
+                    + " given.");
+        if (bins < 2 || Math.pow(bins, dimensions) > MAX_VOXELS)
+            throw new IllegalArgumentException(getClass() + ": Unsupported number of bins: " + bins);
+
+        this.capacity = capacity;
+        this.dimensions = dimensions;
+        this.keyDimensions = keyDimensions;
+        this.bins = bins;
+        this.random = new Random(seed);
+
+        origins = new double[dimensions];
+        widths = new double[dimensions];
+        initialized = new boolean[dimensions];
+
+        final int voxels = (int) Math.pow(bins, dimensions);
+        offered = new long[voxels];
+        slots = new int[voxels][];
+        kept = new int[voxels];
+        heap = new int[voxels];
+        heapPositions = new int[voxels];
+        for (int voxel = 0; voxel < voxels; voxel++) {
+            heap[voxel] = voxel;
+            heapPositions[voxel] = voxel;
+        }
+
+        // grown on demand, so that small inputs don't allocate the whole capacity
+        final int initialCapacity = Math.min(capacity, 1024);
+        indices = new int[initialCapacity];
+        keys = new long[initialCapacity * keyDimensions];
+    }
+
+    @Override
+    long getSkip()
+    {
+        // the voxel of every point has to be known
+        return 0;
+    }
+
+    @Override
+    void skip(long n)
+    {
+    }
+
+    @Override
+    void add(int index, long[] pointKeys, double[] coordinates)
+    {
+        int voxel = 0;
+        for (int d = 0; d < dimensions; d++)
+            voxel = voxel * bins + bin(d, coordinates[d]);
+
+        points++;
+        final long n = ++offered[voxel];
+        final int k = kept[voxel];
+
+        if (k == n - 1 || k == 0) {
+            // the voxel has kept all its points so far (or it has lost all of them when merged)
+            if (size < capacity) {
+                store(voxel, allocateSlot(), index, pointKeys);
+                return;
+            }
+            final int densest = heap[0];
+            if (kept[densest] > k + 1) {
+                store(voxel, discard(densest), index, pointKeys);
+                return;
+            }
+        }
+
+        // Algorithm R keeps a uniformly random sample of the points of the voxel
+        if (k > 0) {
+            final long r = (long) (random.nextDouble() * n);
+            if (r < k)
+                set(slots[voxel][(int) r], index, pointKeys);
+        }
+    }
+
+    @Override
+    int size()
+    {
+        return size;
+    }
+
+    @Override
+    PointKeyTable toTable(IntList usedPointsIndices)
+    {
+        // sort the slots by the indices of their points
+        final int[] slotVoxels = new int[usedSlots];
+        final long[] order = new long[size];
+        int i = 0;
+        for (int voxel = 0; voxel < kept.length; voxel++) {
+            for (int p = 0; p < kept[voxel]; p++) {
+                final int slot = slots[voxel][p];
+                slotVoxels[slot] = voxel;
+                order[i++] = ((long) indices[slot] << 32) | slot;
+            }
+        }
+        Arrays.sort(order);
+
+        // the points of the voxels without kept points are spread over all kept points
+        long orphans = 0;
+        for (int voxel = 0; voxel < kept.length; voxel++) {
+            if (kept[voxel] == 0)
+                orphans += offered[voxel];
+        }
+
+        final PointKeyTable table = new PointKeyTable(keyDimensions, size);
+        final long[] pointKeys = new long[keyDimensions];
+        final int[] weighted = new int[kept.length];
+        for (i = 0; i < size; i++) {
+            final int slot = (int) order[i];
+            final int voxel = slotVoxels[slot];
+            final long remainder = offered[voxel] % kept[voxel];
+            final long weight = offered[voxel] / kept[voxel] + (weighted[voxel]++ < remainder ? 1 : 0)
+                    + orphans / size + (i < orphans % size ? 1 : 0);
+            final int count = (int) Math.min(weight, Integer.MAX_VALUE);
+
+            System.arraycopy(keys, slot * keyDimensions, pointKeys, 0, keyDimensions);
+            if (table.add(pointKeys, count) == count)
+                usedPointsIndices.add(indices[slot]);
+        }
+        return table;
+    }
+
+    /**
+     * Store the point in the given slot and add it to the given voxel.
+     * 
+     * @param voxel The voxel.
+     * @param slot The slot.
+     * @param index The index of the point.
+     * @param pointKeys The keys identifying the point.
+     */
+    private void store(int voxel, int slot, int index, long[] pointKeys)
+    {
+        set(slot, index, pointKeys);
+
+        if (slots[voxel] == null)
+            slots[voxel] = new int[4];
+        else if (kept[voxel] == slots[voxel].length)
+            slots[voxel] = Arrays.copyOf(slots[voxel], 2 * kept[voxel]);
+        slots[voxel][kept[voxel]++] = slot;
+        size++;
+        siftUp(voxel);
+    }
+
+    /**
+     * Discard a random point of the given voxel.
+     * 
+     * @param voxel The voxel.
+     * @return The slot of the discarded point.
+     */
+    private int discard(int voxel)
+    {
+        final int p = random.nextInt(kept[voxel]);
+        final int slot = slots[voxel][p];
+        slots[voxel][p] = slots[voxel][--kept[voxel]];
+        size--;
+        siftDown(voxel);
+        return slot;
+    }
+
+    /**
+     * Store the point in the given slot.
+     * 
+     * @param slot The slot.
+     * @param index The index of the point.
+     * @param pointKeys The keys identifying the point.
+     */
+    private void set(int slot, int index, long[] pointKeys)
+    {
+        indices[slot] = index;
+        System.arraycopy(pointKeys, 0, keys, slot * keyDimensions, keyDimensions);
+    }
+
+    /**
+     * Return a slot not containing a point.
+     * 
+     * @return The slot.
+     */
+    private int allocateSlot()
+    {
+        if (numFreeSlots > 0)
+            return freeSlots[--numFreeSlots];
+
+        if (usedSlots == indices.length) {
+            final int newCapacity = (int) Math.min(capacity, 2L * indices.length);
+            indices = Arrays.copyOf(indices, newCapacity);
+            keys = Arrays.copyOf(keys, newCapacity * keyDimensions);
+        }
+        return usedSlots++;
+    }
+
+    /**
+     * Return the bin of the given value, extending the range of the axis if needed. Infinite and NaN values belong to
+     * the first bin.
+     * 
+     * @param axis The axis.
+     * @param value The value.
+     * @return The bin.
+     */
+    private int bin(int axis, double value)
+    {
+        if (Double.isInfinite(value) || Double.isNaN(value))
+            return 0;
+
+        if (!initialized[axis]) {
+            origins[axis] = value;
+            initialized[axis] = true;
+        }
+
+        if (widths[axis] == 0) {
+            if (value == origins[axis])
+                return 0;
+
+            // the first distinct value; the previous values are all in the first bin
+            final double origin = origins[axis];
+            origins[axis] = Math.min(origin, value);
+            widths[axis] = Math.abs(value - origin) / (bins - 1);
+            if (value < origin)
+                remap(axis, bins - 1, 1);
+        }
+
+        while (value < origins[axis]) {
+            // double the range downwards: old bin b becomes (b + bins) / 2
+            origins[axis] -= bins * widths[axis];
+            widths[axis] *= 2;
+            remap(axis, bins, 2);
+        }
+
+        while (value > origins[axis] + bins * widths[axis]) {
+            // double the range upwards: old bin b becomes b / 2
+            widths[axis] *= 2;
+            remap(axis, 0, 2);
+        }
+
+        // the upper bound itself belongs to the last bin, and rounding errors mustn't take the value out of the grid
+        final int bin = (int) ((value - origins[axis]) / widths[axis]);
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
+
+    /**
+     * Move the points of the bins of the given axis, so that bin <code>b</code> becomes bin
+     * <code>(b + offset) / divisor</code>.
+     * <p>
+     * When two voxels are merged, the voxel keeping a larger part of its points is thinned to the part kept by the
+     * other one, so that the merged voxel keeps a uniformly random sample of its points. If any of them has kept a
+     * point, the merged voxel keeps at least one to carry the weight of its points.
+     * 
+     * @param axis The axis.
+     * @param offset The offset of the bins.
+     * @param divisor The divisor of the bins.
+     */
+    private void remap(int axis, int offset, int divisor)
+    {
+        if (points == 0)
+            return;
+
+        int stride = 1;
+        for (int d = axis + 1; d < dimensions; d++)
+            stride *= bins;
+
+        final long[] newOffered = new long[offered.length];
+        final int[][] newSlots = new int[slots.length][];
+        final int[] newKept = new int[kept.length];
+
+        for (int voxel = 0; voxel < offered.length; voxel++) {
+            if (offered[voxel] == 0)
+                continue;
+
+            final int bin = (voxel / stride) % bins;
+            final int target = voxel + ((bin + offset) / divisor - bin) * stride;
+
+            if (newOffered[target] == 0) {
+                newOffered[target] = offered[voxel];
+                newSlots[target] = slots[voxel];
+                newKept[target] = kept[voxel];
+                continue;
+            }
+
+            final double ratio = Math.min((double) newKept[target] / newOffered[target], (double) kept[voxel]
+                    / offered[voxel]);
+            final int minKeep = newKept[target] + kept[voxel] > 0 ? 1 : 0;
+            final int keepTarget = thin(newSlots[target], newKept[target], newOffered[target], ratio,
+                    kept[voxel] == 0 ? minKeep : 0);
+            final int keepVoxel = thin(slots[voxel], kept[voxel], offered[voxel], ratio, keepTarget == 0 ? minKeep : 0);
+
+            final int[] merged = new int[Math.max(4, keepTarget + keepVoxel)];
+            if (keepTarget > 0)
+                System.arraycopy(newSlots[target], 0, merged, 0, keepTarget);
+            if (keepVoxel > 0)
+                System.arraycopy(slots[voxel], 0, merged, keepTarget, keepVoxel);
+
+            newOffered[target] += offered[voxel];
+            newSlots[target] = merged;
+            newKept[target] = keepTarget + keepVoxel;
+        }
+
+        offered = newOffered;
+        slots = newSlots;
+        kept = newKept;
+
+        for (int voxel = 0; voxel < heap.length; voxel++) {
+            heap[voxel] = voxel;
+            heapPositions[voxel] = voxel;
+        }
+        for (int i = heap.length / 2 - 1; i >= 0; i--)
+            siftDown(heap[i]);
+    }
+
+    /**
+     * Discard random points of a voxel, so that it keeps the given part of its points.
+     * 
+     * @param voxelSlots The slots of the points of the voxel.
+     * @param voxelKept The number of points kept by the voxel.
+     * @param voxelOffered The number of points offered to the voxel.
+     * @param ratio The part of the points to keep.
+     * @param minKeep The minimum number of points to keep, if the voxel has kept them.
+     * @return The new number of points kept by the voxel; its kept points are moved to the beginning of the slots.
+     */
+    private int thin(int[] voxelSlots, int voxelKept, long voxelOffered, double ratio, int minKeep)
+    {
+        final int keep = (int) Math.min(voxelKept, Math.max(minKeep, Math.round(voxelOffered * ratio)));
+        for (int k = voxelKept; k > keep; k--) {
+            final int p = random.nextInt(k);
+            if (numFreeSlots == freeSlots.length)
+                freeSlots = Arrays.copyOf(freeSlots, 2 * freeSlots.length);
+            freeSlots[numFreeSlots++] = voxelSlots[p];
+            voxelSlots[p] = voxelSlots[k - 1];
+            size--;
+        }
+        return keep;
+    }
+
+    /**
+     * Move the given voxel towards the root of the heap while it has kept more points than its parent.
+     * 
+     * @param voxel The voxel.
+     */
+    private void siftUp(int voxel)
+    {
+        int position = heapPositions[voxel];
+        while (position > 0) {
+            final int parent = (position - 1) / 2;
+            if (kept[heap[parent]] >= kept[voxel])
+                break;
+            heap[position] = heap[parent];
+            heapPositions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = voxel;
+        heapPositions[voxel] = position;
+    }
+
+    /**
+     * Move the given voxel towards the leaves of the heap while it has kept less points than one of its children.
+     * 
+     * @param voxel The voxel.
+     */
+    private void siftDown(int voxel)
+    {
+        int position = heapPositions[voxel];
+        while (2 * position + 1 < heap.length) {
+            int child = 2 * position + 1;
+            if (child + 1 < heap.length && kept[heap[child + 1]] > kept[heap[child]])
+                child++;
+            if (kept[heap[child]] <= kept[voxel])
+                break;
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = voxel;
+        heapPositions[voxel] = position;
+    }
+}
@@ -3,6 +3,7 @@
  */
 package org.esa.beam.dataViewer3D.data.dataset;
 
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -12,6 +13,11 @@ import org.esa.beam.dataViewer3D.data.source.DataSource;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.source.RandomAccessDataSource;
+import org.esa.beam.dataViewer3D.data.source.RandomAccessReader;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.esa.beam.dataViewer3D.utils.IntList;
 import org.esa.beam.util.Guardian;
 import org.esa.beam.util.SkippableIterator;
 
@@ -19,6 +25,10 @@ import com.bc.ceres.core.ProgressMonitor;
 
 /**
  * A stream-backed data set. Doesn't duplicate the data from the input sources.
+ * <p>
+ * Reading the points from the sources is slow (e.g. band data sources have to fetch their tiles again), so the points
+ * are copied into primitive columns on the first iteration if they fit into the materialization budget. Only the sets
+ * exceeding the budget read the points from their sources on every iteration.
  * 
  * @author Martin Pecka
  * @param <P> The type of the points this data set contains.
@@ -30,14 +40,51 @@ abstract class StreamDataSet<P extends DataPoint> extends AbstractDataSet
      * The maximum number of data points this set can contain (<code>null</code> means no other than the free memory
      * limit is set).
      */
-    public static final Long                        MAX_SIZE = (long) (Integer.MAX_VALUE - 1);
+    public static final Long         MAX_SIZE                       = (long) (Integer.MAX_VALUE - 1);
+
+    /** The default time between the start of the scan and the first snapshot published by the builders (in ms). */
+    public static final long         DEFAULT_SNAPSHOT_INTERVAL      = 500;
+
+    /** The default number of bytes the materialized points of a data set may occupy (an eighth of the heap). */
+    public static final long         DEFAULT_MATERIALIZATION_BUDGET = Runtime.getRuntime().maxMemory() / 8;
+
+    /**
+     * The default number of bytes of the points kept in memory while a set is built out of core (a quarter of the
+     * heap).
+     */
+    public static final long         DEFAULT_SPILL_THRESHOLD        = Runtime.getRuntime().maxMemory() / 4;
 
     // we don't use the points as keys here in order to be able to free the points from memory if we don't need them
-    /** Keys are hashes of the points, values are counts of points with the same hash. */
-    protected final LinkedHashMap<Integer, Integer> usedPoints;
+    // the primitive collections need about 8 bytes per point, the boxed ones needed more than 100 bytes
+    /** Counts of the distinct points of the set (the histogram). */
+    protected final IntList          usedPointsCounts;
+
+    /**
+     * Indices to the data source's iterator where all the used points are located; the <code>i</code>-th index
+     * belongs to the point with the <code>i</code>-th count.
+     */
+    protected final IntList          usedPointsIndices;
 
-    /** Indices to the data source's iterator where all the used points are located. */
-    protected final List<Integer>                   usedPointsIndices;
+    /** The maximum number of bytes the materialized points may occupy. */
+    private long                     materializationBudget          = DEFAULT_MATERIALIZATION_BUDGET;
+
+    /** The points copied into primitive columns, <code>null</code> if they haven't been materialized. */
+    private volatile ColumnarDataSet materialized                   = null;
+
+    /** Whether the points exceed the materialization budget. */
+    private boolean                  overBudget                     = false;
+
+    /**
+     * A stream-backed data set.
+     * 
+     * @param usedPointsCounts Counts of the distinct points of the set.
+     * @param usedPointsIndices Indices to the data source's iterator where all the used points are located.
+     */
+    protected StreamDataSet(IntList usedPointsCounts, IntList usedPointsIndices)
+    {
+        this.usedPointsCounts = usedPointsCounts;
+        this.usedPointsIndices = usedPointsIndices;
+    }
 
     /**
      * A stream-backed data set.
@@ -47,14 +94,13 @@ abstract class StreamDataSet<P extends DataPoint> extends AbstractDataSet
      */
     protected StreamDataSet(LinkedHashMap<Integer, Integer> usedPoints, List<Integer> usedPointsIndices)
     {
-        this.usedPoints = usedPoints;
-        this.usedPointsIndices = usedPointsIndices;
+        this(new IntList(usedPoints.values()), new IntList(usedPointsIndices));
     }
 
     @Override
     public int size()
     {
-        return usedPoints.size();
+        return usedPointsCounts.size();
     }
 
     @Override
@@ -86,18 +132,102 @@ abstract class StreamDataSet<P extends DataPoint> extends AbstractDataSet
     @Override
     public Iterator<Integer> histogramIterator()
     {
-        return usedPoints.values().iterator();
+        return new Iterator<Integer>() {
+            private final IntIterator it = usedPointsCounts.iterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                return it.hasNext();
+            }
+
+            @Override
+            public Integer next()
+            {
+                return it.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public IntIterator histogramIntIterator()
+    {
+        return usedPointsCounts.iterator();
+    }
+
+    /**
+     * Return the maximum number of bytes the materialized points of this set may occupy.
+     * 
+     * @return The materialization budget in bytes.
+     */
+    public synchronized long getMaterializationBudget()
+    {
+        return materializationBudget;
+    }
+
+    /**
+     * Set the maximum number of bytes the materialized points of this set may occupy. The already materialized points
+     * are discarded, and they are materialized again on the next iteration if they fit into the new budget.
+     * 
+     * @param materializationBudget The materialization budget in bytes; 0 means the points are always read from the
+     *            sources.
+     */
+    public synchronized void setMaterializationBudget(long materializationBudget)
+    {
+        this.materializationBudget = materializationBudget;
+        materialized = null;
+        overBudget = false;
     }
 
+    /**
+     * Return the points of this set copied into primitive columns. The points are read from the sources and copied on
+     * the first call, if they fit into the materialization budget.
+     * 
+     * @param prototypes Values of the types of the coordinates.
+     * @return The materialized points, <code>null</code> if they don't fit into the budget.
+     */
+    protected ColumnarDataSet getMaterialized(Number... prototypes)
+    {
+        final ColumnarDataSet result = materialized;
+        if (result != null)
+            return result;
+
+        synchronized (this) {
+            if (materialized == null && !overBudget) {
+                if (ColumnarDataSet.getMemorySize(longSize(), prototypes) <= materializationBudget)
+                    materialized = materialize();
+                else
+                    overBudget = true;
+            }
+            return materialized;
+        }
+    }
+
+    /**
+     * Read the points of this set from the sources and copy them into primitive columns.
+     * 
+     * @return The materialized points.
+     */
+    protected abstract ColumnarDataSet materialize();
+
     /**
      * Return an iterator over one axis' data.
      * 
      * @param source The source of the axis' data.
      * @return The iterator.
      */
+    @SuppressWarnings("unchecked")
     protected <N extends Number> Iterator<N> singleAxisIterator(final DataSource<N> source)
     {
-        if (source.iterator() instanceof SkippableIterator<?>)
+        if (source instanceof RandomAccessDataSource<?>)
+            return new SingleAxisRandomAccessIterator<N>((RandomAccessDataSource<N>) source);
+        else if (source.iterator() instanceof SkippableIterator<?>)
             return new SingleAxisSkippingIterator<N>(source);
         else
             return new SingleAxisIterator<N>(source);
@@ -194,6 +324,122 @@ abstract class StreamDataSet<P extends DataPoint> extends AbstractDataSet
         return StreamDataSet4D.createFromDataSources(maxPoints, x, y, z, w, progressMonitor);
     }
 
+    /**
+     * A single axis iterator reading only the used entries of a random access data source.
+     * 
+     * @author Martin Pecka
+     * @param <N> Type of the data.
+     */
+    protected class SingleAxisRandomAccessIterator<N extends Number> implements Iterator<N>
+    {
+        protected final RandomAccessReader<N> reader;
+        protected final IntIterator           indices = usedPointsIndices.iterator();
+        protected final double[]              value   = new double[1];
+        protected final BitSet                valid   = new BitSet(1);
+
+        public SingleAxisRandomAccessIterator(final RandomAccessDataSource<N> source)
+        {
+            reader = source.randomAccessReader();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return indices.hasNext();
+        }
+
+        @Override
+        public N next()
+        {
+            reader.seek(indices.next());
+            reader.read(value, valid);
+            return reader.getNumber(0);
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A reader of the values of a single axis at the indices of the used points.
+     * <p>
+     * Random access sources are read directly at the given indices, skippable iterators skip the unused entries, and
+     * the other iterators have to walk over them. Except for random access sources, the indices have to be ascending.
+     * 
+     * @author Martin Pecka
+     * @param <N> Type of the data.
+     */
+    protected static class AxisReader<N extends Number>
+    {
+        /** The reader of a random access source, <code>null</code> if the source isn't a random access one. */
+        private final RandomAccessReader<N>    reader;
+        /** The iterator of the source, <code>null</code> if the source is a random access one. */
+        private final Iterator<NumericType<N>> it;
+        /** Whether the iterator is skippable (because instanceof may be slow). */
+        private final boolean                  skippable;
+        /** The buffer for reading a single value from the random access reader. */
+        private final double[]                 value     = new double[1];
+        /** The validity of the value read from the random access reader. */
+        private final BitSet                   valid     = new BitSet(1);
+        /** The index of the last returned value in its datasource. */
+        private int                            lastIndex = -1;
+
+        /**
+         * @param source The source of the axis' data.
+         */
+        @SuppressWarnings("unchecked")
+        public AxisReader(DataSource<N> source)
+        {
+            if (source instanceof RandomAccessDataSource<?>) {
+                reader = ((RandomAccessDataSource<N>) source).randomAccessReader();
+                it = null;
+                skippable = false;
+            } else {
+                reader = null;
+                it = source.numericTypeIterator();
+                skippable = (it instanceof SkippableIterator<?>);
+            }
+        }
+
+        /**
+         * @return Whether the source has any entries following the last read one.
+         */
+        public boolean hasNext()
+        {
+            return it == null ? reader.hasNext() : it.hasNext();
+        }
+
+        /**
+         * Return the value of the entry with the given index.
+         * 
+         * @param index Index of the entry in the source.
+         * @return The value, <code>null</code> if the entry is invalid.
+         */
+        public NumericType<N> get(int index)
+        {
+            final int difference = index - lastIndex;
+            lastIndex = index;
+
+            if (reader != null) {
+                reader.seek(index);
+                reader.read(value, valid);
+                return reader.getNumericType(0);
+            } else if (skippable) {
+                if (difference > 1)
+                    ((SkippableIterator<?>) it).skip(difference - 1);
+                return it.next();
+            } else {
+                NumericType<N> result = null;
+                for (int i = 0; i < difference; i++)
+                    result = it.next();
+                return result;
+            }
+        }
+    }
+
     /**
      * A single axis iterator which provides an efficient way to iterate over data sources with skippable iterators.
      * 
@@ -231,7 +477,7 @@ abstract class StreamDataSet<P extends DataPoint> extends AbstractDataSet
     protected class SingleAxisIterator<N extends Number> implements Iterator<N>
     {
         protected final Iterator<N>       sourceIt;
-        protected final Iterator<Integer> indices   = usedPointsIndices.iterator();
+        protected final IntIterator       indices   = usedPointsIndices.iterator();
         protected int                     lastIndex = -1;
 
         public SingleAxisIterator(final DataSource<N> source)
@@ -3,9 +3,10 @@
  */
 package org.esa.beam.dataViewer3D.data.dataset;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 
@@ -13,9 +14,10 @@ import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
 import org.esa.beam.dataViewer3D.data.source.DataSource;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet3D;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
 import org.esa.beam.dataViewer3D.data.type.NumericType;
-import org.esa.beam.util.SkippableIterator;
-import org.esa.beam.util.ValidatingIterator;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.esa.beam.dataViewer3D.utils.IntList;
 
 import com.bc.ceres.core.ProgressMonitor;
 
@@ -57,7 +59,7 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
      * @param y The source of y values.
      * @param z The source of z values.
      * @param pointFactory The factory for creating points from single coordinates.
-     * @param usedPoints Keys are hashes of the points, values are counts of points with the same hash.
+     * @param usedPointsCounts Counts of the distinct points of the set.
      * @param usedPointsIndices Indices to the data source's iterator where all the used points are located.
      * @param minX Minimum x value.
      * @param minY Minimum y value.
@@ -66,22 +68,21 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
      * @param maxY Maximum y value.
      * @param maxZ Maximum z value.
      * 
-     * @throws IllegalArgumentException If x,y and z don't have all the same sizes; if usedPoints has 0 size; if
-     *             usedPoints is longer than x or y or z; if some max is lower than the min for a coordinate.
+     * @throws IllegalArgumentException If x,y and z don't have all the same sizes; if usedPointsCounts has 0 size; if
+     *             usedPointsCounts is longer than x or y or z; if some max is lower than the min for a coordinate.
      */
     protected StreamDataSet3D(DataSource<X> x, DataSource<Y> y, DataSource<Z> z, PointFactory<X, Y, Z> pointFactory,
-            LinkedHashMap<Integer, Integer> usedPoints, List<Integer> usedPointsIndices, X minX, Y minY, Z minZ,
-            X maxX, Y maxY, Z maxZ)
+            IntList usedPointsCounts, IntList usedPointsIndices, X minX, Y minY, Z minZ, X maxX, Y maxY, Z maxZ)
     {
-        super(usedPoints, usedPointsIndices);
+        super(usedPointsCounts, usedPointsIndices);
 
         if (x.size() != y.size() || y.size() != z.size())
             throw new IllegalArgumentException(getClass() + ": Cannot use data sources of different sizes.");
 
-        if (x.size() == 0 || usedPoints.size() == 0)
+        if (x.size() == 0 || usedPointsCounts.size() == 0)
             throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
 
-        if (x.size() < usedPoints.size())
+        if (x.size() < usedPointsCounts.size())
             throw new IllegalArgumentException(getClass()
                     + ": Cannot pass more used points than is the size of the source.");
 
@@ -103,72 +104,59 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
         this.maxZ = maxZ;
     }
 
+    /**
+     * A stream-backed 3D data set.
+     * 
+     * @param usedPoints Keys are hashes of the points, values are counts of points with the same hash.
+     * @see #StreamDataSet3D(DataSource, DataSource, DataSource, PointFactory, IntList, IntList, Number, Number,
+     *      Number, Number, Number, Number)
+     */
+    protected StreamDataSet3D(DataSource<X> x, DataSource<Y> y, DataSource<Z> z, PointFactory<X, Y, Z> pointFactory,
+            LinkedHashMap<Integer, Integer> usedPoints, List<Integer> usedPointsIndices, X minX, Y minY, Z minZ,
+            X maxX, Y maxY, Z maxZ)
+    {
+        this(x, y, z, pointFactory, new IntList(usedPoints.values()), new IntList(usedPointsIndices), minX, minY,
+                minZ, maxX, maxY, maxZ);
+    }
+
     @Override
     public Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> pointIterator()
+    {
+        final ColumnarDataSet3D<X, Y, Z> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.pointIterator();
+        return streamPointIterator();
+    }
+
+    /**
+     * Return an iterator reading the points from the sources.
+     * 
+     * @return The iterator.
+     */
+    protected Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>> streamPointIterator()
     {
         return new Iterator<DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>>>() {
 
             /** Iterator of the used points' indices in their data sources. */
-            private final Iterator<Integer>        usedPointsIndices = StreamDataSet3D.this.usedPointsIndices
-                                                                             .iterator();
-            /** Iterator of the source for x values. */
-            private final Iterator<NumericType<X>> xIt               = xSource.numericTypeIterator();
-            /** Iterator of the source for y values. */
-            private final Iterator<NumericType<Y>> yIt               = ySource.numericTypeIterator();
-            /** Iterator of the source for z values. */
-            private final Iterator<NumericType<Z>> zIt               = zSource.numericTypeIterator();
-            /** Wheteher the iterators are skippable (because instanceof may be slow). */
-            private final boolean                  xSkippable        = (xIt instanceof SkippableIterator<?>),
-                    ySkippable = (yIt instanceof SkippableIterator<?>),
-                    zSkippable = (zIt instanceof SkippableIterator<?>);
-            /** The index of the last returned value in its datasource. */
-            private int                            lastIndex         = -1;
+            private final IntIterator   usedPointsIndices = StreamDataSet3D.this.usedPointsIndices.iterator();
+            /** Reader of the source for x values. */
+            private final AxisReader<X> xReader           = new AxisReader<X>(xSource);
+            /** Reader of the source for y values. */
+            private final AxisReader<Y> yReader           = new AxisReader<Y>(ySource);
+            /** Reader of the source for z values. */
+            private final AxisReader<Z> zReader           = new AxisReader<Z>(zSource);
 
             @Override
             public boolean hasNext()
             {
-                return usedPointsIndices.hasNext() && xIt.hasNext() && yIt.hasNext() && zIt.hasNext();
+                return usedPointsIndices.hasNext() && xReader.hasNext() && yReader.hasNext() && zReader.hasNext();
             }
 
             @Override
             public DataPoint3D<NumericType<X>, NumericType<Y>, NumericType<Z>> next()
             {
-                NumericType<X> x = null;
-                NumericType<Y> y = null;
-                NumericType<Z> z = null;
-
-                final int oldIndex = lastIndex;
-                lastIndex = usedPointsIndices.next();
-                final int difference = lastIndex - oldIndex;
-
-                if (!xSkippable) {
-                    for (int i = 0; i < difference; i++)
-                        x = xIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) xIt).skip(difference - 1);
-                    x = xIt.next();
-                }
-
-                if (!ySkippable) {
-                    for (int i = 0; i < difference; i++)
-                        y = yIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) yIt).skip(difference - 1);
-                    y = yIt.next();
-                }
-
-                if (!zSkippable) {
-                    for (int i = 0; i < difference; i++)
-                        z = zIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) zIt).skip(difference - 1);
-                    z = zIt.next();
-                }
-
-                return pointFactory.getPoint(x, y, z);
+                final int index = usedPointsIndices.next();
+                return pointFactory.getPoint(xReader.get(index), yReader.get(index), zReader.get(index));
             }
 
             @Override
@@ -182,18 +170,27 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
     @Override
     public Iterator<X> xIterator()
     {
+        final ColumnarDataSet3D<X, Y, Z> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.xIterator();
         return singleAxisIterator(xSource);
     }
 
     @Override
     public Iterator<Y> yIterator()
     {
+        final ColumnarDataSet3D<X, Y, Z> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.yIterator();
         return singleAxisIterator(ySource);
     }
 
     @Override
     public Iterator<Z> zIterator()
     {
+        final ColumnarDataSet3D<X, Y, Z> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.zIterator();
         return singleAxisIterator(zSource);
     }
 
@@ -278,6 +275,25 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
         }
     }
 
+    /**
+     * Return the points of this set copied into primitive columns.
+     * 
+     * @return The materialized points, <code>null</code> if they don't fit into the materialization budget.
+     * 
+     * @see StreamDataSet#getMaterialized(Number...)
+     */
+    @SuppressWarnings("unchecked")
+    protected ColumnarDataSet3D<X, Y, Z> getMaterialized()
+    {
+        return (ColumnarDataSet3D<X, Y, Z>) getMaterialized(minX, minY, minZ);
+    }
+
+    @Override
+    protected ColumnarDataSet3D<X, Y, Z> materialize()
+    {
+        return ColumnarDataSet3D.copyOf(this, streamPointIterator());
+    }
+
     /**
      * Return a builder able to build this class.
      * 
@@ -290,8 +306,8 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
 
     /**
      * Create a 3D stream data set from the given set of sources. If <code>maxPoints != null</code>, then it defines the
-     * maximum number of points in the created set. If the sources provide more points, then a random subset will be
-     * present in the resulting set (the set could be a little smaller than <code>maxPoints</code>).
+     * maximum number of points in the created set. If the sources provide more points, then the set is built from a
+     * uniformly random sample of <code>maxPoints</code> entries (so it is smaller if the sample contains equal points).
      * 
      * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the resulting set.
      * @param dataSourceSet The set of data sources.
@@ -308,8 +324,8 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
 
     /**
      * Create a 3D stream data set from the given sources. If <code>maxPoints != null</code>, then it defines the
-     * maximum number of points in the created set. If the sources provide more points, then a random subset will be
-     * present in the resulting set (the set could be a little smaller than <code>maxPoints</code>).
+     * maximum number of points in the created set. If the sources provide more points, then the set is built from a
+     * uniformly random sample of <code>maxPoints</code> entries (so it is smaller if the sample contains equal points).
      * 
      * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the resulting set.
      * @param x Source for x values.
@@ -331,6 +347,33 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
         return builder.getResult();
     }
 
+    /**
+     * Create a 3D stream data set from the given sources, publishing partial snapshots of it to the given listener
+     * while the sources are being read (see {@link Builder3D#setSnapshotListener(SnapshotListener)}).
+     * 
+     * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the resulting set.
+     * @param x Source for x values.
+     * @param y Source for y values.
+     * @param z Source for z values.
+     * @param snapshotListener The listener to publish the snapshots to, <code>null</code> to publish no snapshots.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The stream data set created using the given values.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number> StreamDataSet3D<X, Y, Z> createFromDataSources(
+            Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z,
+            SnapshotListener<? super StreamDataSet3D<X, Y, Z>> snapshotListener, ProgressMonitor progressMonitor)
+    {
+        Builder3D<X, Y, Z> builder = StreamDataSet3D.getBuilder();
+        builder.setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z);
+        builder.setSnapshotListener(snapshotListener);
+        if (maxPoints != null)
+            builder.setMaxPoints(maxPoints);
+        if (progressMonitor != null)
+            builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
     /**
      * The builder for building a stream data set.
      * 
@@ -348,11 +391,26 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
         /** The source of z values. */
         private DataSource<Z>               zSource;
         /** If not <code>null</code>, specifies the maximum number of points in the resulting set. */
-        private Integer                     maxPoints    = null;
+        private Integer                     maxPoints          = null;
         /** A factory for creating points from single coordinates. */
-        private final PointFactory<X, Y, Z> pointFactory = createPointFactory();
+        private final PointFactory<X, Y, Z> pointFactory       = createPointFactory();
         /** The progress monitor. */
         private ProgressMonitor             progressMonitor;
+        /** The number of threads to use for scanning tiled sources. */
+        private int                         parallelism        = Runtime.getRuntime().availableProcessors();
+        /** The seed of the random sampling of the points if their number is limited. */
+        private long                        seed               = ReservoirSampler.DEFAULT_SEED;
+        /** Whether to tell the points apart by the keys of their coordinates instead of their hash codes. */
+        private boolean                     exactDeduplication = true;
+        /** The strategy of selecting the points if their number is limited. */
+        private SamplingStrategy            samplingStrategy   = SamplingStrategy.uniform();
+        /** The maximum number of bytes of the points kept in memory while building the set out of core. */
+        private long                        spillThreshold     = DEFAULT_SPILL_THRESHOLD;
+
+        /** The listener to publish the snapshots of the set to, <code>null</code> if no snapshots are published. */
+        private SnapshotListener<? super StreamDataSet3D<X, Y, Z>> snapshotListener = null;
+        /** The time between the start of the scan and the first snapshot, in milliseconds. */
+        private long                                               snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
 
         /**
          * When the builder is configured, call this method to get the resulting set.
@@ -361,6 +419,7 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
          * 
          * @throws IllegalArgumentException If the sources have different sizes or are not set at all.
          */
+        @SuppressWarnings("unchecked")
         public StreamDataSet3D<X, Y, Z> getResult()
         {
             if (xSource == null || ySource == null || zSource == null)
@@ -370,83 +429,255 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
                 throw new IllegalArgumentException(getClass()
                         + ": You must use data sources of the same size in the builder.");
 
-            final LinkedHashMap<Integer, Integer> usedPoints = new LinkedHashMap<Integer, Integer>(
-                    (maxPoints != null && maxPoints < xSource.size()) ? maxPoints : xSource.size());
-            final List<Integer> usedPointsIndices = new LinkedList<Integer>();
+            // sampled sets are always built from the same chunks of tiles, so they don't depend on the parallelism
+            if ((parallelism > 1 || maxPoints != null) && (maxPoints == null || samplingStrategy.isMergeable())
+                    && ParallelTileScanner.canScan(xSource, ySource, zSource))
+                return getParallelResult();
+
+            final int keyDimensions = exactDeduplication ? 3 : 1;
+            // a cheap estimate of the distinct points sizes the counter and decides whether to sort the points
+            final PointCounter usedPoints = PointCounter.create(keyDimensions, maxPoints == null ? CardinalityEstimator
+                    .estimate(xSource, ySource, zSource) : null);
+            // if the number of points is limited, only a sample of the valid entries chosen by the strategy is counted
+            final PointSample sample = maxPoints != null ? samplingStrategy.createSample(maxPoints, 3, keyDimensions,
+                    seed) : null;
+            final long[] keys = new long[3];
+            final double[] coordinates = new double[3];
 
             X minX = null, maxX = null;
             Y minY = null, maxY = null;
             Z minZ = null, maxZ = null;
+            double minXValue = 0, maxXValue = 0, minYValue = 0, maxYValue = 0, minZValue = 0, maxZValue = 0;
 
-            int alreadyProcessedPoints = 0;
             int size = xSource.size();
-            ValidatingIterator<NumericType<X>> xIt = xSource.numericTypeIterator();
-            ValidatingIterator<NumericType<Y>> yIt = ySource.numericTypeIterator();
-            ValidatingIterator<NumericType<Z>> zIt = zSource.numericTypeIterator();
+            long validEntries = 0;
 
-            NumericType<X> x;
-            NumericType<Y> y;
-            NumericType<Z> z;
+            final int[] indices = new int[BULK_READ_SIZE];
+            final double[][] values = new double[3][BULK_READ_SIZE];
 
-            if (progressMonitor != null)
+            // tiles not containing any data in some of the sources are skipped without reading them
+            final int[] tiles = getDataTiles(xSource, ySource, zSource);
+            final PointReader reader = createPointReader(tiles, xSource, ySource, zSource);
+
+            if (progressMonitor != null) {
                 progressMonitor.beginTask("Loading band data", size); /* I18N */
+                progressMonitor.worked(getSkippedEntries(tiles, xSource));
+            }
+
+            long snapshotDelay = snapshotInterval;
+            long nextSnapshotTime = System.currentTimeMillis() + snapshotDelay;
 
-            int i = -1;
-            while (xIt.hasNext() && yIt.hasNext() && zIt.hasNext()) {
-                i++;
+            int reportedEntries = 0;
+            while (reader.hasNext()) {
+                final int read = reader.read(indices, values);
+                validEntries += read;
 
                 if (progressMonitor != null) {
-                    progressMonitor.worked(1);
+                    progressMonitor.worked(reader.getProcessedEntries() - reportedEntries);
+                    reportedEntries = reader.getProcessedEntries();
                     if (progressMonitor.isCanceled()) {
                         progressMonitor.done();
                         throw new CancellationException();
                     }
                 }
 
-                x = xIt.next();
-                y = yIt.next();
-                z = zIt.next();
-                alreadyProcessedPoints++;
-
-                if (!xIt.isLastReturnedValid() || !yIt.isLastReturnedValid() || !zIt.isLastReturnedValid())
-                    continue;
-
-                if (minX == null || minX.doubleValue() > x.getNumber().doubleValue())
-                    minX = x.getNumber();
-                if (minY == null || minY.doubleValue() > y.getNumber().doubleValue())
-                    minY = y.getNumber();
-                if (minZ == null || minZ.doubleValue() > z.getNumber().doubleValue())
-                    minZ = z.getNumber();
-                if (maxX == null || maxX.doubleValue() < x.getNumber().doubleValue())
-                    maxX = x.getNumber();
-                if (maxY == null || maxY.doubleValue() < y.getNumber().doubleValue())
-                    maxY = y.getNumber();
-                if (maxZ == null || maxZ.doubleValue() < z.getNumber().doubleValue())
-                    maxZ = z.getNumber();
-
-                Double addProbabilty = maxPoints == null ? null : ((double) (maxPoints - usedPoints.size()) / (size
-                        - alreadyProcessedPoints + 1));
-                if (addProbabilty != null && addProbabilty < 1 && Math.random() > addProbabilty)
-                    continue;
-
-                int hash = pointFactory.getHashCode(x, y, z);
-
-                if (usedPoints.containsKey(hash)) {
-                    usedPoints.put(hash, usedPoints.get(hash) + 1);
-                } else {
-                    usedPoints.put(hash, 1);
-                    usedPointsIndices.add(i);
+                for (int j = 0; j < read; j++) {
+                    final double x = values[0][j], y = values[1][j], z = values[2][j];
+
+                    if (minX == null || minXValue > x) {
+                        minXValue = x;
+                        minX = (X) reader.getNumber(0, j);
+                    }
+                    if (minY == null || minYValue > y) {
+                        minYValue = y;
+                        minY = (Y) reader.getNumber(1, j);
+                    }
+                    if (minZ == null || minZValue > z) {
+                        minZValue = z;
+                        minZ = (Z) reader.getNumber(2, j);
+                    }
+                    if (maxX == null || maxXValue < x) {
+                        maxXValue = x;
+                        maxX = (X) reader.getNumber(0, j);
+                    }
+                    if (maxY == null || maxYValue < y) {
+                        maxYValue = y;
+                        maxY = (Y) reader.getNumber(1, j);
+                    }
+                    if (maxZ == null || maxZValue < z) {
+                        maxZValue = z;
+                        maxZ = (Z) reader.getNumber(2, j);
+                    }
                 }
 
-                if (maxPoints != null && usedPoints.size() >= maxPoints)
-                    break;
+                // the points not selected by the sampler aren't keyed at all
+                int j = 0;
+                while (j < read) {
+                    if (sample != null) {
+                        final long skip = sample.getSkip();
+                        if (skip >= read - j) {
+                            sample.skip(read - j);
+                            break;
+                        }
+                        sample.skip(skip);
+                        j += (int) skip;
+                    }
+
+                    if (exactDeduplication) {
+                        keys[0] = reader.getKey(0, j);
+                        keys[1] = reader.getKey(1, j);
+                        keys[2] = reader.getKey(2, j);
+                    } else {
+                        keys[0] = pointFactory.getHashCode(reader.getHashCode(0, j), reader.getHashCode(1, j),
+                                reader.getHashCode(2, j));
+                    }
+
+                    if (sample != null) {
+                        for (int d = 0; d < 3; d++)
+                            coordinates[d] = values[d][j];
+                        sample.add(indices[j], keys, coordinates);
+                    } else {
+                        usedPoints.add(keys, indices[j]);
+                    }
+                    j++;
+                }
+
+                if (snapshotListener != null && System.currentTimeMillis() >= nextSnapshotTime) {
+                    publishSnapshot(usedPoints, sample, minX, minY, minZ, maxX, maxY, maxZ);
+                    // the delays grow geometrically, so the snapshots take a bounded part of the building time
+                    snapshotDelay *= 2;
+                    nextSnapshotTime = System.currentTimeMillis() + snapshotDelay;
+                }
             }
 
+            final IntList usedPointsIndices = new IntList();
+            final IntList usedPointsCounts = sample != null ? sample.toTable(usedPointsIndices).getCounts()
+                    : usedPoints.getCounts(usedPointsIndices, parallelism);
+
             if (progressMonitor != null)
                 progressMonitor.done();
 
-            return new StreamDataSet3D<X, Y, Z>(xSource, ySource, zSource, pointFactory, usedPoints, usedPointsIndices,
-                    minX, minY, minZ, maxX, maxY, maxZ);
+            final StreamDataSet3D<X, Y, Z> result = new StreamDataSet3D<X, Y, Z>(xSource, ySource, zSource,
+                    pointFactory, usedPointsCounts, usedPointsIndices, minX, minY, minZ, maxX, maxY, maxZ);
+            result.sampled = maxPoints != null && validEntries > maxPoints;
+            return result;
+        }
+
+        /**
+         * Publish a snapshot of the points read so far to the snapshot listener. Nothing is published if no point has
+         * been read yet.
+         * 
+         * @param usedPoints The counter of the points read so far (if their number isn't limited).
+         * @param sample The sample of the points read so far, <code>null</code> if their number isn't limited.
+         */
+        private void publishSnapshot(PointCounter usedPoints, PointSample sample, X minX, Y minY, Z minZ, X maxX,
+                Y maxY, Z maxZ)
+        {
+            // the sample of the points read so far is a sample of the part of the sources read
+            final IntList snapshotIndices = new IntList();
+            final IntList snapshotCounts = sample != null ? sample.toTable(snapshotIndices).getCounts() : usedPoints
+                    .getCounts(snapshotIndices, parallelism);
+
+            if (snapshotCounts.size() > 0)
+                snapshotListener.snapshotCreated(new StreamDataSet3D<X, Y, Z>(xSource, ySource, zSource, pointFactory,
+                        snapshotCounts, snapshotIndices, minX, minY, minZ, maxX, maxY, maxZ));
+        }
+
+        /**
+         * When the builder is configured, call this method to build the set out of core, write it to the given file
+         * and map it to memory (see {@link MappedDataSet}).
+         * <p>
+         * The points are counted in sorted runs of at most the spill threshold bytes, which are written to temporary
+         * files in the directory of the given file and merged afterwards, so the number of distinct points isn't
+         * limited by the heap. If the maximum number of points is set, the sample fits into the heap, so the set is
+         * built by {@link #getResult()} and saved. The points of the resulting set are ordered by their keys, and no
+         * snapshots are published.
+         * 
+         * @param file The file to write the set to. It is overwritten if it exists.
+         * @return The resulting set.
+         * 
+         * @throws IOException If the set cannot be written or read.
+         * @throws IllegalArgumentException If the sources have different sizes or are not set at all, or if they
+         *             contain no valid point.
+         * @throws CancellationException If the progress monitor has been canceled.
+         */
+        @SuppressWarnings("unchecked")
+        public MappedDataSet3D<X, Y, Z> getMappedResult(File file) throws IOException, IllegalArgumentException,
+                CancellationException
+        {
+            if (xSource == null || ySource == null || zSource == null)
+                throw new NullPointerException();
+
+            if (xSource.size() != ySource.size() || ySource.size() != zSource.size())
+                throw new IllegalArgumentException(getClass()
+                        + ": You must use data sources of the same size in the builder.");
+
+            if (maxPoints != null)
+                MappedDataSet.save(getResult(), file, progressMonitor);
+            else
+                new OutOfCoreBuilder(getHasher(), spillThreshold, parallelism, progressMonitor, xSource, ySource, zSource)
+                        .build(file);
+
+            return (MappedDataSet3D<X, Y, Z>) MappedDataSet.open(file);
+        }
+
+        /**
+         * Build the resulting set by scanning the tiles of the sources in parallel.
+         * 
+         * @return The resulting set.
+         */
+        private StreamDataSet3D<X, Y, Z> getParallelResult()
+        {
+            final ParallelTileScanner scanner = new ParallelTileScanner(getHasher(), maxPoints, seed, parallelism,
+                    progressMonitor, xSource, ySource, zSource);
+            if (snapshotListener != null) {
+                final SnapshotListener<? super StreamDataSet3D<X, Y, Z>> listener = snapshotListener;
+                scanner.setPartialResultListener(new ParallelTileScanner.PartialResultListener() {
+                    @Override
+                    public void partialResultCreated(ParallelTileScanner.Result result)
+                    {
+                        listener.snapshotCreated(createDataSet(result));
+                    }
+                }, snapshotInterval);
+            }
+
+            final ParallelTileScanner.Result result = scanner.scan();
+            final StreamDataSet3D<X, Y, Z> dataSet = createDataSet(result);
+            dataSet.sampled = maxPoints != null && result.validEntries > maxPoints;
+            return dataSet;
+        }
+
+        /**
+         * Create a set of the points of the given result of the parallel scan.
+         * 
+         * @param result The result of the scan.
+         * @return The set.
+         */
+        @SuppressWarnings("unchecked")
+        private StreamDataSet3D<X, Y, Z> createDataSet(ParallelTileScanner.Result result)
+        {
+            return new StreamDataSet3D<X, Y, Z>(xSource, ySource, zSource, pointFactory, result.counts,
+                    result.usedPointsIndices, (X) result.min[0], (Y) result.min[1], (Z) result.min[2],
+                    (X) result.max[0], (Y) result.max[1], (Z) result.max[2]);
+        }
+
+        /**
+         * Return the function computing the hash of a point from the hashes of its coordinates.
+         * 
+         * @return The function, <code>null</code> if the points are deduplicated exactly.
+         */
+        private ParallelTileScanner.PointHasher getHasher()
+        {
+            if (exactDeduplication)
+                return null;
+
+            return new ParallelTileScanner.PointHasher() {
+                @Override
+                public int getHashCode(int[] hashes)
+                {
+                    return pointFactory.getHashCode(hashes[0], hashes[1], hashes[2]);
+                }
+            };
         }
 
         /**
@@ -497,6 +728,125 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
             return this;
         }
 
+        /**
+         * Set the number of threads used for scanning the sources. Only tiled sources with more than one tile are
+         * scanned in parallel.
+         * <p>
+         * If the maximum number of points is set, the tiles are split into a fixed number of chunks sampled
+         * independently, so the resulting set only depends on the seed, whatever the number of threads.
+         * 
+         * @param parallelism The number of threads to use (<code>1</code> means scan the sources in the calling
+         *            thread).
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D<X, Y, Z> setParallelism(int parallelism)
+        {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Set the seed of the random sampling of the points done if the maximum number of points is set. Builders
+         * with the same seed and sources build the same set.
+         * 
+         * @param seed The seed.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D<X, Y, Z> setSeed(long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Set whether the points are told apart exactly, by the keys of their coordinates (see
+         * {@link NumericType#getKey()}), or by the hash codes computed by the point factory.
+         * <p>
+         * Exact deduplication is the default. Distinct points with the same hash code are merged into one histogram
+         * entry otherwise, so switch it off only if the point factory defines a coarser equality of points by its hash
+         * codes.
+         * 
+         * @param exactDeduplication Whether to deduplicate the points exactly.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D<X, Y, Z> setExactDeduplication(boolean exactDeduplication)
+        {
+            this.exactDeduplication = exactDeduplication;
+            return this;
+        }
+
+        /**
+         * Set the strategy of selecting the points if the maximum number of points is set. The default is
+         * {@link SamplingStrategy#uniform()}, which selects a uniformly random sample.
+         * <p>
+         * The sources aren't scanned in parallel if the number of points is limited and the samples of the strategy
+         * can't be merged.
+         * 
+         * @param samplingStrategy The sampling strategy.
+         * @return <code>this</code> - provides fluent interface.
+         * 
+         * @throws NullPointerException If the strategy is <code>null</code>.
+         */
+        public Builder3D<X, Y, Z> setSamplingStrategy(SamplingStrategy samplingStrategy) throws NullPointerException
+        {
+            if (samplingStrategy == null)
+                throw new NullPointerException();
+            this.samplingStrategy = samplingStrategy;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of bytes the points may occupy in memory while the set is built out of core by
+         * {@link #getMappedResult(File)}. The default is {@link StreamDataSet#DEFAULT_SPILL_THRESHOLD}. Lower
+         * thresholds write more runs to disk.
+         * 
+         * @param spillThreshold The number of bytes.
+         * @return <code>this</code> - provides fluent interface.
+         * 
+         * @throws IllegalArgumentException If the threshold isn't positive.
+         */
+        public Builder3D<X, Y, Z> setSpillThreshold(long spillThreshold) throws IllegalArgumentException
+        {
+            if (spillThreshold <= 0)
+                throw new IllegalArgumentException(getClass() + ": The spill threshold must be positive.");
+            this.spillThreshold = spillThreshold;
+            return this;
+        }
+
+        /**
+         * Set the listener to publish partial snapshots of the set to while the sources are being read. The snapshots
+         * are published at growing intervals, starting with the snapshot interval.
+         * <p>
+         * If the sources are scanned in parallel, the snapshots contain the chunks of tiles finished so far, which are
+         * spread over the whole sources.
+         * 
+         * @param snapshotListener The listener, <code>null</code> to publish no snapshots.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder3D<X, Y, Z> setSnapshotListener(
+                SnapshotListener<? super StreamDataSet3D<X, Y, Z>> snapshotListener)
+        {
+            this.snapshotListener = snapshotListener;
+            return this;
+        }
+
+        /**
+         * Set the time between the start of the scan and the first snapshot. The time between the following snapshots
+         * doubles after each of them.
+         * 
+         * @param snapshotInterval The time in milliseconds.
+         * @return <code>this</code> - provides fluent interface.
+         * 
+         * @throws IllegalArgumentException If the interval isn't positive.
+         */
+        public Builder3D<X, Y, Z> setSnapshotInterval(long snapshotInterval) throws IllegalArgumentException
+        {
+            if (snapshotInterval <= 0)
+                throw new IllegalArgumentException(getClass() + ": The snapshot interval must be positive.");
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
         /**
          * @param progressMonitor The progress monitor.
          */
@@ -552,6 +902,22 @@ public class StreamDataSet3D<X extends Number, Y extends Number, Z extends Numbe
         {
             return SimpleDataPoint3D.hashCode(x, y, z);
         }
+
+        /**
+         * Return the hashcode of a point whose coordinates have the given hashcodes.
+         * <p>
+         * Must return the same value as {@link #getHashCode(NumericType, NumericType, NumericType)} for the
+         * coordinates with the given hashcodes.
+         * 
+         * @param xHash Hashcode of the x coordinate value.
+         * @param yHash Hashcode of the y coordinate value.
+         * @param zHash Hashcode of the z coordinate value.
+         * @return The point's hashcode.
+         */
+        public int getHashCode(int xHash, int yHash, int zHash)
+        {
+            return SimpleDataPoint3D.hashCode(xHash, yHash, zHash);
+        }
     }
 
     /**
@@ -3,9 +3,10 @@
  */
 package org.esa.beam.dataViewer3D.data.dataset;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 
@@ -13,9 +14,10 @@ import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
 import org.esa.beam.dataViewer3D.data.source.DataSource;
 import org.esa.beam.dataViewer3D.data.source.DataSourceSet4D;
+import org.esa.beam.dataViewer3D.data.source.PointReader;
 import org.esa.beam.dataViewer3D.data.type.NumericType;
-import org.esa.beam.util.SkippableIterator;
-import org.esa.beam.util.ValidatingIterator;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.esa.beam.dataViewer3D.utils.IntList;
 
 import com.bc.ceres.core.ProgressMonitor;
 
@@ -64,7 +66,7 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
      * @param z The source of z values.
      * @param w The source of w values.
      * @param pointFactory The factory for creating points from single coordinates.
-     * @param usedPoints Keys are hashes of the points, values are counts of points with the same hash.
+     * @param usedPointsCounts Counts of the distinct points of the set.
      * @param usedPointsIndices Indices to the data source's iterator where all the used points are located.
      * @param minX Minimum x value.
      * @param minY Minimum y value.
@@ -75,22 +77,22 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
      * @param maxZ Maximum z value.
      * @param maxW Maximum w value.
      * 
-     * @throws IllegalArgumentException If x,y and z don't have all the same sizes; if usedPoints has 0 size; if
-     *             usedPoints is longer than x or y or z; if some max is lower than the min for a coordinate.
+     * @throws IllegalArgumentException If x,y and z don't have all the same sizes; if usedPointsCounts has 0 size; if
+     *             usedPointsCounts is longer than x or y or z; if some max is lower than the min for a coordinate.
      */
     protected StreamDataSet4D(DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w,
-            PointFactory<X, Y, Z, W> pointFactory, LinkedHashMap<Integer, Integer> usedPoints,
-            List<Integer> usedPointsIndices, X minX, Y minY, Z minZ, W minW, X maxX, Y maxY, Z maxZ, W maxW)
+            PointFactory<X, Y, Z, W> pointFactory, IntList usedPointsCounts, IntList usedPointsIndices, X minX,
+            Y minY, Z minZ, W minW, X maxX, Y maxY, Z maxZ, W maxW)
     {
-        super(usedPoints, usedPointsIndices);
+        super(usedPointsCounts, usedPointsIndices);
 
         if (x.size() != y.size() || y.size() != z.size() || z.size() != w.size())
             throw new IllegalArgumentException(getClass() + ": Cannot use data sources of different sizes.");
 
-        if (x.size() == 0 || usedPoints.size() == 0)
+        if (x.size() == 0 || usedPointsCounts.size() == 0)
             throw new IllegalArgumentException(getClass() + ": Cannot create data set of zero size.");
 
-        if (x.size() < usedPoints.size())
+        if (x.size() < usedPointsCounts.size())
             throw new IllegalArgumentException(getClass()
                     + ": Cannot pass more used points than is the size of the source.");
 
@@ -115,85 +117,62 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
         this.maxW = maxW;
     }
 
+    /**
+     * A stream-backed 4D data set.
+     * 
+     * @param usedPoints Keys are hashes of the points, values are counts of points with the same hash.
+     * @see #StreamDataSet4D(DataSource, DataSource, DataSource, DataSource, PointFactory, IntList, IntList, Number,
+     *      Number, Number, Number, Number, Number, Number, Number)
+     */
+    protected StreamDataSet4D(DataSource<X> x, DataSource<Y> y, DataSource<Z> z, DataSource<W> w,
+            PointFactory<X, Y, Z, W> pointFactory, LinkedHashMap<Integer, Integer> usedPoints,
+            List<Integer> usedPointsIndices, X minX, Y minY, Z minZ, W minW, X maxX, Y maxY, Z maxZ, W maxW)
+    {
+        this(x, y, z, w, pointFactory, new IntList(usedPoints.values()), new IntList(usedPointsIndices), minX,
+                minY, minZ, minW, maxX, maxY, maxZ, maxW);
+    }
+
     @Override
     public Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> pointIterator()
+    {
+        final ColumnarDataSet4D<X, Y, Z, W> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.pointIterator();
+        return streamPointIterator();
+    }
+
+    /**
+     * Return an iterator reading the points from the sources.
+     * 
+     * @return The iterator.
+     */
+    protected Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> streamPointIterator()
     {
         return new Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>>() {
 
             /** Iterator of the used points' indices in their data sources. */
-            private final Iterator<Integer>        usedPointsIndices = StreamDataSet4D.this.usedPointsIndices
-                                                                             .iterator();
-            /** Iterator of the source for x values. */
-            private final Iterator<NumericType<X>> xIt               = xSource.numericTypeIterator();
-            /** Iterator of the source for y values. */
-            private final Iterator<NumericType<Y>> yIt               = ySource.numericTypeIterator();
-            /** Iterator of the source for z values. */
-            private final Iterator<NumericType<Z>> zIt               = zSource.numericTypeIterator();
-            /** Iterator of the source for w values. */
-            private final Iterator<NumericType<W>> wIt               = wSource.numericTypeIterator();
-            /** Wheteher the iterators are skippable (because instanceof may be slow). */
-            private final boolean                  xSkippable        = (xIt instanceof SkippableIterator<?>),
-                    ySkippable = (yIt instanceof SkippableIterator<?>),
-                    zSkippable = (zIt instanceof SkippableIterator<?>),
-                    wSkippable = (wIt instanceof SkippableIterator<?>);
-            /** The index of the last returned value in its datasource. */
-            private int                            lastIndex         = -1;
+            private final IntIterator   usedPointsIndices = StreamDataSet4D.this.usedPointsIndices.iterator();
+            /** Reader of the source for x values. */
+            private final AxisReader<X> xReader           = new AxisReader<X>(xSource);
+            /** Reader of the source for y values. */
+            private final AxisReader<Y> yReader           = new AxisReader<Y>(ySource);
+            /** Reader of the source for z values. */
+            private final AxisReader<Z> zReader           = new AxisReader<Z>(zSource);
+            /** Reader of the source for w values. */
+            private final AxisReader<W> wReader           = new AxisReader<W>(wSource);
 
             @Override
             public boolean hasNext()
             {
-                return usedPointsIndices.hasNext() && xIt.hasNext() && yIt.hasNext() && zIt.hasNext() && wIt.hasNext();
+                return usedPointsIndices.hasNext() && xReader.hasNext() && yReader.hasNext() && zReader.hasNext()
+                        && wReader.hasNext();
             }
 
             @Override
             public DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> next()
             {
-                NumericType<X> x = null;
-                NumericType<Y> y = null;
-                NumericType<Z> z = null;
-                NumericType<W> w = null;
-
-                final int oldIndex = lastIndex;
-                lastIndex = usedPointsIndices.next();
-                final int difference = lastIndex - oldIndex;
-
-                if (!xSkippable) {
-                    for (int i = 0; i < difference; i++)
-                        x = xIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) xIt).skip(difference - 1);
-                    x = xIt.next();
-                }
-
-                if (!ySkippable) {
-                    for (int i = 0; i < difference; i++)
-                        y = yIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) yIt).skip(difference - 1);
-                    y = yIt.next();
-                }
-
-                if (!zSkippable) {
-                    for (int i = 0; i < difference; i++)
-                        z = zIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) zIt).skip(difference - 1);
-                    z = zIt.next();
-                }
-
-                if (!wSkippable) {
-                    for (int i = 0; i < difference; i++)
-                        w = wIt.next();
-                } else {
-                    if (difference > 1)
-                        ((SkippableIterator<?>) wIt).skip(difference - 1);
-                    w = wIt.next();
-                }
-
-                return pointFactory.getPoint(x, y, z, w);
+                final int index = usedPointsIndices.next();
+                return pointFactory.getPoint(xReader.get(index), yReader.get(index), zReader.get(index), wReader.get(index));
             }
 
             @Override
@@ -207,24 +186,36 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
     @Override
     public Iterator<X> xIterator()
     {
+        final ColumnarDataSet4D<X, Y, Z, W> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.xIterator();
         return singleAxisIterator(xSource);
     }
 
     @Override
     public Iterator<Y> yIterator()
     {
+        final ColumnarDataSet4D<X, Y, Z, W> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.yIterator();
         return singleAxisIterator(ySource);
     }
 
     @Override
     public Iterator<Z> zIterator()
     {
+        final ColumnarDataSet4D<X, Y, Z, W> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.zIterator();
         return singleAxisIterator(zSource);
     }
 
     @Override
     public Iterator<W> wIterator()
     {
+        final ColumnarDataSet4D<X, Y, Z, W> materialized = getMaterialized();
+        if (materialized != null)
+            return materialized.wIterator();
         return singleAxisIterator(wSource);
     }
 
@@ -327,6 +318,25 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
         }
     }
 
+    /**
+     * Return the points of this set copied into primitive columns.
+     * 
+     * @return The materialized points, <code>null</code> if they don't fit into the materialization budget.
+     * 
+     * @see StreamDataSet#getMaterialized(Number...)
+     */
+    @SuppressWarnings("unchecked")
+    protected ColumnarDataSet4D<X, Y, Z, W> getMaterialized()
+    {
+        return (ColumnarDataSet4D<X, Y, Z, W>) getMaterialized(minX, minY, minZ, minW);
+    }
+
+    @Override
+    protected ColumnarDataSet4D<X, Y, Z, W> materialize()
+    {
+        return ColumnarDataSet4D.copyOf(this, streamPointIterator());
+    }
+
     /**
      * Return a builder able to build this class.
      * 
@@ -339,8 +349,8 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
 
     /**
      * Create a 4D stream data set from the given set of sources. If <code>maxPoints != null</code>, then it defines the
-     * maximum number of points in the created set. If the sources provide more points, then a random subset will be
-     * present in the resulting set (the set could be a little smaller than <code>maxPoints</code>).
+     * maximum number of points in the created set. If the sources provide more points, then the set is built from a
+     * uniformly random sample of <code>maxPoints</code> entries (so it is smaller if the sample contains equal points).
      * 
      * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the resulting set.
      * @param dataSourceSet The set of data sources.
@@ -357,8 +367,8 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
 
     /**
      * Create a 4D stream data set from the given sources. If <code>maxPoints != null</code>, then it defines the
-     * maximum number of points in the created set. If the sources provide more points, then a random subset will be
-     * present in the resulting set (the set could be a little smaller than <code>maxPoints</code>).
+     * maximum number of points in the created set. If the sources provide more points, then the set is built from a
+     * uniformly random sample of <code>maxPoints</code> entries (so it is smaller if the sample contains equal points).
      * 
      * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the resulting set.
      * @param x Source for x values.
@@ -382,6 +392,35 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
         return builder.getResult();
     }
 
+    /**
+     * Create a 4D stream data set from the given sources, publishing partial snapshots of it to the given listener
+     * while the sources are being read (see {@link Builder4D#setSnapshotListener(SnapshotListener)}).
+     * 
+     * @param maxPoints If not <code>null</code>, specifies the maximum number of points in the resulting set.
+     * @param x Source for x values.
+     * @param y Source for y values.
+     * @param z Source for z values.
+     * @param w Source for w values.
+     * @param snapshotListener The listener to publish the snapshots to, <code>null</code> to publish no snapshots.
+     * @param progressMonitor The progress monitor, which will be notified about progress, if not <code>null</code>.
+     * 
+     * @return The stream data set created using the given values.
+     */
+    public static <X extends Number, Y extends Number, Z extends Number, W extends Number> StreamDataSet4D<X, Y, Z, W> createFromDataSources(
+            Integer maxPoints, DataSource<X> x, DataSource<Y> y, DataSource<Z> z,
+            DataSource<W> w,
+            SnapshotListener<? super StreamDataSet4D<X, Y, Z, W>> snapshotListener, ProgressMonitor progressMonitor)
+    {
+        Builder4D<X, Y, Z, W> builder = StreamDataSet4D.getBuilder();
+        builder.setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z).setDataSourceW(w);
+        builder.setSnapshotListener(snapshotListener);
+        if (maxPoints != null)
+            builder.setMaxPoints(maxPoints);
+        if (progressMonitor != null)
+            builder.setProgressMonitor(progressMonitor);
+        return builder.getResult();
+    }
+
     /**
      * The builder for building a stream data set.
      * 
@@ -402,11 +441,26 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
         /** The source of w values. */
         private DataSource<W>                  wSource;
         /** If not <code>null</code>, specifies the maximum number of points in the resulting set. */
-        private Integer                        maxPoints    = null;
+        private Integer                        maxPoints          = null;
         /** A factory for creating points from single coordinates. */
-        private final PointFactory<X, Y, Z, W> pointFactory = createPointFactory();
+        private final PointFactory<X, Y, Z, W> pointFactory       = createPointFactory();
         /** The progress monitor. */
         private ProgressMonitor                progressMonitor;
+        /** The number of threads to use for scanning tiled sources. */
+        private int                            parallelism        = Runtime.getRuntime().availableProcessors();
+        /** The seed of the random sampling of the points if their number is limited. */
+        private long                           seed               = ReservoirSampler.DEFAULT_SEED;
+        /** Whether to tell the points apart by the keys of their coordinates instead of their hash codes. */
+        private boolean                        exactDeduplication = true;
+        /** The strategy of selecting the points if their number is limited. */
+        private SamplingStrategy               samplingStrategy   = SamplingStrategy.uniform();
+        /** The maximum number of bytes of the points kept in memory while building the set out of core. */
+        private long                           spillThreshold     = DEFAULT_SPILL_THRESHOLD;
+
+        /** The listener to publish the snapshots of the set to, <code>null</code> if no snapshots are published. */
+        private SnapshotListener<? super StreamDataSet4D<X, Y, Z, W>> snapshotListener = null;
+        /** The time between the start of the scan and the first snapshot, in milliseconds. */
+        private long                                                  snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
 
         /**
          * When the builder is configured, call this method to get the resulting set.
@@ -415,6 +469,7 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
          * 
          * @throws IllegalArgumentException If the sources have different sizes or are not set at all.
          */
+        @SuppressWarnings("unchecked")
         public StreamDataSet4D<X, Y, Z, W> getResult()
         {
             if (xSource == null || ySource == null || zSource == null || wSource == null)
@@ -425,92 +480,268 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
                 throw new IllegalArgumentException(getClass()
                         + ": You must use data sources of the same size in the builder.");
 
-            final LinkedHashMap<Integer, Integer> usedPoints = new LinkedHashMap<Integer, Integer>(
-                    (maxPoints != null && maxPoints < xSource.size()) ? maxPoints : xSource.size());
-            final List<Integer> usedPointsIndices = new LinkedList<Integer>();
+            // sampled sets are always built from the same chunks of tiles, so they don't depend on the parallelism
+            if ((parallelism > 1 || maxPoints != null) && (maxPoints == null || samplingStrategy.isMergeable())
+                    && ParallelTileScanner.canScan(xSource, ySource, zSource, wSource))
+                return getParallelResult();
+
+            final int keyDimensions = exactDeduplication ? 4 : 1;
+            // a cheap estimate of the distinct points sizes the counter and decides whether to sort the points
+            final PointCounter usedPoints = PointCounter.create(keyDimensions, maxPoints == null ? CardinalityEstimator
+                    .estimate(xSource, ySource, zSource, wSource) : null);
+            // if the number of points is limited, only a sample of the valid entries chosen by the strategy is counted
+            final PointSample sample = maxPoints != null ? samplingStrategy.createSample(maxPoints, 4, keyDimensions,
+                    seed) : null;
+            final long[] keys = new long[4];
+            final double[] coordinates = new double[4];
 
             X minX = null, maxX = null;
             Y minY = null, maxY = null;
             Z minZ = null, maxZ = null;
             W minW = null, maxW = null;
+            double minXValue = 0, maxXValue = 0, minYValue = 0, maxYValue = 0;
+            double minZValue = 0, maxZValue = 0, minWValue = 0, maxWValue = 0;
 
-            int alreadyProcessedPoints = 0;
             int size = xSource.size();
-            ValidatingIterator<NumericType<X>> xIt = xSource.numericTypeIterator();
-            ValidatingIterator<NumericType<Y>> yIt = ySource.numericTypeIterator();
-            ValidatingIterator<NumericType<Z>> zIt = zSource.numericTypeIterator();
-            ValidatingIterator<NumericType<W>> wIt = wSource.numericTypeIterator();
+            long validEntries = 0;
 
-            NumericType<X> x;
-            NumericType<Y> y;
-            NumericType<Z> z;
-            NumericType<W> w;
+            final int[] indices = new int[BULK_READ_SIZE];
+            final double[][] values = new double[4][BULK_READ_SIZE];
 
-            if (progressMonitor != null)
+            // tiles not containing any data in some of the sources are skipped without reading them
+            final int[] tiles = getDataTiles(xSource, ySource, zSource, wSource);
+            final PointReader reader = createPointReader(tiles, xSource, ySource, zSource, wSource);
+
+            if (progressMonitor != null) {
                 progressMonitor.beginTask("Loading band data", size); /* I18N */
+                progressMonitor.worked(getSkippedEntries(tiles, xSource));
+            }
+
+            long snapshotDelay = snapshotInterval;
+            long nextSnapshotTime = System.currentTimeMillis() + snapshotDelay;
 
-            int i = -1;
-            while (xIt.hasNext() && yIt.hasNext() && zIt.hasNext() && wIt.hasNext()) {
-                i++;
+            int reportedEntries = 0;
+            while (reader.hasNext()) {
+                final int read = reader.read(indices, values);
+                validEntries += read;
 
                 if (progressMonitor != null) {
-                    progressMonitor.worked(1);
+                    progressMonitor.worked(reader.getProcessedEntries() - reportedEntries);
+                    reportedEntries = reader.getProcessedEntries();
                     if (progressMonitor.isCanceled()) {
                         progressMonitor.done();
                         throw new CancellationException();
                     }
                 }
 
-                x = xIt.next();
-                y = yIt.next();
-                z = zIt.next();
-                w = wIt.next();
-                alreadyProcessedPoints++;
-
-                if (!xIt.isLastReturnedValid() || !yIt.isLastReturnedValid() || !zIt.isLastReturnedValid()
-                        || !wIt.isLastReturnedValid())
-                    continue;
-
-                if (minX == null || minX.doubleValue() > x.getNumber().doubleValue())
-                    minX = x.getNumber();
-                if (minY == null || minY.doubleValue() > y.getNumber().doubleValue())
-                    minY = y.getNumber();
-                if (minZ == null || minZ.doubleValue() > z.getNumber().doubleValue())
-                    minZ = z.getNumber();
-                if (minW == null || minW.doubleValue() > w.getNumber().doubleValue())
-                    minW = w.getNumber();
-                if (maxX == null || maxX.doubleValue() < x.getNumber().doubleValue())
-                    maxX = x.getNumber();
-                if (maxY == null || maxY.doubleValue() < y.getNumber().doubleValue())
-                    maxY = y.getNumber();
-                if (maxZ == null || maxZ.doubleValue() < z.getNumber().doubleValue())
-                    maxZ = z.getNumber();
-                if (maxW == null || maxW.doubleValue() < w.getNumber().doubleValue())
-                    maxW = w.getNumber();
-
-                Double addProbabilty = maxPoints == null ? null : ((double) (maxPoints - usedPoints.size()) / (size
-                        - alreadyProcessedPoints + 1));
-                if (addProbabilty != null && addProbabilty < 1 && Math.random() > addProbabilty)
-                    continue;
-
-                int hash = pointFactory.getHashCode(x, y, z, w);
-
-                if (usedPoints.containsKey(hash)) {
-                    usedPoints.put(hash, usedPoints.get(hash) + 1);
-                } else {
-                    usedPoints.put(hash, 1);
-                    usedPointsIndices.add(i);
+                for (int j = 0; j < read; j++) {
+                    final double x = values[0][j], y = values[1][j], z = values[2][j], w = values[3][j];
+
+                    if (minX == null || minXValue > x) {
+                        minXValue = x;
+                        minX = (X) reader.getNumber(0, j);
+                    }
+                    if (minY == null || minYValue > y) {
+                        minYValue = y;
+                        minY = (Y) reader.getNumber(1, j);
+                    }
+                    if (minZ == null || minZValue > z) {
+                        minZValue = z;
+                        minZ = (Z) reader.getNumber(2, j);
+                    }
+                    if (minW == null || minWValue > w) {
+                        minWValue = w;
+                        minW = (W) reader.getNumber(3, j);
+                    }
+                    if (maxX == null || maxXValue < x) {
+                        maxXValue = x;
+                        maxX = (X) reader.getNumber(0, j);
+                    }
+                    if (maxY == null || maxYValue < y) {
+                        maxYValue = y;
+                        maxY = (Y) reader.getNumber(1, j);
+                    }
+                    if (maxZ == null || maxZValue < z) {
+                        maxZValue = z;
+                        maxZ = (Z) reader.getNumber(2, j);
+                    }
+                    if (maxW == null || maxWValue < w) {
+                        maxWValue = w;
+                        maxW = (W) reader.getNumber(3, j);
+                    }
                 }
 
-                if (maxPoints != null && usedPoints.size() >= maxPoints)
-                    break;
+                // the points not selected by the sampler aren't keyed at all
+                int j = 0;
+                while (j < read) {
+                    if (sample != null) {
+                        final long skip = sample.getSkip();
+                        if (skip >= read - j) {
+                            sample.skip(read - j);
+                            break;
+                        }
+                        sample.skip(skip);
+                        j += (int) skip;
+                    }
+
+                    if (exactDeduplication) {
+                        keys[0] = reader.getKey(0, j);
+                        keys[1] = reader.getKey(1, j);
+                        keys[2] = reader.getKey(2, j);
+                        keys[3] = reader.getKey(3, j);
+                    } else {
+                        keys[0] = pointFactory.getHashCode(reader.getHashCode(0, j), reader.getHashCode(1, j),
+                                reader.getHashCode(2, j), reader.getHashCode(3, j));
+                    }
+
+                    if (sample != null) {
+                        for (int d = 0; d < 4; d++)
+                            coordinates[d] = values[d][j];
+                        sample.add(indices[j], keys, coordinates);
+                    } else {
+                        usedPoints.add(keys, indices[j]);
+                    }
+                    j++;
+                }
+
+                if (snapshotListener != null && System.currentTimeMillis() >= nextSnapshotTime) {
+                    publishSnapshot(usedPoints, sample, minX, minY, minZ, minW, maxX, maxY, maxZ, maxW);
+                    // the delays grow geometrically, so the snapshots take a bounded part of the building time
+                    snapshotDelay *= 2;
+                    nextSnapshotTime = System.currentTimeMillis() + snapshotDelay;
+                }
             }
 
+            final IntList usedPointsIndices = new IntList();
+            final IntList usedPointsCounts = sample != null ? sample.toTable(usedPointsIndices).getCounts()
+                    : usedPoints.getCounts(usedPointsIndices, parallelism);
+
             if (progressMonitor != null)
                 progressMonitor.done();
 
-            return new StreamDataSet4D<X, Y, Z, W>(xSource, ySource, zSource, wSource, pointFactory, usedPoints,
-                    usedPointsIndices, minX, minY, minZ, minW, maxX, maxY, maxZ, maxW);
+            final StreamDataSet4D<X, Y, Z, W> result = new StreamDataSet4D<X, Y, Z, W>(xSource, ySource, zSource,
+                    wSource, pointFactory, usedPointsCounts, usedPointsIndices, minX, minY, minZ, minW, maxX, maxY,
+                    maxZ, maxW);
+            result.sampled = maxPoints != null && validEntries > maxPoints;
+            return result;
+        }
+
+        /**
+         * Publish a snapshot of the points read so far to the snapshot listener. Nothing is published if no point has
+         * been read yet.
+         * 
+         * @param usedPoints The counter of the points read so far (if their number isn't limited).
+         * @param sample The sample of the points read so far, <code>null</code> if their number isn't limited.
+         */
+        private void publishSnapshot(PointCounter usedPoints, PointSample sample, X minX, Y minY, Z minZ, W minW,
+                X maxX, Y maxY, Z maxZ, W maxW)
+        {
+            // the sample of the points read so far is a sample of the part of the sources read
+            final IntList snapshotIndices = new IntList();
+            final IntList snapshotCounts = sample != null ? sample.toTable(snapshotIndices).getCounts() : usedPoints
+                    .getCounts(snapshotIndices, parallelism);
+
+            if (snapshotCounts.size() > 0)
+                snapshotListener.snapshotCreated(new StreamDataSet4D<X, Y, Z, W>(xSource, ySource, zSource, wSource,
+                        pointFactory, snapshotCounts, snapshotIndices, minX, minY, minZ, minW, maxX, maxY, maxZ, maxW));
+        }
+
+        /**
+         * When the builder is configured, call this method to build the set out of core, write it to the given file
+         * and map it to memory (see {@link MappedDataSet}).
+         * <p>
+         * The points are counted in sorted runs of at most the spill threshold bytes, which are written to temporary
+         * files in the directory of the given file and merged afterwards, so the number of distinct points isn't
+         * limited by the heap. If the maximum number of points is set, the sample fits into the heap, so the set is
+         * built by {@link #getResult()} and saved. The points of the resulting set are ordered by their keys, and no
+         * snapshots are published.
+         * 
+         * @param file The file to write the set to. It is overwritten if it exists.
+         * @return The resulting set.
+         * 
+         * @throws IOException If the set cannot be written or read.
+         * @throws IllegalArgumentException If the sources have different sizes or are not set at all, or if they
+         *             contain no valid point.
+         * @throws CancellationException If the progress monitor has been canceled.
+         */
+        @SuppressWarnings("unchecked")
+        public MappedDataSet4D<X, Y, Z, W> getMappedResult(File file) throws IOException, IllegalArgumentException,
+                CancellationException
+        {
+            if (xSource == null || ySource == null || zSource == null || wSource == null)
+                throw new NullPointerException();
+
+            if (xSource.size() != ySource.size() || ySource.size() != zSource.size()
+                    || zSource.size() != wSource.size())
+                throw new IllegalArgumentException(getClass()
+                        + ": You must use data sources of the same size in the builder.");
+
+            if (maxPoints != null)
+                MappedDataSet.save(getResult(), file, progressMonitor);
+            else
+                new OutOfCoreBuilder(getHasher(), spillThreshold, parallelism, progressMonitor, xSource, ySource, zSource, wSource)
+                        .build(file);
+
+            return (MappedDataSet4D<X, Y, Z, W>) MappedDataSet.open(file);
+        }
+
+        /**
+         * Build the resulting set by scanning the tiles of the sources in parallel.
+         * 
+         * @return The resulting set.
+         */
+        private StreamDataSet4D<X, Y, Z, W> getParallelResult()
+        {
+            final ParallelTileScanner scanner = new ParallelTileScanner(getHasher(), maxPoints, seed, parallelism,
+                    progressMonitor, xSource, ySource, zSource, wSource);
+            if (snapshotListener != null) {
+                final SnapshotListener<? super StreamDataSet4D<X, Y, Z, W>> listener = snapshotListener;
+                scanner.setPartialResultListener(new ParallelTileScanner.PartialResultListener() {
+                    @Override
+                    public void partialResultCreated(ParallelTileScanner.Result result)
+                    {
+                        listener.snapshotCreated(createDataSet(result));
+                    }
+                }, snapshotInterval);
+            }
+
+            final ParallelTileScanner.Result result = scanner.scan();
+            final StreamDataSet4D<X, Y, Z, W> dataSet = createDataSet(result);
+            dataSet.sampled = maxPoints != null && result.validEntries > maxPoints;
+            return dataSet;
+        }
+
+        /**
+         * Create a set of the points of the given result of the parallel scan.
+         * 
+         * @param result The result of the scan.
+         * @return The set.
+         */
+        @SuppressWarnings("unchecked")
+        private StreamDataSet4D<X, Y, Z, W> createDataSet(ParallelTileScanner.Result result)
+        {
+            return new StreamDataSet4D<X, Y, Z, W>(xSource, ySource, zSource, wSource, pointFactory, result.counts,
+                    result.usedPointsIndices, (X) result.min[0], (Y) result.min[1], (Z) result.min[2],
+                    (W) result.min[3], (X) result.max[0], (Y) result.max[1], (Z) result.max[2], (W) result.max[3]);
+        }
+
+        /**
+         * Return the function computing the hash of a point from the hashes of its coordinates.
+         * 
+         * @return The function, <code>null</code> if the points are deduplicated exactly.
+         */
+        private ParallelTileScanner.PointHasher getHasher()
+        {
+            if (exactDeduplication)
+                return null;
+
+            return new ParallelTileScanner.PointHasher() {
+                @Override
+                public int getHashCode(int[] hashes)
+                {
+                    return pointFactory.getHashCode(hashes[0], hashes[1], hashes[2], hashes[3]);
+                }
+            };
         }
 
         /**
@@ -573,6 +804,125 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
             return this;
         }
 
+        /**
+         * Set the number of threads used for scanning the sources. Only tiled sources with more than one tile are
+         * scanned in parallel.
+         * <p>
+         * If the maximum number of points is set, the tiles are split into a fixed number of chunks sampled
+         * independently, so the resulting set only depends on the seed, whatever the number of threads.
+         * 
+         * @param parallelism The number of threads to use (<code>1</code> means scan the sources in the calling
+         *            thread).
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D<X, Y, Z, W> setParallelism(int parallelism)
+        {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Set the seed of the random sampling of the points done if the maximum number of points is set. Builders
+         * with the same seed and sources build the same set.
+         * 
+         * @param seed The seed.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D<X, Y, Z, W> setSeed(long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Set whether the points are told apart exactly, by the keys of their coordinates (see
+         * {@link NumericType#getKey()}), or by the hash codes computed by the point factory.
+         * <p>
+         * Exact deduplication is the default. Distinct points with the same hash code are merged into one histogram
+         * entry otherwise, so switch it off only if the point factory defines a coarser equality of points by its hash
+         * codes.
+         * 
+         * @param exactDeduplication Whether to deduplicate the points exactly.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D<X, Y, Z, W> setExactDeduplication(boolean exactDeduplication)
+        {
+            this.exactDeduplication = exactDeduplication;
+            return this;
+        }
+
+        /**
+         * Set the strategy of selecting the points if the maximum number of points is set. The default is
+         * {@link SamplingStrategy#uniform()}, which selects a uniformly random sample.
+         * <p>
+         * The sources aren't scanned in parallel if the number of points is limited and the samples of the strategy
+         * can't be merged.
+         * 
+         * @param samplingStrategy The sampling strategy.
+         * @return <code>this</code> - provides fluent interface.
+         * 
+         * @throws NullPointerException If the strategy is <code>null</code>.
+         */
+        public Builder4D<X, Y, Z, W> setSamplingStrategy(SamplingStrategy samplingStrategy) throws NullPointerException
+        {
+            if (samplingStrategy == null)
+                throw new NullPointerException();
+            this.samplingStrategy = samplingStrategy;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of bytes the points may occupy in memory while the set is built out of core by
+         * {@link #getMappedResult(File)}. The default is {@link StreamDataSet#DEFAULT_SPILL_THRESHOLD}. Lower
+         * thresholds write more runs to disk.
+         * 
+         * @param spillThreshold The number of bytes.
+         * @return <code>this</code> - provides fluent interface.
+         * 
+         * @throws IllegalArgumentException If the threshold isn't positive.
+         */
+        public Builder4D<X, Y, Z, W> setSpillThreshold(long spillThreshold) throws IllegalArgumentException
+        {
+            if (spillThreshold <= 0)
+                throw new IllegalArgumentException(getClass() + ": The spill threshold must be positive.");
+            this.spillThreshold = spillThreshold;
+            return this;
+        }
+
+        /**
+         * Set the listener to publish partial snapshots of the set to while the sources are being read. The snapshots
+         * are published at growing intervals, starting with the snapshot interval.
+         * <p>
+         * If the sources are scanned in parallel, the snapshots contain the chunks of tiles finished so far, which are
+         * spread over the whole sources.
+         * 
+         * @param snapshotListener The listener, <code>null</code> to publish no snapshots.
+         * @return <code>this</code> - provides fluent interface.
+         */
+        public Builder4D<X, Y, Z, W> setSnapshotListener(
+                SnapshotListener<? super StreamDataSet4D<X, Y, Z, W>> snapshotListener)
+        {
+            this.snapshotListener = snapshotListener;
+            return this;
+        }
+
+        /**
+         * Set the time between the start of the scan and the first snapshot. The time between the following snapshots
+         * doubles after each of them.
+         * 
+         * @param snapshotInterval The time in milliseconds.
+         * @return <code>this</code> - provides fluent interface.
+         * 
+         * @throws IllegalArgumentException If the interval isn't positive.
+         */
+        public Builder4D<X, Y, Z, W> setSnapshotInterval(long snapshotInterval) throws IllegalArgumentException
+        {
+            if (snapshotInterval <= 0)
+                throw new IllegalArgumentException(getClass() + ": The snapshot interval must be positive.");
+            this.snapshotInterval = snapshotInterval;
+            return this;
+        }
+
         /**
          * @param progressMonitor The progress monitor.
          */
@@ -631,6 +981,23 @@ public class StreamDataSet4D<X extends Number, Y extends Number, Z extends Numbe
         {
             return SimpleDataPoint4D.hashCode(x, y, z, w);
         }
+
+        /**
+         * Return the hashcode of a point whose coordinates have the given hashcodes.
+         * <p>
+         * Must return the same value as {@link #getHashCode(NumericType, NumericType, NumericType, NumericType)} for
+         * the coordinates with the given hashcodes.
+         * 
+         * @param xHash Hashcode of the x coordinate value.
+         * @param yHash Hashcode of the y coordinate value.
+         * @param zHash Hashcode of the z coordinate value.
+         * @param wHash Hashcode of the w coordinate value.
+         * @return The point's hashcode.
+         */
+        public int getHashCode(int xHash, int yHash, int zHash, int wHash)
+        {
+            return SimpleDataPoint4D.hashCode(xHash, yHash, zHash, wHash);
+        }
     }
 
     /**
@@ -0,0 +1,284 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+
+import org.esa.beam.dataViewer3D.data.type.ByteType;
+import org.esa.beam.dataViewer3D.data.type.DecimalNumericType;
+import org.esa.beam.dataViewer3D.data.type.DoubleType;
+import org.esa.beam.dataViewer3D.data.type.FloatType;
+import org.esa.beam.dataViewer3D.data.type.IntType;
+import org.esa.beam.dataViewer3D.data.type.LongType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.data.type.ShortType;
+
+/**
+ * A column of values of one coordinate stored in a primitive array. The values are boxed only when they are read.
+ * <p>
+ * Bytes, shorts and floats are stored in a <code>float[]</code>, integers and doubles in a <code>double[]</code>, so
+ * that all of them are stored exactly; longs are stored in a <code>long[]</code>.
+ * 
+ * @author Martin Pecka
+ */
+abstract class ValueColumn
+{
+    /** The precision of the decimal values (<code>null</code> means infinite precision or an integral type). */
+    protected final Integer precision;
+
+    /** The number of values. */
+    protected int           size = 0;
+
+    /**
+     * @param precision The precision of the decimal values.
+     */
+    protected ValueColumn(Integer precision)
+    {
+        this.precision = precision;
+    }
+
+    /**
+     * Create an empty column for values of the same type and precision as the given one.
+     * 
+     * @param prototype A value of the type to store.
+     * @param capacity The expected number of values.
+     * @return The column.
+     * 
+     * @throws IllegalArgumentException If the type isn't supported.
+     */
+    static ValueColumn create(NumericType<?> prototype, int capacity) throws IllegalArgumentException
+    {
+        final Number number = prototype.getNumber();
+        final Integer precision = prototype instanceof DecimalNumericType<?> ? ((DecimalNumericType<?>) prototype)
+                .getPrecision() : null;
+
+        if (number instanceof Byte || number instanceof Short || number instanceof Float)
+            return new FloatColumn(number.getClass(), precision, capacity);
+        if (number instanceof Integer || number instanceof Double)
+            return new DoubleColumn(number instanceof Integer, precision, capacity);
+        if (number instanceof Long)
+            return new LongColumn(capacity);
+        throw new IllegalArgumentException(ValueColumn.class + ": Unsupported type " + number.getClass());
+    }
+
+    /**
+     * Return the number of bytes a value of the same type as the given one occupies in a column.
+     * 
+     * @param prototype A value of the type to store.
+     * @return The number of bytes per value.
+     */
+    static int getBytesPerValue(Number prototype)
+    {
+        return prototype instanceof Byte || prototype instanceof Short || prototype instanceof Float ? 4 : 8;
+    }
+
+    /**
+     * Return the number of values.
+     * 
+     * @return The number of values.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Append the given value.
+     * 
+     * @param value The value; it has to be of the type of the column.
+     */
+    abstract void add(Number value);
+
+    /**
+     * Return the <code>i</code>-th value.
+     * 
+     * @param i Index of the value.
+     * @return The value.
+     */
+    abstract Number getNumber(int i);
+
+    /**
+     * Return the <code>i</code>-th value wrapped in its numeric type.
+     * 
+     * @param i Index of the value.
+     * @return The value.
+     */
+    abstract NumericType<?> getNumericType(int i);
+
+    /**
+     * Release the unused capacity.
+     */
+    abstract void trimToSize();
+
+    /**
+     * Return the capacity to grow to from the given one.
+     * 
+     * @param capacity The current capacity.
+     * @return The new capacity.
+     */
+    protected static int grow(int capacity)
+    {
+        return Math.max(capacity + 1, capacity + (capacity >> 1));
+    }
+
+    /**
+     * A column storing bytes, shorts or floats.
+     * 
+     * @author Martin Pecka
+     */
+    private static class FloatColumn extends ValueColumn
+    {
+        /** The type of the values. */
+        private final Class<?> type;
+        /** The values. */
+        private float[]        values;
+
+        /**
+         * @param type The type of the values.
+         * @param precision The precision of the decimal values.
+         * @param capacity The expected number of values.
+         */
+        FloatColumn(Class<?> type, Integer precision, int capacity)
+        {
+            super(precision);
+            this.type = type;
+            values = new float[Math.max(1, capacity)];
+        }
+
+        @Override
+        void add(Number value)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, grow(size));
+            values[size++] = value.floatValue();
+        }
+
+        @Override
+        Number getNumber(int i)
+        {
+            if (type == Byte.class)
+                return (byte) values[i];
+            if (type == Short.class)
+                return (short) values[i];
+            return values[i];
+        }
+
+        @Override
+        NumericType<?> getNumericType(int i)
+        {
+            if (type == Byte.class)
+                return new ByteType((byte) values[i]);
+            if (type == Short.class)
+                return new ShortType((short) values[i]);
+            return new FloatType(values[i], precision);
+        }
+
+        @Override
+        void trimToSize()
+        {
+            values = Arrays.copyOf(values, Math.max(1, size));
+        }
+    }
+
+    /**
+     * A column storing integers or doubles.
+     * 
+     * @author Martin Pecka
+     */
+    private static class DoubleColumn extends ValueColumn
+    {
+        /** Whether the values are integers. */
+        private final boolean integers;
+        /** The values. */
+        private double[]      values;
+
+        /**
+         * @param integers Whether the values are integers.
+         * @param precision The precision of the decimal values.
+         * @param capacity The expected number of values.
+         */
+        DoubleColumn(boolean integers, Integer precision, int capacity)
+        {
+            super(precision);
+            this.integers = integers;
+            values = new double[Math.max(1, capacity)];
+        }
+
+        @Override
+        void add(Number value)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, grow(size));
+            values[size++] = value.doubleValue();
+        }
+
+        @Override
+        Number getNumber(int i)
+        {
+            if (integers)
+                return (int) values[i];
+            return values[i];
+        }
+
+        @Override
+        NumericType<?> getNumericType(int i)
+        {
+            if (integers)
+                return new IntType((int) values[i]);
+            return new DoubleType(values[i], precision);
+        }
+
+        @Override
+        void trimToSize()
+        {
+            values = Arrays.copyOf(values, Math.max(1, size));
+        }
+    }
+
+    /**
+     * A column storing longs.
+     * 
+     * @author Martin Pecka
+     */
+    private static class LongColumn extends ValueColumn
+    {
+        /** The values. */
+        private long[] values;
+
+        /**
+         * @param capacity The expected number of values.
+         */
+        LongColumn(int capacity)
+        {
+            super(null);
+            values = new long[Math.max(1, capacity)];
+        }
+
+        @Override
+        void add(Number value)
+        {
+            if (size == values.length)
+                values = Arrays.copyOf(values, grow(size));
+            values[size++] = value.longValue();
+        }
+
+        @Override
+        Number getNumber(int i)
+        {
+            return values[i];
+        }
+
+        @Override
+        NumericType<?> getNumericType(int i)
+        {
+            return new LongType(values[i]);
+        }
+
+        @Override
+        void trimToSize()
+        {
+            values = Arrays.copyOf(values, Math.max(1, size));
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import java.util.Arrays;
+
+/**
+ * A grid of <code>bins &times; bins &times; bins</code> voxels counting the points falling into them, and optionally
+ * aggregating a value of the points per voxel.
+ * <p>
+ * The memory footprint of the grid is fixed by the number of bins, regardless of the number of added points. The range
+ * of every axis is either given in advance, or derived from the added points: it starts at the first distinct values
+ * and is doubled (merging pairs of neighbouring bins) whenever a point falls outside of it. So the grid can be filled
+ * in one pass even if the ranges of the values aren't known, and the bins of every axis cover at least a half of the
+ * range of the values.
+ * 
+ * @author Martin Pecka
+ */
+class VoxelGrid
+{
+    /** The number of axes of the grid. */
+    private static final int              AXES        = 3;
+
+    /** The number of bins per axis. */
+    private final int                     bins;
+
+    /** The aggregate of the values of the points, <code>null</code> if no values are aggregated. */
+    private final BinnedDataSet.Aggregate aggregate;
+
+    /** The lower bounds of the axes. */
+    private final double[]                origins;
+
+    /** The widths of the bins of the axes; <code>0</code> if all values of the axis have been equal so far. */
+    private final double[]                widths;
+
+    /** Whether the range of the axes has been set. */
+    private final boolean[]               initialized;
+
+    /** The counts of the points in the voxels. */
+    private int[]                         counts;
+
+    /** The aggregated values of the voxels, <code>null</code> if no values are aggregated. */
+    private double[]                      values;
+
+    /** The number of points added to the grid. */
+    private long                          points      = 0;
+
+    /**
+     * Create an empty grid.
+     * 
+     * @param bins The number of bins per axis.
+     * @param aggregate The aggregate of the values of the points, <code>null</code> if no values are aggregated.
+     * 
+     * @throws IllegalArgumentException If the number of bins is lower than 2 or the grid would have more than
+     *             <code>Integer.MAX_VALUE</code> voxels.
+     */
+    VoxelGrid(int bins, BinnedDataSet.Aggregate aggregate) throws IllegalArgumentException
+    {
+        if (bins < 2 || (long) bins * bins * bins > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(getClass() + ": Unsupported number of bins: " + bins);
+
+        this.bins = bins;
+        this.aggregate = aggregate;
+        origins = new double[AXES];
+        widths = new double[AXES];
+        initialized = new boolean[AXES];
+        counts = new int[bins * bins * bins];
+        if (aggregate != null)
+            values = new double[counts.length];
+    }
+
+    /**
+     * Set the range of the given axis. Values outside of the range will still extend it.
+     * 
+     * @param axis The axis.
+     * @param min The lower bound of the range.
+     * @param max The upper bound of the range.
+     * 
+     * @throws IllegalArgumentException If the range is empty or infinite.
+     * @throws IllegalStateException If some points have already been added.
+     */
+    void setRange(int axis, double min, double max) throws IllegalArgumentException, IllegalStateException
+    {
+        if (!(min < max) || Double.isInfinite(max - min))
+            throw new IllegalArgumentException(getClass() + ": Invalid range [" + min + ", " + max + "].");
+        if (points > 0)
+            throw new IllegalStateException(getClass() + ": Cannot set the range of a non-empty grid.");
+
+        origins[axis] = min;
+        widths[axis] = (max - min) / bins;
+        initialized[axis] = true;
+    }
+
+    /**
+     * Add a point. Points with an infinite or NaN coordinate or value are ignored.
+     * 
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @param value The value to aggregate (ignored if no values are aggregated).
+     * @return Whether the point has been added.
+     */
+    boolean add(double x, double y, double z, double value)
+    {
+        if (isNotFinite(x) || isNotFinite(y) || isNotFinite(z) || (values != null && isNotFinite(value)))
+            return false;
+
+        final int voxel = (bin(0, x) * bins + bin(1, y)) * bins + bin(2, z);
+
+        points++;
+
+        if (values != null) {
+            if (counts[voxel] == 0)
+                values[voxel] = value;
+            else
+                values[voxel] = merge(values[voxel], value);
+        }
+        counts[voxel]++;
+        return true;
+    }
+
+    /**
+     * Return <code>true</code> if values of the points are aggregated.
+     * 
+     * @return Whether values are aggregated.
+     */
+    boolean isAggregating()
+    {
+        return values != null;
+    }
+
+    /**
+     * Return the number of bins per axis.
+     * 
+     * @return The number of bins per axis.
+     */
+    int getBins()
+    {
+        return bins;
+    }
+
+    /**
+     * Return the number of voxels.
+     * 
+     * @return The number of voxels.
+     */
+    int getVoxels()
+    {
+        return counts.length;
+    }
+
+    /**
+     * Return the number of points added to the grid.
+     * 
+     * @return The number of points.
+     */
+    long getPoints()
+    {
+        return points;
+    }
+
+    /**
+     * Return the number of points in the given voxel.
+     * 
+     * @param voxel The voxel.
+     * @return The count.
+     */
+    int getCount(int voxel)
+    {
+        return counts[voxel];
+    }
+
+    /**
+     * Return the aggregated value of the given non-empty voxel.
+     * 
+     * @param voxel The voxel.
+     * @return The aggregated value.
+     * 
+     * @throws IllegalStateException If no values are aggregated.
+     */
+    double getValue(int voxel) throws IllegalStateException
+    {
+        if (values == null)
+            throw new IllegalStateException(getClass() + ": No values are aggregated.");
+        return aggregate == BinnedDataSet.Aggregate.MEAN ? values[voxel] / counts[voxel] : values[voxel];
+    }
+
+    /**
+     * Return the coordinate of the center of the given voxel.
+     * 
+     * @param axis The axis.
+     * @param voxel The voxel.
+     * @return The coordinate of the center.
+     */
+    double getCenter(int axis, int voxel)
+    {
+        final int bin;
+        switch (axis) {
+            case 0:
+                bin = voxel / (bins * bins);
+                break;
+            case 1:
+                bin = (voxel / bins) % bins;
+                break;
+            default:
+                bin = voxel % bins;
+        }
+        return origins[axis] + (bin + 0.5) * widths[axis];
+    }
+
+    /**
+     * Return the bin of the given value, extending the range of the axis if needed.
+     * 
+     * @param axis The axis.
+     * @param value The value.
+     * @return The bin.
+     */
+    private int bin(int axis, double value)
+    {
+        if (!initialized[axis]) {
+            origins[axis] = value;
+            initialized[axis] = true;
+        }
+
+        if (widths[axis] == 0) {
+            if (value == origins[axis])
+                return 0;
+
+            // the first distinct value; the previous values are all in the first bin
+            final double origin = origins[axis];
+            origins[axis] = Math.min(origin, value);
+            widths[axis] = Math.abs(value - origin) / (bins - 1);
+            if (value < origin)
+                remap(axis, bins - 1, 1);
+        }
+
+        while (value < origins[axis]) {
+            // double the range downwards: old bin b becomes (b + bins) / 2
+            origins[axis] -= bins * widths[axis];
+            widths[axis] *= 2;
+            remap(axis, bins, 2);
+        }
+
+        while (value > origins[axis] + bins * widths[axis]) {
+            // double the range upwards: old bin b becomes b / 2
+            widths[axis] *= 2;
+            remap(axis, 0, 2);
+        }
+
+        // the upper bound itself belongs to the last bin, and rounding errors mustn't take the value out of the grid
+        final int bin = (int) ((value - origins[axis]) / widths[axis]);
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
+
+    /**
+     * Move the contents of the bins of the given axis, so that bin <code>b</code> becomes bin
+     * <code>(b + offset) / divisor</code> (merging the bins mapped to the same bin).
+     * 
+     * @param axis The axis.
+     * @param offset The offset of the bins.
+     * @param divisor The divisor of the bins.
+     */
+    private void remap(int axis, int offset, int divisor)
+    {
+        if (points == 0)
+            return;
+
+        final int[] newCounts = new int[counts.length];
+        final double[] newValues = values != null ? new double[values.length] : null;
+        final int stride = axis == 0 ? bins * bins : (axis == 1 ? bins : 1);
+
+        for (int voxel = 0; voxel < counts.length; voxel++) {
+            if (counts[voxel] == 0)
+                continue;
+
+            final int bin = (voxel / stride) % bins;
+            final int target = voxel + ((bin + offset) / divisor - bin) * stride;
+
+            if (newValues != null) {
+                if (newCounts[target] == 0)
+                    newValues[target] = values[voxel];
+                else
+                    newValues[target] = merge(newValues[target], values[voxel]);
+            }
+            newCounts[target] += counts[voxel];
+        }
+
+        counts = newCounts;
+        values = newValues;
+    }
+
+    /**
+     * Return <code>true</code> if the given value is infinite or NaN.
+     * 
+     * @param value The value.
+     * @return Whether the value isn't finite.
+     */
+    private static boolean isNotFinite(double value)
+    {
+        return Double.isInfinite(value) || Double.isNaN(value);
+    }
+
+    /**
+     * Merge two (partially) aggregated values.
+     * 
+     * @param a The first value.
+     * @param b The second value.
+     * @return The merged value.
+     */
+    private double merge(double a, double b)
+    {
+        switch (aggregate) {
+            case MIN:
+                return Math.min(a, b);
+            case MAX:
+                return Math.max(a, b);
+            default:
+                // the mean is computed from the sum when it is read
+                return a + b;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + " [bins=" + bins + ", points=" + points + ", origins="
+                + Arrays.toString(origins) + ", widths=" + Arrays.toString(widths) + "]";
+    }
+}
@@ -87,13 +87,31 @@ public final class SimpleDataPoint4D<X extends NumericType<?>, Y extends Numeric
      */
     public static <X extends NumericType<?>, Y extends NumericType<?>, Z extends NumericType<?>, W extends NumericType<?>> int hashCode(
             X x, Y y, Z z, W w)
+    {
+        return hashCode(x == null ? 0 : x.hashCode(), y == null ? 0 : y.hashCode(), z == null ? 0 : z.hashCode(),
+                w == null ? 0 : w.hashCode());
+    }
+
+    /**
+     * Return the hash code of a data point whose coordinates have the given hash codes.
+     * <p>
+     * This method is provided for computing the hashcode from primitive values without creating any objects.
+     * 
+     * @param xHash The hash code of the x coordinate.
+     * @param yHash The hash code of the y coordinate.
+     * @param zHash The hash code of the z coordinate.
+     * @param wHash The hash code of the w coordinate.
+     * @return The same value as <code>new SampleDataPoint4D(x,y,z,w).hashCode()</code> for coordinates with the
+     *         given hashcodes.
+     */
+    public static int hashCode(int xHash, int yHash, int zHash, int wHash)
     {
         final int prime = 16777619;
         int result = -2128831035;
-        result = prime * result + (x == null ? 0 : x.hashCode());
-        result = prime * result + (y == null ? 0 : y.hashCode());
-        result = prime * result + (z == null ? 0 : z.hashCode());
-        result = prime * result + (w == null ? 0 : w.hashCode());
+        result = prime * result + xHash;
+        result = prime * result + yHash;
+        result = prime * result + zHash;
+        result = prime * result + wHash;
         return result;
     }
 
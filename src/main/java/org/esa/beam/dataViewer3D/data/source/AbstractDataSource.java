@@ -62,6 +62,18 @@ public abstract class AbstractDataSource<N extends Number> implements DataSource
         };
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation reads the values from {@link #numericTypeIterator()}, so subclasses are encouraged to
+     * provide a more efficient implementation.
+     */
+    @Override
+    public BulkReader<N> bulkReader()
+    {
+        return new IteratorBulkReader<N>(numericTypeIterator());
+    }
+
     /**
      * Convert the given number to a {@link NumericType}.
      * 
@@ -11,6 +11,8 @@ import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.NoSuchElementException;
 
 import javax.help.UnsupportedOperationException;
@@ -38,9 +40,15 @@ import org.esa.beam.util.ValidatingIterator;
  * @author Martin Pecka
  * @param <N> Type of the band values.
  */
-public class BandDataSource<N extends Number> implements DataSource<N>
+public class BandDataSource<N extends Number> implements TiledDataSource<N>, RandomAccessDataSource<N>
 {
 
+    /** The default maximum number of tiles every reader loads in advance. */
+    public static final int                 DEFAULT_READ_AHEAD_TILES  = 4;
+
+    /** The default maximum amount of memory (in bytes) the tiles loaded in advance by a single reader can occupy. */
+    public static final long                DEFAULT_READ_AHEAD_MEMORY = 32L << 20;
+
     /** The source band. */
     protected final RasterDataNode          band;
 
@@ -92,6 +100,21 @@ public class BandDataSource<N extends Number> implements DataSource<N>
     /** The rectangle the pixels we are interested into reside in. */
     protected final Rectangle               imageRect;
 
+    /** Indices of the tiles intersecting the mask shape (<code>null</code> if not computed yet). */
+    private volatile int[]                  dataTiles;
+
+    /** The <code>i</code>-th entry is <code>true</code> iff the <code>i</code>-th tile intersects the mask shape. */
+    private volatile boolean[]              dataTileFlags;
+
+    /** The table of decoded values of 8- and 16-bit bands (<code>null</code> if not computed yet). */
+    private volatile double[]               decodingTable;
+
+    /** The maximum number of tiles every reader loads in advance (<code>0</code> disables the read-ahead). */
+    protected int                           readAheadTiles            = DEFAULT_READ_AHEAD_TILES;
+
+    /** The maximum amount of memory (in bytes) the tiles loaded in advance by a single reader can occupy. */
+    protected long                          readAheadMemory           = DEFAULT_READ_AHEAD_MEMORY;
+
     /**
      * Create the data source from the given band.
      * <p>
@@ -153,6 +176,37 @@ public class BandDataSource<N extends Number> implements DataSource<N>
                 sourceImage.getHeight());
     }
 
+    /**
+     * Configure the loading of tiles in advance.
+     * <p>
+     * When a reader or an iterator enters a tile, it requests the following tiles containing data on a background
+     * thread pool, so that computing the tiles overlaps with processing the current one. Every reader holds at most
+     * <code>tiles</code> tiles in advance, and no more than <code>maxMemory</code> bytes of them.
+     * 
+     * @param tiles The maximum number of tiles loaded in advance by a single reader (<code>0</code> disables the
+     *            read-ahead).
+     * @param maxMemory The maximum amount of memory (in bytes) the tiles loaded in advance by a single reader can
+     *            occupy.
+     */
+    public void setReadAhead(int tiles, long maxMemory)
+    {
+        this.readAheadTiles = tiles;
+        this.readAheadMemory = maxMemory;
+    }
+
+    /**
+     * Return the number of tiles a reader should load in advance, with respect to the memory limit.
+     * 
+     * @return The number of tiles a reader should load in advance.
+     */
+    protected int getReadAheadDepth()
+    {
+        final long bytesPerPixel = DataBuffer.getDataTypeSize(dataSampleModel.getDataType()) / 8
+                + (maskImage != null ? 1 : 0);
+        final long bytesPerTile = Math.max(1, bytesPerPixel * getTileSize());
+        return (int) Math.min(readAheadTiles, readAheadMemory / bytesPerTile);
+    }
+
     /**
      * Set the interest mask of the image.
      * 
@@ -166,6 +220,8 @@ public class BandDataSource<N extends Number> implements DataSource<N>
     {
         this.maskShape = maskShape;
         this.maskImage = maskImage;
+        this.dataTiles = null;
+        this.dataTileFlags = null;
 
         if (maskImage != null) {
             final SampleModel maskSampleModel = maskImage.getSampleModel();
@@ -288,6 +344,148 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         };
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The values are read directly from the unpacked tile data, so no objects are created for the single pixels.
+     */
+    @Override
+    public BulkReader<N> bulkReader()
+    {
+        return new BandBulkReader(0, getNumTiles() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The tiles are numbered row by row, starting with the tile at <code>(tileX1, tileY1)</code>.
+     */
+    @Override
+    public BulkReader<N> bulkReader(int firstTile, int lastTile)
+    {
+        if (firstTile < 0 || lastTile >= getNumTiles() || firstTile > lastTile)
+            throw new IndexOutOfBoundsException();
+        return new BandBulkReader(firstTile, lastTile);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Seeking only computes the tile of the entry; the tile is loaded and unpacked when the reader enters it, and
+     * stays loaded while the read entries remain in it. The tiles aren't loaded in advance, since the order of the
+     * reads isn't known.
+     */
+    @Override
+    public RandomAccessReader<N> randomAccessReader()
+    {
+        final BandBulkReader reader = new BandBulkReader(0, getNumTiles() - 1);
+        reader.sequential = false;
+        return reader;
+    }
+
+    @Override
+    public int getNumTiles()
+    {
+        return numXTiles * numYTiles;
+    }
+
+    @Override
+    public int getTileSize()
+    {
+        return sourceImage.getTileWidth() * sourceImage.getTileHeight();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * These are the tiles intersecting the mask shape; the list is computed only once for every mask.
+     */
+    @Override
+    public int[] getDataTiles()
+    {
+        computeDataTiles();
+        return dataTiles.clone();
+    }
+
+    /**
+     * Return the indices of the tiles from the given range that intersect the mask shape.
+     * 
+     * @param firstTile The first tile of the range.
+     * @param lastTile The last tile of the range (inclusive).
+     * @return The indices of the tiles, in ascending order.
+     */
+    protected int[] getDataTiles(int firstTile, int lastTile)
+    {
+        computeDataTiles();
+        final int[] tiles = dataTiles;
+
+        int from = 0;
+        while (from < tiles.length && tiles[from] < firstTile)
+            from++;
+        int to = from;
+        while (to < tiles.length && tiles[to] <= lastTile)
+            to++;
+
+        return Arrays.copyOfRange(tiles, from, to);
+    }
+
+    /**
+     * Return <code>true</code> if the tile with the given index intersects the mask shape.
+     * 
+     * @param tileIndex Index of the tile.
+     * @return Whether the tile can contain any valid data.
+     */
+    protected boolean isDataTile(int tileIndex)
+    {
+        computeDataTiles();
+        return dataTileFlags[tileIndex];
+    }
+
+    /**
+     * Compute the list of tiles intersecting the mask shape, if it hasn't been computed yet.
+     */
+    private synchronized void computeDataTiles()
+    {
+        if (dataTiles != null)
+            return;
+
+        final boolean[] flags = new boolean[numXTiles * numYTiles];
+        int count = 0;
+        for (int i = 0; i < flags.length; i++) {
+            if (maskShape != null) {
+                final Rectangle dataRect = planarImage.getTileRect(tileX1 + i % numXTiles, tileY1 + i / numXTiles);
+                flags[i] = maskShape.intersects(dataRect);
+            } else {
+                flags[i] = true;
+            }
+            if (flags[i])
+                count++;
+        }
+
+        final int[] tiles = new int[count];
+        for (int i = 0, j = 0; i < flags.length; i++) {
+            if (flags[i])
+                tiles[j++] = i;
+        }
+
+        dataTileFlags = flags;
+        dataTiles = tiles;
+    }
+
+    /**
+     * Create a source reading the same band with the same data type and precision, but without any mask and without
+     * the min/max restriction.
+     * 
+     * @return The unfiltered source.
+     */
+    @SuppressWarnings("unchecked")
+    protected BandDataSource<N> createUnfilteredSource()
+    {
+        final BandDataSource<N> result = new BandDataSource<N>(band, (Class<N>) dataType, precision, null, null);
+        result.setReadAhead(readAheadTiles, readAheadMemory);
+        return result;
+    }
+
     /**
      * @return The source band.
      */
@@ -443,9 +641,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
                 tileSize = tileWidth * tileHeight;
         protected final int                numTilesX        = tileX2 - tileX1 + 1, numTilesY = tileY2 - tileY1 + 1;
         protected final int                maxIndex         = tileSize * numTilesX * numTilesY - 1;
-        protected final Double             noDataValue      = (band.isNoDataValueUsed()) ? null : band.getNoDataValue();
+        protected final ValueDecoder       decoder          = createValueDecoder();
 
-        protected final TileDataHandler<?> tileDataHandler  = createTileDataHandler();
+        protected final TileDataHandler    tileDataHandler  = createTileDataHandler();
 
         protected Raster                   tile             = null;
         protected boolean                  tileContainsData = false;
@@ -462,10 +660,13 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         protected int                      tileX            = tileX1 - 1, tileY = tileY1 - 1, inTileX = -1,
                 inTileY = -1;
         protected int                      index            = -1;
+        protected int                      lastTileIndex    = numTilesX * numTilesY - 1;
 
         protected T                        last             = null;
 
-        private void updateIndex(int newIndex) throws NoSuchElementException
+        protected TileReadAhead            readAhead        = null;
+
+        protected void updateIndex(int newIndex) throws NoSuchElementException
         {
             if (newIndex == index)
                 return;
@@ -485,16 +686,12 @@ public class BandDataSource<N extends Number> implements DataSource<N>
             tileY = tileY1 + tileIndex / numTilesX;
 
             if (oldTileX != tileX || oldTileY != tileY) {
-                if (maskShape != null) {
-                    final Rectangle dataRect = planarImage.getTileRect(tileX, tileY);
-                    tileContainsData = maskShape.intersects(dataRect);
-                } else {
-                    tileContainsData = true;
-                }
+                tileContainsData = isDataTile(tileIndex);
 
                 if (tileContainsData) {
-                    tile = sourceImage.getTile(tileX, tileY);
-                    maskTile = maskImage != null ? maskImage.getTile(tileX, tileY) : null;
+                    final Raster[] tiles = loadTiles(tileIndex);
+                    tile = tiles[0];
+                    maskTile = tiles[1];
                     tileInterestRect = imageRect.intersection(tile.getBounds());
                     tileData = dataAccessor.getPixels(tile, tileInterestRect, dataAccessor.sampleType, false);
                     dataPixelStride = tileData.pixelStride;
@@ -531,6 +728,26 @@ public class BandDataSource<N extends Number> implements DataSource<N>
             }
         }
 
+        /**
+         * Load the data tile and the mask tile with the given index, and request the following tiles in advance.
+         * 
+         * @param tileIndex Index of the tile.
+         * @return The data tile and the mask tile (<code>null</code> if there is no mask).
+         */
+        protected Raster[] loadTiles(int tileIndex)
+        {
+            if (readAhead == null) {
+                final int depth = getReadAheadDepth();
+                if (depth <= 0) {
+                    return new Raster[] { sourceImage.getTile(tileX, tileY),
+                            maskImage != null ? maskImage.getTile(tileX, tileY) : null };
+                }
+                readAhead = new TileReadAhead(sourceImage, maskImage, getDataTiles(tileIndex, lastTileIndex),
+                        numTilesX, tileX1, tileY1, depth);
+            }
+            return readAhead.getTiles(tileIndex);
+        }
+
         @Override
         public T next()
         {
@@ -551,30 +768,6 @@ public class BandDataSource<N extends Number> implements DataSource<N>
             }
         }
 
-        private TileDataHandler<?> createTileDataHandler()
-        {
-            switch (band.getDataType()) {
-                case ProductData.TYPE_INT8:
-                    return new ByteTileDataHandler();
-                case ProductData.TYPE_UINT8:
-                    return new UByteTileDataHandler();
-                case ProductData.TYPE_INT16:
-                    return new ShortTileDataHandler();
-                case ProductData.TYPE_UINT16:
-                    return new UShortTileDataHandler();
-                case ProductData.TYPE_INT32:
-                    return new IntTileDataHandler();
-                case ProductData.TYPE_UINT32:
-                    return new UIntTileDataHandler();
-                case ProductData.TYPE_FLOAT32:
-                    return new FloatTileDataHandler();
-                case ProductData.TYPE_FLOAT64:
-                    return new DoubleTileDataHandler();
-                default:
-                    throw new IllegalArgumentException();
-            }
-        }
-
         protected abstract T getTileData(int pixelOffset);
 
         protected abstract void loadTileData();
@@ -601,23 +794,112 @@ public class BandDataSource<N extends Number> implements DataSource<N>
 
     }
 
-    private abstract class TileDataHandler<D extends Number>
+    /**
+     * Create a handler of the unpacked tile data of the band.
+     * 
+     * @return The handler.
+     */
+    protected TileDataHandler createTileDataHandler()
+    {
+        switch (band.getDataType()) {
+            case ProductData.TYPE_INT8:
+                return new ByteTileDataHandler();
+            case ProductData.TYPE_UINT8:
+                return new UByteTileDataHandler();
+            case ProductData.TYPE_INT16:
+                return new ShortTileDataHandler();
+            case ProductData.TYPE_UINT16:
+                return new UShortTileDataHandler();
+            case ProductData.TYPE_INT32:
+                return new IntTileDataHandler();
+            case ProductData.TYPE_UINT32:
+                return new UIntTileDataHandler();
+            case ProductData.TYPE_FLOAT32:
+                return new FloatTileDataHandler();
+            case ProductData.TYPE_FLOAT64:
+                return new DoubleTileDataHandler();
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * A handler of the unpacked tile data of a band of a specific {@link ProductData} type.
+     * <p>
+     * Every subclass reads its own primitive array type, so the loops over the tile data don't box the values and
+     * don't call any virtual methods per pixel.
+     * 
+     * @author Martin Pecka
+     */
+    protected abstract class TileDataHandler
     {
-        protected abstract D getTileData(int pixelOffset);
+        /**
+         * Return the raw value of the given pixel of the loaded tile.
+         * 
+         * @param pixelOffset Offset of the pixel in the unpacked tile data.
+         * @return The raw value.
+         */
+        protected abstract double getValue(int pixelOffset);
+
+        /**
+         * Read the raw values of several pixels of the loaded tile.
+         * 
+         * @param pixelOffset Offset of the first pixel in the unpacked tile data.
+         * @param pixelStride The distance of two consecutive pixels in the unpacked tile data.
+         * @param count The number of pixels to read.
+         * @param values The array to read the raw values into.
+         * @param valuesOffset Index to <code>values</code> of the first read value.
+         */
+        protected abstract void getValues(int pixelOffset, int pixelStride, int count, double[] values,
+                int valuesOffset);
+
+        /**
+         * Decode several pixels of the loaded tile by looking their raw values up in the given table.
+         * <p>
+         * Only handlers of 8- and 16-bit bands support this method.
+         * 
+         * @param pixelOffset Offset of the first pixel in the unpacked tile data.
+         * @param pixelStride The distance of two consecutive pixels in the unpacked tile data.
+         * @param count The number of pixels to decode.
+         * @param table The decoding table, as returned by {@link BandDataSource#getDecodingTable()}.
+         * @param values The array to read the decoded values into.
+         * @param valid The validity of the values; pixels not valid in the table are marked as invalid.
+         * @param valuesOffset Index to <code>values</code> and <code>valid</code> of the first decoded pixel.
+         * 
+         * @throws UnsupportedOperationException If the band type doesn't support decoding tables.
+         */
+        protected void decodeValues(int pixelOffset, int pixelStride, int count, double[] table, double[] values,
+                boolean[] valid, int valuesOffset)
+        {
+            throw new UnsupportedOperationException();
+        }
 
+        /**
+         * Load the unpacked data of a new tile.
+         * 
+         * @param tileData The unpacked tile data.
+         */
         protected abstract void loadTileData(UnpackedImageData tileData);
     }
 
-    private class DoubleTileDataHandler extends TileDataHandler<Double>
+    private class DoubleTileDataHandler extends TileDataHandler
     {
         private double[] buffer = null;
 
         @Override
-        protected Double getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
         {
             return buffer[pixelOffset];
         }
 
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
+        {
+            final double[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o];
+        }
+
         @Override
         protected void loadTileData(UnpackedImageData tileData)
         {
@@ -625,16 +907,24 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class FloatTileDataHandler extends TileDataHandler<Float>
+    private class FloatTileDataHandler extends TileDataHandler
     {
         private float[] buffer = null;
 
         @Override
-        protected Float getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
         {
             return buffer[pixelOffset];
         }
 
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
+        {
+            final float[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o];
+        }
+
         @Override
         protected void loadTileData(UnpackedImageData tileData)
         {
@@ -642,16 +932,24 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class UIntTileDataHandler extends TileDataHandler<Long>
+    private class UIntTileDataHandler extends TileDataHandler
     {
         private int[] buffer = null;
 
         @Override
-        protected Long getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
         {
             return buffer[pixelOffset] & 0xffffffffL;
         }
 
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
+        {
+            final int[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o] & 0xffffffffL;
+        }
+
         @Override
         protected void loadTileData(UnpackedImageData tileData)
         {
@@ -659,16 +957,24 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class IntTileDataHandler extends TileDataHandler<Integer>
+    private class IntTileDataHandler extends TileDataHandler
     {
         private int[] buffer = null;
 
         @Override
-        protected Integer getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
         {
             return buffer[pixelOffset];
         }
 
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
+        {
+            final int[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o];
+        }
+
         @Override
         protected void loadTileData(UnpackedImageData tileData)
         {
@@ -676,14 +982,34 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class UShortTileDataHandler extends TileDataHandler<Integer>
+    private class UShortTileDataHandler extends TileDataHandler
     {
         private short[] buffer = null;
 
         @Override
-        protected Integer getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
+        {
+            return buffer[pixelOffset] & 0xffff;
+        }
+
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
         {
-            return (int) (buffer[pixelOffset] & 0xffff);
+            final short[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o] & 0xffff;
+        }
+
+        @Override
+        protected void decodeValues(int pixelOffset, int pixelStride, int count, double[] table, double[] values,
+                boolean[] valid, int valuesOffset)
+        {
+            final short[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride) {
+                final double value = table[buffer[o] & 0xffff];
+                values[i] = value;
+                valid[i] &= value == value; // invalid values are NaN
+            }
         }
 
         @Override
@@ -693,16 +1019,36 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class ShortTileDataHandler extends TileDataHandler<Short>
+    private class ShortTileDataHandler extends TileDataHandler
     {
         private short[] buffer = null;
 
         @Override
-        protected Short getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
         {
             return buffer[pixelOffset];
         }
 
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
+        {
+            final short[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o];
+        }
+
+        @Override
+        protected void decodeValues(int pixelOffset, int pixelStride, int count, double[] table, double[] values,
+                boolean[] valid, int valuesOffset)
+        {
+            final short[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride) {
+                final double value = table[buffer[o] + 32768];
+                values[i] = value;
+                valid[i] &= value == value; // invalid values are NaN
+            }
+        }
+
         @Override
         protected void loadTileData(UnpackedImageData tileData)
         {
@@ -710,14 +1056,34 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class UByteTileDataHandler extends TileDataHandler<Short>
+    private class UByteTileDataHandler extends TileDataHandler
     {
         private byte[] buffer = null;
 
         @Override
-        protected Short getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
         {
-            return (short) (buffer[pixelOffset] & 0xff);
+            return buffer[pixelOffset] & 0xff;
+        }
+
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
+        {
+            final byte[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o] & 0xff;
+        }
+
+        @Override
+        protected void decodeValues(int pixelOffset, int pixelStride, int count, double[] table, double[] values,
+                boolean[] valid, int valuesOffset)
+        {
+            final byte[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride) {
+                final double value = table[buffer[o] & 0xff];
+                values[i] = value;
+                valid[i] &= value == value; // invalid values are NaN
+            }
         }
 
         @Override
@@ -727,14 +1093,34 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         }
     }
 
-    private class ByteTileDataHandler extends TileDataHandler<Byte>
+    private class ByteTileDataHandler extends TileDataHandler
     {
         private byte[] buffer = null;
 
         @Override
-        protected Byte getTileData(int pixelOffset)
+        protected double getValue(int pixelOffset)
+        {
+            return buffer[pixelOffset];
+        }
+
+        @Override
+        protected void getValues(int pixelOffset, int pixelStride, int count, double[] values, int valuesOffset)
         {
-            return (byte) buffer[pixelOffset];
+            final byte[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride)
+                values[i] = buffer[o];
+        }
+
+        @Override
+        protected void decodeValues(int pixelOffset, int pixelStride, int count, double[] table, double[] values,
+                boolean[] valid, int valuesOffset)
+        {
+            final byte[] buffer = this.buffer;
+            for (int i = valuesOffset, o = pixelOffset, end = valuesOffset + count; i < end; i++, o += pixelStride) {
+                final double value = table[buffer[o] + 128];
+                values[i] = value;
+                valid[i] &= value == value; // invalid values are NaN
+            }
         }
 
         @Override
@@ -749,14 +1135,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         @Override
         protected Double getTileData(int pixelOffset)
         {
-            final double value = tileDataHandler.getTileData(pixelOffset).doubleValue();
-            if ((noDataValue == null || value != noDataValue) && (min == null || value >= min)
-                    && (max == null || value <= max)) {
-                if (band.isScalingApplied())
-                    return band.scale(value);
-                else
-                    return value;
-            }
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return decoder.decode(value);
             return null;
         }
 
@@ -772,14 +1153,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         @Override
         protected Float getTileData(int pixelOffset)
         {
-            final double value = tileDataHandler.getTileData(pixelOffset).doubleValue();
-            if ((noDataValue == null || value != noDataValue) && (min == null || value >= min)
-                    && (max == null || value <= max)) {
-                if (band.isScalingApplied())
-                    return (float) band.scale(value);
-                else
-                    return (float) value;
-            }
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return (float) decoder.decode(value);
             return null;
         }
 
@@ -796,14 +1172,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         @Override
         protected Long getTileData(int pixelOffset)
         {
-            final double value = tileDataHandler.getTileData(pixelOffset).doubleValue();
-            if ((noDataValue == null || value != noDataValue) && (min == null || value >= min)
-                    && (max == null || value <= max)) {
-                if (band.isScalingApplied())
-                    return (long) band.scale(value);
-                else
-                    return (long) value;
-            }
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return (long) decoder.decode(value);
             return null;
         }
 
@@ -820,14 +1191,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         @Override
         protected Integer getTileData(int pixelOffset)
         {
-            final double value = tileDataHandler.getTileData(pixelOffset).doubleValue();
-            if ((noDataValue == null || value != noDataValue) && (min == null || value >= min)
-                    && (max == null || value <= max)) {
-                if (band.isScalingApplied())
-                    return (int) band.scale(value);
-                else
-                    return (int) value;
-            }
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return (int) decoder.decode(value);
             return null;
         }
 
@@ -844,14 +1210,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         @Override
         protected Short getTileData(int pixelOffset)
         {
-            final double value = tileDataHandler.getTileData(pixelOffset).doubleValue();
-            if ((noDataValue == null || value != noDataValue) && (min == null || value >= min)
-                    && (max == null || value <= max)) {
-                if (band.isScalingApplied())
-                    return (short) band.scale(value);
-                else
-                    return (short) value;
-            }
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return (short) decoder.decode(value);
             return null;
         }
 
@@ -867,14 +1228,9 @@ public class BandDataSource<N extends Number> implements DataSource<N>
         @Override
         protected Byte getTileData(int pixelOffset)
         {
-            final double value = tileDataHandler.getTileData(pixelOffset).doubleValue();
-            if ((noDataValue == null || value != noDataValue) && (min == null || value >= min)
-                    && (max == null || value <= max)) {
-                if (band.isScalingApplied())
-                    return (byte) band.scale(value);
-                else
-                    return (byte) value;
-            }
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return (byte) decoder.decode(value);
             return null;
         }
 
@@ -1078,4 +1434,509 @@ public class BandDataSource<N extends Number> implements DataSource<N>
             return it.isLastReturnedValid();
         }
     }
+
+    /**
+     * A bulk reader reading the values directly from the unpacked tile data.
+     * <p>
+     * The reader walks the pixels in the same order as the iterators do, but decodes them into a primitive array and
+     * creates objects only on demand.
+     * 
+     * @author Martin Pecka
+     */
+    private class BandBulkReader extends AbstractNumberIterator<N> implements RandomAccessReader<N>
+    {
+        /** The values of the last read block. */
+        private double[]   lastValues  = null;
+        /** The validity of the values of the last read block. */
+        private BitSet     lastValid   = null;
+        /** The validity of the values of the block being read. */
+        private boolean[]  validBuffer = null;
+        /** Index of the last entry this reader should read. */
+        private final int  lastIndex;
+        /** Whether the entries are read in ascending order, so that the following tiles can be loaded in advance. */
+        private boolean    sequential  = true;
+
+        /**
+         * Create a reader reading the given range of tiles.
+         * 
+         * @param firstTile Index of the first tile to read.
+         * @param lastTile Index of the last tile to read (inclusive).
+         */
+        public BandBulkReader(int firstTile, int lastTile)
+        {
+            // the tile data aren't loaded yet, so the first call to updateIndex() will load them
+            index = firstTile * tileSize - 1;
+            lastIndex = (lastTile + 1) * tileSize - 1;
+            lastTileIndex = lastTile;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return index < lastIndex;
+        }
+
+        @Override
+        public void seek(int index) throws IndexOutOfBoundsException
+        {
+            if (index < 0 || index > lastIndex + 1)
+                throw new IndexOutOfBoundsException("Cannot seek to index " + index);
+            // the tile data are loaded by the next call to updateIndex() if the entry is in another tile
+            this.index = index - 1;
+        }
+
+        @Override
+        protected Raster[] loadTiles(int tileIndex)
+        {
+            if (!sequential) {
+                return new Raster[] { sourceImage.getTile(tileX, tileY),
+                        maskImage != null ? maskImage.getTile(tileX, tileY) : null };
+            }
+            return super.loadTiles(tileIndex);
+        }
+
+        @Override
+        public int read(double[] values, BitSet valid)
+        {
+            lastValues = values;
+            lastValid = valid;
+            if (validBuffer == null || validBuffer.length < values.length)
+                validBuffer = new boolean[values.length];
+            final boolean[] isValid = validBuffer;
+
+            int read = 0;
+            while (read < values.length && index < lastIndex) {
+                updateIndex(index + 1);
+
+                final int count = Math.min(values.length - read, tileSize - index % tileSize);
+
+                if (!tileContainsData) {
+                    Arrays.fill(isValid, read, read + count, false);
+                    read += count;
+                    updateIndex(index + count - 1);
+                    continue;
+                }
+
+                // the unpacked data only cover the interest rectangle of the tile
+                final int rectX1 = tileInterestRect.x - tile.getMinX(), rectY1 = tileInterestRect.y - tile.getMinY();
+                final int rectX2 = rectX1 + tileInterestRect.width, rectY2 = rectY1 + tileInterestRect.height;
+
+                // decode the block row by row, so that the kernels can run over contiguous runs of pixels
+                int x = inTileX, y = inTileY;
+                for (int done = 0; done < count; x = 0, y++) {
+                    final int rowCount = Math.min(count - done, tileWidth - x);
+                    final int from = Math.max(x, rectX1), to = Math.min(x + rowCount, rectX2);
+
+                    Arrays.fill(isValid, read + done, read + done + rowCount, false);
+                    if (y >= rectY1 && y < rectY2 && from < to) {
+                        final int start = read + done + from - x, length = to - from;
+                        final int dx = from - rectX1, dy = y - rectY1;
+
+                        getMaskValues(mask, maskBandOffset + dy * maskLineStride + dx * maskPixelStride,
+                                maskPixelStride, length, isValid, start);
+                        decoder.decode(tileDataHandler, dataBandOffset + dy * dataLineStride + dx
+                                * dataPixelStride, dataPixelStride, length, values, isValid, start);
+                    }
+
+                    done += rowCount;
+                }
+
+                read += count;
+                updateIndex(index + count - 1);
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (isValid[i])
+                    valid.set(i);
+                else
+                    valid.clear(i);
+            }
+
+            return read;
+        }
+
+        @Override
+        public N getNumber(int i)
+        {
+            if (!lastValid.get(i))
+                return null;
+
+            return decoder.toNumber(lastValues[i]);
+        }
+
+        @Override
+        public NumericType<N> getNumericType(int i)
+        {
+            if (!lastValid.get(i))
+                return null;
+
+            return decoder.toNumericType(lastValues[i]);
+        }
+
+        @Override
+        public int getHashCode(int i)
+        {
+            if (!lastValid.get(i))
+                return 0;
+
+            return decoder.getHashCode(lastValues[i]);
+        }
+
+        @Override
+        public long getKey(int i)
+        {
+            if (!lastValid.get(i))
+                return 0;
+
+            return decoder.getKey(lastValues[i]);
+        }
+
+        @Override
+        protected N getTileData(int pixelOffset)
+        {
+            final double value = tileDataHandler.getValue(pixelOffset);
+            if (decoder.accepts(value))
+                return decoder.toNumber(decoder.decode(value));
+            return null;
+        }
+
+        @Override
+        protected void loadTileData()
+        {
+            tileDataHandler.loadTileData(tileData);
+        }
+    }
+
+    /**
+     * Return the table of decoded values of an 8- or 16-bit band.
+     * <p>
+     * The table contains the decoded value for every possible raw value, so decoding a pixel is a single array
+     * access. Raw values that aren't accepted (no-data values and values out of the min/max range) have
+     * {@link Double#NaN} in the table; decoded integer values are always finite, so this can't be confused with a
+     * valid value. The <code>i</code>-th entry corresponds to the raw value <code>i</code> for unsigned bands, and to
+     * the raw value <code>i - 128</code> or <code>i - 32768</code> for signed bands.
+     * <p>
+     * The table is computed only once for the band.
+     * 
+     * @return The decoding table, or <code>null</code> if the band isn't an 8- or 16-bit band.
+     */
+    protected double[] getDecodingTable()
+    {
+        final int size, firstRawValue;
+        switch (band.getDataType()) {
+            case ProductData.TYPE_INT8:
+                size = 1 << 8;
+                firstRawValue = Byte.MIN_VALUE;
+                break;
+            case ProductData.TYPE_UINT8:
+                size = 1 << 8;
+                firstRawValue = 0;
+                break;
+            case ProductData.TYPE_INT16:
+                size = 1 << 16;
+                firstRawValue = Short.MIN_VALUE;
+                break;
+            case ProductData.TYPE_UINT16:
+                size = 1 << 16;
+                firstRawValue = 0;
+                break;
+            default:
+                return null;
+        }
+
+        double[] table = decodingTable;
+        if (table == null) {
+            // concurrent readers may compute the same table twice, which is harmless
+            final ValueDecoder decoder = new ValueDecoder(false);
+            table = new double[size];
+            for (int i = 0; i < size; i++) {
+                final double value = firstRawValue + i;
+                table[i] = decoder.accepts(value) ? decoder.decode(value) : Double.NaN;
+            }
+            decodingTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Read the validity of several pixels from the unpacked mask.
+     * 
+     * @param mask The unpacked mask, or <code>null</code> if there is no mask (then all pixels are valid).
+     * @param pixelOffset Offset of the first pixel in the unpacked mask.
+     * @param pixelStride The distance of two consecutive pixels in the unpacked mask.
+     * @param count The number of pixels to read.
+     * @param valid The array to read the validity into.
+     * @param validOffset Index to <code>valid</code> of the first read pixel.
+     */
+    protected static void getMaskValues(byte[] mask, int pixelOffset, int pixelStride, int count, boolean[] valid,
+            int validOffset)
+    {
+        if (mask == null) {
+            Arrays.fill(valid, validOffset, validOffset + count, true);
+            return;
+        }
+
+        for (int i = validOffset, o = pixelOffset, end = validOffset + count; i < end; i++, o += pixelStride)
+            valid[i] = mask[o] != 0;
+    }
+
+    /**
+     * Create a decoder of the raw values of the band.
+     * 
+     * @return The decoder.
+     */
+    protected ValueDecoder createValueDecoder()
+    {
+        return new ValueDecoder();
+    }
+
+    /**
+     * A decoder of the raw band values to the values this source returns.
+     * <p>
+     * The decoder caches the band properties as primitives, so it should be created once for every reader.
+     * 
+     * @author Martin Pecka
+     */
+    protected class ValueDecoder
+    {
+        /** Whether the band values have to be scaled. */
+        private final boolean  scalingApplied = band.isScalingApplied();
+        /** The no-data value (inverted the same way as in the iterators). */
+        private final Double   noDataValue    = (band.isNoDataValueUsed()) ? null : band.getNoDataValue();
+        /** Whether the no-data value, min and max are defined. */
+        private final boolean  hasNoData      = noDataValue != null, hasMin = min != null, hasMax = max != null;
+        /** The no-data value, min and max as primitives. */
+        private final double   noData         = hasNoData ? noDataValue : 0, minValue = hasMin ? min : 0,
+                maxValue = hasMax ? max : 0;
+        /** The factor used for rounding decimal values (<code>10^precision</code>). */
+        private final double   roundingFactor = precision != null ? Math.pow(10, precision) : 1;
+        /** The decoding table, <code>null</code> if the band values have to be decoded one by one. */
+        private final double[] table;
+
+        /**
+         * Create a decoder using the decoding table of 8- and 16-bit bands.
+         */
+        protected ValueDecoder()
+        {
+            this(true);
+        }
+
+        /**
+         * @param useTable Whether to use the decoding table of 8- and 16-bit bands.
+         */
+        private ValueDecoder(boolean useTable)
+        {
+            table = useTable ? getDecodingTable() : null;
+        }
+
+        /**
+         * Read, filter and decode several pixels of the loaded tile.
+         * <p>
+         * Values of 8- and 16-bit bands are looked up in the decoding table, other values are decoded by
+         * {@link #decode(double[], boolean[], int, int)}.
+         * 
+         * @param handler The handler of the loaded tile.
+         * @param pixelOffset Offset of the first pixel in the unpacked tile data.
+         * @param pixelStride The distance of two consecutive pixels in the unpacked tile data.
+         * @param count The number of pixels to decode.
+         * @param values The array to read the decoded values into.
+         * @param valid The validity of the values; entries that aren't accepted are marked as invalid.
+         * @param offset Index to <code>values</code> and <code>valid</code> of the first decoded pixel.
+         */
+        public void decode(BandDataSource<?>.TileDataHandler handler, int pixelOffset, int pixelStride, int count,
+                double[] values, boolean[] valid, int offset)
+        {
+            if (table != null) {
+                handler.decodeValues(pixelOffset, pixelStride, count, table, values, valid, offset);
+            } else {
+                handler.getValues(pixelOffset, pixelStride, count, values, offset);
+                decode(values, valid, offset, count);
+            }
+        }
+
+        /**
+         * Return <code>true</code> if the given raw value isn't the no-data value and lies between min and max.
+         * 
+         * @param value The raw value.
+         * @return Whether the value should be returned.
+         */
+        public boolean accepts(double value)
+        {
+            return (!hasNoData || value != noData) && (!hasMin || value >= minValue) && (!hasMax || value <= maxValue);
+        }
+
+        /**
+         * Scale the given raw value and cast it to the data type.
+         * 
+         * @param value The raw value.
+         * @return The value this source returns for the raw value.
+         */
+        public double decode(double value)
+        {
+            return castToDataType(scalingApplied ? band.scale(value) : value);
+        }
+
+        /**
+         * Filter and decode several raw values at once.
+         * <p>
+         * Entries that are already invalid stay invalid, and entries that aren't accepted are marked as invalid. All
+         * values are decoded, the values of invalid entries are undefined.
+         * 
+         * @param values The raw values, they are replaced by the decoded values.
+         * @param valid The validity of the values.
+         * @param offset Index of the first value to decode.
+         * @param count The number of values to decode.
+         */
+        public void decode(double[] values, boolean[] valid, int offset, int count)
+        {
+            final int end = offset + count;
+
+            // separate loops without any calls, so that the JIT can inline and unroll them
+            if (hasNoData || hasMin || hasMax) {
+                // the flags are loop invariants, so the JIT can hoist the tests out of the loop
+                final boolean hasNoData = this.hasNoData, hasMin = this.hasMin, hasMax = this.hasMax;
+                final double noData = this.noData, minValue = this.minValue, maxValue = this.maxValue;
+                for (int i = offset; i < end; i++) {
+                    final double value = values[i];
+                    valid[i] &= (!hasNoData || value != noData) && (!hasMin || value >= minValue)
+                            && (!hasMax || value <= maxValue);
+                }
+            }
+
+            if (scalingApplied) {
+                for (int i = offset; i < end; i++)
+                    values[i] = band.scale(values[i]);
+            }
+
+            if (dataType == Float.class) {
+                for (int i = offset; i < end; i++)
+                    values[i] = (float) values[i];
+            } else if (dataType == Long.class) {
+                for (int i = offset; i < end; i++)
+                    values[i] = (long) values[i];
+            } else if (dataType == Integer.class) {
+                for (int i = offset; i < end; i++)
+                    values[i] = (int) values[i];
+            } else if (dataType == Short.class) {
+                for (int i = offset; i < end; i++)
+                    values[i] = (short) values[i];
+            } else if (dataType == Byte.class) {
+                for (int i = offset; i < end; i++)
+                    values[i] = (byte) values[i];
+            }
+        }
+
+        /**
+         * Convert the given value of the data type to the corresponding number.
+         * 
+         * @param value The value.
+         * @return The number.
+         */
+        @SuppressWarnings("unchecked")
+        public N toNumber(double value)
+        {
+            if (dataType == Double.class)
+                return (N) (Object) value;
+            else if (dataType == Float.class)
+                return (N) (Object) (float) value;
+            else if (dataType == Long.class)
+                return (N) (Object) (long) value;
+            else if (dataType == Integer.class)
+                return (N) (Object) (int) value;
+            else if (dataType == Short.class)
+                return (N) (Object) (short) value;
+            else
+                return (N) (Object) (byte) value;
+        }
+
+        /**
+         * Convert the given value of the data type to the corresponding {@link NumericType}.
+         * 
+         * @param value The value.
+         * @return The numeric type.
+         */
+        @SuppressWarnings("unchecked")
+        public NumericType<N> toNumericType(double value)
+        {
+            if (dataType == Double.class)
+                return (NumericType<N>) (NumericType<?>) new DoubleType(value, precision);
+            else if (dataType == Float.class)
+                return (NumericType<N>) (NumericType<?>) new FloatType((float) value, precision);
+            else if (dataType == Long.class)
+                return (NumericType<N>) (NumericType<?>) new LongType((long) value);
+            else if (dataType == Integer.class)
+                return (NumericType<N>) (NumericType<?>) new IntType((int) value);
+            else if (dataType == Short.class)
+                return (NumericType<N>) (NumericType<?>) new ShortType((short) value);
+            else
+                return (NumericType<N>) (NumericType<?>) new ByteType((byte) value);
+        }
+
+        /**
+         * Return the hash code of the numeric type corresponding to the given value of the data type.
+         * 
+         * @param value The value.
+         * @return The same value as <code>toNumericType(value).hashCode()</code>.
+         */
+        public int getHashCode(double value)
+        {
+            if (dataType == Double.class || dataType == Float.class) {
+                final long bits;
+                if (precision != null)
+                    bits = Math.round(value * roundingFactor);
+                else if (dataType == Double.class)
+                    bits = Double.doubleToLongBits(value);
+                else
+                    return Float.floatToIntBits((float) value);
+                return (int) (bits ^ (bits >>> 32));
+            } else if (dataType == Long.class) {
+                final long bits = (long) value;
+                return (int) (bits ^ (bits >>> 32));
+            } else {
+                return (int) value;
+            }
+        }
+
+        /**
+         * Return the key of the numeric type corresponding to the given value of the data type.
+         * 
+         * @param value The value.
+         * @return The same value as <code>toNumericType(value).getKey()</code>.
+         */
+        public long getKey(double value)
+        {
+            if (dataType == Double.class || dataType == Float.class) {
+                if (precision != null)
+                    return Math.round(value * roundingFactor);
+                else if (dataType == Double.class)
+                    return Double.doubleToLongBits(value);
+                else
+                    return Double.doubleToLongBits((float) value);
+            } else {
+                return (long) value;
+            }
+        }
+    }
+
+    /**
+     * Cast the given value to the type of data this source returns.
+     * 
+     * @param value The value to cast.
+     * @return The value cast to the data type and converted back to <code>double</code>.
+     */
+    protected double castToDataType(double value)
+    {
+        if (dataType == Double.class)
+            return value;
+        else if (dataType == Float.class)
+            return (float) value;
+        else if (dataType == Long.class)
+            return (long) value;
+        else if (dataType == Integer.class)
+            return (int) value;
+        else if (dataType == Short.class)
+            return (short) value;
+        else
+            return (byte) value;
+    }
 }
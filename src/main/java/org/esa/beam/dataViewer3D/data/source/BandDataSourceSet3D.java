@@ -6,6 +6,7 @@ package org.esa.beam.dataViewer3D.data.source;
 import java.awt.Shape;
 import java.awt.geom.Area;
 import java.awt.image.RenderedImage;
+import java.io.IOException;
 import java.util.Iterator;
 
 import javax.media.jai.operator.MinDescriptor;
@@ -15,6 +16,9 @@ import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
 import org.esa.beam.dataViewer3D.data.type.NumericType;
 import org.esa.beam.framework.datamodel.Mask;
 
+import com.bc.ceres.core.ProgressMonitor;
+import com.bc.ceres.core.SubProgressMonitor;
+
 /**
  * A set of 3 {@link BandDataSource}s.
  * 
@@ -36,6 +40,15 @@ public class BandDataSourceSet3D<X extends Number, Y extends Number, Z extends N
     /** Z coordinate data source. */
     protected final BandDataSource<Z> zSource;
 
+    /** The source the x coordinates are read from (the x band source or its cached samples). */
+    protected DataSource<X> xData;
+
+    /** The source the y coordinates are read from (the y band source or its cached samples). */
+    protected DataSource<Y> yData;
+
+    /** The source the z coordinates are read from (the z band source or its cached samples). */
+    protected DataSource<Z> zData;
+
     /**
      * Create a new set of 3 band data sources.
      * 
@@ -50,6 +63,9 @@ public class BandDataSourceSet3D<X extends Number, Y extends Number, Z extends N
         this.xSource = xSource;
         this.ySource = ySource;
         this.zSource = zSource;
+        this.xData = xSource;
+        this.yData = ySource;
+        this.zData = zSource;
 
         // here we assume data source compatibility to be transitive, which should be ok
         if (!xSource.isCompatible(ySource) || !ySource.isCompatible(zSource))
@@ -95,6 +111,70 @@ public class BandDataSourceSet3D<X extends Number, Y extends Number, Z extends N
             getDataSource(i).setMask(effectiveShape, maskImage);
     }
 
+    /**
+     * Configure the loading of tiles in advance for all sources of this set.
+     * 
+     * @param tiles The maximum number of tiles loaded in advance by a single reader (<code>0</code> disables the
+     *            read-ahead).
+     * @param maxMemory The maximum amount of memory (in bytes) the tiles loaded in advance by the readers of all
+     *            sources can occupy; it is divided equally among the sources.
+     * 
+     * @see BandDataSource#setReadAhead(int, long)
+     */
+    public void setReadAhead(int tiles, long maxMemory)
+    {
+        for (int i = 0; i < 3; i++)
+            getDataSource(i).setReadAhead(tiles, maxMemory / 3);
+    }
+
+    /**
+     * Read the samples of the bands of this set from the given cache (and write them to the cache if they aren't cached
+     * yet).
+     * <p>
+     * Call this method after all other settings of the sources are done; the mask and the min/max values of the
+     * sources are still applied to the cached samples. The cache files stay mapped until the samples are released;
+     * the samples previously read from a cache are released by this call (see {@link #releaseSampleCache()}).
+     * 
+     * @param cache The cache to read the samples from. Pass <code>null</code> to read the bands directly again.
+     * @param progressMonitor The progress monitor notified about writing the cache files, may be <code>null</code>.
+     * 
+     * @throws IOException If the cache files cannot be written or mapped.
+     * 
+     * @see SampleCache#getDataSource(BandDataSource, ProgressMonitor)
+     */
+    public void setSampleCache(SampleCache cache, ProgressMonitor progressMonitor) throws IOException
+    {
+        releaseSampleCache();
+        if (cache != null) {
+            final ProgressMonitor pm = progressMonitor != null ? progressMonitor : ProgressMonitor.NULL;
+            pm.beginTask("Caching bands", 3); /* I18N */
+            try {
+                xData = cache.getDataSource(xSource, SubProgressMonitor.create(pm, 1));
+                yData = cache.getDataSource(ySource, SubProgressMonitor.create(pm, 1));
+                zData = cache.getDataSource(zSource, SubProgressMonitor.create(pm, 1));
+            } finally {
+                pm.done();
+            }
+        }
+    }
+
+    /**
+     * Unmap the cache files the samples of the bands are read from, and read the bands directly again.
+     * <p>
+     * This method mustn't be called while another thread reads the sources of this set.
+     * 
+     * @see SampleCache#release(DataSource)
+     */
+    public void releaseSampleCache()
+    {
+        SampleCache.release(xData);
+        SampleCache.release(yData);
+        SampleCache.release(zData);
+        xData = xSource;
+        yData = ySource;
+        zData = zSource;
+    }
+
     @Override
     public BandDataSource<?> getDataSource(int index)
     {
@@ -114,19 +194,19 @@ public class BandDataSourceSet3D<X extends Number, Y extends Number, Z extends N
     @Override
     public DataSource<X> getXSource()
     {
-        return xSource;
+        return xData;
     }
 
     @Override
     public DataSource<Y> getYSource()
     {
-        return ySource;
+        return yData;
     }
 
     @Override
     public DataSource<Z> getZSource()
     {
-        return zSource;
+        return zData;
     }
 
     @Override
@@ -136,11 +216,11 @@ public class BandDataSourceSet3D<X extends Number, Y extends Number, Z extends N
             private final PointFactory             pointFactory = createPointFactory();
 
             /** Iterator of the source for x values. */
-            private final Iterator<NumericType<X>> xIt          = xSource.numericTypeIterator();
+            private final Iterator<NumericType<X>> xIt          = xData.numericTypeIterator();
             /** Iterator of the source for y values. */
-            private final Iterator<NumericType<Y>> yIt          = ySource.numericTypeIterator();
+            private final Iterator<NumericType<Y>> yIt          = yData.numericTypeIterator();
             /** Iterator of the source for z values. */
-            private final Iterator<NumericType<Z>> zIt          = zSource.numericTypeIterator();
+            private final Iterator<NumericType<Z>> zIt          = zData.numericTypeIterator();
 
             @Override
             public boolean hasNext()
@@ -163,22 +243,36 @@ public class BandDataSourceSet3D<X extends Number, Y extends Number, Z extends N
         };
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All sources share the same mask, so the tiles of all bands are walked only once and the mask is tested only
+     * once for every pixel.
+     */
+    @Override
+    public PointReader pointReader()
+    {
+        if (BandPointReader.canRead(xData, yData, zData))
+            return new BandPointReader(null, xData, yData, zData);
+        return new BulkPointReader(xData, yData, zData);
+    }
+
     @Override
     public Iterator<X> xIterator()
     {
-        return xSource.iterator();
+        return xData.iterator();
     }
 
     @Override
     public Iterator<Y> yIterator()
     {
-        return ySource.iterator();
+        return yData.iterator();
     }
 
     @Override
     public Iterator<Z> zIterator()
     {
-        return zSource.iterator();
+        return zData.iterator();
     }
 
     /**
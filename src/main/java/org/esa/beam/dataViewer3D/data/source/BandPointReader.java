@@ -0,0 +1,289 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+
+import javax.media.jai.UnpackedImageData;
+
+/**
+ * A point reader reading several {@link BandDataSource}s sharing the same mask in lock-step.
+ * <p>
+ * The tiles are walked only once: for every tile, the tiles of all bands and the shared mask tile are unpacked
+ * together, and every pixel is tested against the mask only once. The pixels are returned in the iteration order of
+ * the sources, so the indices are the same as the ones of the sources' iterators.
+ * <p>
+ * Instances of this class are not thread-safe, every thread should use its own.
+ * 
+ * @author Martin Pecka
+ */
+public class BandPointReader implements PointReader
+{
+    /** The sources to read. */
+    private final BandDataSource<?>[]                   sources;
+
+    /** The decoders of the raw values of the sources. */
+    private final BandDataSource<?>.ValueDecoder[]      decoders;
+
+    /** The handlers of the unpacked tile data of the sources. */
+    private final BandDataSource<?>.TileDataHandler[]   handlers;
+
+    /**
+     * The loaders of the tiles of the sources (the first one also loads the mask tiles); the tiles of sources with
+     * <code>null</code> loaders are loaded directly.
+     */
+    private final TileReadAhead[]                       readAheads;
+
+    /** The tiles to read, in ascending order. */
+    private final int[]                                 tiles;
+
+    /** The tile geometry shared by all sources. */
+    private final int                                   tileWidth, tileSize, numXTiles, tileX1, tileY1;
+
+    /** The rectangle the pixels we are interested into reside in. */
+    private final Rectangle                             imageRect;
+
+    /** Index to the tiles array of the next tile to be read. */
+    private int                                         position         = 0;
+
+    /** Index of the current tile. */
+    private int                                         tileIndex        = -1;
+
+    /** Index of the next pixel to read in the current tile. */
+    private int                                         inTile;
+
+    /** The bounds of the unpacked part of the current tile (the upper bounds are exclusive). */
+    private int                                         rectX1, rectY1, rectX2, rectY2;
+
+    /** Offsets and strides of the unpacked data of the current tile of every source. */
+    private final int[]                                 dataBandOffsets, dataLineStrides, dataPixelStrides;
+
+    /** The unpacked mask of the current tile, <code>null</code> if there is no mask. */
+    private byte[]                                      mask             = null;
+
+    /** Offset and strides of the unpacked mask of the current tile. */
+    private int                                         maskBandOffset, maskLineStride, maskPixelStride;
+
+    /** The values of the last read block. */
+    private double[][]                                  lastValues       = null;
+
+    /** The decoded values of the row being read, one array for every source. */
+    private final double[][]                            rowValues;
+
+    /** The validity of the pixels of the row being read. */
+    private final boolean[]                             rowValid;
+
+    /** The number of entries already passed. */
+    private int                                         processedEntries = 0;
+
+    /**
+     * Create a reader reading the given tiles of the given sources.
+     * 
+     * @param tiles The tiles to read, in ascending order. If <code>null</code>, all tiles that can contain data are
+     *            read.
+     * @param sources The sources to read. They have to pass {@link #canRead(DataSource...)}.
+     * 
+     * @throws IllegalArgumentException If the sources cannot be read together.
+     */
+    public BandPointReader(int[] tiles, DataSource<?>... sources)
+    {
+        if (!canRead(sources))
+            throw new IllegalArgumentException(getClass() + ": The sources cannot be read together.");
+
+        this.sources = new BandDataSource<?>[sources.length];
+        for (int d = 0; d < sources.length; d++)
+            this.sources[d] = (BandDataSource<?>) sources[d];
+
+        final BandDataSource<?> first = this.sources[0];
+        this.tiles = tiles != null ? tiles : first.getDataTiles();
+        this.tileWidth = first.sourceImage.getTileWidth();
+        this.tileSize = first.getTileSize();
+        this.numXTiles = first.numXTiles;
+        this.tileX1 = first.tileX1;
+        this.tileY1 = first.tileY1;
+        this.imageRect = first.imageRect;
+        this.inTile = tileSize;
+
+        decoders = new BandDataSource<?>.ValueDecoder[sources.length];
+        handlers = new BandDataSource<?>.TileDataHandler[sources.length];
+        readAheads = new TileReadAhead[sources.length];
+        dataBandOffsets = new int[sources.length];
+        dataLineStrides = new int[sources.length];
+        dataPixelStrides = new int[sources.length];
+        rowValues = new double[sources.length][tileWidth];
+        rowValid = new boolean[tileWidth];
+        for (int d = 0; d < sources.length; d++) {
+            final BandDataSource<?> source = this.sources[d];
+            decoders[d] = source.createValueDecoder();
+            handlers[d] = source.createTileDataHandler();
+
+            final int depth = source.getReadAheadDepth();
+            if (depth > 0) {
+                // the mask is shared, so it is enough to load it with the tiles of the first source
+                readAheads[d] = new TileReadAhead(source.sourceImage, d == 0 ? source.maskImage : null, this.tiles,
+                        numXTiles, tileX1, tileY1, depth);
+            }
+        }
+    }
+
+    /**
+     * Return <code>true</code> if the given sources can be read together by this reader.
+     * <p>
+     * That is if all of them are band data sources with the same tile grid and the same mask.
+     * 
+     * @param sources The sources to check.
+     * @return Whether the given sources can be read together.
+     */
+    public static boolean canRead(DataSource<?>... sources)
+    {
+        if (!TileCursor.isTiled(sources) || !(sources[0] instanceof BandDataSource<?>))
+            return false;
+
+        final BandDataSource<?> first = (BandDataSource<?>) sources[0];
+        for (DataSource<?> source : sources) {
+            if (!(source instanceof BandDataSource<?>))
+                return false;
+            final BandDataSource<?> band = (BandDataSource<?>) source;
+            if (band.maskImage != first.maskImage || band.maskShape != first.maskShape
+                    || band.numXTiles != first.numXTiles || band.tileX1 != first.tileX1
+                    || band.tileY1 != first.tileY1 || !band.imageRect.equals(first.imageRect)
+                    || band.sourceImage.getTileWidth() != first.sourceImage.getTileWidth())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return inTile < tileSize || position < tiles.length;
+    }
+
+    @Override
+    public int read(int[] indices, double[][] values)
+    {
+        lastValues = values;
+
+        final int dimensions = sources.length;
+        int count = 0;
+        while (count < indices.length) {
+            if (inTile >= tileSize && !loadNextTile())
+                break;
+
+            // read the rest of the current row, but not more pixels than can be returned
+            final int x = inTile % tileWidth, y = inTile / tileWidth;
+            final int rowCount = Math.min(tileWidth - x, indices.length - count);
+            final int from = Math.max(x, rectX1), to = Math.min(x + rowCount, rectX2);
+
+            if (y >= rectY1 && y < rectY2 && from < to) {
+                final int length = to - from, dx = from - rectX1, dy = y - rectY1;
+
+                // the mask is tested once for all sources, and every source only filters the still valid pixels
+                BandDataSource.getMaskValues(mask, maskBandOffset + dy * maskLineStride + dx * maskPixelStride,
+                        maskPixelStride, length, rowValid, 0);
+                for (int d = 0; d < dimensions; d++) {
+                    decoders[d].decode(handlers[d], dataBandOffsets[d] + dy * dataLineStrides[d] + dx
+                            * dataPixelStrides[d], dataPixelStrides[d], length, rowValues[d], rowValid, 0);
+                }
+
+                final int firstIndex = tileIndex * tileSize + y * tileWidth + from;
+                for (int i = 0; i < length; i++) {
+                    if (rowValid[i]) {
+                        indices[count] = firstIndex + i;
+                        for (int d = 0; d < dimensions; d++)
+                            values[d][count] = rowValues[d][i];
+                        count++;
+                    }
+                }
+            }
+
+            inTile += rowCount;
+            processedEntries += rowCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * Load and unpack the next tile of all sources and the mask.
+     * 
+     * @return <code>false</code> if all tiles have already been read.
+     */
+    private boolean loadNextTile()
+    {
+        if (position >= tiles.length)
+            return false;
+
+        tileIndex = tiles[position++];
+        inTile = 0;
+
+        Rectangle tileInterestRect = null;
+        for (int d = 0; d < sources.length; d++) {
+            final BandDataSource<?> source = sources[d];
+            final Raster[] loaded;
+            if (readAheads[d] != null) {
+                loaded = readAheads[d].getTiles(tileIndex);
+            } else {
+                final int tileX = tileX1 + tileIndex % numXTiles, tileY = tileY1 + tileIndex / numXTiles;
+                loaded = new Raster[] { source.sourceImage.getTile(tileX, tileY),
+                        d == 0 && source.maskImage != null ? source.maskImage.getTile(tileX, tileY) : null };
+            }
+
+            final Raster tile = loaded[0];
+            if (d == 0) {
+                tileInterestRect = imageRect.intersection(tile.getBounds());
+                rectX1 = tileInterestRect.x - tile.getMinX();
+                rectY1 = tileInterestRect.y - tile.getMinY();
+                rectX2 = rectX1 + tileInterestRect.width;
+                rectY2 = rectY1 + tileInterestRect.height;
+
+                if (loaded[1] != null) {
+                    final UnpackedImageData maskData = source.maskAccessor.getPixels(loaded[1], tileInterestRect,
+                            DataBuffer.TYPE_BYTE, false);
+                    mask = maskData.getByteData(0);
+                    maskBandOffset = maskData.bandOffsets[0];
+                    maskLineStride = maskData.lineStride;
+                    maskPixelStride = maskData.pixelStride;
+                } else {
+                    mask = null;
+                }
+            }
+
+            final UnpackedImageData tileData = source.dataAccessor.getPixels(tile, tileInterestRect,
+                    source.dataAccessor.sampleType, false);
+            handlers[d].loadTileData(tileData);
+            dataBandOffsets[d] = tileData.bandOffsets[0];
+            dataLineStrides[d] = tileData.lineStride;
+            dataPixelStrides[d] = tileData.pixelStride;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Number getNumber(int dimension, int i)
+    {
+        return decoders[dimension].toNumber(lastValues[dimension][i]);
+    }
+
+    @Override
+    public int getHashCode(int dimension, int i)
+    {
+        return decoders[dimension].getHashCode(lastValues[dimension][i]);
+    }
+
+    @Override
+    public long getKey(int dimension, int i)
+    {
+        return decoders[dimension].getKey(lastValues[dimension][i]);
+    }
+
+    @Override
+    public int getProcessedEntries()
+    {
+        return processedEntries;
+    }
+}
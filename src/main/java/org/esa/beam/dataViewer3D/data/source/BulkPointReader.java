@@ -0,0 +1,140 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.util.BitSet;
+
+/**
+ * A point reader combining the {@link BulkReader}s of any data sources.
+ * <p>
+ * Tiles not containing any data in some of the sources are skipped (see {@link TileCursor}). Every source is read
+ * separately, so this reader is only a fallback for sources no specialized reader exists for.
+ * 
+ * @author Martin Pecka
+ */
+public class BulkPointReader implements PointReader
+{
+    /** The sources to read. */
+    private final DataSource<?>[] sources;
+
+    /** The cursor walking over the runs of tiles to read. */
+    private final TileCursor      cursor;
+
+    /** The readers of the current run of tiles, <code>null</code> if no run has been entered yet. */
+    private BulkReader<?>[]       readers          = null;
+
+    /** The readers the last read block has been read by. */
+    private BulkReader<?>[]       lastReaders      = null;
+
+    /** The values of the entries of the last read block. */
+    private double[][]            blockValues      = null;
+    /** The validity of the entries of the last read block. */
+    private BitSet[]              blockValid       = null;
+
+    /** Indices of the returned points to the last read block. */
+    private int[]                 positions        = null;
+
+    /** Index of the first entry of the next block. */
+    private int                   blockStart       = 0;
+
+    /** The number of entries already read. */
+    private int                   processedEntries = 0;
+
+    /**
+     * Create a reader reading all tiles that can contain data in all the given sources.
+     * 
+     * @param sources The sources to read.
+     */
+    public BulkPointReader(DataSource<?>... sources)
+    {
+        this(new TileCursor(sources), sources);
+    }
+
+    /**
+     * Create a reader reading the runs of tiles the given cursor walks over.
+     * 
+     * @param cursor The cursor walking over the runs of tiles to read. It mustn't have been moved yet.
+     * @param sources The sources to read.
+     */
+    public BulkPointReader(TileCursor cursor, DataSource<?>... sources)
+    {
+        this.sources = sources;
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (readers == null || !readers[0].hasNext()) {
+            if (!cursor.next())
+                return false;
+
+            readers = new BulkReader<?>[sources.length];
+            for (int d = 0; d < sources.length; d++)
+                readers[d] = cursor.bulkReader(sources[d]);
+            blockStart = cursor.getFirstIndex();
+        }
+        return true;
+    }
+
+    @Override
+    public int read(int[] indices, double[][] values)
+    {
+        if (!hasNext())
+            return 0;
+
+        if (blockValues == null || blockValues[0].length != indices.length) {
+            blockValues = new double[sources.length][indices.length];
+            blockValid = new BitSet[sources.length];
+            for (int d = 0; d < sources.length; d++)
+                blockValid[d] = new BitSet(indices.length);
+            positions = new int[indices.length];
+        }
+
+        int read = Integer.MAX_VALUE;
+        for (int d = 0; d < sources.length; d++)
+            read = Math.min(read, readers[d].read(blockValues[d], blockValid[d]));
+
+        for (int d = 1; d < sources.length; d++)
+            blockValid[0].and(blockValid[d]);
+
+        int count = 0;
+        for (int j = blockValid[0].nextSetBit(0); j >= 0 && j < read; j = blockValid[0].nextSetBit(j + 1)) {
+            indices[count] = blockStart + j;
+            positions[count] = j;
+            for (int d = 0; d < sources.length; d++)
+                values[d][count] = blockValues[d][j];
+            count++;
+        }
+
+        lastReaders = readers;
+        blockStart += read;
+        processedEntries += read;
+        return count;
+    }
+
+    @Override
+    public Number getNumber(int dimension, int i)
+    {
+        return lastReaders[dimension].getNumber(positions[i]);
+    }
+
+    @Override
+    public int getHashCode(int dimension, int i)
+    {
+        return lastReaders[dimension].getHashCode(positions[i]);
+    }
+
+    @Override
+    public long getKey(int dimension, int i)
+    {
+        return lastReaders[dimension].getKey(positions[i]);
+    }
+
+    @Override
+    public int getProcessedEntries()
+    {
+        return processedEntries;
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.util.BitSet;
+
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+
+/**
+ * A reader that reads the values of a data source in blocks of primitive values, so that no objects have to be
+ * created for the single entries.
+ * <p>
+ * The reader reads the entries in the same order as the iterators of the data source return them. The values of the
+ * last read block can be converted to numbers and {@link NumericType}s on demand.
+ * 
+ * @author Martin Pecka
+ * @param <N> The type of values read from the data source.
+ */
+public interface BulkReader<N extends Number>
+{
+    /**
+     * Return <code>true</code> if there are entries that haven't been read yet.
+     * 
+     * @return <code>true</code> if there are entries that haven't been read yet.
+     */
+    boolean hasNext();
+
+    /**
+     * Read the next block of entries.
+     * <p>
+     * Reads <code>values.length</code> entries or less if there are not enough entries left. The <code>i</code>-th
+     * bit of <code>valid</code> is set iff the <code>i</code>-th read value is valid; the values of invalid entries
+     * are undefined. Bits following the read block are left untouched.
+     * 
+     * @param values The array to read the values into. The reader keeps a reference to this array until the next call
+     *            to this method.
+     * @param valid The bitset to write the validity of the read values into.
+     * @return The number of entries read.
+     */
+    int read(double[] values, BitSet valid);
+
+    /**
+     * Return the <code>i</code>-th value of the last read block as a number of the data source's type.
+     * 
+     * @param i Index to the last read block.
+     * @return The <code>i</code>-th value of the last read block, <code>null</code> if the value isn't valid.
+     */
+    N getNumber(int i);
+
+    /**
+     * Return the <code>i</code>-th value of the last read block as a {@link NumericType}.
+     * 
+     * @param i Index to the last read block.
+     * @return The <code>i</code>-th value of the last read block, <code>null</code> if the value isn't valid.
+     */
+    NumericType<N> getNumericType(int i);
+
+    /**
+     * Return the hash code of the <code>i</code>-th value of the last read block.
+     * 
+     * @param i Index to the last read block.
+     * @return The same value as <code>getNumericType(i).hashCode()</code> for valid values.
+     */
+    int getHashCode(int i);
+
+    /**
+     * Return the key of the <code>i</code>-th value of the last read block.
+     * 
+     * @param i Index to the last read block.
+     * @return The same value as <code>getNumericType(i).getKey()</code> for valid values.
+     */
+    long getKey(int i);
+}
@@ -57,4 +57,12 @@ public interface DataSource<N extends Number> extends Iterable<N>
      */
     ValidatingIterator<NumericType<N>> numericTypeIterator();
 
+    /**
+     * Return a reader that reads the input data in blocks of primitive values, in the same order as
+     * {@link #iterator()} iterates over them.
+     * 
+     * @return A reader that reads the input data in blocks of primitive values.
+     */
+    BulkReader<N> bulkReader();
+
 }
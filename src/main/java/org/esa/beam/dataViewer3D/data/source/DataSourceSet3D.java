@@ -60,4 +60,13 @@ public interface DataSourceSet3D<X extends Number, Y extends Number, Z extends N
      * @return The iterator.
      */
     Iterator<Z> zIterator();
+
+    /**
+     * Return a reader reading the points valid in all sources of this set in lock-step.
+     * <p>
+     * The dimensions of the read values correspond to the x/y/z coordinates.
+     * 
+     * @return The reader.
+     */
+    PointReader pointReader();
 }
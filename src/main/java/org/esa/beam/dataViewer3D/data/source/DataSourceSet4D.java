@@ -74,4 +74,13 @@ public interface DataSourceSet4D<X extends Number, Y extends Number, Z extends N
      * @return The iterator.
      */
     Iterator<W> wIterator();
+
+    /**
+     * Return a reader reading the points valid in all sources of this set in lock-step.
+     * <p>
+     * The dimensions of the read values correspond to the x/y/z/w coordinates.
+     * 
+     * @return The reader.
+     */
+    PointReader pointReader();
 }
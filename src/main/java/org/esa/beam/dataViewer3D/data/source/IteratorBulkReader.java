@@ -0,0 +1,87 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.util.BitSet;
+
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.util.ValidatingIterator;
+
+/**
+ * A bulk reader reading the values from a {@link NumericType} iterator.
+ * <p>
+ * This is a fallback for data sources that cannot read their data in a more efficient way. It doesn't save any
+ * allocations, but allows such sources to be used wherever a {@link BulkReader} is required.
+ * 
+ * @author Martin Pecka
+ * @param <N> The type of values read from the data source.
+ */
+public class IteratorBulkReader<N extends Number> implements BulkReader<N>
+{
+    /** The iterator to read the values from. */
+    protected final ValidatingIterator<NumericType<N>> it;
+
+    /** The values of the last read block. */
+    protected NumericType<N>[]                        lastBlock;
+
+    /**
+     * @param it The iterator to read the values from.
+     */
+    public IteratorBulkReader(ValidatingIterator<NumericType<N>> it)
+    {
+        this.it = it;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return it.hasNext();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public int read(double[] values, BitSet valid)
+    {
+        if (lastBlock == null || lastBlock.length < values.length)
+            lastBlock = (NumericType<N>[]) new NumericType<?>[values.length];
+
+        int i = 0;
+        for (; i < values.length && it.hasNext(); i++) {
+            final NumericType<N> value = it.next();
+            if (value != null && it.isLastReturnedValid()) {
+                lastBlock[i] = value;
+                values[i] = value.getNumber().doubleValue();
+                valid.set(i);
+            } else {
+                lastBlock[i] = null;
+                valid.clear(i);
+            }
+        }
+        return i;
+    }
+
+    @Override
+    public N getNumber(int i)
+    {
+        return lastBlock[i] != null ? lastBlock[i].getNumber() : null;
+    }
+
+    @Override
+    public NumericType<N> getNumericType(int i)
+    {
+        return lastBlock[i];
+    }
+
+    @Override
+    public int getHashCode(int i)
+    {
+        return lastBlock[i] != null ? lastBlock[i].hashCode() : 0;
+    }
+
+    @Override
+    public long getKey(int i)
+    {
+        return lastBlock[i] != null ? lastBlock[i].getKey() : 0;
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import javax.media.jai.UnpackedImageData;
+
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.BufferUtils;
+import org.esa.beam.util.ValidatingIterator;
+
+/**
+ * A data source reading the decoded samples of a band from a memory-mapped cache file (see {@link SampleCache}).
+ * <p>
+ * The samples are read directly from the mapped file, so neither the band's image nor its expression is computed
+ * again. Only the things that can differ between computations are applied when reading: the mask of the band source
+ * (the ROI and the valid masks) and its min/max restriction.
+ * <p>
+ * The file stays mapped until {@link #release()} is called (or the source is garbage collected).
+ * 
+ * @author Martin Pecka
+ * @param <N> Type of the band values.
+ */
+public class MappedDataSource<N extends Number> extends AbstractDataSource<N> implements TiledDataSource<N>,
+        RandomAccessDataSource<N>
+{
+    /** The band source whose samples are cached. It defines the mask, the min/max values and the tile geometry. */
+    protected final BandDataSource<N>              source;
+
+    /** The mapped parts of the cache file. */
+    protected final MappedByteBuffer[]             mappings;
+
+    /** The mapped samples; every buffer contains <code>tilesPerBuffer</code> whole tiles. */
+    protected final DoubleBuffer[]                 samples;
+
+    /** The number of tiles in every buffer. */
+    protected final int                            tilesPerBuffer;
+
+    /** The tile geometry. */
+    protected final int                            tileWidth, tileSize;
+
+    /** Whether the min and max are defined. */
+    protected final boolean                        hasMin, hasMax;
+
+    /** The min and max values as primitives. */
+    protected final double                         minValue, maxValue;
+
+    /** The decoder converting the samples to numbers. */
+    protected final BandDataSource<N>.ValueDecoder decoder;
+
+    /** Whether the mapped buffers have been released. */
+    protected volatile boolean                     released = false;
+
+    /**
+     * Create the data source.
+     * 
+     * @param source The band source whose samples are cached.
+     * @param mappings The mapped parts of the cache file containing the samples as little-endian doubles, in the
+     *            iteration order of the source; invalid samples are {@link Double#NaN}. Every part has to contain
+     *            <code>tilesPerBuffer</code> whole tiles (except the last one).
+     * @param tilesPerBuffer The number of tiles in every part.
+     */
+    public MappedDataSource(BandDataSource<N> source, MappedByteBuffer[] mappings, int tilesPerBuffer)
+    {
+        super(source.getDefinedMin(), source.getDefinedMax());
+        this.source = source;
+        this.mappings = mappings;
+        this.samples = new DoubleBuffer[mappings.length];
+        for (int i = 0; i < mappings.length; i++)
+            samples[i] = mappings[i].duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        this.tilesPerBuffer = tilesPerBuffer;
+        this.tileWidth = source.sourceImage.getTileWidth();
+        this.tileSize = source.getTileSize();
+        this.hasMin = definedMin != null;
+        this.hasMax = definedMax != null;
+        this.minValue = hasMin ? definedMin.doubleValue() : 0;
+        this.maxValue = hasMax ? definedMax.doubleValue() : 0;
+        this.decoder = source.createValueDecoder();
+    }
+
+    /**
+     * Unmap the cache file. The source cannot be read afterwards. Calling this method on a released source has no
+     * effect.
+     * <p>
+     * This method mustn't be called while another thread reads the source; reading the unmapped file could crash the
+     * JVM.
+     */
+    public synchronized void release()
+    {
+        if (released)
+            return;
+
+        released = true;
+        for (MappedByteBuffer mapping : mappings)
+            BufferUtils.free(mapping);
+    }
+
+    /**
+     * Return <code>true</code> if the cache file has been unmapped.
+     * 
+     * @return Whether the source has been released.
+     */
+    public boolean isReleased()
+    {
+        return released;
+    }
+
+    @Override
+    public int size()
+    {
+        return source.size();
+    }
+
+    @Override
+    public String getName()
+    {
+        return source.getName();
+    }
+
+    @Override
+    public boolean isCompatible(DataSource<?> other)
+    {
+        if (other instanceof MappedDataSource<?>)
+            return source.isCompatible(((MappedDataSource<?>) other).source);
+        return source.isCompatible(other);
+    }
+
+    @Override
+    public int getNumTiles()
+    {
+        return source.getNumTiles();
+    }
+
+    @Override
+    public int getTileSize()
+    {
+        return tileSize;
+    }
+
+    @Override
+    public int[] getDataTiles()
+    {
+        return source.getDataTiles();
+    }
+
+    @Override
+    public BulkReader<N> bulkReader()
+    {
+        return new MappedBulkReader(0, getNumTiles() - 1);
+    }
+
+    @Override
+    public BulkReader<N> bulkReader(int firstTile, int lastTile)
+    {
+        if (firstTile < 0 || lastTile >= getNumTiles() || firstTile > lastTile)
+            throw new IndexOutOfBoundsException();
+        return new MappedBulkReader(firstTile, lastTile);
+    }
+
+    @Override
+    public RandomAccessReader<N> randomAccessReader()
+    {
+        return new MappedBulkReader(0, getNumTiles() - 1);
+    }
+
+    @Override
+    public ValidatingIterator<N> iterator()
+    {
+        final MappedBulkReader reader = new MappedBulkReader(0, getNumTiles() - 1);
+        return new ValidatingIterator<N>() {
+            /** The values of the current block. */
+            private final double[] values = new double[tileSize];
+            /** The validity of the values of the current block. */
+            private final BitSet   valid  = new BitSet(tileSize);
+            /** The number of values in the current block, and index of the next value to return. */
+            private int            read   = 0, position = 0;
+            /** The last returned value. */
+            private N              last   = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                return position < read || reader.hasNext();
+            }
+
+            @Override
+            public N next()
+            {
+                if (position >= read) {
+                    if (!reader.hasNext())
+                        throw new NoSuchElementException();
+                    read = reader.read(values, valid);
+                    position = 0;
+                }
+                return last = reader.getNumber(position++);
+            }
+
+            @Override
+            public boolean isLastReturnedValid()
+            {
+                return last != null;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    protected NumericType<N> getNumericType(N number)
+    {
+        if (number == null)
+            return null;
+        return decoder.toNumericType(number.doubleValue());
+    }
+
+    /**
+     * A reader reading the samples of a range of tiles from the mapped buffers.
+     * 
+     * @author Martin Pecka
+     */
+    private class MappedBulkReader implements RandomAccessReader<N>
+    {
+        /** The buffers this reader reads (own duplicates, so that readers don't share their positions). */
+        private final DoubleBuffer[] buffers    = new DoubleBuffer[samples.length];
+
+        /** Index of the next entry to read, and index of the entry following the last one to read. */
+        private int                  index, endIndex;
+
+        /** The tile whose mask is loaded. */
+        private int                  loadedTile = -1;
+
+        /** Whether the loaded tile can contain any data. */
+        private boolean              tileContainsData;
+
+        /** The unpacked mask of the loaded tile, <code>null</code> if there is no mask. */
+        private byte[]               mask;
+
+        /** Offset and strides of the unpacked mask. */
+        private int                  maskBandOffset, maskLineStride, maskPixelStride;
+
+        /** The bounds of the unpacked part of the loaded tile (the upper bounds are exclusive). */
+        private int                  rectX1, rectY1, rectX2, rectY2;
+
+        /** The values of the last read block. */
+        private double[]             lastValues = null;
+
+        /** The validity of the values of the last read block. */
+        private BitSet               lastValid  = null;
+
+        /**
+         * Create a reader reading the given range of tiles.
+         * 
+         * @param firstTile Index of the first tile to read.
+         * @param lastTile Index of the last tile to read (inclusive).
+         * 
+         * @throws IllegalStateException If the source has been released.
+         */
+        public MappedBulkReader(int firstTile, int lastTile) throws IllegalStateException
+        {
+            if (released)
+                throw new IllegalStateException(MappedDataSource.class + ": The source has already been released.");
+            index = firstTile * tileSize;
+            endIndex = (lastTile + 1) * tileSize;
+            for (int i = 0; i < samples.length; i++)
+                buffers[i] = samples[i].duplicate();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return index < endIndex;
+        }
+
+        @Override
+        public void seek(int index) throws IndexOutOfBoundsException
+        {
+            if (index < 0 || index > endIndex)
+                throw new IndexOutOfBoundsException("Cannot seek to index " + index);
+            this.index = index;
+        }
+
+        @Override
+        public int read(double[] values, BitSet valid)
+        {
+            lastValues = values;
+            lastValid = valid;
+
+            int read = 0;
+            while (read < values.length && index < endIndex) {
+                final int tile = index / tileSize, inTile = index % tileSize;
+                if (tile != loadedTile)
+                    loadTile(tile);
+
+                final int count = Math.min(values.length - read, tileSize - inTile);
+                if (!tileContainsData) {
+                    valid.clear(read, read + count);
+                } else {
+                    final DoubleBuffer buffer = buffers[tile / tilesPerBuffer];
+                    final int offset = (tile % tilesPerBuffer) * tileSize + inTile;
+                    for (int i = 0; i < count; i++) {
+                        final double value = buffer.get(offset + i);
+                        values[read + i] = value;
+                        // invalid samples are NaN, so they fail all the comparisons
+                        if (value == value && (!hasMin || value >= minValue) && (!hasMax || value <= maxValue)
+                                && isInMask(inTile + i))
+                            valid.set(read + i);
+                        else
+                            valid.clear(read + i);
+                    }
+                }
+
+                read += count;
+                index += count;
+            }
+
+            return read;
+        }
+
+        /**
+         * Return <code>true</code> if the given pixel of the loaded tile is set in the mask.
+         * 
+         * @param inTile Index of the pixel in the tile.
+         * @return Whether the pixel is set in the mask.
+         */
+        private boolean isInMask(int inTile)
+        {
+            if (mask == null)
+                return true;
+
+            final int x = inTile % tileWidth, y = inTile / tileWidth;
+            if (x < rectX1 || x >= rectX2 || y < rectY1 || y >= rectY2)
+                return false;
+
+            return mask[maskBandOffset + (y - rectY1) * maskLineStride + (x - rectX1) * maskPixelStride] != 0;
+        }
+
+        /**
+         * Load the mask of the given tile.
+         * 
+         * @param tile Index of the tile.
+         */
+        private void loadTile(int tile)
+        {
+            loadedTile = tile;
+            tileContainsData = source.isDataTile(tile);
+            mask = null;
+            if (!tileContainsData || source.maskImage == null)
+                return;
+
+            final Raster maskTile = source.maskImage.getTile(source.tileX1 + tile % source.numXTiles, source.tileY1
+                    + tile / source.numXTiles);
+            final Rectangle tileInterestRect = source.imageRect.intersection(maskTile.getBounds());
+            rectX1 = tileInterestRect.x - maskTile.getMinX();
+            rectY1 = tileInterestRect.y - maskTile.getMinY();
+            rectX2 = rectX1 + tileInterestRect.width;
+            rectY2 = rectY1 + tileInterestRect.height;
+
+            final UnpackedImageData maskData = source.maskAccessor.getPixels(maskTile, tileInterestRect,
+                    DataBuffer.TYPE_BYTE, false);
+            mask = maskData.getByteData(0);
+            maskBandOffset = maskData.bandOffsets[0];
+            maskLineStride = maskData.lineStride;
+            maskPixelStride = maskData.pixelStride;
+        }
+
+        @Override
+        public N getNumber(int i)
+        {
+            if (!lastValid.get(i))
+                return null;
+            return decoder.toNumber(lastValues[i]);
+        }
+
+        @Override
+        public NumericType<N> getNumericType(int i)
+        {
+            if (!lastValid.get(i))
+                return null;
+            return decoder.toNumericType(lastValues[i]);
+        }
+
+        @Override
+        public int getHashCode(int i)
+        {
+            if (!lastValid.get(i))
+                return 0;
+            return decoder.getHashCode(lastValues[i]);
+        }
+
+        @Override
+        public long getKey(int i)
+        {
+            if (!lastValid.get(i))
+                return 0;
+            return decoder.getKey(lastValues[i]);
+        }
+    }
+}
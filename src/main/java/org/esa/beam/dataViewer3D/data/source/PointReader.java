@@ -0,0 +1,76 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+/**
+ * A reader that reads several data sources in lock-step and returns only the points valid in all of them.
+ * <p>
+ * The points are returned in blocks of primitive values together with their indices in the iteration order of the
+ * sources, so that no objects have to be created for the single points. The values of the last read block can be
+ * converted to numbers on demand.
+ * 
+ * @author Martin Pecka
+ */
+public interface PointReader
+{
+    /**
+     * Return <code>true</code> if there are entries that haven't been read yet.
+     * 
+     * @return <code>true</code> if there are entries that haven't been read yet.
+     */
+    boolean hasNext();
+
+    /**
+     * Read the next block of valid points.
+     * <p>
+     * Reads at most <code>indices.length</code> points. The <code>i</code>-th read point has index
+     * <code>indices[i]</code> in the iteration order of the sources, and its value in the <code>d</code>-th dimension
+     * is <code>values[d][i]</code>. Less points (even none) can be returned if there are invalid entries, so use
+     * {@link #hasNext()} to find out whether all entries have been read.
+     * 
+     * @param indices The array to read the indices of the points into.
+     * @param values The arrays to read the values of the points into, one for every dimension; they have to be at least
+     *            as long as <code>indices</code>. The reader keeps a reference to them until the next call to this
+     *            method.
+     * @return The number of points read.
+     */
+    int read(int[] indices, double[][] values);
+
+    /**
+     * Return the value of the <code>i</code>-th point of the last read block in the given dimension as a number of
+     * the corresponding data source's type.
+     * 
+     * @param dimension The dimension.
+     * @param i Index to the last read block.
+     * @return The value.
+     */
+    Number getNumber(int dimension, int i);
+
+    /**
+     * Return the hash code of the value of the <code>i</code>-th point of the last read block in the given dimension.
+     * 
+     * @param dimension The dimension.
+     * @param i Index to the last read block.
+     * @return The same value as the hash code of the {@link org.esa.beam.dataViewer3D.data.type.NumericType}
+     *         corresponding to the value.
+     */
+    int getHashCode(int dimension, int i);
+
+    /**
+     * Return the key of the value of the <code>i</code>-th point of the last read block in the given dimension.
+     * 
+     * @param dimension The dimension.
+     * @param i Index to the last read block.
+     * @return The same value as the key ({@link org.esa.beam.dataViewer3D.data.type.NumericType#getKey()}) of the
+     *         {@link org.esa.beam.dataViewer3D.data.type.NumericType} corresponding to the value.
+     */
+    long getKey(int dimension, int i);
+
+    /**
+     * Return the number of entries this reader has already passed, including the invalid ones.
+     * 
+     * @return The number of entries this reader has already passed.
+     */
+    int getProcessedEntries();
+}
@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+/**
+ * A data source whose entries can be read in any order, without walking over the preceding entries.
+ * 
+ * @author Martin Pecka
+ * @param <N> The type of values read from the data source.
+ */
+public interface RandomAccessDataSource<N extends Number> extends DataSource<N>
+{
+    /**
+     * Return a reader that can read any entry or any block of entries of this source in constant time.
+     * <p>
+     * The reader is positioned at the first entry. The returned readers are independent of each other, so they can be
+     * used concurrently from different threads.
+     * 
+     * @return The reader.
+     */
+    RandomAccessReader<N> randomAccessReader();
+}
@@ -0,0 +1,30 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+/**
+ * A bulk reader that can be moved to any entry of its data source in constant time.
+ * <p>
+ * After {@link #seek(int)}, the next call to {@link #read(double[], java.util.BitSet)} reads the block of entries
+ * starting with the given one; a single entry is read by passing arrays of length 1.
+ * <p>
+ * Instances of this interface are not thread-safe, every thread should use its own.
+ * 
+ * @author Martin Pecka
+ * @param <N> The type of values read from the data source.
+ */
+public interface RandomAccessReader<N extends Number> extends BulkReader<N>
+{
+    /**
+     * Move the reader so that the next read block starts with the entry with the given index (in the iteration order
+     * of the data source). The reader can be moved both forwards and backwards.
+     * 
+     * @param index Index of the entry to read next. Seeking just past the last entry is allowed, then
+     *            {@link #hasNext()} returns <code>false</code>.
+     * 
+     * @throws IndexOutOfBoundsException If the index is negative or greater than the number of entries the iterators
+     *             of the source return.
+     */
+    void seek(int index) throws IndexOutOfBoundsException;
+}
@@ -0,0 +1,359 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.RasterDataNode;
+import org.esa.beam.framework.datamodel.VirtualBand;
+import org.esa.beam.framework.dataop.barithm.BandArithmetic;
+
+import com.bc.ceres.core.ProgressMonitor;
+import com.bc.jexp.ParseException;
+
+/**
+ * An on-disk cache of the decoded samples of bands.
+ * <p>
+ * The decoded (geophysical) samples of a band are stored in a flat file of little-endian doubles, in the iteration
+ * order of the band's data source; samples that aren't valid in the band itself are stored as {@link Double#NaN}. The
+ * file is identified by the product file, the band name (or the expression of a virtual band), the modification time
+ * of the product file and the data type of the source, so a modified product is never read from a stale cache. The
+ * scaling, the no-data value and the valid-pixel expression of the band, and the same properties of all bands
+ * referenced by its expressions, are part of the key too, so changing them in memory doesn't read a stale cache either.
+ * Only the raster data of a band changed in memory without saving the product isn't detected. The mask and the
+ * min/max restriction of the source aren't part of the cached samples, so the same cache file serves all computations
+ * with different ROIs and min/max settings.
+ * <p>
+ * The cached samples are read through {@link MappedDataSource}s, which map the file to memory; release them (see
+ * {@link #release(DataSource)}) when the computation is done.
+ * <p>
+ * The total size of the cache files is capped: when a new file is written, the least recently used files exceeding
+ * the cap are deleted (which also removes the files of modified products and of bands that aren't used anymore).
+ * 
+ * @author Martin Pecka
+ */
+public class SampleCache
+{
+    /** The suffix of the cache files. */
+    protected static final String FILE_SUFFIX      = ".samples";
+
+    /** The suffix of the temporary files the cache files are written to. */
+    protected static final String TEMP_SUFFIX      = ".tmp";
+
+    /** The number of samples written to the cache file at once. */
+    protected static final int    WRITE_BLOCK_SIZE = 4096;
+
+    /** The default maximum total size of the cache files (in bytes). */
+    public static final long      DEFAULT_MAX_SIZE = 4L << 30;
+
+    /** The age after which a temporary file is considered to be left over by a crashed computation (in ms). */
+    protected static final long   TEMP_FILE_AGE    = 24L * 60 * 60 * 1000;
+
+    /** The directory the cache files are stored in. */
+    protected final File          directory;
+
+    /** The maximum total size of the cache files (in bytes). */
+    protected final long          maxSize;
+
+    /**
+     * Create the cache storing its files in the given directory, whose total size is capped by
+     * {@link #DEFAULT_MAX_SIZE}.
+     * 
+     * @param directory The directory to store the cache files in. It is created if it doesn't exist.
+     */
+    public SampleCache(File directory)
+    {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create the cache storing its files in the given directory.
+     * 
+     * @param directory The directory to store the cache files in. It is created if it doesn't exist.
+     * @param maxSize The maximum total size of the cache files (in bytes). The file just written is kept even if it
+     *            is bigger.
+     */
+    public SampleCache(File directory, long maxSize)
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return a data source reading the samples of the given band source from the cache.
+     * <p>
+     * If the samples aren't cached yet, they are read from the band and written to the cache first.
+     * 
+     * @param source The band source.
+     * @param progressMonitor The progress monitor notified about writing the cache file, may be <code>null</code>.
+     * @return The data source reading the cached samples, or <code>source</code> itself if the band cannot be cached
+     *         (it doesn't belong to a product stored in a file).
+     * 
+     * @throws IOException If the cache file cannot be written or mapped.
+     */
+    public <N extends Number> DataSource<N> getDataSource(BandDataSource<N> source, ProgressMonitor progressMonitor)
+            throws IOException
+    {
+        final File file = getCacheFile(source);
+        if (file == null)
+            return source;
+
+        final long length = (long) source.getNumTiles() * source.getTileSize() * 8;
+        if (!file.isFile() || file.length() != length) {
+            write(source, file, progressMonitor);
+            evict(file);
+        } else {
+            // the modification time of the cache file marks its last use
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        final int tilesPerBuffer = Math.max(1, (Integer.MAX_VALUE / 8) / source.getTileSize());
+        final int numBuffers = (source.getNumTiles() + tilesPerBuffer - 1) / tilesPerBuffer;
+        final MappedByteBuffer[] mappings = new MappedByteBuffer[numBuffers];
+
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = input.getChannel();
+            final long bufferLength = (long) tilesPerBuffer * source.getTileSize() * 8;
+            for (int i = 0; i < numBuffers; i++) {
+                final long position = i * bufferLength;
+                // the mapping stays valid after the channel is closed
+                mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(bufferLength, length - position));
+            }
+        } finally {
+            input.close();
+        }
+
+        return new MappedDataSource<N>(source, mappings, tilesPerBuffer);
+    }
+
+    /**
+     * Unmap the cache file read by the given data source, if it is one returned by
+     * {@link #getDataSource(BandDataSource, ProgressMonitor)}.
+     * <p>
+     * This method mustn't be called while another thread reads the source.
+     * 
+     * @param source The data source.
+     */
+    public static void release(DataSource<?> source)
+    {
+        if (source instanceof MappedDataSource<?>)
+            ((MappedDataSource<?>) source).release();
+    }
+
+    /**
+     * Return the cache file for the given band source.
+     * 
+     * @param source The band source.
+     * @return The cache file, or <code>null</code> if the band cannot be cached.
+     */
+    protected File getCacheFile(BandDataSource<?> source)
+    {
+        final StringBuilder key = new StringBuilder();
+        key.append(source.getName()).append('\n').append(source.dataType.getName()).append('\n')
+                .append(source.precision).append('\n').append(source.getNumTiles()).append('x')
+                .append(source.getTileSize()).append('\n');
+        if (!appendKey(key, source.getBand(), new HashSet<RasterDataNode>()))
+            return null;
+
+        return new File(directory, digest(key.toString()) + FILE_SUFFIX);
+    }
+
+    /**
+     * Append the properties the decoded samples of the given raster depend on to the given key, including the
+     * properties of the rasters referenced by its valid-pixel expression and by its expression if it is a virtual band.
+     * 
+     * @param key The key to append to.
+     * @param raster The raster.
+     * @param appended The rasters already appended to the key.
+     * @return <code>false</code> if the samples of the raster cannot be cached (a raster it depends on doesn't belong
+     *         to a product stored in a file, or an expression cannot be parsed).
+     */
+    protected static boolean appendKey(StringBuilder key, RasterDataNode raster, Set<RasterDataNode> appended)
+    {
+        if (!appended.add(raster))
+            return true;
+
+        final Product product = raster.getProduct();
+        if (product == null || product.getFileLocation() == null || !product.getFileLocation().isFile())
+            return false;
+
+        final File productFile = product.getFileLocation().getAbsoluteFile();
+        final String expression = raster instanceof VirtualBand ? ((VirtualBand) raster).getExpression() : null;
+        key.append(productFile.getPath()).append('\n').append(productFile.lastModified()).append('\n')
+                .append(raster.getName()).append('\n').append(raster.getScalingFactor()).append('\n')
+                .append(raster.getScalingOffset()).append('\n').append(raster.isLog10Scaled()).append('\n')
+                .append(raster.isNoDataValueUsed()).append('\n').append(raster.getNoDataValue()).append('\n')
+                .append(raster.getValidPixelExpression()).append('\n').append(expression).append('\n');
+
+        final Product[] products = product.getProductManager() != null ? product.getProductManager().getProducts()
+                : new Product[] { product };
+        final int productIndex = Math.max(0, Arrays.asList(products).indexOf(product));
+        for (String refExpression : new String[] { raster.getValidPixelExpression(), expression }) {
+            if (refExpression == null || refExpression.trim().length() == 0)
+                continue;
+            try {
+                for (RasterDataNode refRaster : BandArithmetic.getRefRasters(refExpression, products, productIndex)) {
+                    if (!appendKey(key, refRaster, appended))
+                        return false;
+                }
+            } catch (ParseException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the decoded samples of the given band source and write them to the given file.
+     * <p>
+     * The samples are written to a temporary file first, so that an interrupted write never leaves an incomplete cache
+     * file.
+     * 
+     * @param source The band source.
+     * @param file The cache file.
+     * @param progressMonitor The progress monitor, may be <code>null</code>.
+     * 
+     * @throws IOException If the file cannot be written.
+     */
+    protected void write(BandDataSource<?> source, File file, ProgressMonitor progressMonitor) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create the cache directory " + directory); /* I18N */
+
+        // the cached samples mustn't depend on the mask and the min/max values
+        final BulkReader<?> reader = source.createUnfilteredSource().bulkReader();
+
+        final File temp = File.createTempFile(file.getName(), TEMP_SUFFIX, directory);
+        boolean written = false;
+        final RandomAccessFile output = new RandomAccessFile(temp, "rw");
+        try {
+            if (progressMonitor != null)
+                progressMonitor.beginTask("Caching band " + source.getName(), source.getNumTiles()); /* I18N */
+
+            final FileChannel channel = output.getChannel();
+            final double[] values = new double[WRITE_BLOCK_SIZE];
+            final BitSet valid = new BitSet(WRITE_BLOCK_SIZE);
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BLOCK_SIZE * 8).order(ByteOrder.LITTLE_ENDIAN);
+            final DoubleBuffer doubles = buffer.asDoubleBuffer();
+
+            long writtenSamples = 0;
+            while (reader.hasNext()) {
+                final int read = reader.read(values, valid);
+                for (int i = 0; i < read; i++)
+                    doubles.put(i, valid.get(i) ? values[i] : Double.NaN);
+
+                buffer.clear().limit(read * 8);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+
+                if (progressMonitor != null) {
+                    final long tiles = (writtenSamples + read) / source.getTileSize();
+                    progressMonitor.worked((int) (tiles - writtenSamples / source.getTileSize()));
+                    if (progressMonitor.isCanceled())
+                        throw new IOException("Caching of band " + source.getName() + " canceled."); /* I18N */
+                }
+                writtenSamples += read;
+            }
+            written = true;
+        } finally {
+            output.close();
+            if (progressMonitor != null)
+                progressMonitor.done();
+            if (!written)
+                temp.delete();
+        }
+
+        // another computation could have written the same file in the meantime
+        if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+            temp.delete();
+            throw new IOException("Cannot write the cache file " + file); /* I18N */
+        }
+    }
+
+    /**
+     * Delete the least recently used cache files exceeding the maximum total size, and the temporary files left over
+     * by crashed computations.
+     * <p>
+     * Files that cannot be deleted (e.g. because they are mapped by a running computation on a system which doesn't
+     * allow deleting them) are skipped.
+     * 
+     * @param keep The file that is never deleted.
+     */
+    protected void evict(File keep)
+    {
+        final File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        final long now = System.currentTimeMillis();
+        final long[] lastModified = new long[files.length];
+        final Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        // the most recently used files first
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                return lastModified[o2] < lastModified[o1] ? -1 : (lastModified[o2] == lastModified[o1] ? 0 : 1);
+            }
+        });
+
+        long size = keep.length();
+        for (Integer i : order) {
+            final File file = files[i];
+            if (file.equals(keep) || !file.isFile())
+                continue;
+
+            if (file.getName().endsWith(FILE_SUFFIX)) {
+                final long length = file.length();
+                size += length;
+                if (size > maxSize && file.delete())
+                    size -= length;
+            } else if (file.getName().endsWith(TEMP_SUFFIX) && now - lastModified[i] > TEMP_FILE_AGE) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Return the hexadecimal MD5 digest of the given key.
+     * 
+     * @param key The key.
+     * @return The digest.
+     */
+    protected static String digest(String key)
+    {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            final StringBuilder result = new StringBuilder(digest.length * 2);
+            for (byte b : digest)
+                result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
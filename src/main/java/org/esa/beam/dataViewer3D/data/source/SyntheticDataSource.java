@@ -0,0 +1,814 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.esa.beam.dataViewer3D.data.type.ByteType;
+import org.esa.beam.dataViewer3D.data.type.DoubleType;
+import org.esa.beam.dataViewer3D.data.type.FloatType;
+import org.esa.beam.dataViewer3D.data.type.IntType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.util.ValidatingIterator;
+
+/**
+ * Data source generating reproducible synthetic data, mainly for load generation and performance measurements.
+ * <p>
+ * No values are stored: the <code>i</code>-th value is computed from the seed and <code>i</code> by a counter-based
+ * random number generator, so the source can have any size, the values can be accessed in any order (see
+ * {@link #getValue(int)} and {@link #randomAccessReader()}), and two sources with the same seed, size and
+ * distribution return the same values.
+ * <p>
+ * The source is divided to blocks of {@link #BLOCK_SIZE} entries which act as tiles, so parallel consumers can read
+ * disjoint ranges of the source independently (see {@link #bulkReader(int, int)} and {@link #split(int)}). The last
+ * block can be shorter than the others.
+ * <p>
+ * Use the <code>create*</code> methods to create the sources.
+ * 
+ * @author Martin Pecka
+ * @param <N> Type of the generated values.
+ */
+public abstract class SyntheticDataSource<N extends Number> extends AbstractDataSource<N> implements
+        TiledDataSource<N>, RandomAccessDataSource<N>
+{
+    /** The number of entries of a block (tile). */
+    public static final int      BLOCK_SIZE   = 4096;
+
+    /** The increment of the SplitMix64 generator. */
+    protected static final long  GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** The number of values in this source. */
+    protected final int          size;
+
+    /** The seed of the generator. */
+    protected final long         seed;
+
+    /** Index of the first value of this source in the sequence generated from the seed. */
+    protected final int          offset;
+
+    /** The distribution of the values. */
+    protected final Distribution distribution;
+
+    /** The min and max values as primitives. */
+    protected final double       minValue, maxValue;
+
+    /**
+     * Create the data source.
+     * 
+     * @param size The number of values.
+     * @param seed The seed of the generator.
+     * @param offset Index of the first value of this source in the sequence generated from the seed.
+     * @param min The minimum value.
+     * @param max The maximum value.
+     * @param distribution The distribution of the values.
+     * 
+     * @throws IllegalArgumentException If <code>size</code> isn't positive or <code>min</code> is greater than
+     *             <code>max</code>.
+     */
+    protected SyntheticDataSource(int size, long seed, int offset, N min, N max, Distribution distribution)
+            throws IllegalArgumentException
+    {
+        super(min, max);
+        if (size <= 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot set non-positive size.");
+
+        if (min.doubleValue() > max.doubleValue())
+            throw new IllegalArgumentException(getClass() + ": Cannot set minimum bigger than maximum.");
+
+        this.size = size;
+        this.seed = seed;
+        this.offset = offset;
+        this.minValue = min.doubleValue();
+        this.maxValue = max.doubleValue();
+        this.distribution = distribution;
+    }
+
+    /**
+     * Create a source of doubles.
+     * 
+     * @param size The number of values.
+     * @param seed The seed of the generator.
+     * @param min The minimum value.
+     * @param max The maximum value.
+     * @param distribution The distribution of the values.
+     * @param precision The precision of the values (see {@link DoubleType#DoubleType(Double, Integer)}).
+     * @return The source.
+     * 
+     * @throws IllegalArgumentException If <code>size</code> isn't positive or <code>min</code> is greater than
+     *             <code>max</code>.
+     */
+    public static SyntheticDataSource<Double> createDouble(int size, long seed, double min, double max,
+            Distribution distribution, Integer precision) throws IllegalArgumentException
+    {
+        return new DoubleSource(size, seed, 0, min, max, distribution, precision);
+    }
+
+    /**
+     * Create a source of floats.
+     * 
+     * @param size The number of values.
+     * @param seed The seed of the generator.
+     * @param min The minimum value.
+     * @param max The maximum value.
+     * @param distribution The distribution of the values.
+     * @param precision The precision of the values (see {@link FloatType#FloatType(Float, Integer)}).
+     * @return The source.
+     * 
+     * @throws IllegalArgumentException If <code>size</code> isn't positive or <code>min</code> is greater than
+     *             <code>max</code>.
+     */
+    public static SyntheticDataSource<Float> createFloat(int size, long seed, float min, float max,
+            Distribution distribution, Integer precision) throws IllegalArgumentException
+    {
+        return new FloatSource(size, seed, 0, min, max, distribution, precision);
+    }
+
+    /**
+     * Create a source of integers.
+     * 
+     * @param size The number of values.
+     * @param seed The seed of the generator.
+     * @param min The minimum value.
+     * @param max The maximum value.
+     * @param distribution The distribution of the values.
+     * @return The source.
+     * 
+     * @throws IllegalArgumentException If <code>size</code> isn't positive or <code>min</code> is greater than
+     *             <code>max</code>.
+     */
+    public static SyntheticDataSource<Integer> createInt(int size, long seed, int min, int max,
+            Distribution distribution) throws IllegalArgumentException
+    {
+        return new IntSource(size, seed, 0, min, max, distribution);
+    }
+
+    /**
+     * Create a source of bytes.
+     * 
+     * @param size The number of values.
+     * @param seed The seed of the generator.
+     * @param min The minimum value.
+     * @param max The maximum value.
+     * @param distribution The distribution of the values.
+     * @return The source.
+     * 
+     * @throws IllegalArgumentException If <code>size</code> isn't positive or <code>min</code> is greater than
+     *             <code>max</code>.
+     */
+    public static SyntheticDataSource<Byte> createByte(int size, long seed, byte min, byte max,
+            Distribution distribution) throws IllegalArgumentException
+    {
+        return new ByteSource(size, seed, 0, min, max, distribution);
+    }
+
+    /**
+     * Return the <code>i</code>-th value of this source.
+     * 
+     * @param i Index of the value.
+     * @return The value.
+     * 
+     * @throws IndexOutOfBoundsException If <code>i</code> is out of the bounds of this source.
+     */
+    public double getValue(int i) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds of a source of size " + size);
+        return generate(offset + i);
+    }
+
+    /**
+     * Read <code>count</code> values starting with the <code>i</code>-th one.
+     * 
+     * @param i Index of the first value to read.
+     * @param values The array to read the values into.
+     * @param valuesOffset Index to <code>values</code> to write the first value to.
+     * @param count The number of values to read.
+     * 
+     * @throws IndexOutOfBoundsException If some of the values is out of the bounds of this source.
+     */
+    public void getValues(int i, double[] values, int valuesOffset, int count) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || count < 0 || i > size - count)
+            throw new IndexOutOfBoundsException("Range " + i + "+" + count + " is out of bounds of a source of size "
+                    + size);
+        for (int j = 0; j < count; j++)
+            values[valuesOffset + j] = generate(offset + i + j);
+    }
+
+    /**
+     * Split this source to the given number of sources covering consecutive ranges of this source.
+     * <p>
+     * The <code>j</code>-th value of the <code>k</code>-th returned source is the same as the
+     * <code>(start_k + j)</code>-th value of this source, where <code>start_k</code> is the sum of the sizes of the
+     * preceding sources. The ranges are aligned to blocks where possible.
+     * 
+     * @param parts The number of sources to split to.
+     * @return The sources, at most <code>parts</code> of them (less if this source is too small).
+     * 
+     * @throws IllegalArgumentException If <code>parts</code> isn't positive.
+     */
+    public List<SyntheticDataSource<N>> split(int parts) throws IllegalArgumentException
+    {
+        if (parts <= 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot split to non-positive number of parts.");
+
+        final int numBlocks = getNumTiles();
+        final List<SyntheticDataSource<N>> result = new ArrayList<SyntheticDataSource<N>>(parts);
+        if (numBlocks >= parts) {
+            for (int k = 0; k < parts; k++) {
+                final int from = (int) ((long) numBlocks * k / parts) * BLOCK_SIZE;
+                final int to = Math.min(size, (int) ((long) numBlocks * (k + 1) / parts) * BLOCK_SIZE);
+                result.add(createRange(offset + from, to - from));
+            }
+        } else {
+            final int count = Math.min(parts, size);
+            for (int k = 0; k < count; k++) {
+                final int from = (int) ((long) size * k / count), to = (int) ((long) size * (k + 1) / count);
+                result.add(createRange(offset + from, to - from));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Create a source with the same seed, distribution and type as this one, but covering another range of the
+     * generated sequence.
+     * 
+     * @param offset Index of the first value of the new source in the sequence generated from the seed.
+     * @param size The size of the new source.
+     * @return The new source.
+     */
+    protected abstract SyntheticDataSource<N> createRange(int offset, int size);
+
+    /**
+     * Convert the given value to the precision of the numbers returned by this source.
+     * 
+     * @param value The value.
+     * @return The converted value.
+     */
+    protected abstract double toPrimitive(double value);
+
+    /**
+     * Convert the given primitive value to the number returned by this source.
+     * 
+     * @param value The value, already converted by {@link #toPrimitive(double)}.
+     * @return The number.
+     */
+    protected abstract N toNumber(double value);
+
+    /**
+     * Return the hash code of the numeric type corresponding to the given primitive value.
+     * 
+     * @param value The value, already converted by {@link #toPrimitive(double)}.
+     * @return The same value as <code>getNumericType(toNumber(value)).hashCode()</code>.
+     */
+    protected abstract int getHashCode(double value);
+
+    /**
+     * Return the key of the numeric type corresponding to the given primitive value.
+     * 
+     * @param value The value, already converted by {@link #toPrimitive(double)}.
+     * @return The same value as <code>getNumericType(toNumber(value)).getKey()</code>.
+     */
+    protected abstract long getKey(double value);
+
+    /**
+     * Generate the <code>index</code>-th value of the sequence.
+     * 
+     * @param index Index of the value in the sequence generated from the seed.
+     * @return The value.
+     */
+    protected double generate(int index)
+    {
+        final double value = distribution.sample(seed, mix(seed + (index + 1L) * GOLDEN_GAMMA), minValue, maxValue);
+        return toPrimitive(Math.min(maxValue, Math.max(minValue, value)));
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "synthetic"; /* I18N */
+    }
+
+    @Override
+    public int getNumTiles()
+    {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    @Override
+    public int getTileSize()
+    {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    public int[] getDataTiles()
+    {
+        final int[] tiles = new int[getNumTiles()];
+        for (int i = 0; i < tiles.length; i++)
+            tiles[i] = i;
+        return tiles;
+    }
+
+    @Override
+    public BulkReader<N> bulkReader()
+    {
+        return new SyntheticBulkReader(0, size);
+    }
+
+    @Override
+    public BulkReader<N> bulkReader(int firstTile, int lastTile)
+    {
+        if (firstTile < 0 || lastTile >= getNumTiles() || firstTile > lastTile)
+            throw new IndexOutOfBoundsException();
+        return new SyntheticBulkReader(firstTile * BLOCK_SIZE, Math.min(size, (lastTile + 1) * BLOCK_SIZE));
+    }
+
+    @Override
+    public RandomAccessReader<N> randomAccessReader()
+    {
+        return new SyntheticBulkReader(0, size);
+    }
+
+    @Override
+    public ValidatingIterator<N> iterator()
+    {
+        return new ValidatingIterator<N>() {
+            /** Index of the next value. */
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < size;
+            }
+
+            @Override
+            public N next()
+            {
+                if (i >= size)
+                    throw new NoSuchElementException();
+                return toNumber(generate(offset + i++));
+            }
+
+            @Override
+            public boolean isLastReturnedValid()
+            {
+                return true;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * The finalizer of the SplitMix64 generator; maps consecutive inputs to statistically independent outputs.
+     * 
+     * @param z The input.
+     * @return The mixed value.
+     */
+    protected static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Convert the given random bits to a uniformly distributed double from <code>[0, 1)</code>.
+     * 
+     * @param bits The random bits.
+     * @return The uniform double.
+     */
+    protected static double toUniform(long bits)
+    {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * A distribution of the generated values.
+     * <p>
+     * A distribution transforms random bits to a value; further random bits can be obtained by
+     * {@link SyntheticDataSource#mix(long)}ing the given ones with different constants.
+     * 
+     * @author Martin Pecka
+     */
+    public static abstract class Distribution
+    {
+        /**
+         * Transform the given random bits to a value.
+         * 
+         * @param seed The seed of the source (constant for all values of the source).
+         * @param bits The random bits of the value.
+         * @param min The minimum value.
+         * @param max The maximum value.
+         * @return The value; values out of <code>[min, max]</code> are clamped.
+         */
+        protected abstract double sample(long seed, long bits, double min, double max);
+
+        /**
+         * Return the uniform distribution.
+         * 
+         * @return The uniform distribution over <code>[min, max]</code>.
+         */
+        public static Distribution uniform()
+        {
+            return new Distribution() {
+                @Override
+                protected double sample(long seed, long bits, double min, double max)
+                {
+                    return min + toUniform(bits) * (max - min);
+                }
+            };
+        }
+
+        /**
+         * Return a mixture of Gaussian clusters with equal weights.
+         * <p>
+         * The centers of the clusters are derived from the seed of the source, and lie in the middle 80% of the range.
+         * 
+         * @param clusters The number of clusters.
+         * @param sigma The standard deviation of the clusters, relative to the size of the range.
+         * @return The distribution.
+         * 
+         * @throws IllegalArgumentException If <code>clusters</code> or <code>sigma</code> isn't positive.
+         */
+        public static Distribution gaussianClusters(final int clusters, final double sigma)
+                throws IllegalArgumentException
+        {
+            if (clusters <= 0 || !(sigma > 0))
+                throw new IllegalArgumentException("The number of clusters and sigma have to be positive.");
+
+            return new Distribution() {
+                @Override
+                protected double sample(long seed, long bits, double min, double max)
+                {
+                    final int cluster = (int) ((bits >>> 33) % clusters);
+                    final double center = 0.1 + 0.8 * toUniform(mix(seed ^ mix(cluster + 1L)));
+
+                    // Box-Muller transform
+                    final double u1 = toUniform(mix(bits + GOLDEN_GAMMA)), u2 = toUniform(mix(bits - GOLDEN_GAMMA));
+                    final double gaussian = Math.sqrt(-2 * Math.log(1 - u1)) * Math.cos(2 * Math.PI * u2);
+
+                    return min + (center + sigma * gaussian) * (max - min);
+                }
+            };
+        }
+
+        /**
+         * Return a heavy-tailed (bounded Pareto) distribution.
+         * <p>
+         * Most values are close to the minimum, and the probability of a value decreases polynomially with its
+         * distance from the minimum.
+         * 
+         * @param alpha The shape of the distribution; the smaller, the heavier the tail.
+         * @param ratio The ratio of the largest and the smallest value of the underlying Pareto distribution (which is
+         *            scaled to <code>[min, max]</code>).
+         * @return The distribution.
+         * 
+         * @throws IllegalArgumentException If <code>alpha</code> isn't positive or <code>ratio</code> isn't greater
+         *             than 1.
+         */
+        public static Distribution pareto(final double alpha, final double ratio) throws IllegalArgumentException
+        {
+            if (!(alpha > 0) || !(ratio > 1))
+                throw new IllegalArgumentException("Alpha has to be positive and the ratio greater than 1.");
+
+            final double tail = 1 - Math.pow(ratio, -alpha);
+            return new Distribution() {
+                @Override
+                protected double sample(long seed, long bits, double min, double max)
+                {
+                    // inverse of the CDF of the Pareto distribution bounded to [1, ratio]
+                    final double x = Math.pow(1 - toUniform(bits) * tail, -1 / alpha);
+                    return min + (x - 1) / (ratio - 1) * (max - min);
+                }
+            };
+        }
+    }
+
+    /**
+     * A reader generating a range of values.
+     * 
+     * @author Martin Pecka
+     */
+    private class SyntheticBulkReader implements RandomAccessReader<N>
+    {
+        /** Index of the next value to read, and index of the value following the last one to read. */
+        private int      index, endIndex;
+
+        /** The values of the last read block. */
+        private double[] lastValues = null;
+
+        /**
+         * Create a reader reading the given range of values.
+         * 
+         * @param from Index of the first value.
+         * @param to Index of the value following the last one.
+         */
+        public SyntheticBulkReader(int from, int to)
+        {
+            this.index = from;
+            this.endIndex = to;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return index < endIndex;
+        }
+
+        @Override
+        public void seek(int index) throws IndexOutOfBoundsException
+        {
+            if (index < 0 || index > endIndex)
+                throw new IndexOutOfBoundsException("Cannot seek to index " + index);
+            this.index = index;
+        }
+
+        @Override
+        public int read(double[] values, BitSet valid)
+        {
+            lastValues = values;
+
+            final int read = Math.min(values.length, endIndex - index);
+            getValues(index, values, 0, read);
+            valid.set(0, read);
+            index += read;
+            return read;
+        }
+
+        @Override
+        public N getNumber(int i)
+        {
+            return toNumber(lastValues[i]);
+        }
+
+        @Override
+        public NumericType<N> getNumericType(int i)
+        {
+            return SyntheticDataSource.this.getNumericType(toNumber(lastValues[i]));
+        }
+
+        @Override
+        public int getHashCode(int i)
+        {
+            return SyntheticDataSource.this.getHashCode(lastValues[i]);
+        }
+
+        @Override
+        public long getKey(int i)
+        {
+            return SyntheticDataSource.this.getKey(lastValues[i]);
+        }
+    }
+
+    /**
+     * A source of doubles.
+     * 
+     * @author Martin Pecka
+     */
+    private static class DoubleSource extends SyntheticDataSource<Double>
+    {
+        /** The precision of the values. */
+        private final Integer precision;
+
+        /** The factor used for rounding the values (<code>10^precision</code>). */
+        private final double  roundingFactor;
+
+        /**
+         * @see SyntheticDataSource#SyntheticDataSource(int, long, int, Number, Number, Distribution)
+         */
+        public DoubleSource(int size, long seed, int offset, Double min, Double max, Distribution distribution,
+                Integer precision)
+        {
+            super(size, seed, offset, min, max, distribution);
+            this.precision = precision;
+            this.roundingFactor = precision != null ? Math.pow(10, precision) : 1;
+        }
+
+        @Override
+        protected SyntheticDataSource<Double> createRange(int offset, int size)
+        {
+            return new DoubleSource(size, seed, offset, definedMin, definedMax, distribution, precision);
+        }
+
+        @Override
+        protected double toPrimitive(double value)
+        {
+            return value;
+        }
+
+        @Override
+        protected Double toNumber(double value)
+        {
+            return value;
+        }
+
+        @Override
+        protected int getHashCode(double value)
+        {
+            final long key = getKey(value);
+            return (int) (key ^ (key >>> 32));
+        }
+
+        @Override
+        protected long getKey(double value)
+        {
+            if (precision != null)
+                return Math.round(value * roundingFactor);
+            return Double.doubleToLongBits(value);
+        }
+
+        @Override
+        protected NumericType<Double> getNumericType(Double number)
+        {
+            return new DoubleType(number, precision);
+        }
+    }
+
+    /**
+     * A source of floats.
+     * 
+     * @author Martin Pecka
+     */
+    private static class FloatSource extends SyntheticDataSource<Float>
+    {
+        /** The precision of the values. */
+        private final Integer precision;
+
+        /** The factor used for rounding the values (<code>10^precision</code>). */
+        private final double  roundingFactor;
+
+        /**
+         * @see SyntheticDataSource#SyntheticDataSource(int, long, int, Number, Number, Distribution)
+         */
+        public FloatSource(int size, long seed, int offset, Float min, Float max, Distribution distribution,
+                Integer precision)
+        {
+            super(size, seed, offset, min, max, distribution);
+            this.precision = precision;
+            this.roundingFactor = precision != null ? Math.pow(10, precision) : 1;
+        }
+
+        @Override
+        protected SyntheticDataSource<Float> createRange(int offset, int size)
+        {
+            return new FloatSource(size, seed, offset, definedMin, definedMax, distribution, precision);
+        }
+
+        @Override
+        protected double toPrimitive(double value)
+        {
+            return (float) value;
+        }
+
+        @Override
+        protected Float toNumber(double value)
+        {
+            return (float) value;
+        }
+
+        @Override
+        protected int getHashCode(double value)
+        {
+            if (precision == null)
+                return Float.floatToIntBits((float) value);
+            final long key = Math.round(value * roundingFactor);
+            return (int) (key ^ (key >>> 32));
+        }
+
+        @Override
+        protected long getKey(double value)
+        {
+            if (precision != null)
+                return Math.round(value * roundingFactor);
+            return Double.doubleToLongBits(value);
+        }
+
+        @Override
+        protected NumericType<Float> getNumericType(Float number)
+        {
+            return new FloatType(number, precision);
+        }
+    }
+
+    /**
+     * A source of integers.
+     * 
+     * @author Martin Pecka
+     */
+    private static class IntSource extends SyntheticDataSource<Integer>
+    {
+        /**
+         * @see SyntheticDataSource#SyntheticDataSource(int, long, int, Number, Number, Distribution)
+         */
+        public IntSource(int size, long seed, int offset, Integer min, Integer max, Distribution distribution)
+        {
+            super(size, seed, offset, min, max, distribution);
+        }
+
+        @Override
+        protected SyntheticDataSource<Integer> createRange(int offset, int size)
+        {
+            return new IntSource(size, seed, offset, definedMin, definedMax, distribution);
+        }
+
+        @Override
+        protected double toPrimitive(double value)
+        {
+            return Math.rint(value);
+        }
+
+        @Override
+        protected Integer toNumber(double value)
+        {
+            return (int) value;
+        }
+
+        @Override
+        protected int getHashCode(double value)
+        {
+            return (int) value;
+        }
+
+        @Override
+        protected long getKey(double value)
+        {
+            return (long) value;
+        }
+
+        @Override
+        protected NumericType<Integer> getNumericType(Integer number)
+        {
+            return new IntType(number);
+        }
+    }
+
+    /**
+     * A source of bytes.
+     * 
+     * @author Martin Pecka
+     */
+    private static class ByteSource extends SyntheticDataSource<Byte>
+    {
+        /**
+         * @see SyntheticDataSource#SyntheticDataSource(int, long, int, Number, Number, Distribution)
+         */
+        public ByteSource(int size, long seed, int offset, Byte min, Byte max, Distribution distribution)
+        {
+            super(size, seed, offset, min, max, distribution);
+        }
+
+        @Override
+        protected SyntheticDataSource<Byte> createRange(int offset, int size)
+        {
+            return new ByteSource(size, seed, offset, definedMin, definedMax, distribution);
+        }
+
+        @Override
+        protected double toPrimitive(double value)
+        {
+            return Math.rint(value);
+        }
+
+        @Override
+        protected Byte toNumber(double value)
+        {
+            return (byte) value;
+        }
+
+        @Override
+        protected int getHashCode(double value)
+        {
+            return (int) value;
+        }
+
+        @Override
+        protected long getKey(double value)
+        {
+            return (long) value;
+        }
+
+        @Override
+        protected NumericType<Byte> getNumericType(Byte number)
+        {
+            return new ByteType(number);
+        }
+    }
+}
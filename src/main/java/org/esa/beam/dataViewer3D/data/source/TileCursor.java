@@ -0,0 +1,204 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.util.Arrays;
+
+/**
+ * A cursor walking over the runs of consecutive tiles that can contain valid data in all of the given sources.
+ * <p>
+ * Tiles not containing any data in at least one of the sources are skipped, so the callers don't have to read them
+ * entry by entry. If some of the sources isn't tiled (or the sources have different tile grids), the cursor returns a
+ * single run covering all entries of the sources.
+ * <p>
+ * Typical usage:
+ * 
+ * <pre>
+ * final TileCursor cursor = new TileCursor(x, y, z);
+ * while (cursor.next()) {
+ *     final BulkReader&lt;X&gt; xReader = cursor.bulkReader(x);
+ *     // ...
+ *     int index = cursor.getFirstIndex();
+ *     // read the entries of the run
+ * }
+ * </pre>
+ * 
+ * @author Martin Pecka
+ */
+public class TileCursor
+{
+    /** The tiles to walk over (in ascending order), <code>null</code> if the sources aren't tiled. */
+    private final int[] tiles;
+
+    /** The number of entries in a tile. */
+    private final int   tileSize;
+
+    /** The index of the first tile of the next run in the tiles array. */
+    private int         position       = 0;
+
+    /** The first and last tile of the current run. */
+    private int         firstTile      = -1, lastTile = -1;
+
+    /** The number of entries skipped between the previous and the current run. */
+    private int         skippedEntries = 0;
+
+    /** Whether the single run of untiled sources has already been returned. */
+    private boolean     finished       = false;
+
+    /**
+     * Create a cursor walking over the tiles that can contain valid data in all the given sources.
+     * 
+     * @param sources The sources to walk over.
+     */
+    public TileCursor(DataSource<?>... sources)
+    {
+        if (isTiled(sources)) {
+            final TiledDataSource<?>[] tiledSources = new TiledDataSource<?>[sources.length];
+            for (int i = 0; i < sources.length; i++)
+                tiledSources[i] = (TiledDataSource<?>) sources[i];
+
+            this.tiles = getDataTiles(tiledSources);
+            this.tileSize = tiledSources[0].getTileSize();
+        } else {
+            this.tiles = null;
+            this.tileSize = 0;
+        }
+    }
+
+    /**
+     * Create a cursor walking over the given tiles.
+     * 
+     * @param tiles The tiles to walk over, in ascending order.
+     * @param tileSize The number of entries in a tile.
+     */
+    public TileCursor(int[] tiles, int tileSize)
+    {
+        this.tiles = tiles;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Return <code>true</code> if all the given sources are tiled with the same tile grid.
+     * 
+     * @param sources The sources to check.
+     * @return Whether all the given sources are tiled with the same tile grid.
+     */
+    public static boolean isTiled(DataSource<?>... sources)
+    {
+        if (sources.length == 0 || !(sources[0] instanceof TiledDataSource<?>))
+            return false;
+
+        final TiledDataSource<?> first = (TiledDataSource<?>) sources[0];
+        for (DataSource<?> source : sources) {
+            if (!(source instanceof TiledDataSource<?>))
+                return false;
+            final TiledDataSource<?> tiled = (TiledDataSource<?>) source;
+            if (tiled.getNumTiles() != first.getNumTiles() || tiled.getTileSize() != first.getTileSize())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the indices of the tiles that can contain valid data in all the given sources.
+     * 
+     * @param sources The sources. They have to pass {@link #isTiled(DataSource...)}.
+     * @return The indices of the tiles, in ascending order.
+     */
+    public static int[] getDataTiles(TiledDataSource<?>... sources)
+    {
+        int[] result = sources[0].getDataTiles();
+        for (int i = 1; i < sources.length; i++) {
+            final int[] other = sources[i].getDataTiles();
+            final int[] intersection = new int[Math.min(result.length, other.length)];
+            int count = 0;
+            for (int j = 0, k = 0; j < result.length && k < other.length;) {
+                if (result[j] < other[k]) {
+                    j++;
+                } else if (result[j] > other[k]) {
+                    k++;
+                } else {
+                    intersection[count++] = result[j];
+                    j++;
+                    k++;
+                }
+            }
+            result = Arrays.copyOf(intersection, count);
+        }
+        return result;
+    }
+
+    /**
+     * Move the cursor to the next run of consecutive tiles.
+     * 
+     * @return <code>true</code> if there is another run, <code>false</code> if all runs have been visited.
+     */
+    public boolean next()
+    {
+        if (tiles == null) {
+            if (finished)
+                return false;
+            finished = true;
+            return true;
+        }
+
+        if (position >= tiles.length)
+            return false;
+
+        final int previousLastTile = lastTile;
+        firstTile = tiles[position];
+        lastTile = firstTile;
+        while (++position < tiles.length && tiles[position] == lastTile + 1)
+            lastTile++;
+
+        skippedEntries = (firstTile - previousLastTile - 1) * tileSize;
+        return true;
+    }
+
+    /**
+     * Return a reader reading the entries of the current run from the given source.
+     * 
+     * @param source The source to read. Must be one of the sources the cursor has been created for.
+     * @return A reader reading the entries of the current run.
+     */
+    @SuppressWarnings("unchecked")
+    public <N extends Number> BulkReader<N> bulkReader(DataSource<N> source)
+    {
+        if (tiles == null)
+            return source.bulkReader();
+        return ((TiledDataSource<N>) source).bulkReader(firstTile, lastTile);
+    }
+
+    /**
+     * @return The index of the first entry of the current run in the iteration order of the sources.
+     */
+    public int getFirstIndex()
+    {
+        return tiles == null ? 0 : firstTile * tileSize;
+    }
+
+    /**
+     * @return The first tile of the current run.
+     */
+    public int getFirstTile()
+    {
+        return firstTile;
+    }
+
+    /**
+     * @return The last tile of the current run (inclusive).
+     */
+    public int getLastTile()
+    {
+        return lastTile;
+    }
+
+    /**
+     * @return The number of entries skipped between the previous and the current run (all of them are invalid).
+     */
+    public int getSkippedEntries()
+    {
+        return tiles == null ? 0 : skippedEntries;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads the tiles of an image (and of its mask) in advance on a background thread pool.
+ * <p>
+ * The tiles are requested in the order they will be read, and at most <code>depth</code> tiles are held in advance,
+ * so the memory consumed by the prefetched tiles is bounded. Computing the tiles (reading them from the product or
+ * evaluating the expressions of virtual bands) thus overlaps with decoding the already loaded tiles. If the reader
+ * stops reading early, at most <code>depth</code> tiles are still computed in the background and then dropped.
+ * <p>
+ * Instances of this class are not thread-safe, every reader should use its own.
+ * 
+ * @author Martin Pecka
+ */
+class TileReadAhead
+{
+    /** The pool loading the tiles. Its threads only compute tiles and never wait for each other. */
+    private static final ExecutorService executor      = Executors.newFixedThreadPool(Runtime.getRuntime()
+                                                               .availableProcessors(), new DaemonThreadFactory());
+
+    /** The image to load the tiles from. */
+    private final RenderedImage          image;
+
+    /** The mask image to load the tiles from, may be <code>null</code>. */
+    private final RenderedImage          maskImage;
+
+    /** The tiles that will be read, in the order they will be read. */
+    private final int[]                  tiles;
+
+    /** The number of tiles in a row, and the offset of the first tile. */
+    private final int                    numXTiles, tileX1, tileY1;
+
+    /** The maximum number of tiles loaded in advance. */
+    private final int                    depth;
+
+    /** Index to the tiles array of the next tile to be requested. */
+    private int                          nextRequested = 0;
+
+    /** The requested tiles (indices and the loaded data tile and mask tile), in the order they were requested. */
+    private final LinkedList<Request>    requests      = new LinkedList<Request>();
+
+    /**
+     * Create the read-ahead.
+     * 
+     * @param image The image to load the tiles from.
+     * @param maskImage The mask image to load the tiles from, may be <code>null</code>.
+     * @param tiles The indices of the tiles that will be read, in the order they will be read. The tiles are numbered
+     *            row by row, starting with the tile at <code>(tileX1, tileY1)</code>.
+     * @param numXTiles The number of tiles in a row.
+     * @param tileX1 The x index of the first tile.
+     * @param tileY1 The y index of the first tile.
+     * @param depth The maximum number of tiles loaded in advance.
+     */
+    public TileReadAhead(RenderedImage image, RenderedImage maskImage, int[] tiles, int numXTiles, int tileX1,
+            int tileY1, int depth)
+    {
+        this.image = image;
+        this.maskImage = maskImage;
+        this.tiles = tiles;
+        this.numXTiles = numXTiles;
+        this.tileX1 = tileX1;
+        this.tileY1 = tileY1;
+        this.depth = depth;
+    }
+
+    /**
+     * Return the data tile and the mask tile with the given index and request the following tiles.
+     * <p>
+     * If the tile hasn't been requested in advance, it is loaded in the calling thread. Requested tiles preceding the
+     * given one are dropped.
+     * 
+     * @param tileIndex Index of the tile.
+     * @return The data tile and the mask tile (<code>null</code> if there is no mask image).
+     */
+    public Raster[] getTiles(int tileIndex)
+    {
+        Raster[] result = null;
+        while (!requests.isEmpty() && requests.getFirst().tileIndex <= tileIndex) {
+            final Request request = requests.removeFirst();
+            if (request.tileIndex == tileIndex)
+                result = request.get();
+            else
+                request.future.cancel(false);
+        }
+
+        while (nextRequested < tiles.length && tiles[nextRequested] <= tileIndex)
+            nextRequested++;
+
+        while (requests.size() < depth && nextRequested < tiles.length) {
+            final Request request = new Request(tiles[nextRequested++]);
+            request.future = executor.submit(request);
+            requests.add(request);
+        }
+
+        if (result == null)
+            result = load(tileIndex);
+
+        return result;
+    }
+
+    /**
+     * Load the data tile and the mask tile with the given index.
+     * 
+     * @param tileIndex Index of the tile.
+     * @return The data tile and the mask tile (<code>null</code> if there is no mask image).
+     */
+    private Raster[] load(int tileIndex)
+    {
+        final int tileX = tileX1 + tileIndex % numXTiles, tileY = tileY1 + tileIndex / numXTiles;
+        return new Raster[] { image.getTile(tileX, tileY),
+                maskImage != null ? maskImage.getTile(tileX, tileY) : null };
+    }
+
+    /**
+     * A request for loading a tile.
+     * 
+     * @author Martin Pecka
+     */
+    private class Request implements Callable<Raster[]>
+    {
+        /** Index of the requested tile. */
+        private final int        tileIndex;
+        /** The result of the request. */
+        private Future<Raster[]> future;
+
+        /**
+         * @param tileIndex Index of the requested tile.
+         */
+        public Request(int tileIndex)
+        {
+            this.tileIndex = tileIndex;
+        }
+
+        @Override
+        public Raster[] call()
+        {
+            return load(tileIndex);
+        }
+
+        /**
+         * Wait for the loaded tiles.
+         * 
+         * @return The loaded tiles, or <code>null</code> if the request has been canceled.
+         */
+        public Raster[] get()
+        {
+            try {
+                return future.get();
+            } catch (CancellationException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A factory for low-priority daemon threads, so that the pool doesn't prevent the application from exiting.
+     * 
+     * @author Martin Pecka
+     */
+    private static class DaemonThreadFactory implements ThreadFactory
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            final Thread thread = new Thread(r, "Tile read-ahead"); /* I18N */
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
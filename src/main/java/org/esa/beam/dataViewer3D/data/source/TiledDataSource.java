@@ -0,0 +1,53 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+/**
+ * A data source whose entries are stored in tiles.
+ * <p>
+ * The iterators of the data source return the entries tile by tile, every tile contributes exactly
+ * {@link #getTileSize()} entries (including the invalid ones). So the entries of the <code>i</code>-th tile have
+ * indices <code>i * getTileSize()</code> to <code>(i + 1) * getTileSize() - 1</code> in the iteration order.
+ * 
+ * @author Martin Pecka
+ * @param <N> The type of values read from the data source.
+ */
+public interface TiledDataSource<N extends Number> extends DataSource<N>
+{
+    /**
+     * Return the number of tiles of this data source.
+     * 
+     * @return The number of tiles of this data source.
+     */
+    int getNumTiles();
+
+    /**
+     * Return the number of entries the iterators return for a single tile.
+     * 
+     * @return The number of entries the iterators return for a single tile.
+     */
+    int getTileSize();
+
+    /**
+     * Return the indices of the tiles that can contain valid entries, in ascending order. All entries of the other
+     * tiles are invalid, so the callers can skip these tiles without reading them.
+     * 
+     * @return The indices of the tiles that can contain valid entries.
+     */
+    int[] getDataTiles();
+
+    /**
+     * Return a reader that reads only the entries of the given range of tiles, in the same order as
+     * {@link #iterator()} iterates over them.
+     * <p>
+     * The returned readers are independent of each other, so they can be used concurrently from different threads.
+     * 
+     * @param firstTile Index of the first tile to read.
+     * @param lastTile Index of the last tile to read (inclusive).
+     * @return A reader that reads the entries of the given tiles.
+     * 
+     * @throws IndexOutOfBoundsException If the tile range is invalid.
+     */
+    BulkReader<N> bulkReader(int firstTile, int lastTile);
+}
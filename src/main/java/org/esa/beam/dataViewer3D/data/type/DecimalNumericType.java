@@ -73,6 +73,16 @@ public abstract class DecimalNumericType<N extends Number> extends NumericType<N
             return getNumber().hashCode();
     }
 
+    @Override
+    public long getKey()
+    {
+        if (roundedValue != null)
+            return roundedValue;
+        else
+            // exact for floats, too; NaNs are collapsed the same way as in equals()
+            return Double.doubleToLongBits(getNumber().doubleValue());
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -44,6 +44,17 @@ public abstract class NumericType<N extends Number>
         return number.hashCode();
     }
 
+    /**
+     * Return a 64-bit key of the represented value. Two numeric types of the same class are equal iff their keys are
+     * equal, so unlike {@link #hashCode()}, the key can be used to tell distinct values apart.
+     * 
+     * @return The key of the represented value.
+     */
+    public long getKey()
+    {
+        return number.longValue();
+    }
+
     @Override
     public boolean equals(Object obj)
     {
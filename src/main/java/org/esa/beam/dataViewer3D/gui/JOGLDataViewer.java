@@ -31,8 +31,13 @@ import java.awt.print.PageFormat;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GL;
@@ -51,6 +56,7 @@ import org.esa.beam.dataViewer3D.data.coordinates.CoordinatesSystem;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet3D;
 import org.esa.beam.dataViewer3D.data.dataset.DataSet4D;
+import org.esa.beam.dataViewer3D.data.dataset.DirectBufferDataSet;
 import org.esa.beam.dataViewer3D.data.grid.Grid;
 import org.esa.beam.dataViewer3D.utils.NumberTypeUtils;
 import org.esa.beam.framework.ui.GridBagUtils;
@@ -130,6 +136,9 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
     /** This is true while the component is being resized. */
     private volatile boolean      resizing          = false;
 
+    /** The direct buffer data sets that are no longer displayed; the viewer releases them before the next redraw. */
+    private final List<DirectBufferDataSet> dataSetsToRelease = new LinkedList<DirectBufferDataSet>();
+
     /**
      * Create a new data viewer using OpenGL for rendering the data set.
      */
@@ -138,6 +147,15 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
         glEventListener = new GLEventListener() {
             private final HashMap<Font, TextRenderer> textRenderers = new HashMap<Font, TextRenderer>();
 
+            /** The colors of the points of the drawn direct buffer data set. */
+            private FloatBuffer                       colorBuffer;
+            /** The data set the color buffer has been computed for. */
+            private DirectBufferDataSet               colorBufferDataSet;
+            /** The color provider the color buffer has been computed with. */
+            private ColorProvider                     colorBufferProvider;
+            /** The bounds of the color provider and the scales of the aces the color buffer has been computed with. */
+            private double[]                          colorBufferParameters;
+
             private TextRenderer getTextRenderer(Font font)
             {
                 if (!textRenderers.containsKey(font)) {
@@ -196,6 +214,9 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
 
                 gl.glClear(GL.GL_COLOR_BUFFER_BIT);
 
+                // the released data sets can't be drawn anymore, because the viewer has already been given a new one
+                releaseDataSets();
+
                 if (resizing)
                     return;
 
@@ -493,6 +514,11 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
                 if (dataSet == null)
                     return;
 
+                if (dataSet instanceof DirectBufferDataSet && !isLogScaled(coordinatesSystem.getAces())) {
+                    drawDataset(gl, (DirectBufferDataSet) dataSet, colorProvider);
+                    return;
+                }
+
                 Iterator<? extends Number> xIt;
                 Iterator<? extends Number> yIt;
                 Iterator<? extends Number> zIt;
@@ -549,6 +575,115 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
                 gl.glEnd();
             }
 
+            /**
+             * Draw points from the given direct buffer data set. The vertex buffer of the data set is passed to OpenGL
+             * without copying, and the scaling of the aces is done by the model view matrix.
+             * 
+             * @param gl The {@link javax.media.opengl.GL} instance to use.
+             * @param dataSet The data set to draw.
+             * @param colorProvider The color provider for coloring data points.
+             */
+            private void drawDataset(GL gl, DirectBufferDataSet dataSet, ColorProvider colorProvider)
+            {
+                final Axis<?>[] aces = coordinatesSystem.getAces();
+                final FloatBuffer colors = getColorBuffer(dataSet, colorProvider, aces);
+
+                gl.glPushMatrix();
+                gl.glScaled(aces[0].getScale(), aces[1].getScale(), aces[2].getScale());
+                gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+                gl.glEnableClientState(GL.GL_COLOR_ARRAY);
+
+                gl.glVertexPointer(DirectBufferDataSet.VERTEX_SIZE, GL.GL_FLOAT, 0, dataSet.getVertexBuffer());
+                gl.glColorPointer(3, GL.GL_FLOAT, 0, colors);
+                gl.glDrawArrays(GL.GL_POINTS, 0, dataSet.size());
+
+                gl.glDisableClientState(GL.GL_COLOR_ARRAY);
+                gl.glDisableClientState(GL.GL_VERTEX_ARRAY);
+                gl.glPopMatrix();
+            }
+
+            /**
+             * Return the buffer of the colors of the points of the given data set (3 floats per point). The buffer is
+             * only recomputed if the data set, the color provider, its bounds or the scaling of the aces have changed.
+             * 
+             * @param dataSet The data set to color.
+             * @param colorProvider The color provider for coloring data points.
+             * @param aces The aces of the coordinates system.
+             * @return The color buffer.
+             */
+            private FloatBuffer getColorBuffer(DirectBufferDataSet dataSet, ColorProvider colorProvider, Axis<?>[] aces)
+            {
+                final double[] parameters = new double[] { colorProvider.getMin(), colorProvider.getMax(),
+                        aces[0].getScale(), aces[1].getScale(), aces[2].getScale() };
+                if (colorBufferDataSet == dataSet && colorBufferProvider == colorProvider
+                        && Arrays.equals(colorBufferParameters, parameters))
+                    return colorBuffer;
+
+                final int size = dataSet.size();
+                if (colorBuffer == null || colorBuffer.capacity() < size * 3)
+                    colorBuffer = ByteBuffer.allocateDirect(size * 3 * 4).order(ByteOrder.nativeOrder())
+                            .asFloatBuffer();
+                colorBuffer.clear();
+
+                final FloatBuffer vertices = dataSet.getVertexBuffer();
+                final FloatBuffer attributes = dataSet.getAttributeBuffer();
+                final double maxDistance = Math.sqrt(Math.pow(dataSet.getMax(0) - dataSet.getMin(0), 2)
+                        + Math.pow(dataSet.getMax(1) - dataSet.getMin(1), 2)
+                        + Math.pow(dataSet.getMax(2) - dataSet.getMin(2), 2));
+
+                double x, y, z, w;
+                for (int i = 0; i < size; i++) {
+                    if (attributes != null) {
+                        w = attributes.get(i);
+                    } else {
+                        // for 3D data sets, the color value is just the distance from the origin
+                        x = vertices.get() * parameters[2];
+                        y = vertices.get() * parameters[3];
+                        z = vertices.get() * parameters[4];
+                        w = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2) + Math.pow(z, 2)) / maxDistance;
+                    }
+
+                    final Color color = colorProvider.getColor(w);
+                    colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
+                }
+                colorBuffer.flip();
+
+                colorBufferDataSet = dataSet;
+                colorBufferProvider = colorProvider;
+                colorBufferParameters = parameters;
+                return colorBuffer;
+            }
+
+            /**
+             * Return <code>true</code> if some of the given aces has logarithmic scale.
+             * 
+             * @param aces The aces.
+             * @return Whether some of the aces has logarithmic scale.
+             */
+            private boolean isLogScaled(Axis<?>[] aces)
+            {
+                for (Axis<?> axis : aces) {
+                    if (axis.isLogScale())
+                        return true;
+                }
+                return false;
+            }
+
+            /**
+             * Release the direct buffer data sets that are no longer displayed.
+             */
+            private void releaseDataSets()
+            {
+                synchronized (dataSetsToRelease) {
+                    for (DirectBufferDataSet dataSet : dataSetsToRelease) {
+                        dataSet.release();
+                        if (dataSet.isReleased() && dataSet == colorBufferDataSet)
+                            colorBufferDataSet = null;
+                    }
+                    dataSetsToRelease.clear();
+                }
+            }
+
             /**
              * Draw the grid.
              * 
@@ -816,6 +951,7 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
     @Override
     public void setDataSetToEmpty(double minX, double maxX, double minY, double maxY, double minZ, double maxZ)
     {
+        scheduleRelease(null);
         this.dataSet = null;
         minPoint[0] = minX;
         minPoint[1] = minY;
@@ -834,6 +970,7 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
     @Override
     public void setDataSet(DataSet dataSet)
     {
+        scheduleRelease(dataSet);
         this.dataSet = dataSet;
 
         if (dataSet instanceof DataSet3D<?, ?, ?>) {
@@ -867,6 +1004,29 @@ public class JOGLDataViewer extends JPanel implements GraphicalDataViewer
         }
     }
 
+    /**
+     * If the new data set is stored in direct buffers, become their holder; if the currently displayed data set is
+     * stored in direct buffers, give up holding them before the next redraw. They aren't released immediately, because
+     * they may be being drawn just now.
+     * <p>
+     * The viewer only releases its own hold of the buffers, so the caller (e.g. the creator of the buffers keeping them
+     * for filtering) has to release its hold itself.
+     * 
+     * @param newDataSet The data set that will be displayed.
+     * 
+     * @see DirectBufferDataSet#retain(DataSet)
+     */
+    protected void scheduleRelease(DataSet newDataSet)
+    {
+        DirectBufferDataSet.retain(newDataSet);
+        final DirectBufferDataSet buffers = DirectBufferDataSet.getBuffers(dataSet);
+        if (buffers != null) {
+            synchronized (dataSetsToRelease) {
+                dataSetsToRelease.add(buffers);
+            }
+        }
+    }
+
     @Override
     public void resetTransformation()
     {
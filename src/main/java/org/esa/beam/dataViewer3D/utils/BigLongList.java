@@ -0,0 +1,134 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive longs indexed by <code>long</code>.
+ * <p>
+ * The elements are stored in segments of a fixed size, so the list can hold more than <code>Integer.MAX_VALUE</code>
+ * elements, and growing it never copies more than one segment.
+ * 
+ * @author Martin Pecka
+ */
+public class BigLongList
+{
+    /** The default number of bits of the index within a segment. */
+    public static final int DEFAULT_SEGMENT_BITS = 20;
+
+    /** The number of bits of the index within a segment. */
+    private final int       segmentBits;
+
+    /** The mask of the index within a segment. */
+    private final int       segmentMask;
+
+    /** The segments; all but the last one are full. */
+    private long[][]        segments;
+
+    /** The number of elements. */
+    private long            size                 = 0;
+
+    /**
+     * Create an empty list with segments of the default size.
+     */
+    public BigLongList()
+    {
+        this(DEFAULT_SEGMENT_BITS);
+    }
+
+    /**
+     * Create an empty list with segments of <code>2<sup>segmentBits</sup></code> elements.
+     * 
+     * @param segmentBits The number of bits of the index within a segment.
+     * 
+     * @throws IllegalArgumentException If <code>segmentBits</code> isn't between 1 and 30.
+     */
+    public BigLongList(int segmentBits) throws IllegalArgumentException
+    {
+        if (segmentBits < 1 || segmentBits > 30)
+            throw new IllegalArgumentException(getClass() + ": Unsupported segment size.");
+        this.segmentBits = segmentBits;
+        segmentMask = (1 << segmentBits) - 1;
+        segments = new long[][] { new long[Math.min(16, 1 << segmentBits)] };
+    }
+
+    /**
+     * Append the given element to the end of the list.
+     * 
+     * @param element The element to append.
+     */
+    public void add(long element)
+    {
+        final int segment = (int) (size >>> segmentBits);
+        final int offset = (int) size & segmentMask;
+
+        if (segment == segments.length) {
+            segments = Arrays.copyOf(segments, segments.length * 2);
+            segments[segment] = new long[Math.min(16, 1 << segmentBits)];
+        } else if (segments[segment] == null) {
+            segments[segment] = new long[Math.min(16, 1 << segmentBits)];
+        } else if (offset == segments[segment].length) {
+            segments[segment] = Arrays.copyOf(segments[segment], Math.min(1 << segmentBits, offset * 2));
+        }
+
+        segments[segment][offset] = element;
+        size++;
+    }
+
+    /**
+     * Return the <code>i</code>-th element.
+     * 
+     * @param i Index of the element.
+     * @return The element.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of the bounds of the list.
+     */
+    public long get(long i) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds of a list of size " + size);
+        return segments[(int) (i >>> segmentBits)][(int) i & segmentMask];
+    }
+
+    /**
+     * Replace the <code>i</code>-th element.
+     * 
+     * @param i Index of the element.
+     * @param element The new element.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of the bounds of the list.
+     */
+    public void set(long i, long element) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds of a list of size " + size);
+        segments[(int) (i >>> segmentBits)][(int) i & segmentMask] = element;
+    }
+
+    /**
+     * Return the number of elements.
+     * 
+     * @return The number of elements.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Release the unused capacity.
+     */
+    public void trimToSize()
+    {
+        final int used = (int) ((size + segmentMask) >>> segmentBits);
+        segments = Arrays.copyOf(segments, Math.max(1, used));
+        final int last = Math.max(0, used - 1);
+        final int length = Math.max(1, (int) (size - ((long) last << segmentBits)));
+        if (segments[last] == null)
+            segments[last] = new long[length];
+        else if (segments[last].length > length)
+            segments[last] = Arrays.copyOf(segments[last], length);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for handling direct and memory-mapped buffers.
+ * 
+ * @author Martin Pecka
+ */
+public class BufferUtils
+{
+    /**
+     * Free the memory of the given direct buffer (or unmap the given mapped buffer) immediately if the JVM allows it;
+     * otherwise it is freed when the buffer is garbage collected.
+     * <p>
+     * The buffer and all its views mustn't be used afterwards; reading them could crash the JVM.
+     * 
+     * @param buffer The buffer to free.
+     */
+    public static void free(ByteBuffer buffer)
+    {
+        if (!buffer.isDirect())
+            return;
+
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                final Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // the cleaner isn't accessible in this JVM, so the garbage collector will free the memory
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct values added to it.
+ * <p>
+ * The values are added as 64-bit hashes (see {@link #hash(long)}). The sketch keeps <code>2^precision</code> registers
+ * of one byte each, so with the default precision it occupies 16 kB, and the relative standard error of the estimate
+ * is about <code>1.04 / sqrt(2^precision)</code> (0.8 % for the default precision) regardless of the number of values.
+ * Small cardinalities are estimated by linear counting of the empty registers, which is almost exact.
+ * 
+ * @author Martin Pecka
+ */
+public class HyperLogLog
+{
+    /** The default precision. */
+    public static final int DEFAULT_PRECISION = 14;
+
+    /** The minimum precision. */
+    public static final int MIN_PRECISION     = 4;
+
+    /** The maximum precision. */
+    public static final int MAX_PRECISION     = 18;
+
+    /** The number of bits of the hash selecting the register. */
+    private final int       precision;
+
+    /** The maximum ranks of the hashes falling into the registers. */
+    private final byte[]    registers;
+
+    /**
+     * Create an empty sketch with the default precision.
+     */
+    public HyperLogLog()
+    {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create an empty sketch.
+     * 
+     * @param precision The number of bits of the hash selecting the register.
+     * 
+     * @throws IllegalArgumentException If the precision is out of the bounds {@link #MIN_PRECISION} and
+     *             {@link #MAX_PRECISION}.
+     */
+    public HyperLogLog(int precision) throws IllegalArgumentException
+    {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("The precision has to be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION + ", but " + precision + " given.");
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Add a value.
+     * 
+     * @param hash The 64-bit hash of the value. Its bits have to be uniformly distributed.
+     */
+    public void add(long hash)
+    {
+        final int register = (int) (hash >>> (64 - precision));
+        // the guard bit bounds the rank if all the remaining bits are zero
+        final int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register])
+            registers[register] = (byte) rank;
+    }
+
+    /**
+     * Add all values of the given sketch.
+     * 
+     * @param other The sketch to add.
+     * 
+     * @throws IllegalArgumentException If the sketch has a different precision.
+     */
+    public void addAll(HyperLogLog other) throws IllegalArgumentException
+    {
+        if (other.precision != precision)
+            throw new IllegalArgumentException("Cannot merge sketches of different precisions.");
+
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i])
+                registers[i] = other.registers[i];
+        }
+    }
+
+    /**
+     * Return the estimated number of distinct values added to the sketch.
+     * 
+     * @return The estimated number of distinct values.
+     */
+    public long estimate()
+    {
+        final int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            sum += 1d / (1L << registers[i]);
+            if (registers[i] == 0)
+                zeros++;
+        }
+
+        final double alpha;
+        if (m == 16)
+            alpha = 0.673;
+        else if (m == 32)
+            alpha = 0.697;
+        else if (m == 64)
+            alpha = 0.709;
+        else
+            alpha = 0.7213 / (1 + 1.079 / m);
+
+        final double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0)
+            return Math.round(m * Math.log((double) m / zeros));
+        return Math.round(estimate);
+    }
+
+    /**
+     * Return a 64-bit hash of the given value with uniformly distributed bits (the finalizer of MurmurHash3).
+     * 
+     * @param value The value.
+     * @return The hash.
+     */
+    public static long hash(long value)
+    {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
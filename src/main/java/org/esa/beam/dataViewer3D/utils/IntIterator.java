@@ -0,0 +1,28 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+/**
+ * An iterator over primitive integers, which doesn't box the returned values.
+ * 
+ * @author Martin Pecka
+ */
+public interface IntIterator
+{
+    /**
+     * Return <code>true</code> if the iteration has more elements.
+     * 
+     * @return <code>true</code> if the iteration has more elements.
+     */
+    boolean hasNext();
+
+    /**
+     * Return the next element of the iteration.
+     * 
+     * @return The next element of the iteration.
+     * 
+     * @throws java.util.NoSuchElementException If the iteration has no more elements.
+     */
+    int next();
+}
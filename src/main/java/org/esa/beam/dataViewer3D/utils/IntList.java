@@ -0,0 +1,159 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable list of primitive integers.
+ * <p>
+ * The list only supports appending elements, which is all the data sets need, and stores them in a single array, so
+ * an element occupies 4 bytes (plus the unused capacity), instead of a boxed integer and a list node.
+ * 
+ * @author Martin Pecka
+ */
+public class IntList
+{
+    /** The elements; only the first <code>size</code> ones are valid. */
+    private int[] elements;
+
+    /** The number of elements. */
+    private int   size = 0;
+
+    /**
+     * Create an empty list.
+     */
+    public IntList()
+    {
+        this(16);
+    }
+
+    /**
+     * Create an empty list with the given initial capacity.
+     * 
+     * @param capacity The initial capacity.
+     * 
+     * @throws IllegalArgumentException If the capacity is negative.
+     */
+    public IntList(int capacity) throws IllegalArgumentException
+    {
+        if (capacity < 0)
+            throw new IllegalArgumentException(getClass() + ": Cannot set negative capacity.");
+        elements = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Create a copy of the given list.
+     * 
+     * @param elements The list to copy.
+     */
+    public IntList(IntList elements)
+    {
+        this.elements = Arrays.copyOf(elements.elements, Math.max(1, elements.size));
+        size = elements.size;
+    }
+
+    /**
+     * Create a list containing the given elements, in the order the collection's iterator returns them.
+     * 
+     * @param elements The elements.
+     */
+    public IntList(Collection<Integer> elements)
+    {
+        this(elements.size());
+        for (int element : elements)
+            add(element);
+    }
+
+    /**
+     * Append the given element to the end of the list.
+     * 
+     * @param element The element to append.
+     */
+    public void add(int element)
+    {
+        if (size == elements.length)
+            elements = Arrays.copyOf(elements, Math.max(size + 1, size + (size >> 1)));
+        elements[size++] = element;
+    }
+
+    /**
+     * Return the <code>i</code>-th element.
+     * 
+     * @param i Index of the element.
+     * @return The element.
+     * 
+     * @throws IndexOutOfBoundsException If the index is out of the bounds of the list.
+     */
+    public int get(int i) throws IndexOutOfBoundsException
+    {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds of a list of size " + size);
+        return elements[i];
+    }
+
+    /**
+     * Return the number of elements.
+     * 
+     * @return The number of elements.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Release the unused capacity.
+     */
+    public void trimToSize()
+    {
+        if (elements.length > size)
+            elements = Arrays.copyOf(elements, Math.max(1, size));
+    }
+
+    /**
+     * Return a copy of the elements.
+     * 
+     * @return The elements in an array of length {@link #size()}.
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Return an iterator over the elements.
+     * <p>
+     * The iterator returns the elements added before its creation; elements added later may or may not be returned.
+     * 
+     * @return The iterator.
+     */
+    public IntIterator iterator()
+    {
+        return new IntIterator() {
+            /** Index of the next element. */
+            private int         i    = 0;
+            /** The elements at the time of the creation of the iterator. */
+            private final int[] data = elements;
+            /** The size at the time of the creation of the iterator. */
+            private final int   end  = size;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < end;
+            }
+
+            @Override
+            public int next()
+            {
+                if (i >= end)
+                    throw new NoSuchElementException();
+                return data[i++];
+            }
+        };
+    }
+}
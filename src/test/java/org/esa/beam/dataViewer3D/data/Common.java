@@ -11,7 +11,10 @@ import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.BulkReader;
 import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.IteratorBulkReader;
+import org.esa.beam.dataViewer3D.data.source.TiledDataSource;
 import org.esa.beam.dataViewer3D.data.type.ByteType;
 import org.esa.beam.dataViewer3D.data.type.DoubleType;
 import org.esa.beam.dataViewer3D.data.type.FloatType;
@@ -277,6 +280,12 @@ public class Common
                 };
             }
 
+            @Override
+            public BulkReader<Byte> bulkReader()
+            {
+                return new IteratorBulkReader<Byte>(numericTypeIterator());
+            }
+
             @Override
             public Byte getDefinedMin()
             {
@@ -379,6 +388,12 @@ public class Common
                 };
             }
 
+            @Override
+            public BulkReader<Integer> bulkReader()
+            {
+                return new IteratorBulkReader<Integer>(numericTypeIterator());
+            }
+
             @Override
             public Integer getDefinedMin()
             {
@@ -481,6 +496,12 @@ public class Common
                 };
             }
 
+            @Override
+            public BulkReader<Double> bulkReader()
+            {
+                return new IteratorBulkReader<Double>(numericTypeIterator());
+            }
+
             @Override
             public Double getDefinedMin()
             {
@@ -583,6 +604,12 @@ public class Common
                 };
             }
 
+            @Override
+            public BulkReader<Float> bulkReader()
+            {
+                return new IteratorBulkReader<Float>(numericTypeIterator());
+            }
+
             @Override
             public Float getDefinedMin()
             {
@@ -608,4 +635,179 @@ public class Common
             }
         };
     }
-}
\ No newline at end of file
+    /**
+     * Return a tiled view of the given data source. The last tile is padded with invalid entries.
+     * 
+     * @param source The source to view.
+     * @param tileSize The number of entries in a tile.
+     * @return The tiled data source.
+     */
+    public static <N extends Number> TiledDataSource<N> getTiledTestDataSource(final DataSource<N> source,
+            final int tileSize)
+    {
+        return getTiledTestDataSource(source, tileSize, new boolean[0], true);
+    }
+
+    /**
+     * Return a tiled view of the given data source. The last tile is padded with invalid entries.
+     * 
+     * @param source The source to view.
+     * @param tileSize The number of entries in a tile.
+     * @param emptyTiles The tiles whose <code>i</code>-th entry is <code>true</code> contain only invalid entries.
+     * @param reportEmptyTiles If <code>true</code>, the empty tiles are not returned by
+     *            {@link TiledDataSource#getDataTiles()}.
+     * @return The tiled data source.
+     */
+    public static <N extends Number> TiledDataSource<N> getTiledTestDataSource(final DataSource<N> source,
+            final int tileSize, final boolean[] emptyTiles, final boolean reportEmptyTiles)
+    {
+        final int numTiles = (source.size() + tileSize - 1) / tileSize;
+        return new TiledDataSource<N>() {
+
+            @Override
+            public ValidatingIterator<N> iterator()
+            {
+                return new PaddedIterator<N>(source.iterator(), 0, numTiles * tileSize, tileSize, emptyTiles);
+            }
+
+            @Override
+            public ValidatingIterator<NumericType<N>> numericTypeIterator()
+            {
+                return new PaddedIterator<NumericType<N>>(source.numericTypeIterator(), 0, numTiles * tileSize,
+                        tileSize, emptyTiles);
+            }
+
+            @Override
+            public BulkReader<N> bulkReader()
+            {
+                return new IteratorBulkReader<N>(numericTypeIterator());
+            }
+
+            @Override
+            public BulkReader<N> bulkReader(int firstTile, int lastTile)
+            {
+                if (firstTile < 0 || lastTile >= numTiles || firstTile > lastTile)
+                    throw new IndexOutOfBoundsException();
+                return new IteratorBulkReader<N>(new PaddedIterator<NumericType<N>>(source.numericTypeIterator(),
+                        firstTile * tileSize, (lastTile + 1) * tileSize, tileSize, emptyTiles));
+            }
+
+            @Override
+            public int getNumTiles()
+            {
+                return numTiles;
+            }
+
+            @Override
+            public int getTileSize()
+            {
+                return tileSize;
+            }
+
+            @Override
+            public int[] getDataTiles()
+            {
+                final int[] tiles = new int[numTiles];
+                int count = 0;
+                for (int i = 0; i < numTiles; i++) {
+                    if (!reportEmptyTiles || i >= emptyTiles.length || !emptyTiles[i])
+                        tiles[count++] = i;
+                }
+                return Arrays.copyOf(tiles, count);
+            }
+
+            @Override
+            public int size()
+            {
+                return source.size();
+            }
+
+            @Override
+            public N getDefinedMin()
+            {
+                return source.getDefinedMin();
+            }
+
+            @Override
+            public N getDefinedMax()
+            {
+                return source.getDefinedMax();
+            }
+
+            @Override
+            public boolean isCompatible(DataSource<?> other)
+            {
+                return other.size() == this.size();
+            }
+
+            @Override
+            public String getName()
+            {
+                return source.getName();
+            }
+        };
+    }
+
+    /**
+     * An iterator returning the given range of entries of another iterator, padded with invalid entries if the other
+     * iterator is shorter. The entries of empty tiles are returned as invalid.
+     * 
+     * @author Martin Pecka
+     * @param <T> Type of the entries.
+     */
+    private static class PaddedIterator<T> implements ValidatingIterator<T>
+    {
+        private final ValidatingIterator<T> it;
+        private final int                   end;
+        private final int                   tileSize;
+        private final boolean[]             emptyTiles;
+        private int                         index;
+        private boolean                     lastValid = false;
+
+        public PaddedIterator(ValidatingIterator<T> it, int start, int end, int tileSize, boolean[] emptyTiles)
+        {
+            this.it = it;
+            this.end = end;
+            this.tileSize = tileSize;
+            this.emptyTiles = emptyTiles;
+            for (index = 0; index < start && it.hasNext(); index++)
+                it.next();
+            index = start;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return index < end;
+        }
+
+        @Override
+        public T next()
+        {
+            final int tile = index++ / tileSize;
+            if (it.hasNext()) {
+                final T next = it.next();
+                lastValid = it.isLastReturnedValid();
+                if (tile < emptyTiles.length && emptyTiles[tile]) {
+                    lastValid = false;
+                    return null;
+                }
+                return next;
+            }
+            lastValid = false;
+            return null;
+        }
+
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isLastReturnedValid()
+        {
+            return lastValid;
+        }
+    }
+}
\ No newline at end of file
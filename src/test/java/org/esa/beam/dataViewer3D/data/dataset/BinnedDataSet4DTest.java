@@ -0,0 +1,125 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class BinnedDataSet4DTest
+{
+
+    /**
+     * Test that the voxels contain the right counts and means, compared to binning the entries one by one.
+     */
+    @Test
+    public void testCreateFromDataSources()
+    {
+        final int size = 50000, bins = 8;
+        final SyntheticDataSource<Double> x = SyntheticDataSource.createDouble(size, 1, -1, 1,
+                Distribution.uniform(), null);
+        final SyntheticDataSource<Double> y = SyntheticDataSource.createDouble(size, 2, 0, 100,
+                Distribution.uniform(), null);
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(size, 3, -5, 5,
+                Distribution.uniform(), null);
+        final SyntheticDataSource<Double> w = SyntheticDataSource.createDouble(size, 4, 10, 20,
+                Distribution.uniform(), null);
+
+        final int[] counts = new int[bins * bins * bins];
+        final double[] sums = new double[counts.length];
+        for (int i = 0; i < size; i++) {
+            final int voxel = (bin(x.getValue(i), -1, 1, bins) * bins + bin(y.getValue(i), 0, 100, bins)) * bins
+                    + bin(z.getValue(i), -5, 5, bins);
+            counts[voxel]++;
+            sums[voxel] += w.getValue(i);
+        }
+
+        final BinnedDataSet4D dataSet = BinnedDataSet4D.createFromDataSources(bins, BinnedDataSet.Aggregate.MEAN, x,
+                y, z, w, null);
+        assertEquals("Wrong number of entries", size, dataSet.getEntries());
+        assertEquals("Wrong number of bins", bins, dataSet.getBins());
+
+        final IntIterator histIt = dataSet.histogramIntIterator();
+        final Iterator<Double> wIt = dataSet.wIterator();
+        final Iterator<DataPoint4D<NumericType<Double>, NumericType<Double>, NumericType<Double>, NumericType<Double>>> pointIt = dataSet
+                .pointIterator();
+        int voxels = 0;
+        for (int voxel = 0; voxel < counts.length; voxel++) {
+            if (counts[voxel] == 0)
+                continue;
+            voxels++;
+
+            assertEquals("Wrong count of voxel " + voxel, counts[voxel], histIt.next());
+            final double mean = wIt.next();
+            assertEquals("Wrong mean of voxel " + voxel, sums[voxel] / counts[voxel], mean, 1e-9);
+            assertTrue("Mean out of the range of w", mean >= 10 && mean <= 20);
+            assertEquals("Wrong w of point " + voxel, mean, pointIt.next().getW().getNumber(), 0);
+        }
+        assertFalse("Too many voxels", histIt.hasNext() || wIt.hasNext() || pointIt.hasNext());
+        assertEquals("Wrong size", voxels, dataSet.size());
+
+        assertEquals("Wrong minimum", -1 + 1d / bins, dataSet.getMinX(), 1e-9);
+        assertEquals("Wrong maximum", 1 - 1d / bins, dataSet.getMaxX(), 1e-9);
+        assertTrue("Wrong range of w", dataSet.getMinW() >= 10 && dataSet.getMaxW() <= 20);
+    }
+
+    /**
+     * Test the other aggregates.
+     */
+    @Test
+    public void testAggregates()
+    {
+        final int size = 1000, bins = 2;
+        final SyntheticDataSource<Double> x = SyntheticDataSource.createDouble(size, 1, 0, 1, Distribution.uniform(),
+                null);
+        final SyntheticDataSource<Double> w = SyntheticDataSource.createDouble(size, 2, -1, 1,
+                Distribution.uniform(), null);
+
+        final BinnedDataSet.Aggregate[] aggregates = { BinnedDataSet.Aggregate.MIN, BinnedDataSet.Aggregate.MAX,
+                BinnedDataSet.Aggregate.SUM };
+        for (BinnedDataSet.Aggregate aggregate : aggregates) {
+            // all points lie on the diagonal of the grid, so only the first and the last voxels are non-empty
+            final double[] expected = new double[2];
+            final boolean[] empty = { true, true };
+            for (int i = 0; i < size; i++) {
+                final int voxel = bin(x.getValue(i), 0, 1, bins);
+                final double value = w.getValue(i);
+                if (empty[voxel])
+                    expected[voxel] = value;
+                else if (aggregate == BinnedDataSet.Aggregate.MIN)
+                    expected[voxel] = Math.min(expected[voxel], value);
+                else if (aggregate == BinnedDataSet.Aggregate.MAX)
+                    expected[voxel] = Math.max(expected[voxel], value);
+                else
+                    expected[voxel] += value;
+                empty[voxel] = false;
+            }
+
+            final BinnedDataSet4D dataSet = BinnedDataSet4D.createFromDataSources(bins, aggregate, x, x, x, w, null);
+            assertEquals("Wrong size", 2, dataSet.size());
+            final Iterator<Double> wIt = dataSet.wIterator();
+            assertEquals("Wrong " + aggregate, expected[0], wIt.next(), 1e-9);
+            assertEquals("Wrong " + aggregate, expected[1], wIt.next(), 1e-9);
+        }
+    }
+
+    private static int bin(double value, double min, double max, int bins)
+    {
+        return Math.min(bins - 1, (int) ((value - min) / ((max - min) / bins)));
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.esa.beam.dataViewer3D.data.source.BulkReader;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.RandomAccessDataSource;
+import org.esa.beam.dataViewer3D.data.source.RandomAccessReader;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.source.TiledDataSource;
+import org.esa.beam.dataViewer3D.data.type.IntType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.util.ValidatingIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class CardinalityEstimatorTest
+{
+    /** The size of the sources. */
+    private static final int SIZE        = 1 << 18;
+
+    /** The size of the subsample. */
+    private static final int SAMPLE_SIZE = 1 << 14;
+
+    /**
+     * Test method for {@link CardinalityEstimator#estimate(int, DataSource...)} - sources with few distinct points
+     * (like 8-bit bands) are estimated almost exactly, both tiled and random-access ones.
+     */
+    @Test
+    public void testFewDistinctPoints()
+    {
+        final SyntheticDataSource<Byte> x = SyntheticDataSource.createByte(SIZE, 1, (byte) 0, (byte) 15,
+                Distribution.uniform());
+        final SyntheticDataSource<Byte> y = SyntheticDataSource.createByte(SIZE, 2, (byte) 0, (byte) 15,
+                Distribution.uniform());
+        final SyntheticDataSource<Integer> z = SyntheticDataSource.createInt(SIZE, 3, 0, 3, Distribution.uniform());
+        final int expected = countDistinctPoints(x, y, z);
+
+        assertEquals(expected, CardinalityEstimator.estimate(SAMPLE_SIZE, x, y, z), expected * 0.05);
+        assertEquals(expected, CardinalityEstimator.estimate(SAMPLE_SIZE, untiled(x), untiled(y), untiled(z)),
+                expected * 0.05);
+    }
+
+    /**
+     * Test method for {@link CardinalityEstimator#estimate(int, DataSource...)} - sources with mostly distinct points
+     * are estimated close to their size, although the subsample contains only a small part of them.
+     */
+    @Test
+    public void testManyDistinctPoints()
+    {
+        final SyntheticDataSource<Double> x = SyntheticDataSource.createDouble(SIZE, 4, 0d, 1d, Distribution.uniform(),
+                null);
+        final SyntheticDataSource<Double> y = SyntheticDataSource.createDouble(SIZE, 5, 0d, 1d, Distribution.uniform(),
+                null);
+        final SyntheticDataSource<Integer> z = SyntheticDataSource.createInt(SIZE, 6, 0, 3, Distribution.uniform());
+        final int expected = countDistinctPoints(x, y, z);
+
+        assertEquals(expected, CardinalityEstimator.estimate(SAMPLE_SIZE, x, y, z), expected * 0.1);
+        assertEquals(expected, CardinalityEstimator.estimate(SAMPLE_SIZE, untiled(x), untiled(y), untiled(z)),
+                expected * 0.1);
+    }
+
+    /**
+     * Test method for {@link CardinalityEstimator#estimate(int, DataSource...)} - sources with some duplicates are
+     * estimated well, although the subsample contains only a small part of their distinct points.
+     */
+    @Test
+    public void testSomeDuplicates()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(SIZE, 7, 0, 999, Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(SIZE, 8, 0, 99, Distribution.uniform());
+        final SyntheticDataSource<Byte> z = SyntheticDataSource.createByte(SIZE, 9, (byte) 0, (byte) 0,
+                Distribution.uniform());
+        final int expected = countDistinctPoints(x, y, z);
+
+        assertEquals(expected, CardinalityEstimator.estimate(SAMPLE_SIZE, x, y, z), expected * 0.1);
+    }
+
+    /**
+     * Test method for {@link CardinalityEstimator#estimate(int, DataSource...)} - the subsample of random-access
+     * sources is spread over all tiles, so a first tile not representing the rest of the sources doesn't spoil the
+     * estimate, although a single tile is bigger than the subsample.
+     */
+    @Test
+    public void testUnrepresentativeFirstTile()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(SIZE, 10, 1, 16, Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(SIZE, 11, 1, 16, Distribution.uniform());
+        final SyntheticDataSource<Integer> z = SyntheticDataSource.createInt(SIZE, 12, 1, 4, Distribution.uniform());
+        final int tileSize = SIZE / 4;
+
+        // the constant first tile adds a single point
+        final Set<List<Number>> points = new HashSet<List<Number>>();
+        for (int tile = 1; tile < 4; tile++)
+            addDistinctPoints(points, x.split(4).get(tile), y.split(4).get(tile), z.split(4).get(tile));
+        final int expected = points.size() + 1;
+
+        assertEquals(expected, CardinalityEstimator.estimate(SAMPLE_SIZE, constantFirstTile(x, tileSize),
+                constantFirstTile(y, tileSize), constantFirstTile(z, tileSize)), expected * 0.05);
+    }
+
+    /**
+     * Test that sources which can't be subsampled and small sources aren't estimated, and that the estimate selects
+     * the engine of the point counter.
+     */
+    @Test
+    public void testNoEstimate()
+    {
+        assertNull(CardinalityEstimator.estimate(SAMPLE_SIZE, Common.getTestDataSourceX(SIZE),
+                Common.getTestDataSourceY(SIZE), Common.getTestDataSourceZ(SIZE)));
+
+        final SyntheticDataSource<Integer> small = SyntheticDataSource.createInt(1000, 1, 0, 10,
+                Distribution.uniform());
+        assertNull(CardinalityEstimator.estimate(small, small, small));
+
+        assertFalse(PointCounter.create(3, null).isSorting());
+        assertFalse(PointCounter.create(3, 1000).isSorting());
+        assertTrue(PointCounter.create(3, PointKeySorter.MIN_DISTINCT_POINTS).isSorting());
+    }
+
+    /**
+     * Count the distinct points of the given sources exactly.
+     * 
+     * @param sources The sources.
+     * @return The number of distinct points.
+     */
+    private static int countDistinctPoints(DataSource<?>... sources)
+    {
+        final Set<List<Number>> points = new HashSet<List<Number>>();
+        addDistinctPoints(points, sources);
+        return points.size();
+    }
+
+    /**
+     * Add the distinct points of the given sources to the given set.
+     * 
+     * @param points The set of points.
+     * @param sources The sources.
+     */
+    private static void addDistinctPoints(Set<List<Number>> points, DataSource<?>... sources)
+    {
+        final Iterator<?>[] iterators = new Iterator<?>[sources.length];
+        for (int d = 0; d < sources.length; d++)
+            iterators[d] = sources[d].iterator();
+
+        while (iterators[0].hasNext()) {
+            final Number[] point = new Number[sources.length];
+            for (int d = 0; d < sources.length; d++)
+                point[d] = (Number) iterators[d].next();
+            points.add(Arrays.asList(point));
+        }
+    }
+
+    /**
+     * Return a tiled random-access source reading the given source, whose first tile contains only zeros.
+     * <p>
+     * Only the random-access reader and the tiling are implemented.
+     * 
+     * @param source The source to read.
+     * @param tileSize The number of entries of a tile.
+     * @return The source with the constant first tile.
+     */
+    private static DataSource<Integer> constantFirstTile(final SyntheticDataSource<Integer> source, final int tileSize)
+    {
+        abstract class TiledRandomAccessDataSource implements TiledDataSource<Integer>, RandomAccessDataSource<Integer>
+        {}
+
+        return new TiledRandomAccessDataSource() {
+            @Override
+            public int size()
+            {
+                return source.size();
+            }
+
+            @Override
+            public Integer getDefinedMin()
+            {
+                return source.getDefinedMin();
+            }
+
+            @Override
+            public Integer getDefinedMax()
+            {
+                return source.getDefinedMax();
+            }
+
+            @Override
+            public boolean isCompatible(DataSource<?> other)
+            {
+                return other.size() == size();
+            }
+
+            @Override
+            public String getName()
+            {
+                return source.getName();
+            }
+
+            @Override
+            public ValidatingIterator<Integer> iterator()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ValidatingIterator<NumericType<Integer>> numericTypeIterator()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public BulkReader<Integer> bulkReader()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public BulkReader<Integer> bulkReader(int firstTile, int lastTile)
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int getNumTiles()
+            {
+                return (size() + tileSize - 1) / tileSize;
+            }
+
+            @Override
+            public int getTileSize()
+            {
+                return tileSize;
+            }
+
+            @Override
+            public int[] getDataTiles()
+            {
+                final int[] tiles = new int[getNumTiles()];
+                for (int i = 0; i < tiles.length; i++)
+                    tiles[i] = i;
+                return tiles;
+            }
+
+            @Override
+            public RandomAccessReader<Integer> randomAccessReader()
+            {
+                final RandomAccessReader<Integer> reader = source.randomAccessReader();
+                return new RandomAccessReader<Integer>() {
+                    /** Index of the next entry to read, and index of the first entry of the last read block. */
+                    private int index = 0, blockIndex = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return reader.hasNext();
+                    }
+
+                    @Override
+                    public void seek(int index)
+                    {
+                        reader.seek(index);
+                        this.index = index;
+                    }
+
+                    @Override
+                    public int read(double[] values, BitSet valid)
+                    {
+                        final int read = reader.read(values, valid);
+                        for (int j = 0; j < read && index + j < tileSize; j++)
+                            values[j] = 0;
+                        blockIndex = index;
+                        index += read;
+                        return read;
+                    }
+
+                    @Override
+                    public Integer getNumber(int i)
+                    {
+                        return blockIndex + i < tileSize ? 0 : reader.getNumber(i);
+                    }
+
+                    @Override
+                    public NumericType<Integer> getNumericType(int i)
+                    {
+                        return blockIndex + i < tileSize ? new IntType(0) : reader.getNumericType(i);
+                    }
+
+                    @Override
+                    public int getHashCode(int i)
+                    {
+                        return blockIndex + i < tileSize ? 0 : reader.getHashCode(i);
+                    }
+
+                    @Override
+                    public long getKey(int i)
+                    {
+                        return blockIndex + i < tileSize ? 0 : reader.getKey(i);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Return a random-access source, which isn't tiled, reading the given source.
+     * 
+     * @param source The source to read.
+     * @return The untiled source.
+     */
+    private static <N extends Number> DataSource<N> untiled(final SyntheticDataSource<N> source)
+    {
+        return new RandomAccessDataSource<N>() {
+            @Override
+            public int size()
+            {
+                return source.size();
+            }
+
+            @Override
+            public N getDefinedMin()
+            {
+                return source.getDefinedMin();
+            }
+
+            @Override
+            public N getDefinedMax()
+            {
+                return source.getDefinedMax();
+            }
+
+            @Override
+            public boolean isCompatible(DataSource<?> other)
+            {
+                return other.size() == size();
+            }
+
+            @Override
+            public String getName()
+            {
+                return source.getName();
+            }
+
+            @Override
+            public ValidatingIterator<N> iterator()
+            {
+                return source.iterator();
+            }
+
+            @Override
+            public ValidatingIterator<NumericType<N>> numericTypeIterator()
+            {
+                return source.numericTypeIterator();
+            }
+
+            @Override
+            public BulkReader<N> bulkReader()
+            {
+                return source.bulkReader();
+            }
+
+            @Override
+            public RandomAccessReader<N> randomAccessReader()
+            {
+                return source.randomAccessReader();
+            }
+        };
+    }
+}
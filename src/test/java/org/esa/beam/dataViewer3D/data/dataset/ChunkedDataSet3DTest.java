@@ -0,0 +1,183 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.source.BulkReader;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.esa.beam.util.ValidatingIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class ChunkedDataSet3DTest
+{
+
+    /**
+     * Test that a stack of source sets gives the same points as a stream data set of the first set, with the counts
+     * summed over the stack.
+     */
+    @Test
+    public void testStack()
+    {
+        final DataSource<Byte> x = Common.getTestDataSourceX(12);
+        final DataSource<Integer> y = Common.getTestDataSourceY(12);
+        final DataSource<Double> z = Common.getTestDataSourceZ(12);
+
+        final ChunkedDataSet3D.Builder3D<Byte, Integer, Double> builder = ChunkedDataSet3D
+                .<Byte, Integer, Double> getBuilder();
+        builder.addDataSources(x, y, z).addDataSources(x, y, z);
+        builder.addDataSources(Common.getTiledTestDataSource(x, 5), Common.getTiledTestDataSource(y, 5),
+                Common.getTiledTestDataSource(z, 5));
+        final ChunkedDataSet3D<Byte, Integer, Double> chunked = builder.getResult();
+        final DataSet3D<Byte, Integer, Double> stream = StreamDataSet3D.createFromDataSources(null, x, y, z, null);
+
+        assertEquals("Wrong size", stream.size(), chunked.size());
+        assertEquals("Wrong long size", stream.size(), chunked.longSize());
+        assertEquals("Wrong long size of the stream set", stream.size(), stream.longSize());
+
+        final Iterator<DataPoint3D<NumericType<Byte>, NumericType<Integer>, NumericType<Double>>> streamIt = stream
+                .pointIterator();
+        final Iterator<DataPoint3D<NumericType<Byte>, NumericType<Integer>, NumericType<Double>>> chunkedIt = chunked
+                .pointIterator();
+        final IntIterator streamHistIt = stream.histogramIntIterator();
+        final IntIterator chunkedHistIt = chunked.histogramIntIterator();
+        final Iterator<Double> zIt = chunked.zIterator();
+        while (streamIt.hasNext()) {
+            final DataPoint3D<NumericType<Byte>, NumericType<Integer>, NumericType<Double>> point = streamIt.next();
+            assertEquals("Wrong point", point, chunkedIt.next());
+            assertEquals("Wrong count", streamHistIt.next() * 3, chunkedHistIt.next());
+            assertEquals("Wrong z value", point.getZ().getNumber(), zIt.next());
+        }
+        assertFalse("Too many points", chunkedIt.hasNext() || chunkedHistIt.hasNext() || zIt.hasNext());
+
+        assertEquals("Wrong min", stream.getMinX(), chunked.getMinX());
+        assertEquals("Wrong min", stream.getMinY(), chunked.getMinY());
+        assertEquals("Wrong max", stream.getMaxZ(), chunked.getMaxZ());
+        assertEquals("Wrong name", x.getName(), chunked.getSourceName(0));
+
+        try {
+            ChunkedDataSet3D.<Byte, Integer, Double> getBuilder().getResult();
+            fail("Built a data set without sources.");
+        } catch (IllegalStateException e) {}
+    }
+
+    /**
+     * Test method for
+     * {@link AbstractDataSet#createFromDataSources(Integer, DataSource, DataSource, DataSource, ProgressMonitor)} -
+     * sources too big for stream data sets can't be limited.
+     */
+    @Test
+    public void testCreateLimitedFromHugeSources()
+    {
+        final DataSource<Byte> x = getHugeDataSource(Common.getTestDataSourceX(12));
+        final DataSource<Integer> y = getHugeDataSource(Common.getTestDataSourceY(12));
+        final DataSource<Double> z = getHugeDataSource(Common.getTestDataSourceZ(12));
+        final DataSource<Float> w = getHugeDataSource(Common.getTestDataSourceW(12));
+
+        try {
+            AbstractDataSet.createFromDataSources(1000, x, y, z, null);
+            fail("Created a chunked data set ignoring the maximum number of points.");
+        } catch (IllegalArgumentException e) {}
+        try {
+            AbstractDataSet.createFromDataSources(1000, x, y, z, w, null);
+            fail("Created a chunked data set ignoring the maximum number of points.");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test method for {@link ChunkedPointTable#add(long[], long)} with a table split into many segments.
+     */
+    @Test
+    public void testChunkedPointTable()
+    {
+        final ChunkedPointTable table = new ChunkedPointTable(2, 2);
+        for (int i = 0; i < 3000; i++)
+            assertEquals("Wrong result of add", i < 1000, table.add(new long[] { i % 1000, -(i % 1000) }, i));
+
+        assertEquals("Wrong size", 1000, table.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Wrong count", 3, table.getCount(i));
+            assertEquals("Wrong location", i, table.getLocation(i));
+        }
+
+        table.releaseKeys();
+        assertEquals("Wrong location after releasing the keys", 999, table.getLocation(999));
+        try {
+            table.add(new long[] { 0, 0 }, 0);
+            fail("Added a point after releasing the keys.");
+        } catch (IllegalStateException e) {}
+    }
+
+    /**
+     * Return a view of the given source pretending to be too big for stream data sets.
+     * 
+     * @param source The source to view.
+     * @return The view of the source.
+     */
+    private static <N extends Number> DataSource<N> getHugeDataSource(final DataSource<N> source)
+    {
+        return new DataSource<N>() {
+            @Override
+            public int size()
+            {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public N getDefinedMin()
+            {
+                return source.getDefinedMin();
+            }
+
+            @Override
+            public N getDefinedMax()
+            {
+                return source.getDefinedMax();
+            }
+
+            @Override
+            public boolean isCompatible(DataSource<?> other)
+            {
+                return other.size() == size();
+            }
+
+            @Override
+            public String getName()
+            {
+                return source.getName();
+            }
+
+            @Override
+            public ValidatingIterator<N> iterator()
+            {
+                return source.iterator();
+            }
+
+            @Override
+            public ValidatingIterator<NumericType<N>> numericTypeIterator()
+            {
+                return source.numericTypeIterator();
+            }
+
+            @Override
+            public BulkReader<N> bulkReader()
+            {
+                return source.bulkReader();
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class ColumnarDataSet4DTest
+{
+
+    /**
+     * Test method for {@link ColumnarDataSet4D#copyOf(DataSet4D)} - the copy has to contain the same points of the same
+     * types in the same order.
+     */
+    @Test
+    public void testCopyOf()
+    {
+        final DataSource<Byte> x = Common.getTestDataSourceX(12);
+        final DataSource<Integer> y = Common.getTestDataSourceY(12);
+        final DataSource<Double> z = Common.getTestDataSourceZ(12);
+        final DataSource<Float> w = Common.getTestDataSourceW(12);
+
+        final DataSet4D<Byte, Integer, Double, Float> stream = StreamDataSet4D.createFromDataSources(null, x, y, z, w,
+                null);
+        final ColumnarDataSet4D<Byte, Integer, Double, Float> columnar = ColumnarDataSet4D.copyOf(stream);
+        // the test sources mix several precisions in one source, while a column has a single precision
+        assertDataSetsEqual(stream, columnar, false);
+
+        assertEquals("Wrong min", stream.getMinX(), columnar.getMinX());
+        assertEquals("Wrong min", stream.getMinY(), columnar.getMinY());
+        assertEquals("Wrong min", stream.getMinZ(), columnar.getMinZ());
+        assertEquals("Wrong max", stream.getMaxW(), columnar.getMaxW());
+        assertEquals("Wrong name", w.getName(), columnar.getSourceName(3));
+    }
+
+    /**
+     * Test method for {@link ColumnarDataSet4D#copyOf(DataSet4D)} - the copy of a sampled set has the minimum and
+     * maximum values of all valid entries of the sources, not only of the sampled points.
+     */
+    @Test
+    public void testCopyOfSample()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(10000, 5, 0, 100000,
+                Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(10000, 6, 0, 100000,
+                Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(10000, 7, 0d, 1d,
+                Distribution.uniform(), null);
+        final SyntheticDataSource<Float> w = SyntheticDataSource.createFloat(10000, 8, 0f, 1f,
+                Distribution.uniform(), null);
+
+        final DataSet4D<Integer, Integer, Double, Float> stream = StreamDataSet4D.createFromDataSources(10, x, y, z,
+                w, null);
+        final ColumnarDataSet4D<Integer, Integer, Double, Float> columnar = ColumnarDataSet4D.copyOf(stream);
+        assertDataSetsEqual(stream, columnar, true);
+
+        int sampledMinX = Integer.MAX_VALUE;
+        for (Iterator<Integer> it = columnar.xIterator(); it.hasNext();)
+            sampledMinX = Math.min(sampledMinX, it.next());
+        assertTrue("The sample contains the minimum", sampledMinX > stream.getMinX());
+
+        assertEquals("Wrong min", stream.getMinX(), columnar.getMinX());
+        assertEquals("Wrong min", stream.getMinZ(), columnar.getMinZ());
+        assertEquals("Wrong max", stream.getMaxY(), columnar.getMaxY());
+        assertEquals("Wrong max", stream.getMaxW(), columnar.getMaxW());
+    }
+
+    /**
+     * Test that small data sets are columnar by default and keep the precision of decimal sources.
+     */
+    @Test
+    public void testCreateFromDataSources()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(10000, 1, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(10000, 2, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(10000, 3, 0d, 1d,
+                Distribution.uniform(), 2);
+        final SyntheticDataSource<Float> w = SyntheticDataSource.createFloat(10000, 4, 0f, 1f,
+                Distribution.uniform(), 1);
+
+        final DataSet4D<Integer, Integer, Double, Float> created = AbstractDataSet.createFromDataSources(1000, x, y, z,
+                w, null);
+        assertTrue("The data set isn't columnar", created instanceof ColumnarDataSet4D<?, ?, ?, ?>);
+        assertDataSetsEqual(StreamDataSet4D.createFromDataSources(1000, x, y, z, w, null), created, true);
+    }
+
+    /**
+     * Assert that the given data sets contain equal points with equal counts in the same order.
+     * 
+     * @param expected The expected data set.
+     * @param actual The actual data set.
+     * @param comparePrecision Whether to compare the precisions of the coordinates, too.
+     */
+    private static <X extends Number, Y extends Number, Z extends Number, W extends Number> void assertDataSetsEqual(
+            DataSet4D<X, Y, Z, W> expected, DataSet4D<X, Y, Z, W> actual, boolean comparePrecision)
+    {
+        assertEquals("Wrong size", expected.size(), actual.size());
+
+        final Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> expectedIt = expected
+                .pointIterator();
+        final Iterator<DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>>> actualIt = actual
+                .pointIterator();
+        final IntIterator expectedHistIt = expected.histogramIntIterator();
+        final IntIterator actualHistIt = actual.histogramIntIterator();
+        final Iterator<X> xIt = actual.xIterator();
+        final Iterator<W> wIt = actual.wIterator();
+        while (expectedIt.hasNext()) {
+            final DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> point = expectedIt.next();
+            final DataPoint4D<NumericType<X>, NumericType<Y>, NumericType<Z>, NumericType<W>> actualPoint = actualIt
+                    .next();
+            if (comparePrecision)
+                assertEquals("Wrong point", point, actualPoint);
+            assertEquals("Wrong z", point.getZ().getNumber(), actualPoint.getZ().getNumber());
+            assertEquals("Wrong count", expectedHistIt.next(), actualHistIt.next());
+            assertEquals("Wrong x value", point.getX().getNumber(), xIt.next());
+            assertEquals("Wrong w value", point.getW().getNumber(), wIt.next());
+        }
+        assertFalse("Too many points", actualIt.hasNext() || actualHistIt.hasNext() || xIt.hasNext());
+    }
+}
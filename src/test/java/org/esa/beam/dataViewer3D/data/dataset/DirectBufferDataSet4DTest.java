@@ -0,0 +1,175 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class DirectBufferDataSet4DTest
+{
+
+    /**
+     * Test method for {@link DirectBufferDataSet4D#copyOf(DataSet4D)} - the buffers have to contain the coordinates of
+     * the points in the same order.
+     */
+    @Test
+    public void testCopyOf()
+    {
+        final DataSet4D<Integer, Integer, Double, Float> stream = createStreamDataSet();
+        final DirectBufferDataSet4D buffered = DirectBufferDataSet4D.copyOf(stream);
+        assertEquals("Wrong size", stream.size(), buffered.size());
+
+        final FloatBuffer vertices = buffered.getVertexBuffer();
+        final FloatBuffer attributes = buffered.getAttributeBuffer();
+        assertEquals("Wrong vertex buffer size", stream.size() * DirectBufferDataSet.VERTEX_SIZE, vertices.remaining());
+        assertEquals("Wrong attribute buffer size", stream.size(), attributes.remaining());
+        assertTrue("The vertex buffer isn't direct", vertices.isDirect());
+
+        final Iterator<DataPoint4D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>, NumericType<Float>>> it = stream
+                .pointIterator();
+        final IntIterator expectedHistIt = stream.histogramIntIterator();
+        final IntIterator actualHistIt = buffered.histogramIntIterator();
+        final Iterator<Float> zIt = buffered.zIterator();
+        float minZ = Float.POSITIVE_INFINITY, maxW = Float.NEGATIVE_INFINITY;
+        while (it.hasNext()) {
+            final DataPoint4D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>, NumericType<Float>> point = it
+                    .next();
+            assertEquals("Wrong x", point.getX().getNumber().floatValue(), vertices.get(), 0);
+            assertEquals("Wrong y", point.getY().getNumber().floatValue(), vertices.get(), 0);
+            final float z = vertices.get();
+            assertEquals("Wrong z", point.getZ().getNumber().floatValue(), z, 0);
+            assertEquals("Wrong z", z, zIt.next(), 0);
+            final float w = attributes.get();
+            assertEquals("Wrong w", point.getW().getNumber().floatValue(), w, 0);
+            assertEquals("Wrong count", expectedHistIt.next(), actualHistIt.next());
+
+            minZ = Math.min(minZ, z);
+            maxW = Math.max(maxW, w);
+        }
+        assertFalse("Too many points", actualHistIt.hasNext() || zIt.hasNext());
+
+        assertEquals("Wrong min", minZ, buffered.getMinZ(), 0);
+        assertEquals("Wrong max", maxW, buffered.getMaxW(), 0);
+        assertEquals("Wrong name", stream.getSourceName(3), buffered.getSourceName(3));
+        buffered.release();
+    }
+
+    /**
+     * Test method for {@link DirectBufferDataSet#release()}.
+     */
+    @Test
+    public void testRelease()
+    {
+        final DirectBufferDataSet4D buffered = DirectBufferDataSet4D.copyOf(createStreamDataSet());
+        final Iterator<Float> xIt = buffered.xIterator();
+        xIt.next();
+
+        assertFalse("The data set is released", buffered.isReleased());
+        buffered.release();
+        assertTrue("The data set isn't released", buffered.isReleased());
+        buffered.release();
+
+        try {
+            buffered.getVertexBuffer();
+            fail("Returned the vertex buffer of a released data set.");
+        } catch (IllegalStateException e) {}
+        try {
+            buffered.getAttributeBuffer();
+            fail("Returned the attribute buffer of a released data set.");
+        } catch (IllegalStateException e) {}
+        try {
+            xIt.next();
+            fail("Read a released data set.");
+        } catch (IllegalStateException e) {}
+
+        // the values kept on the heap are still accessible
+        assertEquals("Wrong size", 1000, buffered.size());
+        assertTrue("Wrong histogram", buffered.histogramIntIterator().hasNext());
+    }
+
+    /**
+     * Test method for {@link DirectBufferDataSet#retain(DataSet)} and {@link DirectBufferDataSet#release(DataSet)} - a
+     * data set filtered twice while both its creator and a viewer hold it isn't released until both release it.
+     */
+    @Test
+    public void testFilterTwice()
+    {
+        // the creator holds the computed data set for filtering, and a viewer displays it
+        final DirectBufferDataSet4D buffered = DirectBufferDataSet4D.copyOf(createStreamDataSet());
+        DirectBufferDataSet.retain(buffered);
+        DataSet displayed = buffered;
+
+        for (int i = 1; i <= 2; i++) {
+            final FilteredDataSet filtered = FilteredDataSet.create(buffered, new Number[] { 10 * i, null, null, null },
+                    new Number[] { null, null, null, 0.5 });
+            assertSame("Wrong buffers of the filtered set", buffered, DirectBufferDataSet.getBuffers(filtered));
+
+            // the viewer displays the filtered view instead
+            DirectBufferDataSet.retain(filtered);
+            DirectBufferDataSet.release(displayed);
+            displayed = filtered;
+            assertFalse("The filtered data set is released", buffered.isReleased());
+            assertEquals("Wrong size of the filtered set", filtered.size(), count(filtered.pointIterator()));
+        }
+
+        // the creator computes a new data set
+        buffered.release();
+        assertFalse("The displayed data set is released", buffered.isReleased());
+        assertEquals("Wrong size of the displayed set", displayed.size(), count(displayed.pointIterator()));
+
+        // the viewer displays the new data set
+        DirectBufferDataSet.release(displayed);
+        assertTrue("The data set isn't released", buffered.isReleased());
+        DirectBufferDataSet.release(displayed);
+        try {
+            DirectBufferDataSet.retain(displayed);
+            fail("Retained a released data set.");
+        } catch (IllegalStateException e) {}
+    }
+
+    /**
+     * @param it The iterator.
+     * @return The number of the remaining elements of the iterator.
+     */
+    private static int count(Iterator<? extends DataPoint> it)
+    {
+        int count = 0;
+        for (; it.hasNext(); it.next())
+            count++;
+        return count;
+    }
+
+    /**
+     * @return A stream data set of 1000 random points.
+     */
+    private static DataSet4D<Integer, Integer, Double, Float> createStreamDataSet()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(10000, 1, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(10000, 2, -50, 0, Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(10000, 3, 0d, 1d,
+                Distribution.uniform(), 3);
+        final SyntheticDataSource<Float> w = SyntheticDataSource.createFloat(10000, 4, 0f, 1f,
+                Distribution.uniform(), 2);
+        return StreamDataSet4D.createFromDataSources(1000, x, y, z, w, null);
+    }
+}
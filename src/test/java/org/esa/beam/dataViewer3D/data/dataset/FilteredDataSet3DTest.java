@@ -0,0 +1,111 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class FilteredDataSet3DTest
+{
+
+    /**
+     * Test method for {@link FilteredDataSet3D#create(DataSet3D, Number[], Number[])} - the view has to contain exactly
+     * the points of the underlying set lying in the ranges, in the same order and with the same counts.
+     */
+    @Test
+    public void testCreate()
+    {
+        final DataSet3D<Integer, Integer, Double> dataSet = createDataSet();
+        // the bounds of the integer coordinates are cast the same way the data sources cast them
+        final Number[] min = new Number[] { 10.5, null, 0.25 };
+        final Number[] max = new Number[] { 40, 30, null };
+        final FilteredDataSet3D<Integer, Integer, Double> filtered = FilteredDataSet3D.create(dataSet, min, max);
+        assertSame("Wrong underlying set", dataSet, filtered.getDataSet());
+
+        final Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>>> it = dataSet
+                .pointIterator();
+        final IntIterator histIt = dataSet.histogramIntIterator();
+        final Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>>> filteredIt = filtered
+                .pointIterator();
+        final IntIterator filteredHistIt = filtered.histogramIntIterator();
+        final Iterator<Integer> xIt = filtered.xIterator();
+        final Iterator<Double> zIt = filtered.zIterator();
+
+        int size = 0;
+        int minX = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        double minZ = Double.POSITIVE_INFINITY;
+        while (it.hasNext()) {
+            final DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>> point = it.next();
+            final int count = histIt.next();
+            final int x = point.getX().getNumber(), y = point.getY().getNumber();
+            final double z = point.getZ().getNumber();
+            if (x < 10 || x > 40 || y > 30 || z < 0.25)
+                continue;
+
+            size++;
+            minX = Math.min(minX, x);
+            maxY = Math.max(maxY, y);
+            minZ = Math.min(minZ, z);
+            assertEquals("Wrong point", point, filteredIt.next());
+            assertEquals("Wrong count", count, filteredHistIt.next());
+            assertEquals("Wrong x", point.getX().getNumber(), xIt.next());
+            assertEquals("Wrong z", point.getZ().getNumber(), zIt.next());
+        }
+        assertFalse("Too many points", filteredIt.hasNext() || filteredHistIt.hasNext() || xIt.hasNext()
+                || zIt.hasNext());
+
+        assertEquals("Wrong size", size, filtered.size());
+        assertEquals("Wrong min", Integer.valueOf(minX), filtered.getMinX());
+        assertEquals("Wrong max", Integer.valueOf(maxY), filtered.getMaxY());
+        assertEquals("Wrong min", Double.valueOf(minZ), filtered.getMinZ());
+        assertEquals("Wrong name", dataSet.getSourceName(1), filtered.getSourceName(1));
+    }
+
+    /**
+     * Test that no bounds keep all points, and empty views have no minima and maxima.
+     */
+    @Test
+    public void testBounds()
+    {
+        final DataSet3D<Integer, Integer, Double> dataSet = createDataSet();
+
+        final FilteredDataSet3D<Integer, Integer, Double> all = FilteredDataSet3D.create(dataSet, null, null);
+        assertEquals("Wrong size", dataSet.size(), all.size());
+        assertEquals("Wrong min", dataSet.getMinX(), all.getMinX());
+        assertEquals("Wrong max", dataSet.getMaxZ(), all.getMaxZ());
+
+        final FilteredDataSet empty = FilteredDataSet.create(dataSet, new Number[] { 100, null, null }, null);
+        assertEquals("Wrong size", 0, empty.size());
+        assertFalse("Too many points", empty.iterator().hasNext());
+        assertNull("Wrong min", ((FilteredDataSet3D<?, ?, ?>) empty).getMinX());
+    }
+
+    /**
+     * @return The data set to filter.
+     */
+    private static DataSet3D<Integer, Integer, Double> createDataSet()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(5000, 1, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(5000, 2, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(5000, 3, 0d, 1d,
+                Distribution.uniform(), 2);
+        return StreamDataSet3D.createFromDataSources(null, x, y, z, null);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.esa.beam.dataViewer3D.data.point.DataPoint4D;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.type.DecimalNumericType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class MappedDataSet4DTest
+{
+
+    /**
+     * Test method for {@link MappedDataSet#save(DataSet, File, com.bc.ceres.core.ProgressMonitor)} and
+     * {@link MappedDataSet#open(File)} - the opened set has to contain the same points in the same order.
+     */
+    @Test
+    public void testSaveAndOpen() throws IOException
+    {
+        final SyntheticDataSource<Byte> x = SyntheticDataSource.createByte(20000, 1, (byte) -50, (byte) 50,
+                Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(20000, 2, -50, 0, Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(20000, 3, 0d, 1d,
+                Distribution.uniform(), 3);
+        final SyntheticDataSource<Float> w = SyntheticDataSource.createFloat(20000, 4, 0f, 1f,
+                Distribution.uniform(), 2);
+        // more points than one written block
+        final DataSet4D<Byte, Integer, Double, Float> expected = StreamDataSet4D.createFromDataSources(10000, x, y, z,
+                w, null);
+
+        final File file = File.createTempFile("dataset", MappedDataSet.FILE_SUFFIX);
+        file.deleteOnExit();
+        MappedDataSet.save(expected, file, null);
+
+        final MappedDataSet opened = MappedDataSet.open(file);
+        assertTrue("Wrong type", opened instanceof MappedDataSet4D<?, ?, ?, ?>);
+        @SuppressWarnings("unchecked")
+        final DataSet4D<Byte, Integer, Double, Float> actual = (DataSet4D<Byte, Integer, Double, Float>) opened;
+        assertEquals("Wrong size", expected.size(), actual.size());
+
+        final Iterator<DataPoint4D<NumericType<Byte>, NumericType<Integer>, NumericType<Double>, NumericType<Float>>> expectedIt = expected
+                .pointIterator();
+        final Iterator<DataPoint4D<NumericType<Byte>, NumericType<Integer>, NumericType<Double>, NumericType<Float>>> actualIt = actual
+                .pointIterator();
+        final IntIterator expectedHistIt = expected.histogramIntIterator();
+        final IntIterator actualHistIt = actual.histogramIntIterator();
+        final Iterator<Float> wIt = actual.wIterator();
+        while (expectedIt.hasNext()) {
+            final DataPoint4D<NumericType<Byte>, NumericType<Integer>, NumericType<Double>, NumericType<Float>> point = actualIt
+                    .next();
+            assertEquals("Wrong point", expectedIt.next(), point);
+            assertEquals("Wrong count", expectedHistIt.next(), actualHistIt.next());
+            assertEquals("Wrong w", point.getW().getNumber(), wIt.next());
+            assertEquals("Wrong precision", Integer.valueOf(3),
+                    ((DecimalNumericType<Double>) point.getZ()).getPrecision());
+        }
+        assertFalse("Too many points", actualIt.hasNext() || actualHistIt.hasNext() || wIt.hasNext());
+
+        assertEquals("Wrong min", expected.getMinX(), actual.getMinX());
+        assertEquals("Wrong min", expected.getMinY(), actual.getMinY());
+        assertEquals("Wrong max", expected.getMaxZ(), actual.getMaxZ());
+        assertEquals("Wrong max", expected.getMaxW(), actual.getMaxW());
+        assertEquals("Wrong name", expected.getSourceName(2), actual.getSourceName(2));
+    }
+
+    /**
+     * Test method for {@link StreamDataSet4D.Builder4D#getMappedResult(File)} - the set built out of core with more
+     * spilled runs than merged at once has to contain the same points with the same counts as the set built in memory.
+     */
+    @Test
+    public void testGetMappedResult() throws IOException
+    {
+        // the smallest runs have 1024 points
+        final int size = 2 * OutOfCoreBuilder.MAX_FAN_IN * 1024 + 1000;
+        final SyntheticDataSource<Byte> x = SyntheticDataSource.createByte(size, 5, (byte) 0, (byte) 5,
+                Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(size, 6, -5, 0, Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(size, 7, 0d, 1d,
+                Distribution.uniform(), 1);
+        final SyntheticDataSource<Float> w = SyntheticDataSource.createFloat(size, 8, 0f, 1f,
+                Distribution.uniform(), 1);
+        final DataSet4D<Byte, Integer, Double, Float> expected = StreamDataSet4D.createFromDataSources(null, x, y, z,
+                w, null);
+
+        final Map<DataPoint4D<?, ?, ?, ?>, Integer> expectedCounts = new HashMap<DataPoint4D<?, ?, ?, ?>, Integer>();
+        final IntIterator expectedHistIt = expected.histogramIntIterator();
+        for (Iterator<? extends DataPoint4D<?, ?, ?, ?>> it = expected.pointIterator(); it.hasNext();)
+            expectedCounts.put(it.next(), expectedHistIt.next());
+
+        final File file = File.createTempFile("dataset", MappedDataSet.FILE_SUFFIX);
+        file.deleteOnExit();
+        final StreamDataSet4D.Builder4D<Byte, Integer, Double, Float> builder = StreamDataSet4D.getBuilder();
+        builder.setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z).setDataSourceW(w).setSpillThreshold(1);
+        final MappedDataSet4D<Byte, Integer, Double, Float> actual = builder.getMappedResult(file);
+        assertEquals("Wrong size", expected.size(), actual.size());
+
+        final IntIterator actualHistIt = actual.histogramIntIterator();
+        for (Iterator<? extends DataPoint4D<?, ?, ?, ?>> it = actual.pointIterator(); it.hasNext();)
+            assertEquals("Wrong count", expectedCounts.remove(it.next()), Integer.valueOf(actualHistIt.next()));
+        assertTrue("Missing points", expectedCounts.isEmpty());
+
+        assertEquals("Wrong min", expected.getMinX(), actual.getMinX());
+        assertEquals("Wrong min", expected.getMinZ(), actual.getMinZ());
+        assertEquals("Wrong max", expected.getMaxY(), actual.getMaxY());
+        assertEquals("Wrong max", expected.getMaxW(), actual.getMaxW());
+        assertEquals("Wrong name", expected.getSourceName(3), actual.getSourceName(3));
+    }
+
+    /**
+     * Test that files which aren't data set files are refused.
+     */
+    @Test
+    public void testInvalidFile() throws IOException
+    {
+        final File file = File.createTempFile("dataset", MappedDataSet.FILE_SUFFIX);
+        file.deleteOnExit();
+        final FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        } finally {
+            output.close();
+        }
+
+        try {
+            MappedDataSet.open(file);
+            fail("Opened an invalid file.");
+        } catch (IOException e) {}
+
+        final SyntheticDataSource<Byte> x = SyntheticDataSource.createByte(100, 1, (byte) 0, (byte) 5,
+                Distribution.uniform());
+        MappedDataSet.save(StreamDataSet4D.createFromDataSources(null, x, x, x, x, null), file, null);
+        // the length of the name of the first source follows its type, precision, min and max
+        final RandomAccessFile corrupted = new RandomAccessFile(file, "rw");
+        try {
+            corrupted.seek(16 + 1 + 4 + 8 + 8);
+            corrupted.writeInt(Integer.reverseBytes(Integer.MAX_VALUE));
+        } finally {
+            corrupted.close();
+        }
+
+        try {
+            MappedDataSet.open(file);
+            fail("Opened a file with a corrupted name length.");
+        } catch (IOException e) {}
+    }
+}
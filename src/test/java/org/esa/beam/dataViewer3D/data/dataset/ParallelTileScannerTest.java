@@ -0,0 +1,436 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.esa.beam.dataViewer3D.data.point.DataPoint;
+import org.esa.beam.dataViewer3D.data.source.BulkReader;
+import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.TiledDataSource;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.util.ValidatingIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class ParallelTileScannerTest
+{
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.dataset.ParallelTileScanner#canScan(DataSource...)}.
+     */
+    @Test
+    public void testCanScan()
+    {
+        assertFalse("Untiled sources accepted", ParallelTileScanner.canScan(Common.getTestDataSourceX(100),
+                Common.getTestDataSourceY(100), Common.getTestDataSourceZ(100)));
+        assertFalse("Partially tiled sources accepted", ParallelTileScanner.canScan(
+                Common.getTiledTestDataSource(Common.getTestDataSourceX(100), 10), Common.getTestDataSourceY(100)));
+        assertFalse("Sources with different tiles accepted", ParallelTileScanner.canScan(
+                Common.getTiledTestDataSource(Common.getTestDataSourceX(100), 10),
+                Common.getTiledTestDataSource(Common.getTestDataSourceY(100), 20)));
+        assertFalse("A single tile accepted",
+                ParallelTileScanner.canScan(Common.getTiledTestDataSource(Common.getTestDataSourceX(100), 100)));
+        assertTrue("Tiled sources not accepted", ParallelTileScanner.canScan(
+                Common.getTiledTestDataSource(Common.getTestDataSourceX(100), 10),
+                Common.getTiledTestDataSource(Common.getTestDataSourceY(100), 10)));
+    }
+
+    /**
+     * Test that the parallel scan returns the same set as the sequential one.
+     */
+    @Test
+    public void testParallelResult3D()
+    {
+        for (int size : new int[] { 12, 100, 1000, 10007 }) {
+            final DataSource<Byte> x = Common.getTiledTestDataSource(Common.getTestDataSourceX(size), 64);
+            final DataSource<Integer> y = Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64);
+            final DataSource<Double> z = Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64);
+
+            final StreamDataSet3D<Byte, Integer, Double> sequential = StreamDataSet3D
+                    .<Byte, Integer, Double> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                    .setParallelism(1).getResult();
+            final StreamDataSet3D<Byte, Integer, Double> parallel = StreamDataSet3D
+                    .<Byte, Integer, Double> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                    .setParallelism(3).getResult();
+
+            assertEquals("Wrong size of the parallel result", sequential.size(), parallel.size());
+            assertEquals("Wrong histogram of the parallel result", toList(sequential.histogramIterator()),
+                    toList(parallel.histogramIterator()));
+            assertEquals("Wrong points of the parallel result", toList(sequential.pointIterator()),
+                    toList(parallel.pointIterator()));
+            for (int d = 0; d < 3; d++) {
+                assertEquals("Wrong min of the parallel result", sequential.getMin(d), parallel.getMin(d), 0);
+                assertEquals("Wrong max of the parallel result", sequential.getMax(d), parallel.getMax(d), 0);
+            }
+        }
+    }
+
+    /**
+     * Test that the parallel scan returns the same set as the sequential one.
+     */
+    @Test
+    public void testParallelResult4D()
+    {
+        for (int size : new int[] { 12, 100, 1000, 10007 }) {
+            final DataSource<Byte> x = Common.getTiledTestDataSource(Common.getTestDataSourceX(size), 64);
+            final DataSource<Integer> y = Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64);
+            final DataSource<Double> z = Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64);
+            final DataSource<Float> w = Common.getTiledTestDataSource(Common.getTestDataSourceW(size), 64);
+
+            final StreamDataSet4D<Byte, Integer, Double, Float> sequential = StreamDataSet4D
+                    .<Byte, Integer, Double, Float> getBuilder().setDataSourceX(x).setDataSourceY(y)
+                    .setDataSourceZ(z).setDataSourceW(w).setParallelism(1).getResult();
+            final StreamDataSet4D<Byte, Integer, Double, Float> parallel = StreamDataSet4D
+                    .<Byte, Integer, Double, Float> getBuilder().setDataSourceX(x).setDataSourceY(y)
+                    .setDataSourceZ(z).setDataSourceW(w).setParallelism(3).getResult();
+
+            assertEquals("Wrong size of the parallel result", sequential.size(), parallel.size());
+            assertEquals("Wrong histogram of the parallel result", toList(sequential.histogramIterator()),
+                    toList(parallel.histogramIterator()));
+            assertEquals("Wrong points of the parallel result", toList(sequential.pointIterator()),
+                    toList(parallel.pointIterator()));
+            for (int d = 0; d < 4; d++) {
+                assertEquals("Wrong min of the parallel result", sequential.getMin(d), parallel.getMin(d), 0);
+                assertEquals("Wrong max of the parallel result", sequential.getMax(d), parallel.getMax(d), 0);
+            }
+        }
+    }
+
+    /**
+     * Test that the parallel scan respects the maximum number of points.
+     */
+    @Test
+    public void testParallelMaxPoints()
+    {
+        final int size = 10000;
+        final DataSource<Byte> x = Common.getTiledTestDataSource(Common.getTestDataSourceX(size), 64);
+        final DataSource<Integer> y = Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64);
+        final DataSource<Double> z = Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64);
+
+        final StreamDataSet3D<Byte, Integer, Double> parallel = StreamDataSet3D.<Byte, Integer, Double> getBuilder()
+                .setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z).setMaxPoints(100).setParallelism(3)
+                .getResult();
+
+        assertTrue("Too many points in the parallel result", parallel.size() <= 100);
+    }
+
+    /**
+     * Test that the sampled sets contain exactly the maximum number of entries and depend only on the seed, not on the
+     * number of threads.
+     */
+    @Test
+    public void testSampling()
+    {
+        final int size = 10000;
+        final DataSource<Byte> x = Common.getTiledTestDataSource(Common.getTestDataSourceX(size), 64);
+        final DataSource<Integer> y = Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64);
+        final DataSource<Double> z = Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64);
+
+        StreamDataSet3D<Byte, Integer, Double> previous = null;
+        for (int parallelism : new int[] { 1, 3, 8 }) {
+            final StreamDataSet3D<Byte, Integer, Double> first = StreamDataSet3D.<Byte, Integer, Double> getBuilder()
+                    .setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z).setMaxPoints(500).setSeed(7)
+                    .setParallelism(parallelism).getResult();
+            final StreamDataSet3D<Byte, Integer, Double> second = StreamDataSet3D.<Byte, Integer, Double> getBuilder()
+                    .setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z).setMaxPoints(500).setSeed(7)
+                    .setParallelism(parallelism).getResult();
+
+            assertEquals("Different histograms for the same seed", toList(first.histogramIterator()),
+                    toList(second.histogramIterator()));
+            assertEquals("Different points for the same seed", toList(first.pointIterator()),
+                    toList(second.pointIterator()));
+
+            int entries = 0;
+            for (int count : toList(first.histogramIterator()))
+                entries += count;
+            assertEquals("Wrong number of sampled entries", 500, entries);
+
+            for (int i = 1; i < first.usedPointsIndices.size(); i++)
+                assertTrue("The indices of the points aren't ascending",
+                        first.usedPointsIndices.get(i - 1) < first.usedPointsIndices.get(i));
+
+            if (previous != null) {
+                assertEquals("Different histograms for different parallelism", toList(previous.histogramIterator()),
+                        toList(first.histogramIterator()));
+                assertEquals("Different points for different parallelism", toList(previous.pointIterator()),
+                        toList(first.pointIterator()));
+            }
+            previous = first;
+        }
+    }
+
+    /**
+     * Test that a sampled set built with parallelism 1 is scanned in the calling thread only.
+     */
+    @Test
+    public void testSequentialSampling()
+    {
+        final int size = 10000;
+        final RecordingDataSource<Byte> x = new RecordingDataSource<Byte>(Common.getTiledTestDataSource(
+                Common.getTestDataSourceX(size), 64), 0);
+        final RecordingDataSource<Integer> y = new RecordingDataSource<Integer>(Common.getTiledTestDataSource(
+                Common.getTestDataSourceY(size), 64), 0);
+        final RecordingDataSource<Double> z = new RecordingDataSource<Double>(Common.getTiledTestDataSource(
+                Common.getTestDataSourceZ(size), 64), 0);
+
+        StreamDataSet3D.<Byte, Integer, Double> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .setMaxPoints(500).setParallelism(1).getResult();
+
+        assertEquals("The sources haven't been read in the calling thread only",
+                Collections.singleton(Thread.currentThread()), x.threads);
+    }
+
+    /**
+     * Test that a builder with a snapshot listener still scans the sources in parallel, that the snapshots contain
+     * points of the sources, and that publishing them doesn't change the result.
+     */
+    @Test
+    public void testParallelSnapshots()
+    {
+        final int size = 20000;
+        for (Integer maxPoints : new Integer[] { null, 500 }) {
+            // the slow source lets several snapshot intervals pass during the scan
+            final RecordingDataSource<Byte> x = new RecordingDataSource<Byte>(Common.getTiledTestDataSource(
+                    Common.getTestDataSourceX(size), 64), 2);
+            final DataSource<Integer> y = Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64);
+            final DataSource<Double> z = Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64);
+
+            final List<StreamDataSet3D<Byte, Integer, Double>> snapshots = new ArrayList<StreamDataSet3D<Byte, Integer, Double>>();
+            final StreamDataSet3D.Builder3D<Byte, Integer, Double> builder = StreamDataSet3D
+                    .<Byte, Integer, Double> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                    .setParallelism(4).setSeed(7).setSnapshotInterval(1);
+            if (maxPoints != null)
+                builder.setMaxPoints(maxPoints);
+            final StreamDataSet3D<Byte, Integer, Double> result = builder.setSnapshotListener(
+                    new SnapshotListener<StreamDataSet3D<Byte, Integer, Double>>() {
+                        @Override
+                        public void snapshotCreated(StreamDataSet3D<Byte, Integer, Double> snapshot)
+                        {
+                            snapshots.add(snapshot);
+                        }
+                    }).getResult();
+
+            assertFalse("The sources have been scanned in the calling thread",
+                    x.threads.contains(Thread.currentThread()));
+            assertFalse("No snapshot published", snapshots.isEmpty());
+
+            final StreamDataSet3D<Byte, Integer, Double> all = StreamDataSet3D.createFromDataSources(null, x, y, z,
+                    null);
+            final Set<DataPoint> points = new HashSet<DataPoint>(toList(all.pointIterator()));
+            for (StreamDataSet3D<Byte, Integer, Double> snapshot : snapshots) {
+                assertTrue("Empty snapshot", snapshot.size() > 0);
+                if (maxPoints != null)
+                    assertTrue("Too large snapshot", snapshot.size() <= maxPoints);
+                assertTrue("The snapshot contains points not in the sources",
+                        points.containsAll(toList(snapshot.pointIterator())));
+                for (int i = 1; i < snapshot.usedPointsIndices.size(); i++)
+                    assertTrue("The indices of the points aren't ascending",
+                            snapshot.usedPointsIndices.get(i - 1) < snapshot.usedPointsIndices.get(i));
+            }
+
+            final StreamDataSet3D.Builder3D<Byte, Integer, Double> expectedBuilder = StreamDataSet3D
+                    .<Byte, Integer, Double> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                    .setParallelism(4).setSeed(7);
+            if (maxPoints != null)
+                expectedBuilder.setMaxPoints(maxPoints);
+            final StreamDataSet3D<Byte, Integer, Double> expected = expectedBuilder.getResult();
+            assertEquals("Wrong histogram of the result", toList(expected.histogramIterator()),
+                    toList(result.histogramIterator()));
+            assertEquals("Wrong points of the result", toList(expected.pointIterator()),
+                    toList(result.pointIterator()));
+        }
+    }
+
+    /**
+     * Test method for {@link ParallelTileScanner#getScanOrder(int)}.
+     */
+    @Test
+    public void testGetScanOrder()
+    {
+        assertEquals("Wrong order of one chunk", Arrays.asList(0), toList(ParallelTileScanner.getScanOrder(1)));
+        assertEquals("Wrong strided order", Arrays.asList(0, 4, 2, 6, 1, 5, 3, 7),
+                toList(ParallelTileScanner.getScanOrder(8)));
+        assertEquals("Wrong strided order", Arrays.asList(0, 4, 2, 1, 5, 3),
+                toList(ParallelTileScanner.getScanOrder(6)));
+
+        for (int chunks = 1; chunks <= 100; chunks++) {
+            final List<Integer> order = toList(ParallelTileScanner.getScanOrder(chunks));
+            assertEquals("The order isn't a permutation of the chunks", chunks, new HashSet<Integer>(order).size());
+            assertEquals("The order isn't a permutation of the chunks", Integer.valueOf(chunks - 1),
+                    Collections.max(order));
+        }
+    }
+
+    /**
+     * Test that skipping the tiles without data doesn't change the result.
+     */
+    @Test
+    public void testSkipEmptyTiles()
+    {
+        final int size = 10007;
+        final boolean[] emptyTiles = new boolean[(size + 63) / 64];
+        for (int i = 0; i < emptyTiles.length; i++)
+            emptyTiles[i] = (i % 3 != 0) || i > emptyTiles.length / 2;
+
+        for (int parallelism : new int[] { 1, 3 }) {
+            final StreamDataSet3D<Byte, Integer, Double> reading = StreamDataSet3D
+                    .<Byte, Integer, Double> getBuilder()
+                    .setDataSourceX(Common.getTiledTestDataSource(Common.getTestDataSourceX(size), 64, emptyTiles, false))
+                    .setDataSourceY(Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64, emptyTiles, false))
+                    .setDataSourceZ(Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64, emptyTiles, false))
+                    .setParallelism(parallelism).getResult();
+            final StreamDataSet3D<Byte, Integer, Double> skipping = StreamDataSet3D
+                    .<Byte, Integer, Double> getBuilder()
+                    .setDataSourceX(Common.getTiledTestDataSource(Common.getTestDataSourceX(size), 64, emptyTiles, true))
+                    .setDataSourceY(Common.getTiledTestDataSource(Common.getTestDataSourceY(size), 64, emptyTiles, true))
+                    .setDataSourceZ(Common.getTiledTestDataSource(Common.getTestDataSourceZ(size), 64, emptyTiles, true))
+                    .setParallelism(parallelism).getResult();
+
+            assertEquals("Wrong size of the result", reading.size(), skipping.size());
+            assertEquals("Wrong histogram of the result", toList(reading.histogramIterator()),
+                    toList(skipping.histogramIterator()));
+            assertEquals("Wrong points of the result", toList(reading.pointIterator()),
+                    toList(skipping.pointIterator()));
+        }
+    }
+
+    private static List<Integer> toList(int[] array)
+    {
+        final List<Integer> result = new ArrayList<Integer>(array.length);
+        for (int value : array)
+            result.add(value);
+        return result;
+    }
+
+    private static <T> ArrayList<T> toList(Iterator<T> it)
+    {
+        final ArrayList<T> result = new ArrayList<T>();
+        while (it.hasNext())
+            result.add(it.next());
+        return result;
+    }
+
+    /**
+     * A tiled data source recording the threads reading its tiles, optionally delaying the reading.
+     * 
+     * @author Martin Pecka
+     * @param <N> Type of the data.
+     */
+    static class RecordingDataSource<N extends Number> implements TiledDataSource<N>
+    {
+        /** The source to read. */
+        private final TiledDataSource<N> source;
+        /** The time the reading of a range of tiles waits for, in milliseconds. */
+        private final long               delay;
+        /** The threads which have read the tiles of the source. */
+        final Set<Thread>                threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        /**
+         * @param source The source to read.
+         * @param delay The time the reading of a range of tiles waits for, in milliseconds.
+         */
+        RecordingDataSource(TiledDataSource<N> source, long delay)
+        {
+            this.source = source;
+            this.delay = delay;
+        }
+
+        @Override
+        public BulkReader<N> bulkReader(int firstTile, int lastTile)
+        {
+            threads.add(Thread.currentThread());
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return source.bulkReader(firstTile, lastTile);
+        }
+
+        @Override
+        public BulkReader<N> bulkReader()
+        {
+            threads.add(Thread.currentThread());
+            return source.bulkReader();
+        }
+
+        @Override
+        public ValidatingIterator<N> iterator()
+        {
+            return source.iterator();
+        }
+
+        @Override
+        public ValidatingIterator<NumericType<N>> numericTypeIterator()
+        {
+            return source.numericTypeIterator();
+        }
+
+        @Override
+        public int getNumTiles()
+        {
+            return source.getNumTiles();
+        }
+
+        @Override
+        public int getTileSize()
+        {
+            return source.getTileSize();
+        }
+
+        @Override
+        public int[] getDataTiles()
+        {
+            return source.getDataTiles();
+        }
+
+        @Override
+        public int size()
+        {
+            return source.size();
+        }
+
+        @Override
+        public N getDefinedMin()
+        {
+            return source.getDefinedMin();
+        }
+
+        @Override
+        public N getDefinedMax()
+        {
+            return source.getDefinedMax();
+        }
+
+        @Override
+        public boolean isCompatible(DataSource<?> other)
+        {
+            return source.isCompatible(other);
+        }
+
+        @Override
+        public String getName()
+        {
+            return source.getName();
+        }
+    }
+}
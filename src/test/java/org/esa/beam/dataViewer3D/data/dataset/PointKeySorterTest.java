@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class PointKeySorterTest
+{
+
+    /**
+     * Test method for {@link PointKeySorter#count(IntList, int)}, compared to a {@link PointKeyTable} - both have to
+     * give the same points in the same order, sequentially and in several threads.
+     */
+    @Test
+    public void testCount()
+    {
+        final Random random = new Random(1);
+        final long[] keys = new long[3];
+        final PointKeyTable table = new PointKeyTable(3, 16);
+        final IntList tableIndices = new IntList();
+        final PointKeySorter sorter = new PointKeySorter(3, 16);
+
+        for (int i = 0; i < 300000; i++) {
+            keys[0] = random.nextInt(50) - 25;
+            keys[1] = random.nextInt(60) * 1000L;
+            // a field spanning the whole range of long, so the keys need two longs
+            keys[2] = i % 1000 == 0 ? (i % 2000 == 0 ? Long.MIN_VALUE : Long.MAX_VALUE) : random.nextInt(20);
+            if (table.add(keys, 1) == 1)
+                tableIndices.add(i);
+            sorter.add(keys, i, 1);
+        }
+        assertEquals(300000, sorter.size());
+
+        for (int parallelism = 1; parallelism <= 4; parallelism += 3) {
+            final IntList indices = new IntList();
+            final IntList counts = sorter.count(indices, parallelism);
+            assertEquals(table.size(), counts.size());
+            assertEquals(table.size(), indices.size());
+            for (int i = 0; i < table.size(); i++) {
+                assertEquals(tableIndices.get(i), indices.get(i));
+                assertEquals(table.getCount(i), counts.get(i));
+            }
+        }
+    }
+
+    /**
+     * Test that points added with counts (also from a table or another sorter) are counted at their first occurrences.
+     */
+    @Test
+    public void testAddAll()
+    {
+        final PointKeyTable table = new PointKeyTable(2, 16);
+        final IntList tableIndices = new IntList();
+        table.add(new long[] { 1, 2 }, 3);
+        tableIndices.add(0);
+        table.add(new long[] { -5, 2 }, 1);
+        tableIndices.add(4);
+
+        final PointKeySorter following = new PointKeySorter(2, 0);
+        following.add(new long[] { 7, 7 }, 6, 1);
+        following.add(new long[] { 1, 2 }, 8, 2);
+        following.add(new long[] { -5, 2 }, 9, 1);
+
+        final PointKeySorter sorter = new PointKeySorter(2, 0);
+        sorter.addAll(table, tableIndices);
+        sorter.add(new long[] { 1, 2 }, 5, 1);
+        sorter.addAll(following);
+        assertEquals(6, sorter.size());
+
+        final IntList indices = new IntList();
+        final IntList counts = sorter.count(indices, 1);
+        assertEquals(3, counts.size());
+        assertEquals(0, indices.get(0));
+        assertEquals(6, counts.get(0));
+        assertEquals(4, indices.get(1));
+        assertEquals(2, counts.get(1));
+        assertEquals(6, indices.get(2));
+        assertEquals(1, counts.get(2));
+
+        // the points aren't changed by counting them
+        sorter.add(new long[] { 7, 7 }, 10, 1);
+        final IntList newCounts = sorter.count(new IntList(), 2);
+        assertEquals(2, newCounts.get(2));
+    }
+
+    /**
+     * Test that the counter switching from the table to the sorter (also while merging) gives the same result as the
+     * table.
+     */
+    @Test
+    public void testCounter()
+    {
+        final Random random = new Random(2);
+        final long[] keys = new long[1];
+        final PointCounter hashed = new PointCounter(1, Integer.MAX_VALUE);
+        final PointCounter first = new PointCounter(1, 100), second = new PointCounter(1, 100);
+        final PointCounter sorted = new PointCounter(1, 0);
+
+        for (int i = 0; i < 10000; i++) {
+            keys[0] = random.nextInt(i < 5000 ? 50 : 1000);
+            hashed.add(keys, i);
+            sorted.add(keys, i);
+            (i < 5000 ? first : second).add(keys, i);
+        }
+        assertFalse(hashed.isSorting());
+        assertTrue(sorted.isSorting());
+        assertFalse(first.isSorting());
+        assertTrue(second.isSorting());
+        first.addAll(second);
+        assertTrue(first.isSorting());
+
+        final IntList expectedIndices = new IntList();
+        final IntList expected = hashed.getCounts(expectedIndices, 1);
+        for (PointCounter counter : new PointCounter[] { first, sorted }) {
+            final IntList indices = new IntList();
+            final IntList counts = counter.getCounts(indices, 2);
+            assertEquals(expected.size(), counts.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expectedIndices.get(i), indices.get(i));
+                assertEquals(expected.get(i), counts.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.esa.beam.dataViewer3D.utils.IntList;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class PointKeyTableTest
+{
+
+    /**
+     * Test method for {@link PointKeyTable#add(long[], int)}, compared to a {@link LinkedHashMap}.
+     */
+    @Test
+    public void testAdd()
+    {
+        final PointKeyTable table = new PointKeyTable(3, 1);
+        final LinkedHashMap<List<Long>, Integer> expected = new LinkedHashMap<List<Long>, Integer>();
+        final Random random = new Random(1);
+        final long[] keys = new long[3];
+
+        for (int i = 0; i < 50000; i++) {
+            keys[0] = random.nextInt(20) - 10;
+            keys[1] = random.nextInt(40);
+            // widen the last field step by step up to 64 bits
+            keys[2] = i < 10000 ? random.nextInt(100) : (i < 30000 ? random.nextInt() : random.nextLong() >> 40);
+            if (i == 40000)
+                keys[2] = Long.MIN_VALUE;
+
+            final List<Long> key = Arrays.asList(keys[0], keys[1], keys[2]);
+            final Integer count = expected.get(key);
+            expected.put(key, count == null ? 1 : count + 1);
+            assertEquals((int) expected.get(key), table.add(keys, 1));
+        }
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(2, table.getWidth());
+
+        int i = 0;
+        final long[] pointKeys = new long[3];
+        final IntList counts = table.getCounts();
+        for (Entry<List<Long>, Integer> entry : expected.entrySet()) {
+            table.getPointKeys(i, pointKeys);
+            assertEquals(entry.getKey(), Arrays.asList(pointKeys[0], pointKeys[1], pointKeys[2]));
+            assertEquals((int) entry.getValue(), table.getCount(i));
+            assertEquals((int) entry.getValue(), counts.get(i));
+            i++;
+        }
+    }
+
+    /**
+     * Test that narrow keys are packed into a single <code>long</code> and distinct keys are never merged.
+     */
+    @Test
+    public void testPacking()
+    {
+        final PointKeyTable table = new PointKeyTable(4, 16);
+        final List<long[]> points = new ArrayList<long[]>();
+        points.add(new long[] { -128, 127, 0, -1 });
+        points.add(new long[] { 127, -128, -1, 0 });
+        points.add(new long[] { 1, 0, 0, 0 });
+        points.add(new long[] { 0, 1, 0, 0 });
+
+        for (long[] point : points)
+            assertEquals(1, table.add(point, 1));
+        assertEquals(1, table.getWidth());
+        assertEquals(4, table.size());
+
+        assertEquals(3, table.add(points.get(0), 2));
+        assertEquals(1, table.add(new long[] { 0, 0, 0, 1L << 40 }, 1));
+        assertEquals(5, table.size());
+        assertEquals(3, table.add(points.get(0), 0));
+
+        try {
+            table.getCount(5);
+            fail("Managed to read a count out of bounds");
+        } catch (IndexOutOfBoundsException e) {}
+
+        try {
+            new PointKeyTable(0, 1);
+            fail("Managed to create a table with no dimensions");
+        } catch (IllegalArgumentException e) {}
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class ReservoirSamplerTest
+{
+
+    /**
+     * Test method for {@link ReservoirSampler#offer()} - every item has to be sampled with the same probability.
+     */
+    @Test
+    public void testUniformity()
+    {
+        final int capacity = 10, items = 100, trials = 20000;
+        final int[] counts = new int[items];
+
+        for (int t = 0; t < trials; t++) {
+            for (int item : sample(new ReservoirSampler(capacity, t), items, false))
+                counts[item]++;
+        }
+
+        final double expected = (double) trials * capacity / items;
+        for (int i = 0; i < items; i++)
+            assertEquals("Item " + i + " sampled with a wrong probability", expected, counts[i], expected * 0.1);
+    }
+
+    /**
+     * Test method for {@link ReservoirSampler#skip(long)} - skipping has to give the same sample as offering the items
+     * one by one.
+     */
+    @Test
+    public void testSkip()
+    {
+        for (long seed = 0; seed < 20; seed++) {
+            final int[] offered = sample(new ReservoirSampler(50, seed), 100000, false);
+            final int[] skipped = sample(new ReservoirSampler(50, seed), 100000, true);
+            assertTrue("Skipping changed the sample", Arrays.equals(offered, skipped));
+        }
+
+        final ReservoirSampler sampler = new ReservoirSampler(2, 0);
+        assertEquals("Skip reported while filling the reservoir", 0, sampler.getSkip());
+        try {
+            sampler.skip(1);
+            fail("Skipped an item while filling the reservoir.");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test that the sample depends only on the seed.
+     */
+    @Test
+    public void testSeed()
+    {
+        assertTrue("Different samples for the same seed", Arrays.equals(sample(new ReservoirSampler(10, 42), 1000,
+                false), sample(new ReservoirSampler(10, 42), 1000, false)));
+        assertTrue("Same samples for different seeds", !Arrays.equals(sample(new ReservoirSampler(10, 42), 1000, false),
+                sample(new ReservoirSampler(10, 43), 1000, false)));
+
+        final ReservoirSampler sampler = new ReservoirSampler(10, 0);
+        assertEquals("Wrong size of an incomplete sample", 3, sample(sampler, 3, false).length);
+        assertEquals("Wrong number of offered items", 3, sampler.getOffered());
+    }
+
+    /**
+     * Test method for {@link ReservoirSampler#ReservoirSampler(int, long)}.
+     */
+    @Test
+    public void testReservoirSampler()
+    {
+        try {
+            new ReservoirSampler(0, 0);
+            fail("Created a sampler with zero capacity.");
+        } catch (IllegalArgumentException e) {}
+        try {
+            new ReservoirSampler(-1, 0);
+            fail("Created a sampler with negative capacity.");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Sample the items <code>0</code> to <code>items - 1</code>.
+     * 
+     * @param sampler The sampler to use.
+     * @param items The number of items.
+     * @param skip Whether to skip the items not sampled instead of offering them.
+     * @return The sorted sampled items.
+     */
+    private static int[] sample(ReservoirSampler sampler, int items, boolean skip)
+    {
+        final int[] reservoir = new int[sampler.getCapacity()];
+        int item = 0;
+        while (item < items) {
+            if (skip) {
+                final long n = Math.min(sampler.getSkip(), items - item);
+                sampler.skip(n);
+                item += (int) n;
+                if (item == items)
+                    break;
+            }
+
+            final int slot = sampler.offer();
+            if (slot >= 0)
+                reservoir[slot] = item;
+            item++;
+        }
+
+        final int[] result = Arrays.copyOf(reservoir, sampler.size());
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -18,13 +18,20 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Random;
 
 import org.esa.beam.dataViewer3D.data.Common;
 import org.esa.beam.dataViewer3D.data.point.DataPoint;
 import org.esa.beam.dataViewer3D.data.point.DataPoint3D;
 import org.esa.beam.dataViewer3D.data.point.SimpleDataPoint3D;
+import org.esa.beam.dataViewer3D.data.source.AbstractDataSource;
 import org.esa.beam.dataViewer3D.data.source.DataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource;
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.esa.beam.dataViewer3D.data.type.IntType;
 import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.dataViewer3D.utils.IntIterator;
+import org.esa.beam.util.ValidatingIterator;
 import org.junit.Test;
 
 /**
@@ -396,6 +403,442 @@ public class StreamDataSet3DTest
         return Arrays.asList(new Integer[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }).subList(0, size);
     }
 
+    /**
+     * Test that the used points are read correctly from random access sources.
+     */
+    @Test
+    public void testRandomAccessSources()
+    {
+        final SyntheticDataSource<Integer> x = SyntheticDataSource.createInt(100000, 1, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Integer> y = SyntheticDataSource.createInt(100000, 2, 0, 50, Distribution.uniform());
+        final SyntheticDataSource<Double> z = SyntheticDataSource.createDouble(100000, 3, 0d, 1d,
+                Distribution.uniform(), 1);
+
+        final DataSet3D<Integer, Integer, Double> created = StreamDataSet3D.createFromDataSources(1000, x, y, z, null);
+        final StreamDataSet3D<Integer, Integer, Double> dataSet = (StreamDataSet3D<Integer, Integer, Double>) created;
+
+        final IntIterator indices = dataSet.usedPointsIndices.iterator();
+        final Iterator<Integer> xIt = dataSet.xIterator();
+        int count = 0;
+        for (Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>>> it = dataSet
+                .pointIterator(); it.hasNext(); count++) {
+            final int index = indices.next();
+            final DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Double>> point = it.next();
+            assertEquals(x.getValue(index), point.getX().getNumber().doubleValue(), 0);
+            assertEquals(y.getValue(index), point.getY().getNumber().doubleValue(), 0);
+            assertEquals(z.getValue(index), point.getZ().getNumber().doubleValue(), 0);
+            assertEquals(x.getValue(index), xIt.next().doubleValue(), 0);
+        }
+        assertFalse(indices.hasNext());
+        assertEquals(dataSet.usedPointsIndices.size(), count);
+    }
+
+    /**
+     * Test that distinct points with the same hash code aren't merged unless exact deduplication is switched off.
+     */
+    @Test
+    public void testExactDeduplication()
+    {
+        // SimpleDataPoint3D.hashCode(0, 1, 0) == SimpleDataPoint3D.hashCode(0, 0, 16777619)
+        final DataSource<Integer> x = getIntDataSource(0, 0, 0, 5);
+        final DataSource<Integer> y = getIntDataSource(1, 0, 1, 5);
+        final DataSource<Integer> z = getIntDataSource(0, 16777619, 0, Integer.MIN_VALUE);
+        assertEquals(SimpleDataPoint3D.hashCode(0, 1, 0), SimpleDataPoint3D.hashCode(0, 0, 16777619));
+
+        final StreamDataSet3D<Integer, Integer, Integer> exact = StreamDataSet3D
+                .<Integer, Integer, Integer> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .getResult();
+        assertEquals(3, exact.size());
+        final IntIterator histogram = exact.histogramIntIterator();
+        assertEquals(2, histogram.next());
+        assertEquals(1, histogram.next());
+        assertEquals(1, histogram.next());
+        assertFalse(histogram.hasNext());
+
+        final StreamDataSet3D<Integer, Integer, Integer> hashed = StreamDataSet3D
+                .<Integer, Integer, Integer> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .setExactDeduplication(false).getResult();
+        assertEquals(2, hashed.size());
+    }
+
+    /**
+     * Test that the snapshots published while building are samples of the part of the sources read so far, and that
+     * publishing them doesn't change the result.
+     */
+    @Test
+    public void testSnapshots()
+    {
+        final Random random = new Random(42);
+        final int[] xValues = new int[40000], yValues = new int[40000], zValues = new int[40000];
+        for (int i = 0; i < xValues.length; i++) {
+            xValues[i] = random.nextInt(50);
+            yValues[i] = random.nextInt(50);
+            zValues[i] = random.nextInt(50);
+        }
+        // the slow source lets several snapshot intervals pass during the scan
+        final DataSource<Integer> x = getSlowIntDataSource(xValues);
+        final DataSource<Integer> y = getIntDataSource(yValues);
+        final DataSource<Integer> z = getIntDataSource(zValues);
+
+        final List<StreamDataSet3D<Integer, Integer, Integer>> snapshots = new ArrayList<StreamDataSet3D<Integer, Integer, Integer>>();
+        final StreamDataSet3D<Integer, Integer, Integer> result = StreamDataSet3D
+                .<Integer, Integer, Integer> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .setMaxPoints(1000).setParallelism(1).setSnapshotInterval(1)
+                .setSnapshotListener(new SnapshotListener<StreamDataSet3D<Integer, Integer, Integer>>() {
+                    @Override
+                    public void snapshotCreated(StreamDataSet3D<Integer, Integer, Integer> snapshot)
+                    {
+                        snapshots.add(snapshot);
+                    }
+                }).getResult();
+        assertFalse("No snapshot published", snapshots.isEmpty());
+
+        for (StreamDataSet3D<Integer, Integer, Integer> snapshot : snapshots) {
+            assertTrue("Empty snapshot", snapshot.size() > 0);
+            assertTrue("Too large snapshot", snapshot.size() <= 1000);
+            final IntIterator indices = snapshot.usedPointsIndices.iterator();
+            for (Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>>> it = snapshot
+                    .pointIterator(); it.hasNext();) {
+                final int index = indices.next();
+                final DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>> point = it.next();
+                assertEquals(xValues[index], point.getX().getNumber().intValue());
+                assertEquals(yValues[index], point.getY().getNumber().intValue());
+                assertEquals(zValues[index], point.getZ().getNumber().intValue());
+            }
+        }
+
+        final StreamDataSet3D<Integer, Integer, Integer> expected = StreamDataSet3D
+                .<Integer, Integer, Integer> getBuilder().setDataSourceX(getIntDataSource(xValues))
+                .setDataSourceY(y).setDataSourceZ(z).setMaxPoints(1000).setParallelism(1).getResult();
+        assertEquals(expected.size(), result.size());
+        final IntIterator expectedIndices = expected.usedPointsIndices.iterator();
+        final IntIterator actualIndices = result.usedPointsIndices.iterator();
+        final IntIterator expectedHistogram = expected.histogramIntIterator();
+        final IntIterator actualHistogram = result.histogramIntIterator();
+        while (expectedIndices.hasNext()) {
+            assertEquals(expectedIndices.next(), actualIndices.next());
+            assertEquals(expectedHistogram.next(), actualHistogram.next());
+        }
+    }
+
+    /**
+     * Test that the points are read from the sources only once if they fit into the materialization budget, and on
+     * every iteration otherwise.
+     */
+    @Test
+    public void testMaterialization()
+    {
+        final int[] reads = new int[1];
+        final int[] values = new int[] { 1, 2, 3, 4, 5, 1, 2, 3, 4, 5 };
+        final DataSource<Integer> source = getIntDataSource(values);
+        final DataSource<Integer> x = new AbstractDataSource<Integer>(null, null) {
+            @Override
+            public ValidatingIterator<Integer> iterator()
+            {
+                reads[0]++;
+                return source.iterator();
+            }
+
+            @Override
+            protected NumericType<Integer> getNumericType(Integer number)
+            {
+                return new IntType(number);
+            }
+
+            @Override
+            public int size()
+            {
+                return values.length;
+            }
+
+            @Override
+            public String getName()
+            {
+                return "Counting integer DS";
+            }
+        };
+        final DataSource<Integer> y = getIntDataSource(values);
+        final DataSource<Integer> z = getIntDataSource(5, 4, 3, 2, 1, 5, 4, 3, 2, 1);
+
+        final StreamDataSet3D<Integer, Integer, Integer> dataSet = StreamDataSet3D.createFromDataSources(null, x, y,
+                z, null);
+        final List<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>>> expected = new ArrayList<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>>>();
+        for (Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>>> it = dataSet
+                .streamPointIterator(); it.hasNext();)
+            expected.add(it.next());
+
+        reads[0] = 0;
+        for (int i = 0; i < 3; i++) {
+            final Iterator<Integer> xIt = dataSet.xIterator();
+            for (Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>>> it = dataSet
+                    .pointIterator(); it.hasNext();) {
+                final DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>> point = it.next();
+                assertEquals("Wrong point", expected.get(0), point);
+                assertEquals("Wrong x", point.getX().getNumber(), xIt.next());
+                expected.add(expected.remove(0));
+            }
+        }
+        assertEquals("The materialized points have been read again", 1, reads[0]);
+
+        dataSet.setMaterializationBudget(0);
+        reads[0] = 0;
+        for (int i = 0; i < 3; i++) {
+            final Iterator<DataPoint3D<NumericType<Integer>, NumericType<Integer>, NumericType<Integer>>> it = dataSet
+                    .pointIterator();
+            assertEquals("Wrong point", expected.get(0), it.next());
+        }
+        assertEquals("The points over budget haven't been read from the sources", 3, reads[0]);
+    }
+
+    /**
+     * Test that the stratified sampling keeps the points of sparse regions and counts every point by its weight, while
+     * the uniform sampling counts every selected point once.
+     */
+    @Test
+    public void testSamplingStrategies()
+    {
+        final int size = 20000, outliers = 10, maxPoints = 500;
+        final Random random = new Random(1);
+        final int[] xValues = new int[size], yValues = new int[size], zValues = new int[size];
+        for (int i = 0; i < size; i++) {
+            // a few distinct outliers in the middle of a dense cluster
+            final boolean outlier = i >= size / 2 && i < size / 2 + outliers;
+            xValues[i] = outlier ? 1000 + i : random.nextInt(100);
+            yValues[i] = outlier ? 1000 : random.nextInt(100);
+            zValues[i] = random.nextInt(10);
+        }
+        final DataSource<Integer> x = getIntDataSource(xValues);
+        final DataSource<Integer> y = getIntDataSource(yValues);
+        final DataSource<Integer> z = getIntDataSource(zValues);
+
+        final StreamDataSet3D<Integer, Integer, Integer> stratified = StreamDataSet3D
+                .<Integer, Integer, Integer> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .setMaxPoints(maxPoints).setSamplingStrategy(SamplingStrategy.stratified()).getResult();
+        assertTrue("Too many points", stratified.size() <= maxPoints);
+        int total = 0, keptOutliers = 0;
+        final Iterator<Integer> xIt = stratified.xIterator();
+        for (IntIterator it = stratified.histogramIntIterator(); it.hasNext();) {
+            final int count = it.next();
+            total += count;
+            if (xIt.next() >= 1000) {
+                assertEquals("Wrong weight of an outlier", 1, count);
+                keptOutliers++;
+            }
+        }
+        assertEquals("The weights don't sum to the number of points", size, total);
+        assertEquals("Not all outliers have been kept", outliers, keptOutliers);
+
+        final StreamDataSet3D<Integer, Integer, Integer> uniform = StreamDataSet3D
+                .<Integer, Integer, Integer> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                .setMaxPoints(maxPoints).getResult();
+        total = 0;
+        for (IntIterator it = uniform.histogramIntIterator(); it.hasNext();)
+            total += it.next();
+        assertEquals("The uniform sample isn't counted once per point", maxPoints, total);
+
+        try {
+            SamplingStrategy.stratified(1);
+            fail("Allowed to create a stratified strategy with a single bin");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test method for {@link StreamDataSet3D#isSampled()} - only a set which has discarded some valid entries because
+     * of the maximum number of points is sampled, and its copies and filtered views are sampled too, so they aren't
+     * taken for sets containing all points of the sources.
+     */
+    @Test
+    public void testIsSampled()
+    {
+        final int size = 10000;
+        for (int tileSize : new int[] { 0, 64 }) {
+            DataSource<Byte> x = Common.getTestDataSourceX(size);
+            DataSource<Integer> y = Common.getTestDataSourceY(size);
+            DataSource<Double> z = Common.getTestDataSourceZ(size);
+            if (tileSize > 0) {
+                x = Common.getTiledTestDataSource(x, tileSize);
+                y = Common.getTiledTestDataSource(y, tileSize);
+                z = Common.getTiledTestDataSource(z, tileSize);
+            }
+
+            final StreamDataSet3D<Byte, Integer, Double> all = StreamDataSet3D.createFromDataSources(null, x, y, z,
+                    null);
+            assertFalse("A set of all points is sampled", all.isSampled());
+            int validEntries = 0;
+            for (IntIterator it = all.histogramIntIterator(); it.hasNext();)
+                validEntries += it.next();
+
+            assertFalse("A set whose limit hasn't discarded any entry is sampled",
+                    StreamDataSet3D.createFromDataSources(validEntries, x, y, z, null).isSampled());
+
+            final StreamDataSet3D<Byte, Integer, Double> sampled = StreamDataSet3D.createFromDataSources(
+                    validEntries - 1, x, y, z, null);
+            assertTrue("A set whose limit has discarded some entries isn't sampled", sampled.isSampled());
+            assertTrue("The columnar copy of a sampled set isn't sampled", ColumnarDataSet3D.copyOf(sampled)
+                    .isSampled());
+            assertTrue("The direct buffer copy of a sampled set isn't sampled", DirectBufferDataSet.copyOf(sampled)
+                    .isSampled());
+            assertTrue("The filtered view of a sampled set isn't sampled",
+                    FilteredDataSet.create(sampled, new Number[3], new Number[3]).isSampled());
+            assertTrue("The data set created from sampled sources isn't sampled",
+                    AbstractDataSet.createFromDataSources(validEntries - 1, x, y, z, null).isSampled());
+        }
+    }
+
+    /**
+     * Test that the weights of the stratified sample sum to the number of points even if the growing ranges of the
+     * axes merge the voxels many times and the sample is much smaller than the number of non-empty voxels.
+     */
+    @Test
+    public void testStratifiedHeavyThinning()
+    {
+        final int size = 20000;
+        final Random random = new Random(2);
+        final int[] xValues = new int[size], yValues = new int[size], zValues = new int[size];
+        for (int i = 0; i < size; i++) {
+            // the range of x keeps growing
+            xValues[i] = i * i;
+            yValues[i] = random.nextInt(1000);
+            zValues[i] = random.nextInt(1000);
+        }
+        final DataSource<Integer> x = getIntDataSource(xValues);
+        final DataSource<Integer> y = getIntDataSource(yValues);
+        final DataSource<Integer> z = getIntDataSource(zValues);
+
+        for (int maxPoints : new int[] { 3, 20, 100 }) {
+            final StreamDataSet3D<Integer, Integer, Integer> stratified = StreamDataSet3D
+                    .<Integer, Integer, Integer> getBuilder().setDataSourceX(x).setDataSourceY(y).setDataSourceZ(z)
+                    .setMaxPoints(maxPoints).setSamplingStrategy(SamplingStrategy.stratified()).getResult();
+            assertTrue("Too many points", stratified.size() <= maxPoints);
+
+            int total = 0;
+            for (IntIterator it = stratified.histogramIntIterator(); it.hasNext();)
+                total += it.next();
+            assertEquals("The weights don't sum to the number of points", size, total);
+        }
+    }
+
+    /**
+     * @param values The values of the source.
+     * @return A data source whose iterator sleeps for a millisecond after every 1000 values.
+     */
+    private DataSource<Integer> getSlowIntDataSource(final int... values)
+    {
+        final DataSource<Integer> source = getIntDataSource(values);
+        return new AbstractDataSource<Integer>(null, null) {
+            @Override
+            public ValidatingIterator<Integer> iterator()
+            {
+                final ValidatingIterator<Integer> it = source.iterator();
+                return new ValidatingIterator<Integer>() {
+                    int i = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Integer next()
+                    {
+                        if (++i % 1000 == 0) {
+                            try {
+                                Thread.sleep(1);
+                            } catch (InterruptedException e) {}
+                        }
+                        return it.next();
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public boolean isLastReturnedValid()
+                    {
+                        return it.isLastReturnedValid();
+                    }
+                };
+            }
+
+            @Override
+            protected NumericType<Integer> getNumericType(Integer number)
+            {
+                return new IntType(number);
+            }
+
+            @Override
+            public int size()
+            {
+                return values.length;
+            }
+
+            @Override
+            public String getName()
+            {
+                return "Slow integer DS";
+            }
+        };
+    }
+
+    private DataSource<Integer> getIntDataSource(final int... values)
+    {
+        return new AbstractDataSource<Integer>(null, null) {
+            @Override
+            public ValidatingIterator<Integer> iterator()
+            {
+                return new ValidatingIterator<Integer>() {
+                    int i = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return i < values.length;
+                    }
+
+                    @Override
+                    public Integer next()
+                    {
+                        return values[i++];
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public boolean isLastReturnedValid()
+                    {
+                        return true;
+                    }
+                };
+            }
+
+            @Override
+            protected NumericType<Integer> getNumericType(Integer number)
+            {
+                return new IntType(number);
+            }
+
+            @Override
+            public int size()
+            {
+                return values.length;
+            }
+
+            @Override
+            public String getName()
+            {
+                return "Integer DS";
+            }
+        };
+    }
+
     private LinkedHashMap<Integer, Integer> getUsedPoints(final int size)
     {
         if (size == 0)
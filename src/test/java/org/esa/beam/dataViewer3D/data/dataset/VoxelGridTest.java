@@ -0,0 +1,142 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class VoxelGridTest
+{
+
+    /**
+     * Test that the range of the axes grows to contain all points and that the points are counted in the right
+     * voxels.
+     */
+    @Test
+    public void testAdaptiveRange()
+    {
+        // the first two points make the width of the bins 8, so all bounds of the bins are exact integers
+        final int bins = 9, n = 20000;
+        final double[][] points = new double[n][3];
+        final Random random = new Random(1);
+        for (int i = 2; i < n; i++) {
+            for (int d = 0; d < 3; d++)
+                points[i][d] = random.nextInt(10001) - 5000;
+        }
+        points[1] = new double[] { 64, 64, 64 };
+
+        final VoxelGrid grid = new VoxelGrid(bins, null);
+        for (double[] point : points)
+            grid.add(point[0], point[1], point[2], 0);
+        assertEquals("Wrong number of points", n, grid.getPoints());
+
+        final double[] origins = new double[3], widths = new double[3];
+        for (int d = 0; d < 3; d++) {
+            // voxel 1 + bins + bins^2 has bin 1 in all axes
+            widths[d] = grid.getCenter(d, 1 + bins + bins * bins) - grid.getCenter(d, 0);
+            origins[d] = grid.getCenter(d, 0) - widths[d] / 2;
+        }
+
+        final int[] expected = new int[bins * bins * bins];
+        for (double[] point : points) {
+            int voxel = 0;
+            for (int d = 0; d < 3; d++) {
+                final int bin = (int) Math.floor((point[d] - origins[d]) / widths[d]);
+                assertFalse("A point outside of the grid", bin < 0 || bin > bins
+                        || (bin == bins && point[d] != origins[d] + bins * widths[d]));
+                voxel = voxel * bins + Math.min(bin, bins - 1);
+            }
+            expected[voxel]++;
+        }
+
+        for (int voxel = 0; voxel < expected.length; voxel++)
+            assertEquals("Wrong count of voxel " + voxel, expected[voxel], grid.getCount(voxel));
+    }
+
+    /**
+     * Test method for {@link VoxelGrid#setRange(int, double, double)}.
+     */
+    @Test
+    public void testSetRange()
+    {
+        final VoxelGrid grid = new VoxelGrid(10, null);
+        for (int d = 0; d < 3; d++)
+            grid.setRange(d, 0, 10);
+
+        grid.add(0, 0, 0, 0);
+        grid.add(10, 10, 10, 0);
+        grid.add(5, 5.5, 9.99, 0);
+
+        assertEquals("Wrong count of the first voxel", 1, grid.getCount(0));
+        assertEquals("Wrong count of the last voxel", 1, grid.getCount(999));
+        assertEquals("Wrong count of an inner voxel", 1, grid.getCount(559));
+        assertEquals("Wrong center", 0.5, grid.getCenter(0, 0), 1e-9);
+        assertEquals("Wrong center", 9.5, grid.getCenter(2, 999), 1e-9);
+
+        try {
+            grid.setRange(0, 0, 1);
+            fail("Changed the range of a non-empty grid.");
+        } catch (IllegalStateException e) {}
+        try {
+            new VoxelGrid(10, null).setRange(0, 1, 1);
+            fail("Set an empty range.");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test method for {@link VoxelGrid#getValue(int)}, also when the voxels get merged.
+     */
+    @Test
+    public void testAggregates()
+    {
+        final double[][] points = { { 0, 0, 0, 1 }, { 0, 0, 0, 2 }, { 1, 1, 1, 6 }, { 3, 3, 3, -1 } };
+        final double[] expected = { 3, 1, 6, 9 };
+        final BinnedDataSet.Aggregate[] aggregates = { BinnedDataSet.Aggregate.MEAN, BinnedDataSet.Aggregate.MIN,
+                BinnedDataSet.Aggregate.MAX, BinnedDataSet.Aggregate.SUM };
+
+        for (int a = 0; a < aggregates.length; a++) {
+            final VoxelGrid grid = new VoxelGrid(2, aggregates[a]);
+            for (double[] point : points)
+                grid.add(point[0], point[1], point[2], point[3]);
+
+            // the range [0, 2] has been doubled to [0, 4] by the last point, merging the first three points
+            assertEquals("Wrong count", 3, grid.getCount(0));
+            assertEquals("Wrong " + aggregates[a], expected[a], grid.getValue(0), 1e-9);
+            assertEquals("Wrong count", 1, grid.getCount(7));
+            assertEquals("Wrong " + aggregates[a], -1, grid.getValue(7), 1e-9);
+        }
+    }
+
+    /**
+     * Test method for {@link VoxelGrid#add(double, double, double, double)} with invalid values.
+     */
+    @Test
+    public void testInvalidValues()
+    {
+        final VoxelGrid grid = new VoxelGrid(4, BinnedDataSet.Aggregate.SUM);
+        assertFalse("Added an infinite point", grid.add(Double.POSITIVE_INFINITY, 0, 0, 0));
+        assertFalse("Added a NaN point", grid.add(0, Double.NaN, 0, 0));
+        assertFalse("Added a NaN value", grid.add(0, 0, 0, Double.NaN));
+        assertEquals("Wrong number of points", 0, grid.getPoints());
+
+        try {
+            new VoxelGrid(1, null);
+            fail("Created a grid with a single bin.");
+        } catch (IllegalArgumentException e) {}
+        try {
+            new VoxelGrid(2000, null);
+            fail("Created a grid with too many voxels.");
+        } catch (IllegalArgumentException e) {}
+    }
+}
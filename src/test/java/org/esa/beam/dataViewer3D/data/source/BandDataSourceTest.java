@@ -0,0 +1,306 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.esa.beam.util.ValidatingIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class BandDataSourceTest
+{
+    /** The size of the test product (a multiple of the tile size). */
+    private static final int WIDTH = 64, HEIGHT = 48;
+
+    /** The size of the tiles of the test product. */
+    private static final int TILE_SIZE = 16;
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - int8 bands.
+     */
+    @Test
+    public void testBulkReaderInt8()
+    {
+        testBulkReader(ProductData.TYPE_INT8);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - uint8 bands.
+     */
+    @Test
+    public void testBulkReaderUInt8()
+    {
+        testBulkReader(ProductData.TYPE_UINT8);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - int16 bands.
+     */
+    @Test
+    public void testBulkReaderInt16()
+    {
+        testBulkReader(ProductData.TYPE_INT16);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - uint16 bands.
+     */
+    @Test
+    public void testBulkReaderUInt16()
+    {
+        testBulkReader(ProductData.TYPE_UINT16);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - int32 bands.
+     */
+    @Test
+    public void testBulkReaderInt32()
+    {
+        testBulkReader(ProductData.TYPE_INT32);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - uint32 bands.
+     */
+    @Test
+    public void testBulkReaderUInt32()
+    {
+        testBulkReader(ProductData.TYPE_UINT32);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - float32 bands.
+     */
+    @Test
+    public void testBulkReaderFloat32()
+    {
+        testBulkReader(ProductData.TYPE_FLOAT32);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#bulkReader()} - float64 bands.
+     */
+    @Test
+    public void testBulkReaderFloat64()
+    {
+        testBulkReader(ProductData.TYPE_FLOAT64);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#getDecodingTable()} - the table of
+     * an int8 band is indexed by the raw value + 128, and the no-data entry makes the pixels invalid.
+     */
+    @Test
+    public void testDecodingTableInt8()
+    {
+        final Band band = createProduct(ProductData.TYPE_INT8).getBand("scaled");
+        final int noDataValue = band.getRasterData().getElemIntAt(7);
+        // the sources skip the no-data value the same way as the iterators always did (see ValueDecoder)
+        band.setNoDataValue(noDataValue);
+        final BandDataSource<?> source = BandDataSource.createForBand(band, null, null);
+
+        final double[] table = source.getDecodingTable();
+        assertEquals("Wrong size of the table", 256, table.length);
+        assertEquals("Wrong entry of the minimum raw value", (float) (-128 * 0.5 - 3), table[0], 0);
+        assertEquals("Wrong entry of the raw value 0", -3, table[128], 0);
+        assertEquals("Wrong entry of the maximum raw value", (float) (127 * 0.5 - 3), table[255], 0);
+        assertTrue("The no-data entry isn't NaN", Double.isNaN(table[noDataValue + 128]));
+
+        assertDecodedByTable(source, table, Byte.MIN_VALUE);
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BandDataSource#getDecodingTable()} - the table of
+     * an int16 band is indexed by the raw value + 32768, and the no-data entry makes the pixels invalid.
+     */
+    @Test
+    public void testDecodingTableInt16()
+    {
+        final Band band = createProduct(ProductData.TYPE_INT16).getBand("scaled");
+        final int noDataValue = band.getRasterData().getElemIntAt(7);
+        // the sources skip the no-data value the same way as the iterators always did (see ValueDecoder)
+        band.setNoDataValue(noDataValue);
+        final BandDataSource<?> source = BandDataSource.createForBand(band, null, null);
+
+        final double[] table = source.getDecodingTable();
+        assertEquals("Wrong size of the table", 65536, table.length);
+        assertEquals("Wrong entry of the minimum raw value", (float) (-32768 * 0.5 - 3), table[0], 0);
+        assertEquals("Wrong entry of the raw value 0", -3, table[32768], 0);
+        assertEquals("Wrong entry of the maximum raw value", (float) (32767 * 0.5 - 3), table[65535], 0);
+        assertTrue("The no-data entry isn't NaN", Double.isNaN(table[noDataValue + 32768]));
+
+        assertDecodedByTable(source, table, Short.MIN_VALUE);
+    }
+
+    /**
+     * Test that the type-specialized kernels of the bulk readers of a raw band (restricted to a minimum value) and a
+     * scaled band of the given type decode the same values as the per-pixel iterators, and that
+     * {@link BandPointReader} reads exactly the entries valid in both bands with the same values.
+     * 
+     * @param type The type of the bands (one of the <code>ProductData.TYPE_*</code> constants).
+     */
+    private void testBulkReader(int type)
+    {
+        final Product product = createProduct(type);
+        final BandDataSource<?> raw = BandDataSource.createForBand(product.getBand("raw"), 10, null);
+        final BandDataSource<?> scaled = BandDataSource.createForBand(product.getBand("scaled"), null, null);
+        assertTrue("The test bands have a single tile", raw.getNumTiles() > 1);
+
+        final int size = raw.getNumTiles() * raw.getTileSize();
+        final double[][] values = new double[2][size];
+        final BitSet[] valid = { new BitSet(size), new BitSet(size) };
+        final BandDataSource<?>[] sources = { raw, scaled };
+        for (int d = 0; d < sources.length; d++) {
+            assertEquals("Wrong number of entries read", size, readBulk(sources[d], values[d], valid[d]));
+            assertIteratorValues(sources[d], values[d], valid[d]);
+        }
+
+        final BitSet validPoints = (BitSet) valid[0].clone();
+        validPoints.and(valid[1]);
+        assertFalse("The test bands have no valid points", validPoints.isEmpty());
+        assertTrue("The test bands have no invalid points", validPoints.cardinality() < size);
+
+        final PointReader reader = new BandPointReader(null, raw, scaled);
+        final int[] indices = new int[37];
+        final double[][] point = new double[2][indices.length];
+        int expectedIndex = validPoints.nextSetBit(0);
+        while (reader.hasNext()) {
+            final int read = reader.read(indices, point);
+            for (int i = 0; i < read; i++) {
+                assertEquals("Wrong index read", expectedIndex, indices[i]);
+                for (int d = 0; d < sources.length; d++)
+                    assertEquals("Wrong value read", values[d][expectedIndex], point[d][i], 0);
+                expectedIndex = validPoints.nextSetBit(expectedIndex + 1);
+            }
+        }
+        assertEquals("Not all valid points have been read", -1, expectedIndex);
+        assertEquals("Wrong number of processed entries", size, reader.getProcessedEntries());
+    }
+
+    /**
+     * Read all entries of the given source by its bulk reader.
+     * 
+     * @param source The source to read.
+     * @param values The array to read the values into.
+     * @param valid The bitset to read the validity of the values into.
+     * @return The number of read entries.
+     */
+    private static int readBulk(BandDataSource<?> source, double[] values, BitSet valid)
+    {
+        final BulkReader<?> reader = source.bulkReader();
+        // a block size not dividing the tile size, so that the blocks span the tile borders
+        final double[] block = new double[23];
+        final BitSet blockValid = new BitSet(block.length);
+        int size = 0;
+        while (reader.hasNext()) {
+            final int read = reader.read(block, blockValid);
+            for (int i = 0; i < read; i++, size++) {
+                values[size] = block[i];
+                valid.set(size, blockValid.get(i));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Assert that the bulk reader of the given source decodes every pixel of the test product by the given decoding
+     * table, and that the pixels with <code>NaN</code> entries are invalid.
+     * 
+     * @param source The source to read.
+     * @param table The decoding table of the source.
+     * @param firstRawValue The raw value of the first entry of the table.
+     */
+    private static void assertDecodedByTable(BandDataSource<?> source, double[] table, int firstRawValue)
+    {
+        final int size = source.getNumTiles() * source.getTileSize();
+        final double[] values = new double[size];
+        final BitSet valid = new BitSet(size);
+        readBulk(source, values, valid);
+
+        final ProductData data = source.getBand().getRasterData();
+        final int tileSize = TILE_SIZE * TILE_SIZE, numXTiles = WIDTH / TILE_SIZE;
+        int invalid = 0;
+        for (int i = 0; i < size; i++) {
+            final int tile = i / tileSize, inTile = i % tileSize;
+            final int x = tile % numXTiles * TILE_SIZE + inTile % TILE_SIZE;
+            final int y = tile / numXTiles * TILE_SIZE + inTile / TILE_SIZE;
+            final double expected = table[data.getElemIntAt(y * WIDTH + x) - firstRawValue];
+            if (Double.isNaN(expected)) {
+                assertFalse("A pixel with a NaN entry is valid", valid.get(i));
+                invalid++;
+            } else {
+                assertTrue("A pixel with a valid entry is invalid", valid.get(i));
+                assertEquals("Wrong value decoded", expected, values[i], 0);
+            }
+        }
+        assertTrue("No pixel has the no-data value", invalid > 0);
+    }
+
+    /**
+     * Assert that the iterator of the given source returns the given values.
+     * 
+     * @param source The source to read.
+     * @param values The expected values.
+     * @param valid The expected validity of the values.
+     */
+    private static void assertIteratorValues(BandDataSource<?> source, double[] values, BitSet valid)
+    {
+        final ValidatingIterator<? extends NumericType<?>> it = source.numericTypeIterator();
+        int index = 0;
+        while (it.hasNext()) {
+            final NumericType<?> value = it.next();
+            assertEquals("Wrong validity of entry " + index, valid.get(index), it.isLastReturnedValid());
+            if (it.isLastReturnedValid())
+                assertEquals("Wrong value of entry " + index, value.getNumber().doubleValue(), values[index], 0);
+            index++;
+        }
+        assertEquals("Wrong number of entries iterated", values.length, index);
+    }
+
+    /**
+     * Create the test product with a raw and a scaled band of the given type. The raw values are spread over the whole
+     * range of the type, so the values whose sign differs between the signed and unsigned types are included.
+     * 
+     * @param type The type of the bands.
+     * @return The product.
+     */
+    private static Product createProduct(int type)
+    {
+        final Product product = new Product("test", "test", WIDTH, HEIGHT);
+        product.setPreferredTileSize(TILE_SIZE, TILE_SIZE);
+
+        final ProductData data = ProductData.createInstance(type, WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            if (type == ProductData.TYPE_FLOAT32 || type == ProductData.TYPE_FLOAT64)
+                data.setElemDoubleAt(i, (i - 1000) * 0.37);
+            else
+                // the values are truncated to the type
+                data.setElemIntAt(i, (int) (i * 2654435761L >>> 3));
+        }
+
+        final Band raw = product.addBand("raw", type);
+        raw.setRasterData(data);
+
+        final Band scaled = product.addBand("scaled", type);
+        scaled.setRasterData(data);
+        scaled.setScalingFactor(0.5);
+        scaled.setScalingOffset(-3);
+
+        return product;
+    }
+}
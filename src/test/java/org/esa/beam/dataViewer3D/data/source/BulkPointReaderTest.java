@@ -0,0 +1,75 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class BulkPointReaderTest
+{
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.BulkPointReader#read(int[], double[][])}.
+     */
+    @Test
+    public void testRead()
+    {
+        final int size = 1000;
+        final boolean[] emptyTiles = new boolean[] { false, true, true, false, false, true, false, false, false, true,
+                false, false, true, false, false, true };
+
+        for (boolean reportEmptyTiles : new boolean[] { false, true }) {
+            final PointReader reader = new BulkPointReader(Common.getTiledTestDataSource(
+                    Common.getTestDataSourceX(size), 64, emptyTiles, reportEmptyTiles), Common.getTiledTestDataSource(
+                    Common.getTestDataSourceZ(size), 64, emptyTiles, reportEmptyTiles));
+
+            final Iterator<NumericType<Byte>> xIt = Common.getTestDataSourceX(size).numericTypeIterator();
+            final Iterator<NumericType<Double>> zIt = Common.getTestDataSourceZ(size).numericTypeIterator();
+
+            final int[] indices = new int[50];
+            final double[][] values = new double[2][50];
+
+            int expectedIndex = 0;
+            while (reader.hasNext()) {
+                final int read = reader.read(indices, values);
+                assertTrue("Read more points than requested", read <= indices.length);
+                for (int i = 0; i < read; i++) {
+                    // skip the entries of the empty tiles
+                    while (emptyTiles[expectedIndex / 64]) {
+                        xIt.next();
+                        zIt.next();
+                        expectedIndex++;
+                    }
+
+                    final NumericType<Byte> x = xIt.next();
+                    final NumericType<Double> z = zIt.next();
+                    assertEquals("Wrong index read", expectedIndex++, indices[i]);
+                    assertEquals("Wrong value read", x.getNumber().doubleValue(), values[0][i], 0);
+                    assertEquals("Wrong value read", z.getNumber(), values[1][i], 0);
+                    assertEquals("Wrong number returned", x.getNumber(), reader.getNumber(0, i));
+                    assertEquals("Wrong number returned", z.getNumber(), reader.getNumber(1, i));
+                    assertEquals("Wrong hash code returned", x.hashCode(), reader.getHashCode(0, i));
+                    assertEquals("Wrong hash code returned", z.hashCode(), reader.getHashCode(1, i));
+                }
+            }
+
+            while (expectedIndex < size && emptyTiles[expectedIndex / 64])
+                expectedIndex++;
+            assertEquals("Not all points have been read", size, expectedIndex);
+            assertFalse("Reader read past the end", reader.hasNext());
+        }
+    }
+}
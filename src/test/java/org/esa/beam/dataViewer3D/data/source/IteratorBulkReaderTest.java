@@ -0,0 +1,109 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.esa.beam.dataViewer3D.data.type.DoubleType;
+import org.esa.beam.dataViewer3D.data.type.NumericType;
+import org.esa.beam.util.ValidatingIterator;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class IteratorBulkReaderTest
+{
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.IteratorBulkReader#read(double[], BitSet)}.
+     */
+    @Test
+    public void testRead()
+    {
+        final DataSource<Double> source = Common.getTestDataSourceZ(30);
+        final BulkReader<Double> reader = source.bulkReader();
+        final Iterator<NumericType<Double>> it = source.numericTypeIterator();
+
+        final double[] values = new double[7];
+        final BitSet valid = new BitSet();
+
+        int total = 0;
+        while (reader.hasNext()) {
+            final int read = reader.read(values, valid);
+            assertTrue("Read more values than requested", read <= values.length);
+            for (int i = 0; i < read; i++) {
+                final NumericType<Double> expected = it.next();
+                assertTrue("Valid value marked as invalid", valid.get(i));
+                assertEquals("Wrong value read", expected.getNumber(), (Double) values[i]);
+                assertEquals("Wrong number returned", expected.getNumber(), reader.getNumber(i));
+                assertEquals("Wrong numeric type returned", expected, reader.getNumericType(i));
+                assertEquals("Wrong hash code returned", expected.hashCode(), reader.getHashCode(i));
+            }
+            total += read;
+        }
+
+        assertEquals("Wrong number of values read", 30, total);
+        assertFalse("Values remained in the source", it.hasNext());
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.IteratorBulkReader#read(double[], BitSet)}.
+     */
+    @Test
+    public void testReadInvalid()
+    {
+        final ValidatingIterator<NumericType<Double>> it = new ValidatingIterator<NumericType<Double>>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return i < 4;
+            }
+
+            @Override
+            public NumericType<Double> next()
+            {
+                return (i++ % 2 == 0) ? new DoubleType((double) i, null) : null;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean isLastReturnedValid()
+            {
+                return i % 2 == 1;
+            }
+        };
+        final BulkReader<Double> reader = new IteratorBulkReader<Double>(it);
+
+        final double[] values = new double[10];
+        final BitSet valid = new BitSet();
+        valid.set(0, 10);
+
+        assertEquals("Wrong number of values read", 4, reader.read(values, valid));
+        assertTrue("Valid value marked as invalid", valid.get(0));
+        assertFalse("Invalid value marked as valid", valid.get(1));
+        assertTrue("Valid value marked as invalid", valid.get(2));
+        assertFalse("Invalid value marked as valid", valid.get(3));
+        assertTrue("Bits after the read block changed", valid.get(4));
+        assertNull("Invalid value returned a number", reader.getNumber(1));
+        assertNull("Invalid value returned a numeric type", reader.getNumericType(3));
+        assertFalse("Reader didn't reach the end", reader.hasNext());
+    }
+}
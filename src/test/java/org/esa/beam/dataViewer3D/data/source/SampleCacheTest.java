@@ -0,0 +1,207 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.esa.beam.dataViewer3D.data.dataset.AbstractDataSet;
+import org.esa.beam.dataViewer3D.data.dataset.DataSet;
+import org.esa.beam.framework.datamodel.Band;
+import org.esa.beam.framework.datamodel.Product;
+import org.esa.beam.framework.datamodel.ProductData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.bc.ceres.core.ProgressMonitor;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class SampleCacheTest
+{
+    /** The size of the test product. */
+    private static final int      WIDTH = 64, HEIGHT = 48;
+
+    /** The names of the bands of the test product. */
+    private static final String[] BANDS = { "x", "y", "z" };
+
+    /** The directory of the cache. */
+    private File                  directory;
+
+    /** The test product. */
+    private Product               product;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = File.createTempFile("sampleCache", "");
+        directory.delete();
+        directory.mkdirs();
+
+        product = new Product("test", "test", WIDTH, HEIGHT);
+        for (int b = 0; b < BANDS.length; b++) {
+            final int[] data = new int[WIDTH * HEIGHT];
+            for (int i = 0; i < data.length; i++)
+                data[i] = (i * (b + 3)) % (b + 7);
+            final Band band = product.addBand(BANDS[b], ProductData.TYPE_INT32);
+            band.setRasterData(ProductData.createInstance(data));
+        }
+
+        // only bands of products stored in files are cached
+        final File productFile = File.createTempFile("product", ".dim");
+        productFile.deleteOnExit();
+        product.setFileLocation(productFile);
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    /**
+     * Test that the second computation reads the samples written to the cache by the first one, and that both give the
+     * same data set as reading the bands directly.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testSecondComputeReadsCache() throws IOException
+    {
+        final CountingSampleCache cache = new CountingSampleCache(directory, SampleCache.DEFAULT_MAX_SIZE);
+
+        final DataSet direct = compute(null);
+        final DataSet first = compute(cache);
+        assertEquals("The samples haven't been cached", BANDS.length, cache.writtenFiles);
+        final DataSet second = compute(cache);
+        assertEquals("The second computation hasn't read the cache", BANDS.length, cache.writtenFiles);
+
+        for (DataSet cached : new DataSet[] { first, second }) {
+            assertEquals("Wrong size of the cached result", direct.size(), cached.size());
+            assertEquals("Wrong histogram of the cached result", toList(direct.histogramIterator()),
+                    toList(cached.histogramIterator()));
+            assertEquals("Wrong points of the cached result", toList(direct.pointIterator()),
+                    toList(cached.pointIterator()));
+        }
+
+        // a modified product isn't read from the stale cache
+        product.getFileLocation().setLastModified(product.getFileLocation().lastModified() - 10000);
+        compute(cache);
+        assertEquals("A modified product has been read from the cache", 2 * BANDS.length, cache.writtenFiles);
+
+        // neither is a band whose scaling has been changed in memory
+        product.getBand(BANDS[0]).setScalingFactor(2);
+        compute(cache);
+        assertEquals("A rescaled band has been read from the cache", 2 * BANDS.length + 1, cache.writtenFiles);
+    }
+
+    /**
+     * Test that the least recently used cache files exceeding the maximum size and old temporary files are deleted,
+     * and that the cache files are unmapped when the samples are released.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testEviction() throws IOException
+    {
+        final File temp = new File(directory, "crashed" + SampleCache.TEMP_SUFFIX);
+        temp.createNewFile();
+        temp.setLastModified(System.currentTimeMillis() - 2 * SampleCache.TEMP_FILE_AGE);
+
+        final BandDataSource<?> first = BandDataSource.createForBand(product.getBand(BANDS[0]), null, null);
+        final long fileSize = (long) first.getNumTiles() * first.getTileSize() * 8;
+        final SampleCache cache = new SampleCache(directory, 2 * fileSize);
+
+        for (String name : BANDS) {
+            final DataSource<?> cached = cache.getDataSource(
+                    BandDataSource.createForBand(product.getBand(name), null, null), null);
+            final MappedDataSource<?> mapped = (MappedDataSource<?>) cached;
+            assertFalse("The cache file has been unmapped", mapped.isReleased());
+            SampleCache.release(cached);
+            assertTrue("The cache file hasn't been unmapped", mapped.isReleased());
+        }
+
+        assertEquals("Wrong number of cache files", 2, directory.list().length);
+        assertFalse("The old temporary file hasn't been deleted", temp.exists());
+    }
+
+    /**
+     * Compute the data set of the bands of the test product.
+     * 
+     * @param cache The cache to read the samples from, <code>null</code> to read the bands directly.
+     * @return The data set.
+     * 
+     * @throws IOException
+     */
+    private DataSet compute(SampleCache cache) throws IOException
+    {
+        final BandDataSourceSet3D<?, ?, ?> sourceSet = createSourceSet();
+        sourceSet.setSampleCache(cache, null);
+        try {
+            if (cache != null)
+                assertTrue("The samples aren't read from the cache",
+                        sourceSet.getXSource() instanceof MappedDataSource<?>);
+            return AbstractDataSet.createFromDataSources(null, sourceSet, null);
+        } finally {
+            sourceSet.releaseSampleCache();
+        }
+    }
+
+    /**
+     * @return The set of sources of the bands of the test product.
+     */
+    private BandDataSourceSet3D<?, ?, ?> createSourceSet()
+    {
+        return BandDataSourceSet3D.create(BandDataSource.createForBand(product.getBand(BANDS[0]), null, null),
+                BandDataSource.createForBand(product.getBand(BANDS[1]), null, null),
+                BandDataSource.createForBand(product.getBand(BANDS[2]), null, null), null);
+    }
+
+    private static <T> ArrayList<T> toList(Iterator<T> it)
+    {
+        final ArrayList<T> result = new ArrayList<T>();
+        while (it.hasNext())
+            result.add(it.next());
+        return result;
+    }
+
+    /**
+     * A cache counting the written files.
+     * 
+     * @author Martin Pecka
+     */
+    private static class CountingSampleCache extends SampleCache
+    {
+        /** The number of written cache files. */
+        private int writtenFiles = 0;
+
+        /**
+         * @param directory The directory to store the cache files in.
+         * @param maxSize The maximum total size of the cache files.
+         */
+        public CountingSampleCache(File directory, long maxSize)
+        {
+            super(directory, maxSize);
+        }
+
+        @Override
+        protected void write(BandDataSource<?> source, File file, ProgressMonitor progressMonitor) throws IOException
+        {
+            writtenFiles++;
+            super.write(source, file, progressMonitor);
+        }
+    }
+}
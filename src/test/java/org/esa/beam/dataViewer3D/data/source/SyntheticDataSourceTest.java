@@ -0,0 +1,221 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.esa.beam.dataViewer3D.data.source.SyntheticDataSource.Distribution;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class SyntheticDataSourceTest
+{
+    /** The tested distributions. */
+    private static final Distribution[] DISTRIBUTIONS = new Distribution[] { Distribution.uniform(),
+            Distribution.gaussianClusters(3, 0.05), Distribution.pareto(1.2, 1000) };
+
+    /**
+     * Test method for
+     * {@link SyntheticDataSource#createDouble(int, long, double, double, Distribution, Integer)}.
+     */
+    @Test
+    public void testCreate()
+    {
+        try {
+            SyntheticDataSource.createDouble(0, 1, 0d, 1d, Distribution.uniform(), null);
+            fail("Managed to create data source with invalid size: 0");
+        } catch (IllegalArgumentException e) {}
+
+        try {
+            SyntheticDataSource.createInt(10, 1, 5, 4, Distribution.uniform());
+            fail("Managed to create data source with min=5 > max=4");
+        } catch (IllegalArgumentException e) {}
+
+        try {
+            Distribution.gaussianClusters(0, 0.1);
+            fail("Managed to create a distribution with no clusters");
+        } catch (IllegalArgumentException e) {}
+
+        try {
+            Distribution.pareto(1, 1);
+            fail("Managed to create a Pareto distribution with ratio 1");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test that the values are reproducible and respect the bounds.
+     */
+    @Test
+    public void testDeterminism()
+    {
+        for (Distribution distribution : DISTRIBUTIONS) {
+            final SyntheticDataSource<Double> src1 = SyntheticDataSource.createDouble(10000, 42, -5d, 5d,
+                    distribution, null);
+            final SyntheticDataSource<Double> src2 = SyntheticDataSource.createDouble(10000, 42, -5d, 5d,
+                    distribution, null);
+            final SyntheticDataSource<Double> src3 = SyntheticDataSource.createDouble(10000, 43, -5d, 5d,
+                    distribution, null);
+
+            int differences = 0;
+            final Iterator<Double> it1 = src1.iterator(), it2 = src2.iterator(), it3 = src3.iterator();
+            while (it1.hasNext()) {
+                final double value = it1.next();
+                assertEquals("Sources with the same seed returned different values", value, it2.next(), 0);
+                assertTrue("Value out of bounds: " + value, value >= -5 && value <= 5);
+                if (value != it3.next())
+                    differences++;
+            }
+            assertFalse(it2.hasNext());
+            assertTrue("Sources with different seeds returned the same values", differences > 9000);
+        }
+
+        final SyntheticDataSource<Byte> bytes = SyntheticDataSource.createByte(1000, 7, (byte) -3, (byte) 3,
+                Distribution.gaussianClusters(2, 0.3));
+        for (Iterator<Byte> it = bytes.iterator(); it.hasNext();) {
+            final byte value = it.next();
+            assertTrue("Value out of bounds: " + value, value >= -3 && value <= 3);
+        }
+    }
+
+    /**
+     * Test method for {@link SyntheticDataSource#getValue(int)} and
+     * {@link SyntheticDataSource#getValues(int, double[], int, int)}.
+     */
+    @Test
+    public void testRandomAccess()
+    {
+        final SyntheticDataSource<Float> src = SyntheticDataSource.createFloat(5000, 3, 0f, 100f,
+                Distribution.pareto(1, 100), null);
+
+        int i = 0;
+        for (Iterator<Float> it = src.iterator(); it.hasNext(); i++)
+            assertEquals(it.next().doubleValue(), src.getValue(i), 0);
+
+        final double[] values = new double[12];
+        src.getValues(4990, values, 2, 10);
+        for (int j = 0; j < 10; j++)
+            assertEquals(src.getValue(4990 + j), values[2 + j], 0);
+
+        try {
+            src.getValue(5000);
+            fail("Managed to read a value out of bounds");
+        } catch (IndexOutOfBoundsException e) {}
+
+        try {
+            src.getValues(4995, values, 0, 10);
+            fail("Managed to read values out of bounds");
+        } catch (IndexOutOfBoundsException e) {}
+    }
+
+    /**
+     * Test method for {@link SyntheticDataSource#randomAccessReader()}.
+     */
+    @Test
+    public void testRandomAccessReader()
+    {
+        final SyntheticDataSource<Double> src = SyntheticDataSource.createDouble(10000, 5, -1d, 1d,
+                Distribution.uniform(), null);
+        final RandomAccessReader<Double> reader = src.randomAccessReader();
+        final double[] values = new double[20];
+        final BitSet valid = new BitSet();
+
+        for (int index : new int[] { 9000, 10, 5000, 0, 9990 }) {
+            reader.seek(index);
+            final int read = reader.read(values, valid);
+            assertEquals(Math.min(20, 10000 - index), read);
+            for (int j = 0; j < read; j++)
+                assertEquals(src.getValue(index + j), values[j], 0);
+        }
+        assertFalse(reader.hasNext());
+
+        reader.seek(10000);
+        assertFalse(reader.hasNext());
+
+        try {
+            reader.seek(10001);
+            fail("Managed to seek out of bounds");
+        } catch (IndexOutOfBoundsException e) {}
+    }
+
+    /**
+     * Test that the hash codes and keys the bulk reader computes from the primitive values are the same as those of
+     * the numeric types.
+     */
+    @Test
+    public void testHashCodesAndKeys()
+    {
+        final List<SyntheticDataSource<?>> sources = Arrays.<SyntheticDataSource<?>> asList(
+                SyntheticDataSource.createDouble(1000, 1, -1d, 1d, Distribution.uniform(), null),
+                SyntheticDataSource.createDouble(1000, 2, -1d, 1d, Distribution.uniform(), 2),
+                SyntheticDataSource.createFloat(1000, 3, -1f, 1f, Distribution.uniform(), null),
+                SyntheticDataSource.createFloat(1000, 4, -1f, 1f, Distribution.uniform(), 3),
+                SyntheticDataSource.createInt(1000, 5, -100000, 100000, Distribution.uniform()),
+                SyntheticDataSource.createByte(1000, 6, (byte) -100, (byte) 100, Distribution.uniform()));
+
+        final double[] values = new double[1000];
+        final BitSet valid = new BitSet();
+        for (SyntheticDataSource<?> src : sources) {
+            final RandomAccessReader<?> reader = src.randomAccessReader();
+            final int read = reader.read(values, valid);
+            for (int j = 0; j < read; j++) {
+                assertEquals("Wrong hash code", reader.getNumericType(j).hashCode(), reader.getHashCode(j));
+                assertEquals("Wrong key", reader.getNumericType(j).getKey(), reader.getKey(j));
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link SyntheticDataSource#split(int)} and {@link SyntheticDataSource#bulkReader(int, int)}.
+     */
+    @Test
+    public void testSplit()
+    {
+        final int size = 3 * SyntheticDataSource.BLOCK_SIZE + 100;
+        final SyntheticDataSource<Integer> src = SyntheticDataSource.createInt(size, 11, -1000, 1000,
+                Distribution.uniform());
+        assertEquals(4, src.getNumTiles());
+
+        for (int parts : new int[] { 1, 2, 3, 4, 7 }) {
+            final List<SyntheticDataSource<Integer>> split = src.split(parts);
+            assertEquals(parts, split.size());
+
+            int i = 0;
+            for (SyntheticDataSource<Integer> part : split) {
+                for (Iterator<Integer> it = part.iterator(); it.hasNext(); i++)
+                    assertEquals(src.getValue(i), it.next().doubleValue(), 0);
+            }
+            assertEquals("The parts don't cover the whole source", size, i);
+        }
+
+        final List<SyntheticDataSource<Integer>> small = SyntheticDataSource.createInt(5, 11, 0, 10,
+                Distribution.uniform()).split(10);
+        assertEquals(5, small.size());
+
+        final BulkReader<Integer> reader = src.bulkReader(2, 3);
+        final double[] values = new double[1000];
+        final BitSet valid = new BitSet();
+        int i = 2 * SyntheticDataSource.BLOCK_SIZE;
+        while (reader.hasNext()) {
+            final int read = reader.read(values, valid);
+            for (int j = 0; j < read; j++, i++) {
+                assertTrue(valid.get(j));
+                assertEquals(src.getValue(i), values[j], 0);
+                assertEquals((int) src.getValue(i), reader.getNumber(j).intValue());
+            }
+        }
+        assertEquals(size, i);
+    }
+}
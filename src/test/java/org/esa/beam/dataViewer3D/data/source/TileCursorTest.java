@@ -0,0 +1,89 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+
+import org.esa.beam.dataViewer3D.data.Common;
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class TileCursorTest
+{
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.TileCursor#getDataTiles(TiledDataSource...)}.
+     */
+    @Test
+    public void testGetDataTiles()
+    {
+        final TiledDataSource<Byte> x = Common.getTiledTestDataSource(Common.getTestDataSourceX(100), 10,
+                new boolean[] { true, false, false, true, false, false, false, true }, true);
+        final TiledDataSource<Integer> y = Common.getTiledTestDataSource(Common.getTestDataSourceY(100), 10,
+                new boolean[] { false, false, true, false, false, true }, true);
+
+        assertArrayEquals("Wrong data tiles", new int[] { 1, 2, 4, 5, 6, 8, 9 }, TileCursor.getDataTiles(x));
+        assertArrayEquals("Wrong data tiles", new int[] { 1, 4, 6, 8, 9 }, TileCursor.getDataTiles(x, y));
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.TileCursor#next()}.
+     */
+    @Test
+    public void testNext()
+    {
+        final TileCursor cursor = new TileCursor(new int[] { 1, 2, 4, 7, 8, 9 }, 10);
+
+        assertTrue("Missing run", cursor.next());
+        assertEquals("Wrong first tile", 1, cursor.getFirstTile());
+        assertEquals("Wrong last tile", 2, cursor.getLastTile());
+        assertEquals("Wrong first index", 10, cursor.getFirstIndex());
+        assertEquals("Wrong number of skipped entries", 10, cursor.getSkippedEntries());
+
+        assertTrue("Missing run", cursor.next());
+        assertEquals("Wrong first tile", 4, cursor.getFirstTile());
+        assertEquals("Wrong last tile", 4, cursor.getLastTile());
+        assertEquals("Wrong first index", 40, cursor.getFirstIndex());
+        assertEquals("Wrong number of skipped entries", 10, cursor.getSkippedEntries());
+
+        assertTrue("Missing run", cursor.next());
+        assertEquals("Wrong first tile", 7, cursor.getFirstTile());
+        assertEquals("Wrong last tile", 9, cursor.getLastTile());
+        assertEquals("Wrong first index", 70, cursor.getFirstIndex());
+        assertEquals("Wrong number of skipped entries", 20, cursor.getSkippedEntries());
+
+        assertFalse("Too many runs", cursor.next());
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.TileCursor#next()}.
+     */
+    @Test
+    public void testNextUntiled()
+    {
+        final DataSource<Byte> x = Common.getTestDataSourceX(100);
+        final TileCursor cursor = new TileCursor(x, Common.getTiledTestDataSource(Common.getTestDataSourceY(100), 10));
+
+        assertTrue("Missing run", cursor.next());
+        assertEquals("Wrong first index", 0, cursor.getFirstIndex());
+        assertEquals("Wrong number of skipped entries", 0, cursor.getSkippedEntries());
+
+        final BulkReader<Byte> reader = cursor.bulkReader(x);
+        int read = 0;
+        while (reader.hasNext())
+            read += reader.read(new double[7], new BitSet());
+        assertEquals("The run doesn't cover the whole source", 100, read);
+
+        assertFalse("Too many runs", cursor.next());
+    }
+}
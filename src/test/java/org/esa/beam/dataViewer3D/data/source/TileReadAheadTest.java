@@ -0,0 +1,191 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class TileReadAheadTest
+{
+    /** The number of tiles in a row of the test image, and the offset of its first tile. */
+    private static final int NUM_X_TILES = 4, TILE_X1 = 2, TILE_Y1 = 3;
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.TileReadAhead#getTiles(int)} - the tiles following
+     * the read one are loaded in advance in the order they will be read, and at most <code>depth</code> of them.
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testPrefetchInScanOrder() throws InterruptedException
+    {
+        final int[] tiles = { 1, 4, 6, 9, 10, 13 };
+        final int depth = 2;
+        final RecordingImage image = new RecordingImage(-1);
+        final RecordingImage mask = new RecordingImage(-1);
+        final TileReadAhead readAhead = new TileReadAhead(image, mask, tiles, NUM_X_TILES, TILE_X1, TILE_Y1, depth);
+
+        for (int i = 0; i < tiles.length; i++) {
+            final Raster[] loaded = readAhead.getTiles(tiles[i]);
+            assertTile(tiles[i], loaded[0]);
+            assertTile(tiles[i], loaded[1]);
+
+            // exactly the read tile and the next tiles up to the depth have been loaded
+            final int[] expected = Arrays.copyOf(tiles, Math.min(tiles.length, i + 1 + depth));
+            assertEquals("Wrong tiles loaded in advance", toList(expected), image.waitForTiles(expected.length));
+            assertEquals("Wrong mask tiles loaded in advance", toList(expected), mask.waitForTiles(expected.length));
+        }
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.TileReadAhead#getTiles(int)} - no tile past the
+     * last one to be read is loaded, and every tile is loaded only once.
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testNothingReadPastLastTile() throws InterruptedException
+    {
+        final int[] tiles = { 0, 2, 3, 7 };
+        final RecordingImage image = new RecordingImage(-1);
+        final TileReadAhead readAhead = new TileReadAhead(image, null, tiles, NUM_X_TILES, TILE_X1, TILE_Y1, 8);
+
+        for (int tile : tiles) {
+            final Raster[] loaded = readAhead.getTiles(tile);
+            assertTile(tile, loaded[0]);
+            assertNull("Mask tile loaded without a mask image", loaded[1]);
+        }
+
+        // give the pool a chance to load any tile it shouldn't
+        Thread.sleep(50);
+        assertEquals("Wrong tiles loaded", toList(tiles), image.waitForTiles(tiles.length));
+    }
+
+    /**
+     * Test method for {@link org.esa.beam.dataViewer3D.data.source.TileReadAhead#getTiles(int)} - a failure of loading a
+     * tile in advance is thrown in the thread reading the tile.
+     */
+    @Test
+    public void testReadFailure()
+    {
+        final int[] tiles = { 1, 4, 6, 9 };
+        final RecordingImage image = new RecordingImage(6);
+        final TileReadAhead readAhead = new TileReadAhead(image, null, tiles, NUM_X_TILES, TILE_X1, TILE_Y1, 2);
+
+        assertTile(1, readAhead.getTiles(1)[0]);
+        assertTile(4, readAhead.getTiles(4)[0]);
+        try {
+            readAhead.getTiles(6);
+            fail("The failure of loading a tile hasn't been thrown");
+        } catch (RuntimeException e) {
+            assertSame("Wrong exception thrown", image.failure, e);
+            assertNotNull("The failed tile hasn't been loaded", image.failureThread);
+            assertFalse("The failed tile hasn't been loaded in advance", image.failureThread == Thread.currentThread());
+        }
+    }
+
+    /**
+     * Assert that the given raster is the given tile of the test image.
+     * 
+     * @param tile Index of the tile.
+     * @param raster The raster.
+     */
+    private static void assertTile(int tile, Raster raster)
+    {
+        assertNotNull("Missing tile " + tile, raster);
+        assertEquals("Wrong tile loaded", TILE_X1 + tile % NUM_X_TILES, raster.getMinX());
+        assertEquals("Wrong tile loaded", TILE_Y1 + tile / NUM_X_TILES, raster.getMinY());
+    }
+
+    private static List<Integer> toList(int[] array)
+    {
+        final List<Integer> result = new ArrayList<Integer>(array.length);
+        for (int value : array)
+            result.add(value);
+        return result;
+    }
+
+    /**
+     * An image recording the indices of the loaded tiles. Its tiles are 1x1 rasters located at the tile coordinates.
+     * 
+     * @author Martin Pecka
+     */
+    private static class RecordingImage extends BufferedImage
+    {
+        /** The indices of the loaded tiles. */
+        private final List<Integer>    loadedTiles = new ArrayList<Integer>();
+
+        /** Index of the tile whose loading fails, <code>-1</code> if none. */
+        private final int              failingTile;
+
+        /** The exception thrown when loading the failing tile. */
+        private final RuntimeException failure     = new IllegalStateException("Tile cannot be loaded");
+
+        /** The thread that has tried to load the failing tile. */
+        private volatile Thread        failureThread;
+
+        /**
+         * @param failingTile Index of the tile whose loading fails, <code>-1</code> if none.
+         */
+        public RecordingImage(int failingTile)
+        {
+            super(1, 1, TYPE_BYTE_GRAY);
+            this.failingTile = failingTile;
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY)
+        {
+            final int tile = (tileY - TILE_Y1) * NUM_X_TILES + tileX - TILE_X1;
+            synchronized (loadedTiles) {
+                loadedTiles.add(tile);
+                loadedTiles.notifyAll();
+            }
+            if (tile == failingTile) {
+                failureThread = Thread.currentThread();
+                throw failure;
+            }
+            return Raster.createWritableRaster(getSampleModel(), new Point(tileX, tileY));
+        }
+
+        /**
+         * Wait until the given number of tiles has been loaded (or a timeout elapses).
+         * 
+         * @param count The number of tiles.
+         * @return The sorted indices of the loaded tiles.
+         * 
+         * @throws InterruptedException
+         */
+        public List<Integer> waitForTiles(int count) throws InterruptedException
+        {
+            final long deadline = System.currentTimeMillis() + 5000;
+            synchronized (loadedTiles) {
+                while (loadedTiles.size() < count && System.currentTimeMillis() < deadline)
+                    loadedTiles.wait(100);
+                final List<Integer> result = new ArrayList<Integer>(loadedTiles);
+                Collections.sort(result);
+                return result;
+            }
+        }
+    }
+}
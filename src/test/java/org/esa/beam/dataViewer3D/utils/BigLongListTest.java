@@ -0,0 +1,69 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class BigLongListTest
+{
+
+    /**
+     * Test method for {@link BigLongList#add(long)}, {@link BigLongList#get(long)} and
+     * {@link BigLongList#set(long, long)} over several segments.
+     */
+    @Test
+    public void testAdd()
+    {
+        final BigLongList list = new BigLongList(3);
+        for (int i = 0; i < 1000; i++)
+            list.add(i * 3L << 32);
+
+        assertEquals(1000, list.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i * 3L << 32, list.get(i));
+
+        list.set(999, -1);
+        list.trimToSize();
+        assertEquals(-1, list.get(999));
+        list.add(5);
+        assertEquals(5, list.get(1000));
+
+        try {
+            list.get(1001);
+            fail("Managed to read an element out of bounds");
+        } catch (IndexOutOfBoundsException e) {}
+
+        try {
+            new BigLongList(0);
+            fail("Managed to create a list with empty segments");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test method for {@link BigIntList#iterator()} over several segments.
+     */
+    @Test
+    public void testIntIterator()
+    {
+        final BigIntList list = new BigIntList(2);
+        for (int i = 0; i < 100; i++)
+            list.add(i - 50);
+
+        final IntIterator it = list.iterator();
+        list.add(1000);
+        for (int i = 0; i < 100; i++)
+            assertEquals(i - 50, it.next());
+        assertFalse("The iterator returned an element added after its creation", it.hasNext());
+        assertEquals(101, list.size());
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class HyperLogLogTest
+{
+
+    /**
+     * Test method for {@link HyperLogLog#estimate()} - small cardinalities are counted almost exactly, big ones within
+     * a few standard errors, and duplicates don't change the estimate.
+     */
+    @Test
+    public void testEstimate()
+    {
+        final HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.estimate());
+
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int i = 0; i < 1000; i++)
+                sketch.add(HyperLogLog.hash(i));
+        }
+        assertEquals(1000, sketch.estimate(), 10);
+
+        for (int i = 1000; i < 1000000; i++)
+            sketch.add(HyperLogLog.hash(i));
+        assertEquals(1000000, sketch.estimate(), 30000);
+    }
+
+    /**
+     * Test method for {@link HyperLogLog#addAll(HyperLogLog)} - the merged sketch estimates the union.
+     */
+    @Test
+    public void testAddAll()
+    {
+        final HyperLogLog first = new HyperLogLog(), second = new HyperLogLog();
+        for (int i = 0; i < 200000; i++)
+            first.add(HyperLogLog.hash(i));
+        for (int i = 100000; i < 300000; i++)
+            second.add(HyperLogLog.hash(i));
+
+        first.addAll(second);
+        assertEquals(300000, first.estimate(), 9000);
+
+        try {
+            first.addAll(new HyperLogLog(10));
+            fail("Merged sketches of different precisions.");
+        } catch (IllegalArgumentException e) {}
+    }
+}
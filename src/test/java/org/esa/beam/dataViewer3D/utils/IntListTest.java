@@ -0,0 +1,80 @@
+/**
+ * 
+ */
+package org.esa.beam.dataViewer3D.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * 
+ * 
+ * @author Martin Pecka
+ */
+public class IntListTest
+{
+
+    /**
+     * Test method for {@link IntList#add(int)}, {@link IntList#get(int)} and {@link IntList#iterator()}.
+     */
+    @Test
+    public void testAdd()
+    {
+        final IntList list = new IntList(1);
+        for (int i = 0; i < 1000; i++)
+            list.add(i * 3);
+
+        assertEquals(1000, list.size());
+        final IntIterator it = list.iterator();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 3, list.get(i));
+            assertEquals(i * 3, it.next());
+        }
+        assertFalse(it.hasNext());
+
+        list.trimToSize();
+        assertEquals(1000, list.toArray().length);
+
+        try {
+            list.get(1000);
+            fail("Managed to read an element out of bounds");
+        } catch (IndexOutOfBoundsException e) {}
+
+        try {
+            new IntList(-1);
+            fail("Managed to create a list with negative capacity");
+        } catch (IllegalArgumentException e) {}
+    }
+
+    /**
+     * Test method for {@link IntList#IntList(java.util.Collection)}.
+     */
+    @Test
+    public void testCopy()
+    {
+        final IntList list = new IntList(Arrays.asList(4, 2, 7));
+        assertTrue(Arrays.equals(new int[] { 4, 2, 7 }, list.toArray()));
+    }
+
+    /**
+     * Test method for {@link IntList#IntList(IntList)} - the copy mustn't change with the original list.
+     */
+    @Test
+    public void testCopyList()
+    {
+        final IntList list = new IntList(Arrays.asList(4, 2, 7));
+        final IntList copy = new IntList(list);
+        list.add(5);
+        assertTrue(Arrays.equals(new int[] { 4, 2, 7 }, copy.toArray()));
+
+        copy.add(1);
+        assertTrue(Arrays.equals(new int[] { 4, 2, 7, 1 }, copy.toArray()));
+        assertTrue(Arrays.equals(new int[] { 4, 2, 7, 5 }, list.toArray()));
+    }
+}